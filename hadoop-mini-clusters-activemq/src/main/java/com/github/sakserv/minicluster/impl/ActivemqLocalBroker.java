@@ -32,8 +32,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
 import com.github.sakserv.minicluster.config.ConfigVars;
-import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.RamStorage;
 
 public class ActivemqLocalBroker implements MiniCluster {
 
@@ -41,9 +46,11 @@ public class ActivemqLocalBroker implements MiniCluster {
     private static final Logger LOG = LoggerFactory.getLogger(ActivemqLocalBroker.class);
 
     private final String hostName;
-    private final Integer port;
+    private Integer port;
     private final String queueName;
-    private final String storeDir;
+    private String storeDir;
+    private Boolean ramStorageEnabled;
+    private final ConfigProfiles profiles;
     private final String uriPrefix;
     private final String uriPostfix;
     
@@ -58,6 +65,8 @@ public class ActivemqLocalBroker implements MiniCluster {
         this.port = builder.port;
         this.queueName = builder.queueName;
         this.storeDir = builder.storeDir;
+        this.ramStorageEnabled = builder.ramStorageEnabled;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.uriPrefix = builder.uriPrefix;
         this.uriPostfix = builder.uriPostfix;
     }
@@ -77,6 +86,14 @@ public class ActivemqLocalBroker implements MiniCluster {
     public String getStoreDir() {
         return storeDir;
     }
+
+    public Boolean getRamStorageEnabled() {
+        return ramStorageEnabled;
+    }
+
+    public Boolean getEphemeralDurability() {
+        return profiles.get(Profile.EPHEMERAL_DURABILITY);
+    }
     
     public String getUriPrefix() {
         return uriPrefix;
@@ -93,6 +110,8 @@ public class ActivemqLocalBroker implements MiniCluster {
         private Integer port;
         private String queueName;
         private String storeDir;
+        private Boolean ramStorageEnabled;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private String uriPrefix;
         private String uriPostfix;
 
@@ -116,6 +135,24 @@ public class ActivemqLocalBroker implements MiniCluster {
             return this;
         }
 
+        /**
+         * Place the ActiveMQ data dir on a tmpfs (/dev/shm), falling back to disk when it does not
+         * fit. Defaults to -Dminicluster.storage.ram.enabled.
+         */
+        public Builder setRamStorageEnabled(Boolean ramStorageEnabled) {
+            this.ramStorageEnabled = ramStorageEnabled;
+            return this;
+        }
+
+        /**
+         * Run the broker without a persistence store, see EphemeralDurability. Defaults to
+         * -Dminicluster.durability.ephemeral.enabled.
+         */
+        public Builder setEphemeralDurability(Boolean ephemeralDurability) {
+            profiles.set(Profile.EPHEMERAL_DURABILITY, ephemeralDurability);
+            return this;
+        }
+
         public Builder setUriPrefix(String uriPrefix) {
             this.uriPrefix = uriPrefix;
             return this;
@@ -162,23 +199,36 @@ public class ActivemqLocalBroker implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        String uri = uriPrefix + hostName + ":" + port;
-        LOG.info("ACTIVEMQ: Starting ActiveMQ on {}", uri);
-        configure();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            configure();
+            String uri = uriPrefix + hostName + ":" + port;
+            LOG.info("ACTIVEMQ: Starting ActiveMQ on {}", uri);
 
-        broker = new BrokerService();
-        broker.addConnector(uri);
-        broker.start();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startBroker")) {
+                broker = new BrokerService();
+                broker.setPersistent(!profiles.isEnabled(Profile.EPHEMERAL_DURABILITY));
+                broker.addConnector(uri);
+                broker.start();
+            }
 
-        ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(uri + uriPostfix);
-        Connection conn = factory.createConnection();
-        conn.start();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "createSession")) {
+                ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory(uri + uriPostfix);
+                Connection conn = factory.createConnection();
+                conn.start();
 
-        session = conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
-        dest = session.createQueue(queueName);
-        consumer = session.createConsumer(dest);
-        producer = session.createProducer(dest);
-        producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+                session = conn.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                dest = session.createQueue(queueName);
+                consumer = session.createConsumer(dest);
+                producer = session.createProducer(dest);
+                producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+            }
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        return broker != null && broker.isStarted();
     }
 
     @Override
@@ -188,25 +238,36 @@ public class ActivemqLocalBroker implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("ACTIVEMQ: Stopping ActiveMQ");
-        consumer.close();
-        session.close();
-        broker.stop();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("ACTIVEMQ: Stopping ActiveMQ");
+            consumer.close();
+            session.close();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "stopBroker")) {
+                broker.stop();
+            }
 
-        if(cleanUp) {
-            cleanUp();
+            if(cleanUp) {
+                cleanUp();
+            }
         }
     }
 
     @Override
     public void configure() throws Exception {
-        Properties props = System.getProperties();
-        props.setProperty(ConfigVars.ACTIVEMQ_STORE_DIR_KEY, storeDir);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            port = PortAllocator.resolve(port);
+            storeDir = RamStorage.resolve(storeDir, "activemq-data", RamStorage.ACTIVEMQ_MB, ramStorageEnabled);
+
+            Properties props = System.getProperties();
+            props.setProperty(ConfigVars.ACTIVEMQ_STORE_DIR_KEY, storeDir);
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(storeDir);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            RamStorage.deleteInBackground(storeDir);
+        }
     }
 
     public void sendTextMessage(String text) throws JMSException {
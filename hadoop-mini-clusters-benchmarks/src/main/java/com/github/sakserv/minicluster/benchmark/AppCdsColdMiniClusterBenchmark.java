@@ -0,0 +1,31 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.benchmark;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ColdMiniClusterBenchmark with the AppCDS archive of the appcds-archive profile, compare the two
+ * with "Cold". The archive only matches the classpath it was created with, run both through
+ * exec:exec of this module. Without the archive the JVM warns and this measures a plain cold start.
+ */
+@Fork(value = 5, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Xshare:auto",
+        "-XX:SharedArchiveFile=target/minicluster.jsa"})
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class AppCdsColdMiniClusterBenchmark extends MiniClusterBenchmark {
+}
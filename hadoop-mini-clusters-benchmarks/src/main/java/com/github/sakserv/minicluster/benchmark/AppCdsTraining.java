@@ -0,0 +1,60 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.benchmark;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.util.ShutdownUtils;
+
+/**
+ * Training run for the AppCDS archive: starts and stops every mini cluster once, so the JVM's
+ * -XX:DumpLoadedClassList records the classes they load. Run by the appcds-archive profile,
+ * "AppCdsTraining hbase kafka" limits the run to those components.
+ */
+public final class AppCdsTraining {
+
+    private static final Duration CLEAN_UP_TIMEOUT = Duration.ofMinutes(1);
+
+    // Hive 1.x casts the system class loader to URLClassLoader and does not start on JDK 9 or later
+    private static final List<String> COMPONENTS = Arrays.asList("zookeeper", "kafka", "hdfs", "yarn", "hbase",
+            "activemq", "hsqldb");
+
+    private AppCdsTraining() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> components = args.length > 0 ? Arrays.asList(args) : COMPONENTS;
+        for (String component : components) {
+            long startNanos = System.nanoTime();
+            MiniClusterFixture fixture = MiniClusterFixture.create(component);
+            fixture.startDependencies();
+            MiniCluster miniCluster = fixture.getMiniCluster();
+            miniCluster.start();
+            miniCluster.awaitReady(MiniClusterFixture.READY_TIMEOUT);
+            miniCluster.stop();
+            fixture.stopDependencies();
+            System.out.println(String.format("Trained %s in %d ms", component,
+                    (System.nanoTime() - startNanos) / 1000000L));
+        }
+        ShutdownUtils.awaitCleanUps(CLEAN_UP_TIMEOUT);
+        FileUtils.awaitBackgroundDeletes(CLEAN_UP_TIMEOUT);
+        // Mini clusters leave non daemon threads behind
+        System.exit(0);
+    }
+}
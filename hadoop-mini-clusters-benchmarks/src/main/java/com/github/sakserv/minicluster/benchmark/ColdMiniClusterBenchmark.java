@@ -0,0 +1,27 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.github.sakserv.minicluster.benchmark;
+
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One start() or stop() per fresh JVM, the cost a single test class pays.
+ */
+@Fork(value = 5, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class ColdMiniClusterBenchmark extends MiniClusterBenchmark {
+}
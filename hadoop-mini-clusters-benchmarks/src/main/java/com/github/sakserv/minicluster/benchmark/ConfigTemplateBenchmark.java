@@ -0,0 +1,75 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.sakserv.minicluster.config.ConfigTemplates;
+import com.github.sakserv.minicluster.impl.HbaseLocalCluster;
+import com.github.sakserv.minicluster.impl.HiveLocalMetaStore;
+
+/**
+ * Creating a parsed Configuration, HBase configuration and HiveConf from scratch versus copying them from
+ * {@link ConfigTemplates}. size() forces the parsing of the default resources, as the first
+ * get() of a mini cluster would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ConfigTemplateBenchmark {
+
+    @Benchmark
+    public int newConfiguration() {
+        return new Configuration().size();
+    }
+
+    @Benchmark
+    public int copyConfiguration() {
+        return ConfigTemplates.newConfiguration().size();
+    }
+
+    @Benchmark
+    public int newHbaseConfiguration() {
+        return HBaseConfiguration.create().size();
+    }
+
+    @Benchmark
+    public int copyHbaseConfiguration() {
+        return HbaseLocalCluster.newHbaseConfiguration().size();
+    }
+
+    @Benchmark
+    public int newHiveConf() {
+        return new HiveConf().size();
+    }
+
+    @Benchmark
+    public int copyHiveConf() {
+        return HiveLocalMetaStore.newHiveConf().size();
+    }
+}
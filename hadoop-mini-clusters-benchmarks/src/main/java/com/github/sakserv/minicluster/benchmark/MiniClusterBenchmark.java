@@ -0,0 +1,106 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.github.sakserv.minicluster.benchmark;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import com.github.sakserv.minicluster.lifecycle.FootprintRecorder;
+import com.github.sakserv.minicluster.lifecycle.MiniClusterFootprint;
+import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.util.ShutdownUtils;
+
+/**
+ * Measures start() until the mini cluster is ready, and stop() including its clean up, once
+ * per iteration. Dependencies (Zookeeper, the Hive metastore for HiveServer2) are started outside
+ * of the measurement. With -Dminicluster.footprint.enabled=true in the forked JVMs, each iteration
+ * also prints the footprint FootprintRecorder took of the mini cluster. Subclasses choose between cold (fresh JVM) and warm runs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public abstract class MiniClusterBenchmark {
+
+    private static final Duration CLEAN_UP_TIMEOUT = Duration.ofMinutes(1);
+
+    // Not Oozie, Knox or MongoDB, see the Benchmarks section of the README
+    @Param({"zookeeper", "kafka", "hdfs", "yarn", "mapreduce", "hbase", "hbaserest", "hivemetastore", "hiveserver2",
+            "storm", "kdc", "activemq", "hsqldb"})
+    public String component;
+
+    // -p headless=false,true compares against HeadlessMode
+    @Param({"false"})
+    public boolean headless;
+
+    // -p minimalProfile=false,true compares against MinimalProfile
+    @Param({"false"})
+    public boolean minimalProfile;
+
+    private MiniClusterFixture fixture;
+    private boolean running;
+
+    @Setup(Level.Iteration)
+    public void setUp(BenchmarkParams params) throws Exception {
+        fixture = MiniClusterFixture.create(component, headless, minimalProfile);
+        fixture.startDependencies();
+        if (params.getBenchmark().endsWith(".stop")) {
+            fixture.getMiniCluster().start();
+            fixture.getMiniCluster().awaitReady(MiniClusterFixture.READY_TIMEOUT);
+            running = true;
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        MiniClusterFootprint footprint = FootprintRecorder.get(fixture.getMiniCluster());
+        if (footprint != null) {
+            String name = component + (headless ? " headless" : "") + (minimalProfile ? " minimal" : "");
+            System.out.println(FootprintRecorder.formatSummary(Collections.singletonMap(name, footprint)));
+        }
+        if (running) {
+            fixture.getMiniCluster().stop();
+            running = false;
+        }
+        fixture.stopDependencies();
+        // Keep background deletes of this iteration out of the next measurement
+        ShutdownUtils.awaitCleanUps(CLEAN_UP_TIMEOUT);
+        FileUtils.awaitBackgroundDeletes(CLEAN_UP_TIMEOUT);
+    }
+
+    @Benchmark
+    public void start() throws Exception {
+        running = true;
+        fixture.getMiniCluster().start();
+        fixture.getMiniCluster().awaitReady(MiniClusterFixture.READY_TIMEOUT);
+    }
+
+    @Benchmark
+    public void stop() throws Exception {
+        fixture.getMiniCluster().stop();
+        running = false;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.github.sakserv.minicluster.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.profile.HotspotThreadProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the mini cluster benchmarks with the allocation (gc) and thread (hs_thr) profilers and
+ * writes the results as JSON. Accepts the usual JMH command line options, e.g.
+ * "-p component=zookeeper,kafka" or "Cold" to only run the cold benchmarks.
+ */
+public final class MiniClusterBenchmarks {
+
+    public static final String RESULT_PROPERTY = "minicluster.benchmark.result";
+    public static final String DEFAULT_RESULT = "target/jmh-result.json";
+
+    private MiniClusterBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .addProfiler(HotspotThreadProfiler.class);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            options.include(MiniClusterBenchmark.class.getPackage().getName() + ".*");
+        }
+        if (!commandLineOptions.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLineOptions.getResult().hasValue()) {
+            options.result(System.getProperty(RESULT_PROPERTY, DEFAULT_RESULT));
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.github.sakserv.minicluster.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.storm.Config;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.config.ConfigTemplates;
+import com.github.sakserv.minicluster.impl.ActivemqLocalBroker;
+import com.github.sakserv.minicluster.impl.HbaseLocalCluster;
+import com.github.sakserv.minicluster.impl.HdfsLocalCluster;
+import com.github.sakserv.minicluster.impl.HiveLocalMetaStore;
+import com.github.sakserv.minicluster.impl.HiveLocalServer2;
+import com.github.sakserv.minicluster.impl.HsqldbLocalServer;
+import com.github.sakserv.minicluster.impl.KafkaLocalBroker;
+import com.github.sakserv.minicluster.impl.KdcLocalCluster;
+import com.github.sakserv.minicluster.impl.MRLocalCluster;
+import com.github.sakserv.minicluster.impl.StormLocalCluster;
+import com.github.sakserv.minicluster.impl.YarnLocalCluster;
+import com.github.sakserv.minicluster.impl.ZookeeperLocalCluster;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.Workspace;
+
+/**
+ * A mini cluster under benchmark plus the mini clusters it needs running. Every fixture gets
+ * free ports and fresh dirs, so iterations and forks never share state.
+ */
+class MiniClusterFixture {
+
+    static final Duration READY_TIMEOUT = Duration.ofMinutes(2);
+
+    private final List<MiniCluster> dependencies;
+    private final MiniCluster miniCluster;
+
+    private MiniClusterFixture(MiniCluster miniCluster, MiniCluster... dependencies) {
+        this.miniCluster = miniCluster;
+        this.dependencies = new ArrayList<>();
+        Collections.addAll(this.dependencies, dependencies);
+    }
+
+    MiniCluster getMiniCluster() {
+        return miniCluster;
+    }
+
+    void startDependencies() throws Exception {
+        for (MiniCluster dependency : dependencies) {
+            dependency.start();
+            dependency.awaitReady(READY_TIMEOUT);
+        }
+    }
+
+    void stopDependencies() throws Exception {
+        for (int i = dependencies.size() - 1; i >= 0; i--) {
+            dependencies.get(i).stop();
+        }
+    }
+
+    static MiniClusterFixture create(String component) {
+        return create(component, null, null);
+    }
+
+    /**
+     * @param headless passed to the mini clusters that have web UIs, null for the default
+     * @param minimalProfile passed to the mini clusters that support it, null for the default
+     */
+    static MiniClusterFixture create(String component, Boolean headless, Boolean minimalProfile) {
+        switch (component) {
+            case "zookeeper":
+                return new MiniClusterFixture(zookeeper(PortAllocator.allocate()));
+            case "kafka": {
+                int zookeeperPort = PortAllocator.allocate();
+                KafkaLocalBroker kafka = new KafkaLocalBroker.Builder()
+                        .setKafkaHostname("localhost")
+                        .setKafkaPort(0)
+                        .setKafkaBrokerId(0)
+                        .setKafkaProperties(new Properties())
+                        .setKafkaTempDir(Workspace.AUTO)
+                        .setZookeeperConnectionString("localhost:" + zookeeperPort)
+                        .setKafkaMinimalProfile(minimalProfile)
+                        .build();
+                return new MiniClusterFixture(kafka, zookeeper(zookeeperPort));
+            }
+            case "hdfs":
+                return new MiniClusterFixture(new HdfsLocalCluster.Builder()
+                        .setHdfsNamenodePort(0)
+                        .setHdfsNamenodeHttpPort(0)
+                        .setHdfsTempDir(Workspace.AUTO)
+                        .setHdfsNumDatanodes(1)
+                        .setHdfsEnablePermissions(false)
+                        .setHdfsFormat(true)
+                        .setHdfsEnableRunningUserAsProxyUser(true)
+                        .setHdfsConfig(ConfigTemplates.newConfiguration())
+                        .setHdfsHeadless(headless)
+                        .setHdfsMinimalProfile(minimalProfile)
+                        .build());
+            case "yarn":
+                return new MiniClusterFixture(new YarnLocalCluster.Builder()
+                        .setNumNodeManagers(1)
+                        .setNumLocalDirs(1)
+                        .setNumLogDirs(1)
+                        .setResourceManagerAddress("localhost:auto")
+                        .setResourceManagerHostname("localhost")
+                        .setResourceManagerSchedulerAddress("localhost:auto")
+                        .setResourceManagerResourceTrackerAddress("localhost:auto")
+                        .setResourceManagerWebappAddress("localhost:auto")
+                        .setUseInJvmContainerExecutor(false)
+                        .setHeadless(headless)
+                        .setMinimalProfile(minimalProfile)
+                        .setConfig(ConfigTemplates.newConfiguration())
+                        .build());
+            case "mapreduce":
+                return new MiniClusterFixture(new MRLocalCluster.Builder()
+                        .setNumNodeManagers(1)
+                        .setJobHistoryAddress("localhost:auto")
+                        .setResourceManagerAddress("localhost:auto")
+                        .setResourceManagerHostname("localhost")
+                        .setResourceManagerSchedulerAddress("localhost:auto")
+                        .setResourceManagerResourceTrackerAddress("localhost:auto")
+                        .setResourceManagerWebappAddress("localhost:auto")
+                        .setUseInJvmContainerExecutor(false)
+                        .setHeadless(headless)
+                        .setMinimalProfile(minimalProfile)
+                        .setConfig(ConfigTemplates.newConfiguration())
+                        .build());
+            case "hbase":
+            case "hbaserest": {
+                int zookeeperPort = PortAllocator.allocate();
+                HbaseLocalCluster.Builder hbase = new HbaseLocalCluster.Builder()
+                        .setHbaseMasterPort(0)
+                        .setHbaseMasterInfoPort(0)
+                        .setNumRegionServers(1)
+                        .setHbaseRootDir(Workspace.AUTO)
+                        .setZookeeperPort(zookeeperPort)
+                        .setZookeeperConnectionString("localhost:" + zookeeperPort)
+                        .setZookeeperZnodeParent("/hbase-unsecure")
+                        .setHbaseWalReplicationEnabled(false)
+                        .setHbaseConfiguration(HbaseLocalCluster.newHbaseConfiguration())
+                        .setHbaseHeadless(headless)
+                        .setHbaseMinimalProfile(minimalProfile);
+                if (component.equals("hbaserest")) {
+                    // Started by the HBase mini cluster, compare against "hbase" for what REST adds
+                    hbase.activeRestGateway()
+                            .setHbaseRestHost("localhost")
+                            .setHbaseRestPort(0)
+                            .setHbaseRestInfoPort(0)
+                            .setHbaseRestReadOnly(false)
+                            .setHbaseRestThreadMin(2)
+                            .setHbaseRestThreadMax(100)
+                            .build();
+                }
+                return new MiniClusterFixture(hbase.build(), zookeeper(zookeeperPort));
+            }
+            case "hivemetastore":
+                return new MiniClusterFixture(new HiveLocalMetaStore.Builder()
+                        .setHiveMetastoreHostname("localhost")
+                        .setHiveMetastorePort(0)
+                        .setHiveMetastoreDerbyDbDir(Workspace.AUTO)
+                        .setHiveScratchDir(Workspace.AUTO)
+                        .setHiveWarehouseDir(Workspace.AUTO)
+                        .setHiveConf(HiveLocalMetaStore.newHiveConf())
+                        .setHiveMetastoreMinimalProfile(minimalProfile)
+                        .build());
+            case "hiveserver2": {
+                int zookeeperPort = PortAllocator.allocate();
+                int metastorePort = PortAllocator.allocate();
+                String derbyDbDir = Workspace.resolve(Workspace.AUTO, "metastore_db");
+                String warehouseDir = Workspace.resolve(Workspace.AUTO, "warehouse_dir");
+                HiveLocalMetaStore metastore = new HiveLocalMetaStore.Builder()
+                        .setHiveMetastoreHostname("localhost")
+                        .setHiveMetastorePort(metastorePort)
+                        .setHiveMetastoreDerbyDbDir(derbyDbDir)
+                        .setHiveScratchDir(Workspace.AUTO)
+                        .setHiveWarehouseDir(warehouseDir)
+                        .setHiveConf(HiveLocalMetaStore.newHiveConf())
+                        .build();
+                HiveLocalServer2 hiveServer2 = new HiveLocalServer2.Builder()
+                        .setHiveServer2Hostname("localhost")
+                        .setHiveServer2Port(0)
+                        .setHiveMetastoreHostname("localhost")
+                        .setHiveMetastorePort(metastorePort)
+                        .setHiveMetastoreDerbyDbDir(derbyDbDir)
+                        .setHiveScratchDir(Workspace.AUTO)
+                        .setHiveWarehouseDir(warehouseDir)
+                        .setHiveConf(HiveLocalMetaStore.newHiveConf())
+                        .setZookeeperConnectionString("localhost:" + zookeeperPort)
+                        .setHiveServer2MinimalProfile(minimalProfile)
+                        .build();
+                return new MiniClusterFixture(hiveServer2, zookeeper(zookeeperPort), metastore);
+            }
+            case "storm": {
+                int zookeeperPort = PortAllocator.allocate();
+                StormLocalCluster storm = new StormLocalCluster.Builder()
+                        .setZookeeperHost("localhost")
+                        .setZookeeperPort((long) zookeeperPort)
+                        .setEnableDebug(false)
+                        .setNumWorkers(1)
+                        .setNimbusThriftPort(0)
+                        .setStormConfig(new Config())
+                        .build();
+                return new MiniClusterFixture(storm, zookeeper(zookeeperPort));
+            }
+            case "kdc":
+                return new MiniClusterFixture(new KdcLocalCluster.Builder()
+                        .setPort(0)
+                        .setHost("127.0.0.1")
+                        .setBaseDir(Workspace.AUTO)
+                        .setOrgDomain("ORG")
+                        .setOrgName("ACME")
+                        .setPrincipals(new String[] {"hdfs"})
+                        .setKrbInstance("127.0.0.1")
+                        .setInstance("DefaultKrbServer")
+                        .setTransport("TCP")
+                        .setMaxTicketLifetime(86400000)
+                        .setMaxRenewableLifetime(604800000)
+                        .setDebug(false)
+                        .build());
+            case "activemq":
+                return new MiniClusterFixture(new ActivemqLocalBroker.Builder()
+                        .setHostName("localhost")
+                        .setPort(0)
+                        .setQueueName("benchmark")
+                        .setStoreDir(Workspace.AUTO)
+                        .setUriPrefix("vm://")
+                        .setUriPostfix("?create=false")
+                        .build());
+            case "hsqldb":
+                return new MiniClusterFixture(new HsqldbLocalServer.Builder()
+                        .setHsqldbHostName("127.0.0.1")
+                        .setHsqldbPort(PortAllocator.AUTO)
+                        .setHsqldbTempDir(Workspace.AUTO)
+                        .setHsqldbDatabaseName("benchmark")
+                        .setHsqldbCompatibilityMode("mysql")
+                        .setHsqldbJdbcDriver("org.hsqldb.jdbc.JDBCDriver")
+                        .setHsqldbJdbcConnectionStringPrefix("jdbc:hsqldb:hsql://")
+                        .build());
+            default:
+                throw new IllegalArgumentException("ERROR: Unknown component: " + component);
+        }
+    }
+
+    private static ZookeeperLocalCluster zookeeper(int port) {
+        return new ZookeeperLocalCluster.Builder()
+                .setPort(port)
+                .setTempDir(Workspace.AUTO)
+                .setZookeeperConnectionString("localhost:" + port)
+                .build();
+    }
+}
@@ -14,6 +14,13 @@
 
 package com.github.sakserv.minicluster;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.util.ReadinessUtils;
+import com.github.sakserv.minicluster.util.ShutdownUtils;
+
 public interface MiniCluster {
 
     public void start() throws Exception;
@@ -26,4 +33,64 @@ public interface MiniCluster {
 
     public void cleanUp() throws Exception;
 
+    /**
+     * True once clients can use the mini cluster. start() may return earlier.
+     */
+    public default boolean isReady() throws Exception {
+        return true;
+    }
+
+    /**
+     * Blocks until isReady() is true, throws a TimeoutException after the timeout.
+     */
+    public default void awaitReady(Duration timeout) throws Exception {
+        ReadinessUtils.awaitReady(this, timeout);
+    }
+
+    /**
+     * Like stop(false), for callers that run cleanUp() right after. Work that only preserves the
+     * data, such as flushing memstores, may be skipped.
+     */
+    public default void stopDiscardingData() throws Exception {
+        stop(false);
+    }
+
+    /**
+     * Runs stopDiscardingData() on a background thread, cleanUp() follows in the background once stopped.
+     */
+    public default CompletableFuture<Void> stopAsync() {
+        return ShutdownUtils.stopAsync(this);
+    }
+
+    /**
+     * Called when stop() did not finish in time. Releases what it can without waiting for
+     * an orderly shutdown. Mini clusters that cannot be forced down throw an
+     * UnsupportedOperationException, so the caller knows their threads and ports stay in use.
+     */
+    public default void forceStop() throws Exception {
+        throw new UnsupportedOperationException("ERROR: " + getClass().getSimpleName() + " does not support forceStop()");
+    }
+
+    /**
+     * Drops the data written since start() (topics, znodes, files) without restarting, so a
+     * running mini cluster can be handed to the next test. Not every mini cluster supports it.
+     */
+    public default void reset() throws Exception {
+        throw new UnsupportedOperationException("ERROR: " + getClass().getSimpleName() + " does not support reset()");
+    }
+
+    /**
+     * Creates what the tenant's names point at (chroot znode, HDFS dir, HBase namespace, Hive
+     * database), so a tenant of a shared mini cluster can use them right away. Mini clusters
+     * without per tenant namespaces do nothing.
+     */
+    public default void createTenant(Tenant tenant) throws Exception {
+    }
+
+    /**
+     * Deletes the data of the tenant, the data of other tenants is left alone.
+     */
+    public default void deleteTenant(Tenant tenant) throws Exception {
+    }
+
 }
\ No newline at end of file
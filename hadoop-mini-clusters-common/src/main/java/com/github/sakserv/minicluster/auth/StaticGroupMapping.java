@@ -0,0 +1,60 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.auth;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.security.GroupMappingServiceProvider;
+
+/**
+ * Resolves groups from an in memory table instead of forking id or groups for every user.
+ * Users that were not added belong to a group of their own name.
+ */
+public class StaticGroupMapping implements GroupMappingServiceProvider {
+
+    private static final Map<String, List<String>> USER_GROUPS = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the user, replacing its groups if it was added before.
+     */
+    public static void addUser(String user, String... groups) {
+        USER_GROUPS.put(user, Collections.unmodifiableList(new ArrayList<>(Arrays.asList(groups))));
+    }
+
+    public static void removeUser(String user) {
+        USER_GROUPS.remove(user);
+    }
+
+    @Override
+    public List<String> getGroups(String user) {
+        List<String> groups = USER_GROUPS.get(user);
+        return groups != null ? groups : Collections.singletonList(user);
+    }
+
+    @Override
+    public void cacheGroupsRefresh() {
+        // Nothing cached
+    }
+
+    @Override
+    public void cacheGroupsAdd(List<String> groups) {
+        // Nothing cached
+    }
+}
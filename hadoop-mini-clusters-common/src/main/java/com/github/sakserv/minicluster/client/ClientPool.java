@@ -0,0 +1,254 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazily created clients of a mini cluster, at most maxSize shared and maxSize borrowed ones.
+ *
+ * Thread safe clients (FileSystem, HBase Connection, Curator, KafkaProducer) are shared through
+ * get(), which hands the clients out round robin. Clients that must not be shared, such as JDBC
+ * connections, are borrowed through borrow() and returned by closing the lease. Shared clients
+ * are never lent and borrowed clients never shared. Clients are created outside the pool's lock,
+ * so a slow connect does not hold up callers of clients that already exist. close() closes
+ * every client, the pool can be used again afterwards, e.g. once the mini cluster is restarted.
+ */
+public class ClientPool<T extends AutoCloseable> implements AutoCloseable {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(ClientPool.class);
+
+    public static final String SHARED_SIZE_PROPERTY = "minicluster.client.pool.shared.size";
+    public static final int DEFAULT_SHARED_SIZE = 1;
+
+    public static final String MAX_SIZE_PROPERTY = "minicluster.client.pool.max.size";
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    public static final String BORROW_TIMEOUT_MS_PROPERTY = "minicluster.client.pool.borrow.timeout.ms";
+    public static final long DEFAULT_BORROW_TIMEOUT_MS = 60000L;
+
+    private final String name;
+    private final int maxSize;
+    private final Callable<T> factory;
+
+    private final List<T> shared = new ArrayList<>();
+    private final List<T> borrowable = new ArrayList<>();
+    private final Deque<T> idle = new ArrayDeque<>();
+    private int creatingShared;
+    private int creatingBorrowable;
+    private int next;
+    // Bumped by close(), clients created across a close() belong to the closed generation
+    private long generation;
+
+    public ClientPool(String name, int maxSize, Callable<T> factory) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("ERROR: Client pool size must be at least 1: " + maxSize);
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.factory = factory;
+    }
+
+    /**
+     * A pool for thread safe clients, sized by -Dminicluster.client.pool.shared.size.
+     */
+    public static <T extends AutoCloseable> ClientPool<T> shared(String name, Callable<T> factory) {
+        return new ClientPool<>(name, Integer.getInteger(SHARED_SIZE_PROPERTY, DEFAULT_SHARED_SIZE), factory);
+    }
+
+    /**
+     * A pool for clients that are borrowed, sized by -Dminicluster.client.pool.max.size.
+     */
+    public static <T extends AutoCloseable> ClientPool<T> exclusive(String name, Callable<T> factory) {
+        return new ClientPool<>(name, Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE), factory);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of open clients, shared and borrowable.
+     */
+    public synchronized int getSize() {
+        return shared.size() + borrowable.size();
+    }
+
+    /**
+     * Returns a client shared with other callers, creating one while the pool is below its size.
+     * Do not close it, the pool does.
+     */
+    public T get() throws Exception {
+        long createGeneration;
+        synchronized (this) {
+            while (shared.size() + creatingShared >= maxSize) {
+                if (!shared.isEmpty()) {
+                    T client = shared.get(next % shared.size());
+                    next = (next + 1) % shared.size();
+                    return client;
+                }
+                // Every client is still being created by other callers
+                wait();
+            }
+            creatingShared++;
+            createGeneration = generation;
+        }
+
+        T client = null;
+        try {
+            client = factory.call();
+        } finally {
+            synchronized (this) {
+                creatingShared--;
+                if (client != null && createGeneration == generation) {
+                    shared.add(client);
+                    LOG.info("CLIENTPOOL: Created shared {} client {} of {}", name, shared.size(), maxSize);
+                }
+                notifyAll();
+            }
+        }
+        return checkGeneration(client, createGeneration);
+    }
+
+    /**
+     * Takes an idle client, creates one while the pool is below its size, or waits for one to be
+     * returned, up to -Dminicluster.client.pool.borrow.timeout.ms.
+     */
+    public Lease<T> borrow() throws Exception {
+        long timeoutMs = Long.getLong(BORROW_TIMEOUT_MS_PROPERTY, DEFAULT_BORROW_TIMEOUT_MS);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        long createGeneration;
+        synchronized (this) {
+            while (idle.isEmpty() && borrowable.size() + creatingBorrowable >= maxSize) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    throw new TimeoutException("ERROR: No " + name + " client returned within " + timeoutMs +
+                            " ms, all " + maxSize + " are borrowed");
+                }
+                wait(remainingMs);
+            }
+            if (!idle.isEmpty()) {
+                return new Lease<>(this, idle.poll());
+            }
+            creatingBorrowable++;
+            createGeneration = generation;
+        }
+
+        T client = null;
+        try {
+            client = factory.call();
+        } finally {
+            synchronized (this) {
+                creatingBorrowable--;
+                if (client != null && createGeneration == generation) {
+                    borrowable.add(client);
+                    LOG.info("CLIENTPOOL: Created borrowable {} client {} of {}", name, borrowable.size(),
+                            maxSize);
+                }
+                notifyAll();
+            }
+        }
+        return new Lease<>(this, checkGeneration(client, createGeneration));
+    }
+
+    /**
+     * Closes every client, borrowed ones included.
+     */
+    @Override
+    public void close() {
+        List<T> closing = new ArrayList<>();
+        synchronized (this) {
+            closing.addAll(shared);
+            closing.addAll(borrowable);
+            shared.clear();
+            borrowable.clear();
+            idle.clear();
+            next = 0;
+            generation++;
+            notifyAll();
+        }
+        for (T client : closing) {
+            closeQuietly(client);
+        }
+    }
+
+    private synchronized void release(T client) {
+        // Clients of an earlier close() are already closed
+        if (borrowable.contains(client) && !idle.contains(client)) {
+            idle.add(client);
+            notifyAll();
+        }
+    }
+
+    // A client whose creation overlapped close() would talk to the stopped mini cluster
+    private T checkGeneration(T client, long createGeneration) {
+        synchronized (this) {
+            if (createGeneration == generation) {
+                return client;
+            }
+        }
+        closeQuietly(client);
+        throw new IllegalStateException("ERROR: Client pool " + name + " was closed while creating a client");
+    }
+
+    private void closeQuietly(T client) {
+        try {
+            client.close();
+        } catch (Exception e) {
+            LOG.warn("CLIENTPOOL: Unable to close a {} client", name, e);
+        }
+    }
+
+    /**
+     * A borrowed client, closing the lease returns it to the pool.
+     */
+    public static final class Lease<T extends AutoCloseable> implements AutoCloseable {
+
+        private final ClientPool<T> pool;
+        private final T client;
+        private boolean released;
+
+        private Lease(ClientPool<T> pool, T client) {
+            this.pool = pool;
+            this.client = client;
+        }
+
+        public T get() {
+            return client;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                pool.release(client);
+            }
+        }
+    }
+}
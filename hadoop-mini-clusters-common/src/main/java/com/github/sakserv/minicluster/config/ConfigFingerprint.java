@@ -0,0 +1,141 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.github.sakserv.minicluster.MiniCluster;
+
+/**
+ * Describes the effective configuration of a mini cluster, read from its getters, so two
+ * instances built from the same settings can be recognized as interchangeable.
+ *
+ * Only getters returning plain values are read: primitives, strings, enums, files,
+ * collections, maps and key/value iterables such as Hadoop's Configuration. Handles to
+ * running services are skipped, and so are getters that fail before start.
+ */
+public final class ConfigFingerprint {
+
+    private ConfigFingerprint() {
+    }
+
+    /**
+     * SHA-256 of {@link #describe(Object)}.
+     */
+    public static String of(Object cluster) {
+        return sha256Hex(describe(cluster));
+    }
+
+    public static String describe(Object cluster) {
+        Map<String, String> values = new TreeMap<>();
+        for (Method method : cluster.getClass().getMethods()) {
+            if (!isValueGetter(method)) {
+                continue;
+            }
+            try {
+                values.put(method.getName(), render(method.invoke(cluster)));
+            } catch (Exception e) {
+                // Not readable before start, not part of the configuration
+            }
+        }
+
+        StringBuilder descriptor = new StringBuilder(cluster.getClass().getName());
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            descriptor.append('\n').append(value.getKey()).append('=').append(value.getValue());
+        }
+        return descriptor.toString();
+    }
+
+    public static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static boolean isValueGetter(Method method) {
+        String name = method.getName();
+        if (method.getParameterCount() != 0 || Modifier.isStatic(method.getModifiers())
+                || method.getDeclaringClass() == Object.class) {
+            return false;
+        }
+        if (!(name.startsWith("get") || name.startsWith("is")) || isMiniClusterMethod(method)) {
+            return false;
+        }
+        Class<?> type = method.getReturnType();
+        return type.isPrimitive() && type != void.class
+                || Number.class.isAssignableFrom(type)
+                || Boolean.class == type
+                || Character.class == type
+                || CharSequence.class.isAssignableFrom(type)
+                || type.isEnum()
+                || File.class == type
+                || Collection.class.isAssignableFrom(type)
+                || Map.class.isAssignableFrom(type)
+                || Iterable.class.isAssignableFrom(type);
+    }
+
+    // isReady() and friends describe state, not configuration
+    private static boolean isMiniClusterMethod(Method method) {
+        try {
+            MiniCluster.class.getMethod(method.getName());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static String render(Object value) {
+        if (value instanceof Map) {
+            Map<String, String> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), render(entry.getValue()));
+            }
+            return sorted.toString();
+        }
+        if (value instanceof Iterable) {
+            List<String> items = new ArrayList<>();
+            Map<String, String> entries = new TreeMap<>();
+            for (Object item : (Iterable<?>) value) {
+                if (item instanceof Map.Entry) {
+                    Map.Entry<?, ?> entry = (Map.Entry<?, ?>) item;
+                    entries.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+                } else {
+                    items.add(render(item));
+                }
+            }
+            // Key/value iterables (Hadoop Configuration) have no stable iteration order
+            return entries.isEmpty() ? items.toString() : entries.toString();
+        }
+        return String.valueOf(value);
+    }
+}
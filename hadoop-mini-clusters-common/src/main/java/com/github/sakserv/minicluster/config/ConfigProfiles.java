@@ -0,0 +1,220 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * The switches set on a mini cluster builder: headless mode, the minimal profile, ephemeral
+ * durability, static resolution and fork free mode. A switch left unset on the builder follows
+ * its -D system property. The mini cluster applies all of them once, at the end of configure(),
+ * for its {@link Component}. Settings made explicitly, through set() or a *-site.xml, are kept,
+ * except for fork free mode, which has to replace the file system and group mapping to work.
+ */
+public final class ConfigProfiles {
+
+    // Source Hadoop's Configuration records for set() calls, spelling included
+    private static final String PROGRAMMATIC_SOURCE = "programatically";
+
+    private static final Map<String, String> NONE = Collections.emptyMap();
+
+    public enum Profile {
+        HEADLESS(HeadlessMode.ENABLED_PROPERTY),
+        MINIMAL(MinimalProfile.ENABLED_PROPERTY),
+        EPHEMERAL_DURABILITY(EphemeralDurability.ENABLED_PROPERTY),
+        STATIC_RESOLUTION(StaticResolution.ENABLED_PROPERTY),
+        FORK_FREE(ForkFreeMode.ENABLED_PROPERTY);
+
+        private final String enabledProperty;
+
+        Profile(String enabledProperty) {
+            this.enabledProperty = enabledProperty;
+        }
+
+        public String getEnabledProperty() {
+            return enabledProperty;
+        }
+
+        public boolean isEnabled(Boolean builderValue) {
+            return ConfigProfiles.isEnabled(builderValue, enabledProperty);
+        }
+    }
+
+    /**
+     * The settings of each profile for one component, none where the profile does not apply.
+     */
+    public enum Component {
+        ZOOKEEPER(NONE, NONE, EphemeralDurability.ZOOKEEPER, NONE),
+        HDFS(HeadlessMode.HDFS, MinimalProfile.HDFS, EphemeralDurability.HDFS, StaticResolution.HDFS),
+        YARN(HeadlessMode.YARN, MinimalProfile.YARN, NONE, StaticResolution.YARN),
+        MAPREDUCE(HeadlessMode.MAPREDUCE, MinimalProfile.MAPREDUCE, NONE, StaticResolution.YARN),
+        HBASE(HeadlessMode.HBASE, MinimalProfile.HBASE, EphemeralDurability.HBASE, StaticResolution.HBASE),
+        KAFKA(NONE, MinimalProfile.KAFKA, EphemeralDurability.KAFKA, StaticResolution.KAFKA),
+        HIVE_METASTORE(NONE, MinimalProfile.HIVE_METASTORE, NONE, NONE),
+        HIVE_SERVER2(NONE, MinimalProfile.HIVE_SERVER2, NONE, NONE),
+        OOZIE(NONE, MinimalProfile.OOZIE, NONE, NONE);
+
+        private final Map<Profile, Map<String, String>> settings = new EnumMap<>(Profile.class);
+
+        Component(Map<String, String> headless, Map<String, String> minimal, Map<String, String> ephemeral,
+                  Map<String, String> staticResolution) {
+            settings.put(Profile.HEADLESS, headless);
+            settings.put(Profile.MINIMAL, minimal);
+            settings.put(Profile.EPHEMERAL_DURABILITY, ephemeral);
+            settings.put(Profile.STATIC_RESOLUTION, staticResolution);
+        }
+
+        public Map<String, String> getSettings(Profile profile) {
+            return settings.containsKey(profile) ? settings.get(profile) : NONE;
+        }
+    }
+
+    private final Map<Profile, Boolean> builderValues = new EnumMap<>(Profile.class);
+
+    public ConfigProfiles() {
+    }
+
+    public ConfigProfiles(ConfigProfiles other) {
+        builderValues.putAll(other.builderValues);
+    }
+
+    /**
+     * The switch is used when the builder enabled it, or when the builder left it unset and the
+     * system property is true.
+     */
+    public static boolean isEnabled(Boolean builderValue, String enabledProperty) {
+        return builderValue != null ? builderValue : Boolean.getBoolean(enabledProperty);
+    }
+
+    public ConfigProfiles set(Profile profile, Boolean builderValue) {
+        builderValues.put(profile, builderValue);
+        return this;
+    }
+
+    /**
+     * The value set on the builder, null if it was left unset.
+     */
+    public Boolean get(Profile profile) {
+        return builderValues.get(profile);
+    }
+
+    public boolean isEnabled(Profile profile) {
+        return profile.isEnabled(builderValues.get(profile));
+    }
+
+    public void apply(Configuration configuration, Component component) {
+        for (Profile profile : Profile.values()) {
+            if (isEnabled(profile)) {
+                install(profile);
+                setIfUnset(configuration, component.getSettings(profile));
+            }
+        }
+        // Last, so nothing set in between switches the file system back
+        if (isEnabled(Profile.FORK_FREE)) {
+            ForkFreeMode.configure(configuration);
+        }
+    }
+
+    public void apply(Properties properties, Component component) {
+        for (Profile profile : Profile.values()) {
+            if (isEnabled(profile)) {
+                install(profile);
+                setIfUnset(properties, component.getSettings(profile));
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the custom properties with the settings of the enabled switches added
+     * where no key is set yet.
+     */
+    public Map<String, Object> merge(Map<String, Object> properties, Component component) {
+        Map<String, Object> merged = properties == null ? new HashMap<>() : new HashMap<>(properties);
+        for (Profile profile : Profile.values()) {
+            if (isEnabled(profile)) {
+                install(profile);
+                for (Map.Entry<String, String> setting : component.getSettings(profile).entrySet()) {
+                    merged.putIfAbsent(setting.getKey(), setting.getValue());
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Applies the settings to every key still at its default.
+     */
+    public static void setIfUnset(Configuration configuration, Map<String, String> settings) {
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            if (!isExplicitlySet(configuration, setting.getKey())) {
+                configuration.set(setting.getKey(), setting.getValue());
+            }
+        }
+    }
+
+    /**
+     * Applies the settings to every key not in the properties yet.
+     */
+    public static void setIfUnset(Properties properties, Map<String, String> settings) {
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            if (!properties.containsKey(setting.getKey())) {
+                properties.setProperty(setting.getKey(), setting.getValue());
+            }
+        }
+    }
+
+    static boolean isExplicitlySet(Configuration configuration, String key) {
+        String[] sources = configuration.getPropertySources(key);
+        if (sources == null) {
+            return false;
+        }
+        for (String source : sources) {
+            if (PROGRAMMATIC_SOURCE.equals(source) || source.endsWith("-site.xml")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Map<String, String> settings(String... keyValues) {
+        return settings(NONE, keyValues);
+    }
+
+    static Map<String, String> settings(Map<String, String> base, String... keyValues) {
+        Map<String, String> settings = new LinkedHashMap<>(base);
+        for (int i = 0; i < keyValues.length; i += 2) {
+            settings.put(keyValues[i], keyValues[i + 1]);
+        }
+        return Collections.unmodifiableMap(settings);
+    }
+
+    private static void install(Profile profile) {
+        if (profile == Profile.STATIC_RESOLUTION) {
+            StaticResolution.install();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigProfiles" + builderValues;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * Parses the default resources of a configuration once per JVM and hands out copies, so every
+ * mini cluster does not re-read core-default.xml, hive-default.xml and friends from the jars.
+ *
+ * A template is built on first use and never handed out itself. Hadoop drops the parsed
+ * properties of every Configuration when a default resource is added (e.g. hdfs-default.xml
+ * once HdfsConfiguration is loaded), the template is then parsed again on its next copy.
+ * System properties HiveConf applies at construction are those of the first use.
+ */
+public final class ConfigTemplates {
+
+    public static final String HADOOP = "hadoop";
+
+    private static final Map<String, Configuration> TEMPLATES = new ConcurrentHashMap<>();
+
+    private ConfigTemplates() {
+    }
+
+    /**
+     * Returns a copy of a new Configuration() with the default resources already parsed.
+     */
+    public static Configuration newConfiguration() {
+        return copy(HADOOP, Configuration::new, Configuration::new);
+    }
+
+    /**
+     * Returns a copy of the template with the given name, creating it with factory on first use.
+     *
+     * @param copier copy constructor of the configuration class, e.g. HiveConf::new
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Configuration> T copy(String name, Supplier<T> factory, UnaryOperator<T> copier) {
+        T template = (T) TEMPLATES.computeIfAbsent(name, key -> factory.get());
+        // Parses the default resources, unless they are still parsed from the last copy
+        template.size();
+        return copier.apply(template);
+    }
+
+    static void clear() {
+        TEMPLATES.clear();
+    }
+}
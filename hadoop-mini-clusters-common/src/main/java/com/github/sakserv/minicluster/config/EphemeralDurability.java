@@ -0,0 +1,51 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static com.github.sakserv.minicluster.config.ConfigProfiles.settings;
+
+import java.util.Map;
+
+/**
+ * Settings that trade crash safety for write latency: the ZooKeeper transaction log, the
+ * NameNode edit log, the HBase WAL and Kafka's offset checkpoints are no longer synced, and
+ * ActiveMQ runs without a persistence store. A mini cluster that is stopped cleanly loses
+ * nothing, one that is killed may. Applied through {@link ConfigProfiles}, settings made explicitly
+ * are kept.
+ */
+public final class EphemeralDurability {
+
+    public static final String ENABLED_PROPERTY = "minicluster.durability.ephemeral.enabled";
+
+    // ZooKeeper sets zookeeper.forceSync from this, and reads it once per JVM
+    public static final Map<String, String> ZOOKEEPER = settings(
+            "forceSync", "no");
+
+    public static final Map<String, String> HDFS = settings(
+            "dfs.namenode.edits.noeditlogchannelflush", "true",
+            "dfs.datanode.synconclose", "false",
+            "dfs.datanode.sync.behind.writes", "false");
+
+    public static final Map<String, String> HBASE = settings(
+            "hbase.wal.hsync", "false",
+            "dfs.datanode.synconclose", "false");
+
+    // Log segments are never fsynced by default, the recovery point checkpoint is every minute
+    public static final Map<String, String> KAFKA = settings(
+            "log.flush.offset.checkpoint.interval.ms", String.valueOf(Integer.MAX_VALUE));
+
+    private EphemeralDurability() {
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.Groups;
+
+import com.github.sakserv.minicluster.auth.StaticGroupMapping;
+import com.github.sakserv.minicluster.fs.JavaLocalFileSystem;
+import com.github.sakserv.minicluster.fs.JavaLocalFs;
+
+/**
+ * Keeps the mini clusters from forking a process per group lookup and per local permission
+ * change. Groups come from {@link StaticGroupMapping}, local permissions are read and set through
+ * java.nio, and the periodic du of the DataNode volumes runs once an hour instead of every ten
+ * minutes. Launching YARN containers still forks. Applied through {@link ConfigProfiles}, after
+ * every other setting.
+ */
+public final class ForkFreeMode {
+
+    public static final String ENABLED_PROPERTY = "minicluster.forkfree.enabled";
+
+    // Milliseconds between the du runs of the DataNode volumes
+    public static final long DU_INTERVAL_MS = 3600000L;
+
+    private static boolean installed;
+
+    private ForkFreeMode() {
+    }
+
+    static void configure(Configuration configuration) {
+        configuration.set("hadoop.security.group.mapping", StaticGroupMapping.class.getName());
+        configuration.set("fs.file.impl", JavaLocalFileSystem.class.getName());
+        configuration.set("fs.AbstractFileSystem.file.impl", JavaLocalFs.class.getName());
+        configuration.setLong("fs.du.interval", DU_INTERVAL_MS);
+        install(configuration);
+    }
+
+    /**
+     * Replaces the JVM wide group mapping service once. UserGroupInformation picks it up when it
+     * is first used, so this has to run before the first mini cluster starts.
+     */
+    private static synchronized void install(Configuration configuration) {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        Groups.getUserToGroupsMappingServiceWithLoadedConfiguration(configuration);
+    }
+}
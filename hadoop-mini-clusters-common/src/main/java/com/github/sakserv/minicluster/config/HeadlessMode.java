@@ -0,0 +1,58 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static com.github.sakserv.minicluster.config.ConfigProfiles.settings;
+
+import java.util.Map;
+
+/**
+ * Turns off the web UIs and info servers of the mini clusters. Endpoints that can be disabled
+ * are not started at all (HBase master, region server and REST info servers, WebHDFS, the YARN
+ * timeline service). The ones Hadoop always starts are bound to an ephemeral loopback port and
+ * get a small Jetty thread pool. Applied through {@link ConfigProfiles}, addresses set explicitly
+ * are kept.
+ */
+public final class HeadlessMode {
+
+    public static final String ENABLED_PROPERTY = "minicluster.headless.enabled";
+
+    public static final String LOOPBACK_EPHEMERAL_ADDRESS = "127.0.0.1:0";
+
+    // Jetty threads left to the HTTP servers that cannot be turned off
+    public static final int HTTP_MAX_THREADS = 10;
+
+    private static final Map<String, String> HTTP = settings(
+            "hadoop.http.max.threads", String.valueOf(HTTP_MAX_THREADS),
+            "hbase.http.max.threads", String.valueOf(HTTP_MAX_THREADS));
+
+    public static final Map<String, String> HDFS = settings(HTTP,
+            "dfs.webhdfs.enabled", "false");
+
+    public static final Map<String, String> YARN = settings(HTTP,
+            "yarn.resourcemanager.webapp.address", LOOPBACK_EPHEMERAL_ADDRESS,
+            "yarn.nodemanager.webapp.address", LOOPBACK_EPHEMERAL_ADDRESS,
+            "yarn.timeline-service.enabled", "false");
+
+    public static final Map<String, String> MAPREDUCE = settings(YARN,
+            "mapreduce.jobhistory.webapp.address", LOOPBACK_EPHEMERAL_ADDRESS);
+
+    public static final Map<String, String> HBASE = settings(HTTP,
+            "hbase.master.info.port", "-1",
+            "hbase.regionserver.info.port", "-1");
+
+    private HeadlessMode() {
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static com.github.sakserv.minicluster.config.ConfigProfiles.settings;
+
+import java.util.Map;
+
+/**
+ * Test sized thread pools, handler counts and caches for each component, in place of the
+ * production defaults. Applied through {@link ConfigProfiles}, settings made explicitly, through
+ * set() or a *-site.xml, are kept.
+ */
+public final class MinimalProfile {
+
+    public static final String ENABLED_PROPERTY = "minicluster.profile.minimal.enabled";
+
+    public static final Map<String, String> HDFS = settings(
+            "dfs.namenode.handler.count", "2",
+            "dfs.namenode.service.handler.count", "2",
+            "dfs.datanode.handler.count", "2",
+            "dfs.datanode.max.transfer.threads", "64",
+            "dfs.namenode.replication.work.multiplier.per.iteration", "1",
+            "ipc.server.read.threadpool.size", "1",
+            "hadoop.http.max.threads", "10");
+
+    public static final Map<String, String> YARN = settings(
+            "yarn.resourcemanager.client.thread-count", "2",
+            "yarn.resourcemanager.scheduler.client.thread-count", "2",
+            "yarn.resourcemanager.resource-tracker.client.thread-count", "2",
+            "yarn.resourcemanager.admin.client.thread-count", "1",
+            "yarn.resourcemanager.amlauncher.thread-count", "2",
+            "yarn.nodemanager.container-manager.thread-count", "2",
+            "yarn.nodemanager.localizer.client.thread-count", "2",
+            "yarn.nodemanager.localizer.fetch.thread-count", "2",
+            "yarn.nodemanager.delete.thread-count", "1",
+            "hadoop.http.max.threads", "10");
+
+    public static final Map<String, String> MAPREDUCE = settings(YARN,
+            "mapreduce.jobhistory.client.thread-count", "2",
+            "mapreduce.jobhistory.admin.client.thread-count", "1",
+            "mapreduce.jobhistory.move.thread-count", "1");
+
+    public static final Map<String, String> HBASE = settings(
+            "hbase.regionserver.handler.count", "3",
+            "hbase.regionserver.metahandler.count", "2",
+            "hbase.regionserver.replication.handler.count", "1",
+            "hbase.ipc.server.read.threadpool.size", "2",
+            "hbase.hstore.flusher.count", "1",
+            "hbase.regionserver.executor.openregion.threads", "1",
+            "hbase.regionserver.executor.closeregion.threads", "1",
+            "hbase.master.executor.openregion.threads", "1",
+            "hbase.master.executor.closeregion.threads", "1",
+            "hbase.master.executor.serverops.threads", "1",
+            "hfile.block.cache.size", "0.1",
+            "hbase.regionserver.global.memstore.size", "0.1",
+            "hbase.http.max.threads", "10");
+
+    public static final Map<String, String> KAFKA = settings(
+            "num.network.threads", "1",
+            "num.io.threads", "2",
+            "background.threads", "2",
+            "num.recovery.threads.per.data.dir", "1",
+            "num.replica.fetchers", "1",
+            "log.index.size.max.bytes", "1048576",
+            "offsets.topic.num.partitions", "1",
+            "offsets.topic.replication.factor", "1");
+
+    public static final Map<String, String> HIVE_METASTORE = settings(
+            "hive.metastore.server.min.threads", "2",
+            "hive.metastore.server.max.threads", "20",
+            "datanucleus.connectionPool.maxPoolSize", "4");
+
+    public static final Map<String, String> HIVE_SERVER2 = settings(HIVE_METASTORE,
+            "hive.server2.thrift.min.worker.threads", "2",
+            "hive.server2.thrift.max.worker.threads", "20",
+            "hive.server2.async.exec.threads", "2",
+            "hive.server2.async.exec.wait.queue.size", "10");
+
+    public static final Map<String, String> OOZIE = settings(
+            "oozie.service.CallableQueueService.threads", "2",
+            "oozie.service.CallableQueueService.callable.concurrency", "2",
+            "oozie.service.JPAService.pool.max.active.conn", "5");
+
+    private MinimalProfile() {
+    }
+}
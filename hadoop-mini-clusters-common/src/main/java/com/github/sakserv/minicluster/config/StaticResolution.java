@@ -0,0 +1,104 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static com.github.sakserv.minicluster.config.ConfigProfiles.settings;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.net.NetUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pins the mini clusters to loopback, so their startup does not wait on a slow or missing DNS.
+ * Each component gets explicit loopback hostnames where it would otherwise look up its own,
+ * and the DataNode registration skips its reverse lookup. Once per JVM the machine hostname is
+ * statically resolved to localhost for Hadoop's NetUtils. Applied through {@link ConfigProfiles},
+ * settings made explicitly are kept.
+ */
+public final class StaticResolution {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(StaticResolution.class);
+
+    public static final String ENABLED_PROPERTY = "minicluster.resolution.static.enabled";
+
+    public static final String LOOPBACK_HOSTNAME = "localhost";
+
+    public static final Map<String, String> HDFS = settings(
+            "dfs.datanode.hostname", LOOPBACK_HOSTNAME,
+            "dfs.namenode.datanode.registration.ip-hostname-check", "false");
+
+    public static final Map<String, String> YARN = settings(
+            "yarn.resourcemanager.hostname", LOOPBACK_HOSTNAME,
+            "yarn.nodemanager.hostname", LOOPBACK_HOSTNAME,
+            "yarn.timeline-service.hostname", LOOPBACK_HOSTNAME);
+
+    public static final Map<String, String> HBASE = settings(
+            "hbase.master.hostname", LOOPBACK_HOSTNAME,
+            "hbase.regionserver.hostname", LOOPBACK_HOSTNAME);
+
+    public static final Map<String, String> KAFKA = settings(
+            "host.name", LOOPBACK_HOSTNAME);
+
+    private static final Path ETC_HOSTNAME = Paths.get("/etc/hostname");
+
+    private static boolean installed;
+
+    private StaticResolution() {
+    }
+
+    /**
+     * Resolves the machine hostname to localhost in Hadoop's NetUtils. The JVM's own DNS cache
+     * policy is left alone.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        installed = true;
+        String hostName = getMachineHostName();
+        if (hostName != null && !hostName.equals(LOOPBACK_HOSTNAME)) {
+            NetUtils.addStaticResolution(hostName, LOOPBACK_HOSTNAME);
+        }
+        LOG.info("RESOLUTION: Resolving {} statically to {}", hostName, LOOPBACK_HOSTNAME);
+    }
+
+    /**
+     * Returns the hostname of the machine without a lookup, from $HOSTNAME or /etc/hostname.
+     */
+    static String getMachineHostName() {
+        String hostName = System.getenv("HOSTNAME");
+        if (hostName != null && !hostName.trim().isEmpty()) {
+            return hostName.trim();
+        }
+        try {
+            List<String> lines = Files.readAllLines(ETC_HOSTNAME, StandardCharsets.UTF_8);
+            if (!lines.isEmpty() && !lines.get(0).trim().isEmpty()) {
+                return lines.get(0).trim();
+            }
+        } catch (IOException e) {
+            LOG.debug("RESOLUTION: Unable to read {}", ETC_HOSTNAME, e);
+        }
+        return null;
+    }
+}
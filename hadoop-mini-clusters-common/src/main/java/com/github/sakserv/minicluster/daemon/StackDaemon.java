@@ -0,0 +1,428 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.config.ConfigFingerprint;
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.stack.MiniClusterStack;
+import com.github.sakserv.minicluster.util.ClientConfigurationUtils;
+
+/**
+ * Keeps a MiniClusterStack running in the background, so repeated builds attach to it instead of
+ * starting it again. Test JVMs use {@link StackDaemonClient}.
+ *
+ * The daemon listens on a loopback port and writes it, together with the client configuration of
+ * every mini cluster (keyed by the mini cluster's name in the stack), to the endpoints file
+ * ~/.hadoop-mini-clusters/&lt;name&gt;.properties, the dir is set with -Dminicluster.daemon.dir.
+ * The file also holds the factory class and a {@link #fingerprint(String) fingerprint} of the
+ * classpath and configuration the stack was built from, so clients can tell a stale daemon, and
+ * the token that SHUTDOWN requires. It is only readable by its owner where the file system
+ * supports it. Attached clients lease tenants, which are unique for the lifetime of the daemon.
+ * A lease creates the tenant in every mini cluster of the stack, releasing it or detaching deletes
+ * the tenant's data. The daemon stops the stack and exits when told to, or once no client was
+ * attached for -Dminicluster.daemon.idle.timeout.ms (two hours by default).
+ */
+public class StackDaemon implements AutoCloseable {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(StackDaemon.class);
+
+    public static final String DIR_PROPERTY = "minicluster.daemon.dir";
+    public static final String IDLE_TIMEOUT_MS_PROPERTY = "minicluster.daemon.idle.timeout.ms";
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 7200000L;
+
+    // Keys of the endpoints file next to the client configuration of the mini clusters
+    public static final String PORT_KEY = "daemon.port";
+    public static final String PID_KEY = "daemon.pid";
+    public static final String FACTORY_KEY = "daemon.factory";
+    public static final String FINGERPRINT_KEY = "daemon.fingerprint";
+    static final String TOKEN_KEY = "daemon.token";
+
+    static final String PING = "ping";
+    static final String LEASE = "lease";
+    static final String RELEASE = "release";
+    static final String SHUTDOWN = "shutdown";
+
+    // How often the accept loop wakes up to check the idle timeout
+    private static final int ACCEPT_TIMEOUT_MS = 1000;
+
+    private final String name;
+    private final String factoryClass;
+    private final MiniClusterStack stack;
+    private final long idleTimeoutMs;
+    private final String token = UUID.randomUUID().toString();
+
+    private final AtomicInteger tenantNumbers = new AtomicInteger();
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private ServerSocket serverSocket;
+    private volatile long idleSinceNanos;
+    private volatile boolean closing;
+
+    public StackDaemon(String name, String factoryClass, MiniClusterStack stack, long idleTimeoutMs) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("ERROR: Missing required config: Daemon Name");
+        }
+        if (factoryClass == null) {
+            throw new IllegalArgumentException("ERROR: Missing required config: Factory Class");
+        }
+        this.name = name;
+        this.factoryClass = factoryClass;
+        this.stack = stack;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public static File getDir() {
+        return new File(System.getProperty(DIR_PROPERTY,
+                new File(System.getProperty("user.home"), ".hadoop-mini-clusters").getPath()));
+    }
+
+    public static File getEndpointsFile(String name) {
+        return new File(getDir(), name + ".properties");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFactoryClass() {
+        return factoryClass;
+    }
+
+    public MiniClusterStack getStack() {
+        return stack;
+    }
+
+    public synchronized int getPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    public int getAttachedClients() {
+        return clients.size();
+    }
+
+    /**
+     * Starts the stack, then publishes the endpoints file and accepts clients.
+     */
+    public synchronized void start() throws Exception {
+        LOG.info("DAEMON: Starting stack {}", name);
+        stack.start();
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout(ACCEPT_TIMEOUT_MS);
+        writeEndpoints();
+        idleSinceNanos = System.nanoTime();
+
+        Thread acceptor = new Thread(this::accept, "minicluster-daemon-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOG.info("DAEMON: Stack {} is listening on port {}, endpoints in {}", name, getPort(),
+                getEndpointsFile(name));
+    }
+
+    /**
+     * Waits until the daemon is closed by a client, the idle timeout or close().
+     */
+    public boolean awaitClose(Duration timeout) throws InterruptedException {
+        return closed.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Removes the endpoints file, stops the stack and detaches every client. The stack is
+     * stopped once this returns.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closing || serverSocket == null) {
+                return;
+            }
+            closing = true;
+            LOG.info("DAEMON: Stopping stack {}", name);
+            deleteEndpoints();
+            closeQuietly(serverSocket);
+            try {
+                stack.stop();
+            } catch (Exception e) {
+                LOG.warn("DAEMON: Unable to stop stack {}", name, e);
+            }
+            for (Socket client : clients) {
+                closeQuietly(client);
+            }
+            closed.countDown();
+        }
+    }
+
+    /**
+     * Hash of the factory class, the classpath entries with their sizes and modification times,
+     * and the minicluster.* system properties other than the daemon's own, the inputs the stack
+     * of a daemon is built from.
+     */
+    public static String fingerprint(String factoryClass) {
+        StringBuilder description = new StringBuilder(factoryClass);
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            File file = new File(entry);
+            description.append('\n').append(file.getAbsolutePath()).append(':').append(file.length())
+                    .append(':').append(lastModified(file));
+        }
+        for (String property : new TreeSet<>(System.getProperties().stringPropertyNames())) {
+            if (property.startsWith("minicluster.") && !property.startsWith("minicluster.daemon.")) {
+                description.append('\n').append(property).append('=').append(System.getProperty(property));
+            }
+        }
+        return ConfigFingerprint.sha256Hex(description.toString());
+    }
+
+    // Directories such as target/classes keep their time when a class in a package changes
+    private static long lastModified(File file) {
+        if (!file.isDirectory()) {
+            return file.lastModified();
+        }
+        try (Stream<Path> paths = Files.walk(file.toPath())) {
+            return paths.mapToLong(path -> path.toFile().lastModified()).max().orElse(0L);
+        } catch (IOException e) {
+            return file.lastModified();
+        }
+    }
+
+    Properties getEndpoints() {
+        Properties endpoints = new Properties();
+        endpoints.setProperty(PORT_KEY, String.valueOf(getPort()));
+        endpoints.setProperty(PID_KEY, ManagementFactory.getRuntimeMXBean().getName().split("@")[0]);
+        endpoints.setProperty(FACTORY_KEY, factoryClass);
+        endpoints.setProperty(FINGERPRINT_KEY, fingerprint(factoryClass));
+        endpoints.setProperty(TOKEN_KEY, token);
+        for (String clusterName : stack.getClusterNames()) {
+            Map<String, String> config = ClientConfigurationUtils.getClientConfiguration(stack.getCluster(clusterName));
+            for (Map.Entry<String, String> entry : config.entrySet()) {
+                endpoints.setProperty(clusterName + "." + entry.getKey(), entry.getValue());
+            }
+        }
+        return endpoints;
+    }
+
+    static Properties readEndpoints(String name) throws IOException {
+        Properties endpoints = new Properties();
+        try (InputStream in = new FileInputStream(getEndpointsFile(name))) {
+            endpoints.load(in);
+        }
+        return endpoints;
+    }
+
+    private void writeEndpoints() throws IOException {
+        File file = getEndpointsFile(name);
+        Files.createDirectories(file.getParentFile().toPath());
+        File temp = new File(file.getParentFile(), "." + file.getName() + ".tmp");
+        Files.deleteIfExists(temp.toPath());
+        try {
+            // The token in it lets the holder stop the daemon
+            Files.createFile(temp.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            LOG.debug("DAEMON: No POSIX permissions for {}", temp);
+        }
+        try (OutputStream out = new FileOutputStream(temp)) {
+            getEndpoints().store(out, "Endpoints of the mini cluster stack " + name);
+        }
+        // Clients never see a half written file
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteEndpoints() {
+        try {
+            // A daemon started after this one owns the file now
+            if (String.valueOf(getPort()).equals(readEndpoints(name).getProperty(PORT_KEY))) {
+                Files.delete(getEndpointsFile(name).toPath());
+            }
+        } catch (IOException e) {
+            LOG.debug("DAEMON: Unable to remove {}", getEndpointsFile(name), e);
+        }
+    }
+
+    private void accept() {
+        while (!closing) {
+            try {
+                Socket socket = serverSocket.accept();
+                clients.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "minicluster-daemon-client");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (SocketTimeoutException e) {
+                if (clients.isEmpty() &&
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - idleSinceNanos) > idleTimeoutMs) {
+                    LOG.info("DAEMON: No client attached for {} ms", idleTimeoutMs);
+                    close();
+                }
+            } catch (IOException e) {
+                if (!closing) {
+                    LOG.warn("DAEMON: Unable to accept a client", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Map<String, Tenant> tenants = new LinkedHashMap<>();
+        LOG.info("DAEMON: Client attached from port {}", socket.getPort());
+        try (Socket closing = socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                String command = in.readUTF();
+                switch (command) {
+                    case PING:
+                        out.writeBoolean(true);
+                        break;
+                    case LEASE:
+                        int number = tenantNumbers.incrementAndGet();
+                        Tenant tenant = new Tenant(in.readUTF(), number);
+                        try {
+                            stack.createTenant(tenant);
+                        } catch (Exception e) {
+                            LOG.warn("DAEMON: Unable to create {}", tenant, e);
+                            deleteTenant(tenant);
+                            fail(out, "ERROR: Unable to create " + tenant + ": " + e);
+                            break;
+                        }
+                        tenants.put(tenant.getId(), tenant);
+                        out.writeBoolean(true);
+                        out.writeInt(number);
+                        break;
+                    case RELEASE:
+                        Tenant released = tenants.remove(in.readUTF());
+                        if (released != null) {
+                            deleteTenant(released);
+                        }
+                        out.writeBoolean(true);
+                        break;
+                    case SHUTDOWN:
+                        if (!token.equals(in.readUTF())) {
+                            fail(out, "ERROR: Invalid token, see " + TOKEN_KEY + " in " + getEndpointsFile(name));
+                            break;
+                        }
+                        // Answer once the stack is stopped, so the client can start a new one
+                        clients.remove(socket);
+                        close();
+                        out.writeBoolean(true);
+                        out.flush();
+                        return;
+                    default:
+                        fail(out, "ERROR: Unknown command: " + command);
+                }
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // Detached
+        } catch (IOException e) {
+            LOG.warn("DAEMON: Lost a client", e);
+        } finally {
+            // A stopped stack has no tenant data left
+            if (!this.closing) {
+                for (Tenant tenant : tenants.values()) {
+                    deleteTenant(tenant);
+                }
+            }
+            clients.remove(socket);
+            if (clients.isEmpty()) {
+                idleSinceNanos = System.nanoTime();
+            }
+            LOG.info("DAEMON: Client detached, {} tenants released", tenants.size());
+        }
+    }
+
+    private void deleteTenant(Tenant tenant) {
+        try {
+            stack.deleteTenant(tenant);
+        } catch (Exception e) {
+            LOG.warn("DAEMON: Unable to delete the data of {}", tenant, e);
+        }
+    }
+
+    private static void fail(DataOutputStream out, String message) throws IOException {
+        out.writeBoolean(false);
+        out.writeUTF(message);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOG.debug("DAEMON: Unable to close {}", closeable, e);
+        }
+    }
+
+    /**
+     * Runs the stack created by the factory class, a public Callable returning a MiniClusterStack
+     * with a no-arg constructor, until the daemon is closed.
+     */
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("ERROR: Usage: StackDaemon <name> <factory class>");
+        }
+        Callable<MiniClusterStack> factory = (Callable<MiniClusterStack>) Class.forName(args[1])
+                .getDeclaredConstructor().newInstance();
+        StackDaemon daemon = new StackDaemon(args[0], args[1], factory.call(),
+                Long.getLong(IDLE_TIMEOUT_MS_PROPERTY, DEFAULT_IDLE_TIMEOUT_MS));
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "minicluster-daemon-shutdown"));
+        try {
+            daemon.start();
+            while (!daemon.awaitClose(Duration.ofMinutes(1))) {
+                LOG.debug("DAEMON: {} clients attached", daemon.getAttachedClients());
+            }
+        } finally {
+            daemon.close();
+            // Mini clusters leave non daemon threads behind
+            System.exit(0);
+        }
+    }
+}
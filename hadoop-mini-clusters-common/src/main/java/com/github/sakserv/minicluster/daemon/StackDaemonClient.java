@@ -0,0 +1,264 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.fork.ForkedMiniCluster;
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.stack.MiniClusterStack;
+
+/**
+ * Attaches to a {@link StackDaemon}. Tenants leased through the client are released when it is
+ * closed, the daemon and its stack keep running for the next build. attachOrStart() restarts a
+ * daemon whose stack was built from another factory class, classpath or configuration.
+ */
+public class StackDaemonClient implements AutoCloseable {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(StackDaemonClient.class);
+
+    public static final String JVM_ARGS_PROPERTY = "minicluster.daemon.jvm.args";
+    public static final String START_TIMEOUT_MS_PROPERTY = "minicluster.daemon.start.timeout.ms";
+    public static final long DEFAULT_START_TIMEOUT_MS = 300000L;
+
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int COMMAND_TIMEOUT_MS = 10000;
+    private static final int SHUTDOWN_TIMEOUT_MS = 300000;
+    private static final long POLL_INTERVAL_MS = 200L;
+
+    private final String name;
+    private final Map<String, String> endpoints;
+    private final String token;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private StackDaemonClient(String name, Map<String, String> endpoints, String token, Socket socket)
+            throws IOException {
+        this.name = name;
+        this.endpoints = endpoints;
+        this.token = token;
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Attaches to the running daemon, throws an IllegalStateException if there is none.
+     */
+    public static StackDaemonClient attach(String name) throws Exception {
+        StackDaemonClient client = tryAttach(name);
+        if (client == null) {
+            throw new IllegalStateException("ERROR: No stack daemon " + name + " is running, " +
+                    StackDaemon.getEndpointsFile(name) + " is missing or stale");
+        }
+        return client;
+    }
+
+    /**
+     * Attaches to the running daemon, or launches one in the background with the factory class,
+     * a public Callable returning a MiniClusterStack with a no-arg constructor, and waits until it
+     * is up. A file lock keeps concurrent builds from launching a second daemon.
+     */
+    public static synchronized StackDaemonClient attachOrStart(
+            String name, Class<? extends Callable<MiniClusterStack>> factoryClass) throws Exception {
+        File dir = StackDaemon.getDir();
+        Files.createDirectories(dir.toPath());
+        try (FileChannel channel = FileChannel.open(new File(dir, name + ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            String fingerprint = StackDaemon.fingerprint(factoryClass.getName());
+            StackDaemonClient client = tryAttach(name);
+            if (client != null) {
+                if (factoryClass.getName().equals(client.getEndpoints().get(StackDaemon.FACTORY_KEY)) &&
+                        fingerprint.equals(client.getEndpoints().get(StackDaemon.FINGERPRINT_KEY))) {
+                    return client;
+                }
+                LOG.info("DAEMON: Stack daemon {} runs {} built from another classpath or configuration, restarting it",
+                        name, client.getEndpoints().get(StackDaemon.FACTORY_KEY));
+                client.shutdownDaemon();
+            }
+
+            File logFile = new File(dir, name + ".log");
+            LOG.info("DAEMON: Launching stack daemon {}, logging to {}", name, logFile);
+            Process process = new ProcessBuilder(getCommand(name, factoryClass.getName()))
+                    .redirectErrorStream(true)
+                    .redirectOutput(logFile)
+                    .start();
+            long timeoutMs = Long.getLong(START_TIMEOUT_MS_PROPERTY, DEFAULT_START_TIMEOUT_MS);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (true) {
+                client = tryAttach(name);
+                if (client != null) {
+                    return client;
+                }
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("ERROR: Stack daemon " + name + " exited, see " + logFile);
+                }
+                if (System.nanoTime() > deadline) {
+                    process.destroyForcibly();
+                    throw new TimeoutException("ERROR: Stack daemon " + name + " not up after " + timeoutMs +
+                            " ms, see " + logFile);
+                }
+                Thread.sleep(POLL_INTERVAL_MS);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The endpoints file of the daemon, without the token: daemon.port, daemon.pid,
+     * daemon.factory, daemon.fingerprint and the client configuration of every mini cluster,
+     * keyed by its name in the stack, e.g. hdfs.fs.defaultFS.
+     */
+    public Map<String, String> getEndpoints() {
+        return endpoints;
+    }
+
+    public String getEndpoint(String clusterName, String key) {
+        return endpoints.get(clusterName + "." + key);
+    }
+
+    /**
+     * Leases a tenant no other client of the daemon gets, created in every mini cluster of the
+     * stack.
+     */
+    public synchronized Tenant lease(String tenantName) throws Exception {
+        out.writeUTF(StackDaemon.LEASE);
+        out.writeUTF(tenantName);
+        read();
+        return new Tenant(tenantName, in.readInt());
+    }
+
+    /**
+     * Deletes the data of the tenant.
+     */
+    public synchronized void release(Tenant tenant) throws Exception {
+        out.writeUTF(StackDaemon.RELEASE);
+        out.writeUTF(tenant.getId());
+        read();
+    }
+
+    /**
+     * Stops the daemon and its stack, for every attached client. Returns once the stack is
+     * stopped.
+     */
+    public synchronized void shutdownDaemon() throws Exception {
+        out.writeUTF(StackDaemon.SHUTDOWN);
+        out.writeUTF(token);
+        socket.setSoTimeout(SHUTDOWN_TIMEOUT_MS);
+        read();
+        close();
+    }
+
+    /**
+     * Detaches, releasing the tenants leased through this client.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        socket.close();
+    }
+
+    static List<String> getCommand(String name, String factoryClass) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ForkedMiniCluster.parseJvmArgs(
+                System.getProperty(JVM_ARGS_PROPERTY, ForkedMiniCluster.DEFAULT_JVM_ARGS)));
+        for (String property : System.getProperties().stringPropertyNames()) {
+            if (property.startsWith("minicluster.")) {
+                command.add("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(StackDaemon.class.getName());
+        command.add(name);
+        command.add(factoryClass);
+        return command;
+    }
+
+    private static StackDaemonClient tryAttach(String name) {
+        if (!StackDaemon.getEndpointsFile(name).isFile()) {
+            return null;
+        }
+        Socket socket = new Socket();
+        try {
+            Properties properties = StackDaemon.readEndpoints(name);
+            int port = Integer.parseInt(properties.getProperty(StackDaemon.PORT_KEY));
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(COMMAND_TIMEOUT_MS);
+
+            Map<String, String> endpoints = new TreeMap<>();
+            for (String key : properties.stringPropertyNames()) {
+                endpoints.put(key, properties.getProperty(key));
+            }
+            String token = endpoints.remove(StackDaemon.TOKEN_KEY);
+            StackDaemonClient client = new StackDaemonClient(name, Collections.unmodifiableMap(endpoints), token, socket);
+            client.ping();
+            LOG.info("DAEMON: Attached to stack daemon {} on port {}", name, port);
+            return client;
+        } catch (IOException | RuntimeException e) {
+            LOG.debug("DAEMON: Stack daemon {} is not running", name, e);
+            try {
+                socket.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            return null;
+        }
+    }
+
+    private synchronized void ping() throws IOException {
+        out.writeUTF(StackDaemon.PING);
+        read();
+    }
+
+    private void read() throws IOException {
+        out.flush();
+        if (!in.readBoolean()) {
+            throw new IllegalStateException(in.readUTF());
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.fork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.workspace.Workspace;
+
+/**
+ * Runs a mini cluster in a child JVM of its own, so it gets its own heap, GC and classpath.
+ *
+ * The child creates the mini cluster with a factory, a public Callable with a no-arg constructor,
+ * and is controlled over a loopback socket. Once started, getClientConfiguration() returns what
+ * clients need to connect: the entries of the mini cluster's Configuration and Properties getters
+ * and its String, number and boolean getters. The child inherits the classpath and the
+ * -Dminicluster.* system properties of this JVM, its output goes to a log file in the workspace.
+ * The child exits when this JVM does.
+ */
+public class ForkedMiniCluster implements MiniCluster {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(ForkedMiniCluster.class);
+
+    public static final String JVM_ARGS_PROPERTY = "minicluster.fork.jvm.args";
+    public static final String DEFAULT_JVM_ARGS = "-Xmx1g -XX:+UseG1GC";
+
+    public static final String START_TIMEOUT_MS_PROPERTY = "minicluster.fork.start.timeout.ms";
+    public static final long DEFAULT_START_TIMEOUT_MS = 300000L;
+
+    // Commands other than start, the child only has to answer
+    private static final long COMMAND_TIMEOUT_MS = 60000L;
+
+    // How often to check that the child JVM is still alive while waiting for it to connect
+    private static final int ACCEPT_SLICE_MS = 200;
+
+    private final String factoryClass;
+    private final List<String> jvmArgs;
+    private final String classpath;
+    private final long startTimeoutMs;
+
+    // Read by forceStop() without the lock, which a stuck stop() holds
+    private volatile Process process;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private File logFile;
+    private Thread shutdownHook;
+
+    public String getFactoryClass() {
+        return factoryClass;
+    }
+
+    public List<String> getJvmArgs() {
+        return jvmArgs;
+    }
+
+    public String getClasspath() {
+        return classpath;
+    }
+
+    public long getStartTimeoutMs() {
+        return startTimeoutMs;
+    }
+
+    public synchronized File getLogFile() {
+        return logFile;
+    }
+
+    private ForkedMiniCluster(Builder builder) {
+        this.factoryClass = builder.factoryClass;
+        this.jvmArgs = builder.jvmArgs;
+        this.classpath = builder.classpath;
+        this.startTimeoutMs = builder.startTimeoutMs;
+    }
+
+    public static class Builder {
+        private String factoryClass;
+        private List<String> jvmArgs = parseJvmArgs(System.getProperty(JVM_ARGS_PROPERTY, DEFAULT_JVM_ARGS));
+        private String classpath = System.getProperty("java.class.path");
+        private long startTimeoutMs = Long.getLong(START_TIMEOUT_MS_PROPERTY, DEFAULT_START_TIMEOUT_MS);
+
+        public Builder setFactoryClass(Class<? extends Callable<? extends MiniCluster>> factoryClass) {
+            this.factoryClass = factoryClass.getName();
+            return this;
+        }
+
+        /**
+         * Heap and GC flags of the child, -Xmx1g -XX:+UseG1GC unless -Dminicluster.fork.jvm.args is set.
+         */
+        public Builder setJvmArgs(String... jvmArgs) {
+            this.jvmArgs = Arrays.asList(jvmArgs);
+            return this;
+        }
+
+        public Builder setClasspath(String classpath) {
+            this.classpath = classpath;
+            return this;
+        }
+
+        public Builder setStartTimeoutMs(long startTimeoutMs) {
+            this.startTimeoutMs = startTimeoutMs;
+            return this;
+        }
+
+        public ForkedMiniCluster build() {
+            ForkedMiniCluster forkedMiniCluster = new ForkedMiniCluster(this);
+            validateObject(forkedMiniCluster);
+            return forkedMiniCluster;
+        }
+
+        public void validateObject(ForkedMiniCluster forkedMiniCluster) {
+            if (forkedMiniCluster.factoryClass == null) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Factory Class");
+            }
+            if (forkedMiniCluster.classpath == null) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Classpath");
+            }
+        }
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            configure();
+            try (ServerSocket serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+                process = new ProcessBuilder(getCommand(serverSocket.getLocalPort()))
+                        .redirectErrorStream(true)
+                        .redirectOutput(logFile)
+                        .start();
+                shutdownHook = new Thread(process::destroyForcibly, "minicluster-fork-shutdown");
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+                LOG.info("FORK: Starting {} in a child JVM, logging to {}", factoryClass, logFile);
+
+                try {
+                    socket = accept(serverSocket);
+                } catch (Exception e) {
+                    destroy();
+                    throw e;
+                }
+            }
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            try {
+                call(ForkedMiniClusterMain.START, startTimeoutMs);
+            } catch (Exception e) {
+                destroy();
+                throw e;
+            }
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        stop(true);
+    }
+
+    /**
+     * Stops the mini cluster and waits for the child JVM to exit.
+     */
+    @Override
+    public synchronized void stop(boolean cleanUp) throws Exception {
+        if (process == null) {
+            return;
+        }
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("FORK: Stopping {}", factoryClass);
+            try {
+                out.writeUTF(ForkedMiniClusterMain.STOP);
+                out.writeBoolean(cleanUp);
+                read(COMMAND_TIMEOUT_MS);
+                call(ForkedMiniClusterMain.EXIT, COMMAND_TIMEOUT_MS);
+                if (!process.waitFor(COMMAND_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    LOG.warn("FORK: Child JVM of {} did not exit, killing it", factoryClass);
+                }
+            } finally {
+                destroy();
+            }
+        }
+    }
+
+    /**
+     * Kills the child JVM. Data dirs of the mini cluster are left behind.
+     */
+    @Override
+    public void forceStop() {
+        Process running = process;
+        if (running != null) {
+            LOG.info("FORK: Killing the child JVM of {}", factoryClass);
+            running.destroyForcibly();
+        }
+    }
+
+    @Override
+    public synchronized void configure() throws Exception {
+        if (logFile == null) {
+            String name = factoryClass.substring(factoryClass.lastIndexOf('.') + 1).replace('$', '-');
+            logFile = new File(Workspace.resolve(Workspace.AUTO, "forked-" + name) + ".log");
+        }
+    }
+
+    /**
+     * The child stops its mini cluster with cleanUp, there is nothing left to clean up here.
+     */
+    @Override
+    public void cleanUp() throws Exception {
+    }
+
+    @Override
+    public synchronized boolean isReady() throws Exception {
+        if (process == null || !process.isAlive()) {
+            return false;
+        }
+        call(ForkedMiniClusterMain.READY, COMMAND_TIMEOUT_MS);
+        return in.readBoolean();
+    }
+
+    /**
+     * Client settings reported by the running mini cluster, e.g. fs.defaultFS or
+     * minicluster.zookeeperConnectionString. Empty when not running.
+     */
+    public synchronized Map<String, String> getClientConfiguration() throws Exception {
+        if (process == null) {
+            return Collections.emptyMap();
+        }
+        call(ForkedMiniClusterMain.CONFIG, COMMAND_TIMEOUT_MS);
+        int size = in.readInt();
+        Map<String, String> config = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            config.put(in.readUTF(), in.readUTF());
+        }
+        return config;
+    }
+
+    List<String> getCommand(int controlPort) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("minicluster.")) {
+                command.add("-D" + name + "=" + System.getProperty(name));
+            }
+        }
+        command.add("-cp");
+        command.add(classpath);
+        command.add(ForkedMiniClusterMain.class.getName());
+        command.add(factoryClass);
+        command.add(String.valueOf(controlPort));
+        return command;
+    }
+
+    public static List<String> parseJvmArgs(String jvmArgs) {
+        String trimmed = jvmArgs.trim();
+        return trimmed.isEmpty() ? Collections.emptyList() : Arrays.asList(trimmed.split("\\s+"));
+    }
+
+    /**
+     * Waits for the child JVM to connect, failing as soon as it exits instead of after the start timeout.
+     */
+    private Socket accept(ServerSocket serverSocket) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(startTimeoutMs);
+        serverSocket.setSoTimeout(ACCEPT_SLICE_MS);
+        while (true) {
+            try {
+                return serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("ERROR: Child JVM of " + factoryClass + " exited with code " +
+                            process.exitValue() + " before connecting, see " + logFile);
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    throw new TimeoutException("ERROR: Child JVM of " + factoryClass + " did not connect within " +
+                            startTimeoutMs + " ms, see " + logFile);
+                }
+            }
+        }
+    }
+
+    private void call(String command, long timeoutMs) throws Exception {
+        out.writeUTF(command);
+        read(timeoutMs);
+    }
+
+    private void read(long timeoutMs) throws Exception {
+        out.flush();
+        socket.setSoTimeout((int) Math.min(timeoutMs, Integer.MAX_VALUE));
+        try {
+            if (!in.readBoolean()) {
+                throw new IllegalStateException("ERROR: Child JVM of " + factoryClass + " failed: " + in.readUTF() +
+                        ", see " + logFile);
+            }
+        } catch (SocketTimeoutException e) {
+            throw new TimeoutException("ERROR: Child JVM of " + factoryClass + " did not answer within " +
+                    timeoutMs + " ms, see " + logFile);
+        }
+    }
+
+    private void destroy() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            LOG.debug("FORK: Unable to close the control socket", e);
+        }
+        if (process != null) {
+            process.destroyForcibly();
+        }
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // Already shutting down, the hook kills the child anyway
+            }
+        }
+        process = null;
+        socket = null;
+        in = null;
+        out = null;
+        shutdownHook = null;
+    }
+}
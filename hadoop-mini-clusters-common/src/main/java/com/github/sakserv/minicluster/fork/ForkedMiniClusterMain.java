@@ -0,0 +1,147 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.fork;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.util.ClientConfigurationUtils;
+
+/**
+ * Entry point of the child JVM of a {@link ForkedMiniCluster}. Creates the mini cluster with the
+ * factory class named in the first argument and serves the commands of the parent, which listens
+ * on the loopback port in the second argument. The child exits once the parent disconnects.
+ */
+public final class ForkedMiniClusterMain {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(ForkedMiniClusterMain.class);
+
+    static final String START = "start";
+    static final String READY = "ready";
+    static final String STOP = "stop";
+    static final String FORCE_STOP = "forceStop";
+    static final String CONFIG = "config";
+    static final String EXIT = "exit";
+
+    // DataOutput.writeUTF() is limited to 64k bytes
+    private static final int MAX_MESSAGE_LENGTH = 16384;
+
+    private ForkedMiniClusterMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("ERROR: Usage: ForkedMiniClusterMain <factory class> <control port>");
+        }
+        MiniCluster miniCluster = null;
+        boolean exit = false;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[1]))) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (!exit) {
+                String command;
+                try {
+                    command = in.readUTF();
+                } catch (EOFException e) {
+                    LOG.warn("FORK: Parent disconnected");
+                    break;
+                }
+                try {
+                    switch (command) {
+                        case START:
+                            miniCluster = newMiniCluster(args[0]);
+                            miniCluster.start();
+                            out.writeBoolean(true);
+                            break;
+                        case READY:
+                            boolean ready = miniCluster != null && miniCluster.isReady();
+                            out.writeBoolean(true);
+                            out.writeBoolean(ready);
+                            break;
+                        case STOP:
+                            boolean cleanUp = in.readBoolean();
+                            if (miniCluster != null) {
+                                miniCluster.stop(cleanUp);
+                                miniCluster = null;
+                            }
+                            out.writeBoolean(true);
+                            break;
+                        case FORCE_STOP:
+                            if (miniCluster != null) {
+                                miniCluster.forceStop();
+                                miniCluster = null;
+                            }
+                            out.writeBoolean(true);
+                            break;
+                        case CONFIG:
+                            Map<String, String> config = ClientConfigurationUtils.getClientConfiguration(miniCluster);
+                            out.writeBoolean(true);
+                            out.writeInt(config.size());
+                            for (Map.Entry<String, String> entry : config.entrySet()) {
+                                out.writeUTF(entry.getKey());
+                                out.writeUTF(entry.getValue());
+                            }
+                            break;
+                        case EXIT:
+                            exit = true;
+                            out.writeBoolean(true);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("ERROR: Unknown command: " + command);
+                    }
+                } catch (Exception e) {
+                    LOG.error("FORK: {} failed", command, e);
+                    out.writeBoolean(false);
+                    out.writeUTF(truncate(String.valueOf(e)));
+                }
+                out.flush();
+            }
+        } finally {
+            if (miniCluster != null) {
+                try {
+                    miniCluster.forceStop();
+                } catch (Exception e) {
+                    LOG.warn("FORK: Unable to force stop {}", miniCluster.getClass().getSimpleName(), e);
+                }
+            }
+            // Mini clusters leave non daemon threads behind
+            System.exit(0);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MiniCluster newMiniCluster(String factoryClass) throws Exception {
+        Callable<? extends MiniCluster> factory = (Callable<? extends MiniCluster>) Class.forName(factoryClass)
+                .getDeclaredConstructor().newInstance();
+        return factory.call();
+    }
+
+    private static String truncate(String message) {
+        return message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.fs;
+
+import org.apache.hadoop.fs.LocalFileSystem;
+
+/**
+ * The checksummed local file system over {@link JavaRawLocalFileSystem}, for fs.file.impl.
+ */
+public class JavaLocalFileSystem extends LocalFileSystem {
+
+    public JavaLocalFileSystem() {
+        super(new JavaRawLocalFileSystem());
+    }
+}
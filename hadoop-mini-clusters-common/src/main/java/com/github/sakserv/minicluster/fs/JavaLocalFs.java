@@ -0,0 +1,41 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.fs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ChecksumFs;
+import org.apache.hadoop.fs.DelegateToFileSystem;
+import org.apache.hadoop.fs.FsConstants;
+
+/**
+ * The FileContext counterpart of {@link JavaLocalFileSystem}, for fs.AbstractFileSystem.file.impl.
+ */
+public class JavaLocalFs extends ChecksumFs {
+
+    public JavaLocalFs(URI uri, Configuration conf) throws IOException, URISyntaxException {
+        super(new Raw(uri, conf));
+    }
+
+    static class Raw extends DelegateToFileSystem {
+
+        Raw(URI uri, Configuration conf) throws IOException, URISyntaxException {
+            super(uri, new JavaRawLocalFileSystem(), conf, FsConstants.LOCAL_FS_URI.getScheme(), false);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.fs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.fs.permission.FsPermission;
+
+/**
+ * A RawLocalFileSystem that reads and changes permissions and ownership through java.nio
+ * instead of forking ls, chmod and chown when Hadoop's native library is missing. The sticky
+ * bit is not supported by java.nio and is dropped by setPermission(). Symlinks are still
+ * handled by the parent class.
+ */
+public class JavaRawLocalFileSystem extends RawLocalFileSystem {
+
+    private static final PosixFilePermission[] PERMISSION_BITS = {
+            PosixFilePermission.OTHERS_EXECUTE, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_READ,
+            PosixFilePermission.GROUP_EXECUTE, PosixFilePermission.GROUP_WRITE, PosixFilePermission.GROUP_READ,
+            PosixFilePermission.OWNER_EXECUTE, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_READ};
+
+    @Override
+    public FileStatus getFileStatus(Path f) throws IOException {
+        return withPosixAttributes(super.getFileStatus(f));
+    }
+
+    @Override
+    public FileStatus getFileLinkStatus(Path f) throws IOException {
+        if (Files.isSymbolicLink(pathToFile(f).toPath())) {
+            return super.getFileLinkStatus(f);
+        }
+        return getFileStatus(f);
+    }
+
+    @Override
+    public FileStatus[] listStatus(Path f) throws IOException {
+        FileStatus[] statuses = super.listStatus(f);
+        List<FileStatus> result = new ArrayList<>(statuses.length);
+        for (FileStatus status : statuses) {
+            try {
+                result.add(withPosixAttributes(status));
+            } catch (NoSuchFileException e) {
+                // Deleted since it was listed
+            }
+        }
+        return result.toArray(new FileStatus[result.size()]);
+    }
+
+    @Override
+    public void setPermission(Path p, FsPermission permission) throws IOException {
+        Files.setPosixFilePermissions(pathToFile(p).toPath(), toPosixPermissions(permission));
+    }
+
+    @Override
+    public void setOwner(Path p, String username, String groupname) throws IOException {
+        if (username == null && groupname == null) {
+            throw new IOException("username == null && groupname == null");
+        }
+        java.nio.file.Path path = pathToFile(p).toPath();
+        UserPrincipalLookupService lookupService = path.getFileSystem().getUserPrincipalLookupService();
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+        if (username != null) {
+            view.setOwner(lookupService.lookupPrincipalByName(username));
+        }
+        if (groupname != null) {
+            view.setGroup(lookupService.lookupPrincipalByGroupName(groupname));
+        }
+    }
+
+    static Set<PosixFilePermission> toPosixPermissions(FsPermission permission) {
+        short mode = permission.toShort();
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (int i = 0; i < PERMISSION_BITS.length; i++) {
+            if ((mode & (1 << i)) != 0) {
+                permissions.add(PERMISSION_BITS[i]);
+            }
+        }
+        return permissions;
+    }
+
+    static FsPermission toFsPermission(Set<PosixFilePermission> permissions) {
+        short mode = 0;
+        for (int i = 0; i < PERMISSION_BITS.length; i++) {
+            if (permissions.contains(PERMISSION_BITS[i])) {
+                mode |= 1 << i;
+            }
+        }
+        return new FsPermission(mode);
+    }
+
+    private FileStatus withPosixAttributes(FileStatus status) throws IOException {
+        PosixFileAttributes attributes = Files.readAttributes(pathToFile(status.getPath()).toPath(),
+                PosixFileAttributes.class, status.isSymlink() ? new LinkOption[] {LinkOption.NOFOLLOW_LINKS}
+                        : new LinkOption[0]);
+        return new FileStatus(status.getLen(), status.isDirectory(), status.getReplication(),
+                status.getBlockSize(), status.getModificationTime(), status.getAccessTime(),
+                toFsPermission(attributes.permissions()), attributes.owner().getName(),
+                attributes.group().getName(), status.getPath());
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lazy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.stack.MiniClusterStack;
+
+/**
+ * Defers the start of a mini cluster until a test asks for it with get().
+ *
+ * start() only arms the wrapper and isReady() is true right away, so a MiniClusterStack of lazy
+ * mini clusters starts in no time. The first get() starts the lazy dependencies, then the
+ * wrapped mini cluster, and waits until it is ready. stop() only stops what was started. Mini
+ * clusters that were never used are logged when stopped, and once more for the whole JVM when it
+ * exits, see {@link #getUnusedNames()}. Tenants created before the first get() are created in
+ * the wrapped mini cluster once it is started.
+ */
+public class LazyMiniCluster<T extends MiniCluster> implements MiniCluster {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(LazyMiniCluster.class);
+
+    // Whether any lazy mini cluster of that name was used in this JVM
+    private static final Map<String, Boolean> USAGE = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            List<String> unused = getUnusedNames();
+            if (!unused.isEmpty()) {
+                LOG.info("LAZY: Never used in this JVM, consider dropping them from the suite: {}", unused);
+            }
+        }, "minicluster-lazy-report"));
+    }
+
+    private final String name;
+    private final T miniCluster;
+    private final List<LazyMiniCluster<?>> dependencies;
+    private final Set<Tenant> tenants = new LinkedHashSet<>();
+    private Duration readyTimeout = MiniClusterStack.DEFAULT_READY_TIMEOUT;
+    private volatile boolean started;
+    private volatile boolean used;
+
+    public LazyMiniCluster(String name, T miniCluster, LazyMiniCluster<?>... dependencies) {
+        if (name == null) {
+            throw new IllegalArgumentException("ERROR: Missing required config: Lazy Mini Cluster Name");
+        }
+        if (miniCluster == null) {
+            throw new IllegalArgumentException("ERROR: Missing required config: Mini Cluster");
+        }
+        this.name = name;
+        this.miniCluster = miniCluster;
+        this.dependencies = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(dependencies)));
+        USAGE.putIfAbsent(name, false);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<LazyMiniCluster<?>> getDependencies() {
+        return dependencies;
+    }
+
+    public LazyMiniCluster<T> setReadyTimeout(Duration readyTimeout) {
+        this.readyTimeout = readyTimeout;
+        return this;
+    }
+
+    /**
+     * Names of the lazy mini clusters created in this JVM that were never used.
+     */
+    public static List<String> getUnusedNames() {
+        List<String> unused = new ArrayList<>();
+        for (Map.Entry<String, Boolean> entry : USAGE.entrySet()) {
+            if (!entry.getValue()) {
+                unused.add(entry.getKey());
+            }
+        }
+        return new ArrayList<>(new TreeSet<>(unused));
+    }
+
+    /**
+     * Starts the dependencies and the mini cluster on first use and returns it, ready.
+     */
+    public synchronized T get() throws Exception {
+        if (!started) {
+            for (LazyMiniCluster<?> dependency : dependencies) {
+                dependency.get();
+            }
+            long startNanos = System.nanoTime();
+            LOG.info("LAZY: Starting {} on first use", name);
+            miniCluster.start();
+            // From here on stop() has something to stop, even if it never gets ready
+            started = true;
+            miniCluster.awaitReady(readyTimeout);
+            for (Tenant tenant : tenants) {
+                miniCluster.createTenant(tenant);
+            }
+            LOG.info("LAZY: Started {} in {} ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+        used = true;
+        USAGE.put(name, true);
+        return miniCluster;
+    }
+
+    /**
+     * The wrapped mini cluster, without starting it. Use it for configured values such as ports.
+     */
+    public T peek() {
+        return miniCluster;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean isUsed() {
+        return used;
+    }
+
+    @Override
+    public void start() throws Exception {
+        LOG.info("LAZY: Deferring the start of {} until it is used", name);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        stop(true);
+    }
+
+    @Override
+    public synchronized void stop(boolean cleanUp) throws Exception {
+        if (!used) {
+            LOG.info("LAZY: {} was never used", name);
+        }
+        if (started) {
+            started = false;
+            miniCluster.stop(cleanUp);
+        }
+    }
+
+    @Override
+    public synchronized void stopDiscardingData() throws Exception {
+        if (!used) {
+            LOG.info("LAZY: {} was never used", name);
+        }
+        if (started) {
+            started = false;
+            miniCluster.stopDiscardingData();
+        }
+    }
+
+    @Override
+    public void forceStop() throws Exception {
+        if (started) {
+            miniCluster.forceStop();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        return !started || miniCluster.isReady();
+    }
+
+    @Override
+    public synchronized void createTenant(Tenant tenant) throws Exception {
+        tenants.add(tenant);
+        if (started) {
+            miniCluster.createTenant(tenant);
+        }
+    }
+
+    @Override
+    public synchronized void deleteTenant(Tenant tenant) throws Exception {
+        tenants.remove(tenant);
+        if (started) {
+            miniCluster.deleteTenant(tenant);
+        }
+    }
+
+    /**
+     * The wrapped mini cluster configures itself when it starts.
+     */
+    @Override
+    public void configure() throws Exception {
+    }
+
+    @Override
+    public void cleanUp() throws Exception {
+        if (used) {
+            miniCluster.cleanUp();
+        }
+    }
+
+    @Override
+    public void reset() throws Exception {
+        if (started) {
+            miniCluster.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LazyMiniCluster{name=" + name + ", started=" + started + ", used=" + used + "}";
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+
+/**
+ * Measures the {@link MiniClusterFootprint} of each mini cluster, to plan how many test forks
+ * fit on a machine.
+ *
+ * With -Dminicluster.footprint.enabled=true the resources of the JVM are snapshotted when the
+ * start() span of a mini cluster opens and when it closes, and the difference is attributed to
+ * that mini cluster. Retained heap comes from a class histogram of the live heap, which forces a
+ * full GC on both sides, -Dminicluster.footprint.heap=false skips it. MiniClusterStack starts
+ * its mini clusters one at a time while footprints are recorded so the windows do not overlap.
+ */
+public final class FootprintRecorder {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(FootprintRecorder.class);
+
+    public static final String ENABLED_PROPERTY = "minicluster.footprint.enabled";
+    public static final String HEAP_PROPERTY = "minicluster.footprint.heap";
+
+    // Classes listed per footprint
+    static final int TOP_CLASSES = 10;
+
+    private static final long MB = 1024L * 1024L;
+    private static final Pattern HISTOGRAM_LINE = Pattern.compile("^\\s*\\d+:\\s+\\d+\\s+(\\d+)\\s+(\\S+)");
+
+    private static final Map<MiniCluster, Snapshot> SNAPSHOTS = new IdentityHashMap<>();
+    private static final Map<MiniCluster, MiniClusterFootprint> FOOTPRINTS = new IdentityHashMap<>();
+
+    private FootprintRecorder() {
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    public static void beforeStart(MiniCluster miniCluster) {
+        Snapshot snapshot = new Snapshot();
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.put(miniCluster, snapshot);
+        }
+    }
+
+    /**
+     * Attributes everything that appeared since beforeStart() to the mini cluster. Returns null
+     * if no snapshot was taken.
+     */
+    public static MiniClusterFootprint afterStart(MiniCluster miniCluster) {
+        Snapshot before;
+        synchronized (SNAPSHOTS) {
+            before = SNAPSHOTS.remove(miniCluster);
+        }
+        if (before == null) {
+            return null;
+        }
+        Snapshot after = new Snapshot();
+
+        Set<Thread> known = Collections.newSetFromMap(new IdentityHashMap<>());
+        known.addAll(before.resources.getThreads());
+        Map<String, Integer> threads = new HashMap<>();
+        for (Thread thread : after.resources.getThreads()) {
+            if (!known.contains(thread)) {
+                threads.merge(threadGroupName(thread), 1, Integer::sum);
+            }
+        }
+
+        long retainedHeapBytes = -1L;
+        Map<String, Long> retainedHeapByClass = new HashMap<>();
+        if (before.heapBytes >= 0 && after.heapBytes >= 0) {
+            retainedHeapBytes = after.heapBytes - before.heapBytes;
+            for (Map.Entry<String, Long> entry : after.heapByClass.entrySet()) {
+                long growth = entry.getValue() - before.heapByClass.getOrDefault(entry.getKey(), 0L);
+                if (growth > 0) {
+                    retainedHeapByClass.put(entry.getKey(), growth);
+                }
+            }
+        }
+
+        List<Integer> ports = new ArrayList<>(after.listeningPorts);
+        ports.removeAll(before.listeningPorts);
+
+        MiniClusterFootprint footprint = new MiniClusterFootprint(
+                LifecycleTracer.componentName(miniCluster), LifecycleTracer.instanceId(miniCluster),
+                largestFirst(threads, Integer.MAX_VALUE), retainedHeapBytes,
+                largestFirst(retainedHeapByClass, TOP_CLASSES),
+                growth(before.resources.getOpenFileDescriptors(), after.resources.getOpenFileDescriptors()),
+                growth(before.resources.getDirectMemoryBytes(), after.resources.getDirectMemoryBytes()),
+                ports);
+        synchronized (FOOTPRINTS) {
+            FOOTPRINTS.put(miniCluster, footprint);
+        }
+        LOG.info("FOOTPRINT: {}", footprint);
+        return footprint;
+    }
+
+    /**
+     * Drops the snapshot of a start() that failed, nothing is attributed to the mini cluster.
+     */
+    public static void discard(MiniCluster miniCluster) {
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.remove(miniCluster);
+        }
+    }
+
+    /**
+     * The footprint of the last start() of the mini cluster, null if none was recorded.
+     */
+    public static MiniClusterFootprint get(MiniCluster miniCluster) {
+        synchronized (FOOTPRINTS) {
+            return FOOTPRINTS.get(miniCluster);
+        }
+    }
+
+    public static List<MiniClusterFootprint> getAll() {
+        synchronized (FOOTPRINTS) {
+            return new ArrayList<>(FOOTPRINTS.values());
+        }
+    }
+
+    public static void reset() {
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.clear();
+        }
+        synchronized (FOOTPRINTS) {
+            FOOTPRINTS.clear();
+        }
+    }
+
+    /**
+     * One line per named footprint and a total, for logs.
+     */
+    public static String formatSummary(Map<String, MiniClusterFootprint> footprints) {
+        String format = "%n%-24s %8s %10s %6s %10s  %s";
+        StringBuilder summary = new StringBuilder("Mini cluster footprints:");
+        summary.append(String.format(format, "name", "threads", "heap MB", "fds", "direct MB", "listening ports"));
+        int threads = 0;
+        long heapBytes = 0;
+        long fileDescriptors = 0;
+        long directMemoryBytes = 0;
+        for (Map.Entry<String, MiniClusterFootprint> entry : footprints.entrySet()) {
+            MiniClusterFootprint footprint = entry.getValue();
+            summary.append(String.format(format, entry.getKey(), footprint.getThreadCount(),
+                    megabytes(footprint.getRetainedHeapBytes()), footprint.getFileDescriptors(),
+                    megabytes(footprint.getDirectMemoryBytes()), footprint.getListeningPorts()));
+            threads += footprint.getThreadCount();
+            heapBytes += Math.max(0L, footprint.getRetainedHeapBytes());
+            fileDescriptors += footprint.getFileDescriptors();
+            directMemoryBytes += footprint.getDirectMemoryBytes();
+        }
+        summary.append(String.format(format, "total", threads, megabytes(heapBytes), fileDescriptors,
+                megabytes(directMemoryBytes), ""));
+        return summary.toString();
+    }
+
+    // Numbers tell pool members apart, e.g. qtp1234-17 and qtp1234-18 are both qtpN-N
+    static String threadGroupName(Thread thread) {
+        return thread.getName().replaceAll("\\d+", "N");
+    }
+
+    private static <V extends Comparable<V>> Map<String, V> largestFirst(Map<String, V> values, int limit) {
+        List<Map.Entry<String, V>> entries = new ArrayList<>(values.entrySet());
+        entries.sort((a, b) -> b.getValue().compareTo(a.getValue()));
+        Map<String, V> sorted = new LinkedHashMap<>();
+        for (Map.Entry<String, V> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            sorted.put(entry.getKey(), entry.getValue());
+        }
+        return sorted;
+    }
+
+    private static long growth(long before, long after) {
+        return before < 0 || after < 0 ? 0L : Math.max(0L, after - before);
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "n/a" : String.format("%.1f", bytes / (double) MB);
+    }
+
+    private static class Snapshot {
+        private final ResourceSnapshot resources;
+        private final Map<String, Long> heapByClass = new HashMap<>();
+        private final long heapBytes;
+        private final Set<Integer> listeningPorts;
+
+        Snapshot() {
+            this.heapBytes = Boolean.parseBoolean(System.getProperty(HEAP_PROPERTY, "true"))
+                    ? heapHistogram(heapByClass) : -1L;
+            this.resources = ResourceSnapshot.take();
+            this.listeningPorts = listeningPorts();
+        }
+    }
+
+    /**
+     * Fills the live bytes per class after a full GC and returns the total, or the used heap
+     * after System.gc() if the JVM has no class histogram command.
+     */
+    private static long heapHistogram(Map<String, Long> heapByClass) {
+        try {
+            String histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "gcClassHistogram",
+                    new Object[] {new String[0]}, new String[] {String[].class.getName()});
+            long total = 0;
+            for (String line : histogram.split("\n")) {
+                Matcher matcher = HISTOGRAM_LINE.matcher(line);
+                if (matcher.find()) {
+                    long bytes = Long.parseLong(matcher.group(1));
+                    heapByClass.merge(matcher.group(2), bytes, Long::sum);
+                    total += bytes;
+                }
+            }
+            return total;
+        } catch (Exception e) {
+            LOG.debug("FOOTPRINT: No class histogram, falling back to the used heap", e);
+            System.gc();
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    /**
+     * TCP ports this process listens on. Empty where /proc is not available.
+     */
+    static Set<Integer> listeningPorts() {
+        Set<String> socketInodes = new HashSet<>();
+        try (DirectoryStream<Path> fds = Files.newDirectoryStream(Paths.get("/proc/self/fd"))) {
+            for (Path fd : fds) {
+                try {
+                    String target = Files.readSymbolicLink(fd).toString();
+                    if (target.startsWith("socket:[")) {
+                        socketInodes.add(target.substring(8, target.length() - 1));
+                    }
+                } catch (IOException e) {
+                    // Closed while listing
+                }
+            }
+        } catch (IOException e) {
+            return Collections.emptySet();
+        }
+
+        Set<Integer> ports = new TreeSet<>();
+        for (String table : new String[] {"/proc/self/net/tcp", "/proc/self/net/tcp6"}) {
+            try {
+                List<String> lines = Files.readAllLines(Paths.get(table), StandardCharsets.UTF_8);
+                for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+                    String[] fields = line.trim().split("\\s+");
+                    // st 0A is LISTEN
+                    if (fields.length > 9 && "0A".equals(fields[3]) && socketInodes.contains(fields[9])) {
+                        String localAddress = fields[1];
+                        ports.add(Integer.parseInt(localAddress.substring(localAddress.indexOf(':') + 1), 16));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOG.debug("FOOTPRINT: Unable to read {}", table, e);
+            }
+        }
+        return ports;
+    }
+}
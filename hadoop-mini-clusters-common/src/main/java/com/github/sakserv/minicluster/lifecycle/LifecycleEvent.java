@@ -0,0 +1,97 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A completed lifecycle phase or sub-step of a single mini cluster instance.
+ */
+public class LifecycleEvent {
+
+    private final String component;
+    private final String instanceId;
+    private final String name;
+    private final int depth;
+    private final long threadId;
+    private final String threadName;
+    private final long startMicros;
+    private final long durationMicros;
+
+    LifecycleEvent(String component, String instanceId, String name, int depth, long threadId,
+                   String threadName, long startMicros, long durationMicros) {
+        this.component = component;
+        this.instanceId = instanceId;
+        this.name = name;
+        this.depth = depth;
+        this.threadId = threadId;
+        this.threadName = threadName;
+        this.startMicros = startMicros;
+        this.durationMicros = durationMicros;
+    }
+
+    /**
+     * Simple class name of the mini cluster, e.g. HbaseLocalCluster.
+     */
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * Identifies the mini cluster instance when more than one of a kind is running.
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Nesting level on the recording thread, 0 for the outermost phase.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getThreadId() {
+        return threadId;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Start time relative to the first use of the tracer in this JVM.
+     */
+    public long getStartMicros() {
+        return startMicros;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public long getDurationMillis() {
+        return TimeUnit.MICROSECONDS.toMillis(durationMicros);
+    }
+
+    @Override
+    public String toString() {
+        return instanceId + " " + name + " " + getDurationMillis() + " ms";
+    }
+}
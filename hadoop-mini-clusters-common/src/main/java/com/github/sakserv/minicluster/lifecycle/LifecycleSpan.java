@@ -0,0 +1,73 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import com.github.sakserv.minicluster.MiniCluster;
+
+/**
+ * An in-flight lifecycle phase, recorded when closed. Intended for try-with-resources.
+ */
+public class LifecycleSpan implements AutoCloseable {
+
+    private final MiniCluster owner;
+    private final String name;
+    private final int depth;
+    private final long startNanos;
+    private boolean succeeded;
+    private boolean closed;
+
+    LifecycleSpan(MiniCluster owner, String name, int depth, long startNanos) {
+        this.owner = owner;
+        this.name = name;
+        this.depth = depth;
+        this.startNanos = startNanos;
+    }
+
+    public MiniCluster getOwner() {
+        return owner;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Marks the phase as completed, start() calls it after its last statement. Only succeeded
+     * start() spans go into the startup history and the footprints.
+     */
+    public void succeeded() {
+        succeeded = true;
+    }
+
+    boolean isSucceeded() {
+        return succeeded;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            LifecycleTracer.end(this);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.util.JsonUtils;
+
+/**
+ * Records how long each mini cluster spends in configure/start/stop/cleanUp and in the
+ * sub-steps of those phases. Events are kept for the life of the JVM and can be exported
+ * as a Chrome trace (chrome://tracing or https://ui.perfetto.dev).
+ *
+ * Setting -Dminicluster.trace.file=target/minicluster-trace-%p.json writes the trace at JVM exit,
+ * %p is replaced by the process id so forked test JVMs do not overwrite each other.
+ * Completed start phases are also passed on to {@link StartupHistory}, and start and stop phases
+ * to {@link ResourceAuditor} and {@link FootprintRecorder} when they are enabled.
+ */
+public class LifecycleTracer {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(LifecycleTracer.class);
+
+    public static final String CONFIGURE = "configure";
+    public static final String START = "start";
+    public static final String STOP = "stop";
+    public static final String CLEAN_UP = "cleanUp";
+
+    public static final String TRACE_FILE_PROPERTY = "minicluster.trace.file";
+    public static final String MAX_EVENTS_PROPERTY = "minicluster.trace.max.events";
+
+    private static final int DEFAULT_MAX_EVENTS = 100000;
+
+    private static final long EPOCH_NANOS = System.nanoTime();
+    private static final Queue<LifecycleEvent> EVENTS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger EVENT_COUNT = new AtomicInteger();
+    private static final int MAX_EVENTS = Integer.getInteger(MAX_EVENTS_PROPERTY, DEFAULT_MAX_EVENTS);
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    static {
+        String traceFile = System.getProperty(TRACE_FILE_PROPERTY);
+        if (traceFile != null && !traceFile.trim().isEmpty()) {
+            Thread hook = new Thread(() -> {
+                try {
+                    writeChromeTrace(new File(traceFile.trim().replace("%p", processId())));
+                } catch (IOException e) {
+                    LOG.warn("TRACE: Failed to write lifecycle trace to {}", traceFile, e);
+                }
+            }, "minicluster-trace-writer");
+            Runtime.getRuntime().addShutdownHook(hook);
+        }
+    }
+
+    private LifecycleTracer() {
+    }
+
+    /**
+     * Opens a span for the given phase or sub-step. Spans opened while another span is open
+     * on the same thread are recorded as children of it.
+     */
+    public static LifecycleSpan span(MiniCluster owner, String name) {
+        if (START.equals(name) && ResourceAuditor.isEnabled()) {
+            ResourceAuditor.beforeStart(owner);
+        }
+        if (START.equals(name) && FootprintRecorder.isEnabled()) {
+            FootprintRecorder.beforeStart(owner);
+        }
+        int[] depth = DEPTH.get();
+        return new LifecycleSpan(owner, name, depth[0]++, System.nanoTime());
+    }
+
+    static void end(LifecycleSpan span) {
+        long endNanos = System.nanoTime();
+        int[] depth = DEPTH.get();
+        depth[0] = Math.max(0, depth[0] - 1);
+
+        Thread thread = Thread.currentThread();
+        LifecycleEvent event = new LifecycleEvent(
+                componentName(span.getOwner()),
+                instanceId(span.getOwner()),
+                span.getName(),
+                span.getDepth(),
+                thread.getId(),
+                thread.getName(),
+                TimeUnit.NANOSECONDS.toMicros(span.getStartNanos() - EPOCH_NANOS),
+                TimeUnit.NANOSECONDS.toMicros(endNanos - span.getStartNanos()));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("TRACE: {}", event);
+        }
+
+        if (EVENT_COUNT.incrementAndGet() > MAX_EVENTS) {
+            EVENT_COUNT.decrementAndGet();
+        } else {
+            EVENTS.add(event);
+        }
+
+        if (START.equals(event.getName()) && span.isSucceeded()) {
+            StartupHistory.record(event);
+            if (FootprintRecorder.isEnabled()) {
+                FootprintRecorder.afterStart(span.getOwner());
+            }
+        } else if (START.equals(event.getName()) && FootprintRecorder.isEnabled()) {
+            FootprintRecorder.discard(span.getOwner());
+        }
+        if (STOP.equals(event.getName()) && ResourceAuditor.isEnabled()) {
+            ResourceAuditor.afterStop(span.getOwner());
+        }
+    }
+
+    /**
+     * All recorded events, in completion order.
+     */
+    public static List<LifecycleEvent> getEvents() {
+        return new ArrayList<>(EVENTS);
+    }
+
+    /**
+     * Events recorded for a single mini cluster instance, in completion order.
+     */
+    public static List<LifecycleEvent> getEvents(MiniCluster owner) {
+        String instanceId = instanceId(owner);
+        List<LifecycleEvent> events = new ArrayList<>();
+        for (LifecycleEvent event : EVENTS) {
+            if (event.getInstanceId().equals(instanceId)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Duration in milliseconds of the most recent occurrence of each phase and sub-step of
+     * the given instance, in the order they started.
+     */
+    public static Map<String, Long> getTimings(MiniCluster owner) {
+        List<LifecycleEvent> events = getEvents(owner);
+        events.sort((a, b) -> Long.compare(a.getStartMicros(), b.getStartMicros()));
+        Map<String, Long> timings = new LinkedHashMap<>();
+        for (LifecycleEvent event : events) {
+            timings.remove(event.getName());
+            timings.put(event.getName(), event.getDurationMillis());
+        }
+        return timings;
+    }
+
+    /**
+     * Duration in milliseconds of the most recent occurrence of a phase or sub-step, or -1
+     * if it was never recorded.
+     */
+    public static long getDurationMillis(MiniCluster owner, String name) {
+        Long duration = getTimings(owner).get(name);
+        return duration == null ? -1L : duration;
+    }
+
+    public static void reset() {
+        EVENTS.clear();
+        EVENT_COUNT.set(0);
+    }
+
+    public static String toChromeTrace() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+
+        boolean first = true;
+        Map<Long, String> threadNames = new HashMap<>();
+        for (LifecycleEvent event : EVENTS) {
+            threadNames.put(event.getThreadId(), event.getThreadName());
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("\n{\"name\":").append(JsonUtils.quote(event.getName()))
+                    .append(",\"cat\":").append(JsonUtils.quote(event.getComponent()))
+                    .append(",\"ph\":\"X\"")
+                    .append(",\"ts\":").append(event.getStartMicros())
+                    .append(",\"dur\":").append(event.getDurationMicros())
+                    .append(",\"pid\":1")
+                    .append(",\"tid\":").append(event.getThreadId())
+                    .append(",\"args\":{\"component\":").append(JsonUtils.quote(event.getComponent()))
+                    .append(",\"instance\":").append(JsonUtils.quote(event.getInstanceId()))
+                    .append(",\"depth\":").append(event.getDepth())
+                    .append("}}");
+        }
+        for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":")
+                    .append(thread.getKey())
+                    .append(",\"args\":{\"name\":").append(JsonUtils.quote(thread.getValue()))
+                    .append("}}");
+        }
+        json.append("\n]}\n");
+        return json.toString();
+    }
+
+    public static void writeChromeTrace(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+            writer.write(toChromeTrace());
+        }
+        LOG.info("TRACE: Wrote {} lifecycle events to {}", EVENTS.size(), file.getAbsolutePath());
+    }
+
+    private static String processId() {
+        String jvmName = ManagementFactory.getRuntimeMXBean().getName();
+        int at = jvmName.indexOf('@');
+        return at > 0 ? jvmName.substring(0, at) : jvmName;
+    }
+
+    static String componentName(MiniCluster owner) {
+        if (owner == null) {
+            return "unknown";
+        }
+        String simpleName = owner.getClass().getSimpleName();
+        return simpleName.isEmpty() ? owner.getClass().getName() : simpleName;
+    }
+
+    static String instanceId(MiniCluster owner) {
+        return componentName(owner) + "@" + Integer.toHexString(System.identityHashCode(owner));
+    }
+
+    @Override
+    public String toString() {
+        return "LifecycleTracer";
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a started mini cluster costs: the threads, retained heap, file descriptors, direct memory
+ * and listening sockets that appeared during its start().
+ */
+public class MiniClusterFootprint {
+
+    private final String component;
+    private final String instanceId;
+    private final Map<String, Integer> threads;
+    private final long retainedHeapBytes;
+    private final Map<String, Long> retainedHeapByClass;
+    private final long fileDescriptors;
+    private final long directMemoryBytes;
+    private final List<Integer> listeningPorts;
+
+    public MiniClusterFootprint(String component, String instanceId, Map<String, Integer> threads,
+                                long retainedHeapBytes, Map<String, Long> retainedHeapByClass,
+                                long fileDescriptors, long directMemoryBytes, List<Integer> listeningPorts) {
+        this.component = component;
+        this.instanceId = instanceId;
+        this.threads = Collections.unmodifiableMap(threads);
+        this.retainedHeapBytes = retainedHeapBytes;
+        this.retainedHeapByClass = Collections.unmodifiableMap(retainedHeapByClass);
+        this.fileDescriptors = fileDescriptors;
+        this.directMemoryBytes = directMemoryBytes;
+        this.listeningPorts = Collections.unmodifiableList(listeningPorts);
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Number of new threads per name, with the numbers in the name replaced by N, largest first.
+     */
+    public Map<String, Integer> getThreads() {
+        return threads;
+    }
+
+    public int getThreadCount() {
+        int count = 0;
+        for (int threadsWithName : threads.values()) {
+            count += threadsWithName;
+        }
+        return count;
+    }
+
+    /**
+     * Growth of the live heap after a full GC, -1 if heap measurement was disabled.
+     */
+    public long getRetainedHeapBytes() {
+        return retainedHeapBytes;
+    }
+
+    /**
+     * The classes that grew the most, largest first. Empty without a heap histogram.
+     */
+    public Map<String, Long> getRetainedHeapByClass() {
+        return retainedHeapByClass;
+    }
+
+    public long getFileDescriptors() {
+        return fileDescriptors;
+    }
+
+    public long getDirectMemoryBytes() {
+        return directMemoryBytes;
+    }
+
+    public List<Integer> getListeningPorts() {
+        return listeningPorts;
+    }
+
+    @Override
+    public String toString() {
+        return "MiniClusterFootprint{component=" + component + ", threads=" + getThreadCount() +
+                ", retainedHeapBytes=" + retainedHeapBytes + ", fileDescriptors=" + fileDescriptors +
+                ", directMemoryBytes=" + directMemoryBytes + ", listeningPorts=" + listeningPorts + "}";
+    }
+}
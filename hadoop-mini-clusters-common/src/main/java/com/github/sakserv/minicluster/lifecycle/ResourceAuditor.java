@@ -0,0 +1,227 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+
+/**
+ * Finds threads, file descriptors and direct memory that a mini cluster still holds after stop().
+ *
+ * With -Dminicluster.audit.enabled=true a {@link ResourceSnapshot} is taken when the start()
+ * span of a mini cluster opens and compared with one taken when its stop() span closes. Threads
+ * started in between get -Dminicluster.audit.settle.ms (5 seconds by default) to exit before
+ * they are reported. With -Dminicluster.audit.reap=true leaked threads whose name contains one
+ * of -Dminicluster.audit.reap.threads are interrupted. Leaks are attributed by time window, so a
+ * mini cluster started while another one was starting may be blamed for its threads. While
+ * another mini cluster is still running the leaks are only reported, neither reaped nor marked
+ * as reported, since the threads may be that cluster's own.
+ */
+public final class ResourceAuditor {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceAuditor.class);
+
+    public static final String ENABLED_PROPERTY = "minicluster.audit.enabled";
+    public static final String SETTLE_MS_PROPERTY = "minicluster.audit.settle.ms";
+    public static final String REAP_PROPERTY = "minicluster.audit.reap";
+    public static final String REAP_THREADS_PROPERTY = "minicluster.audit.reap.threads";
+
+    public static final long DEFAULT_SETTLE_MS = 5000L;
+    public static final String DEFAULT_REAP_THREADS =
+            "kafka-mini-cluster,Curator-,-EventThread,-SendThread(,qtp,hive-metastore";
+
+    // Shared pools of this library and the JVM outlive every mini cluster by design
+    private static final List<String> IGNORED_THREAD_PREFIXES =
+            Arrays.asList("minicluster-", "ForkJoinPool.commonPool-");
+
+    private static final long POLL_MS = 100L;
+
+    private static final Map<MiniCluster, ResourceSnapshot> SNAPSHOTS = new IdentityHashMap<>();
+    private static final Set<Thread> REPORTED_THREADS = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final List<ResourceLeakReport> REPORTS = new CopyOnWriteArrayList<>();
+
+    private ResourceAuditor() {
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * Takes the snapshot stop() is compared with. A restart replaces the snapshot of the previous run.
+     */
+    public static void beforeStart(MiniCluster miniCluster) {
+        ResourceSnapshot snapshot = ResourceSnapshot.take();
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.put(miniCluster, snapshot);
+        }
+    }
+
+    /**
+     * Compares the resources held now with the snapshot of beforeStart(), reaps leaked threads
+     * if enabled and no other audit window is open, and logs the leaks. Returns null if no
+     * snapshot was taken.
+     */
+    public static ResourceLeakReport afterStop(MiniCluster miniCluster) {
+        ResourceSnapshot before;
+        boolean overlapping;
+        synchronized (SNAPSHOTS) {
+            before = SNAPSHOTS.remove(miniCluster);
+            overlapping = !SNAPSHOTS.isEmpty();
+        }
+        if (before == null) {
+            return null;
+        }
+
+        long deadline = System.currentTimeMillis() + Long.getLong(SETTLE_MS_PROPERTY, DEFAULT_SETTLE_MS);
+        List<Thread> leaked = newThreads(before);
+        while (!leaked.isEmpty() && System.currentTimeMillis() < deadline && sleep()) {
+            leaked = newThreads(before);
+        }
+
+        List<String> leakedNames = new ArrayList<>();
+        for (Thread thread : leaked) {
+            leakedNames.add(thread.getName());
+        }
+        List<String> reapedNames = new ArrayList<>();
+        if (overlapping) {
+            if (!leaked.isEmpty()) {
+                LOG.info("AUDIT: Other mini clusters are running, {} new threads are reported but not reaped",
+                        leaked.size());
+            }
+        } else {
+            if (Boolean.getBoolean(REAP_PROPERTY)) {
+                reapedNames = reap(leaked);
+            }
+            synchronized (REPORTED_THREADS) {
+                REPORTED_THREADS.addAll(leaked);
+            }
+        }
+
+        ResourceSnapshot after = ResourceSnapshot.take();
+        String component = LifecycleTracer.componentName(miniCluster);
+        ResourceLeakReport report = new ResourceLeakReport(component, LifecycleTracer.instanceId(miniCluster),
+                leakedNames, reapedNames,
+                growth(before.getOpenFileDescriptors(), after.getOpenFileDescriptors()),
+                growth(before.getDirectMemoryBytes(), after.getDirectMemoryBytes()));
+        REPORTS.add(report);
+
+        if (report.hasLeaks()) {
+            LOG.warn("AUDIT: {} left {} threads {} ({} reaped), {} file descriptors and {} KB of direct memory " +
+                    "behind after stop()", component, leakedNames.size(), leakedNames, reapedNames.size(),
+                    report.getLeakedFileDescriptors(), report.getLeakedDirectMemoryBytes() / 1024);
+        } else {
+            LOG.info("AUDIT: {} released its threads, file descriptors and direct memory", component);
+        }
+        return report;
+    }
+
+    /**
+     * Every report since the JVM started or since reset(), in stop order.
+     */
+    public static List<ResourceLeakReport> getReports() {
+        return new ArrayList<>(REPORTS);
+    }
+
+    public static void reset() {
+        REPORTS.clear();
+        synchronized (SNAPSHOTS) {
+            SNAPSHOTS.clear();
+        }
+    }
+
+    private static List<Thread> newThreads(ResourceSnapshot before) {
+        Set<Thread> known = Collections.newSetFromMap(new IdentityHashMap<>());
+        known.addAll(before.getThreads());
+        synchronized (REPORTED_THREADS) {
+            known.addAll(REPORTED_THREADS);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (Thread thread : ResourceSnapshot.liveThreads()) {
+            if (!known.contains(thread) && thread != Thread.currentThread() && !isIgnored(thread)) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private static boolean isIgnored(Thread thread) {
+        for (String prefix : IGNORED_THREAD_PREFIXES) {
+            if (thread.getName().startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Threads cannot be killed, interrupting is all a reaper can do
+    private static List<String> reap(List<Thread> leaked) {
+        List<String> patterns = Arrays.asList(
+                System.getProperty(REAP_THREADS_PROPERTY, DEFAULT_REAP_THREADS).split(","));
+        List<Thread> interrupted = new ArrayList<>();
+        for (Thread thread : leaked) {
+            for (String pattern : patterns) {
+                if (!pattern.trim().isEmpty() && thread.getName().contains(pattern.trim())) {
+                    LOG.info("AUDIT: Interrupting leaked thread {}", thread.getName());
+                    thread.interrupt();
+                    interrupted.add(thread);
+                    break;
+                }
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + Long.getLong(SETTLE_MS_PROPERTY, DEFAULT_SETTLE_MS);
+        List<String> reaped = new ArrayList<>();
+        for (Thread thread : interrupted) {
+            try {
+                thread.join(Math.max(1L, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (!thread.isAlive()) {
+                reaped.add(thread.getName());
+            }
+        }
+        return reaped;
+    }
+
+    private static long growth(long before, long after) {
+        return before < 0 || after < 0 ? 0L : Math.max(0L, after - before);
+    }
+
+    private static boolean sleep() {
+        try {
+            Thread.sleep(POLL_MS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
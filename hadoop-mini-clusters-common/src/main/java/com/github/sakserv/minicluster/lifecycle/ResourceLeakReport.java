@@ -0,0 +1,84 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a mini cluster left behind between its start() and the end of its stop().
+ */
+public class ResourceLeakReport {
+
+    private final String component;
+    private final String instanceId;
+    private final List<String> leakedThreads;
+    private final List<String> reapedThreads;
+    private final long leakedFileDescriptors;
+    private final long leakedDirectMemoryBytes;
+
+    public ResourceLeakReport(String component, String instanceId, List<String> leakedThreads,
+                              List<String> reapedThreads, long leakedFileDescriptors,
+                              long leakedDirectMemoryBytes) {
+        this.component = component;
+        this.instanceId = instanceId;
+        this.leakedThreads = Collections.unmodifiableList(leakedThreads);
+        this.reapedThreads = Collections.unmodifiableList(reapedThreads);
+        this.leakedFileDescriptors = leakedFileDescriptors;
+        this.leakedDirectMemoryBytes = leakedDirectMemoryBytes;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Names of the threads started after start() that were still alive after stop(), including
+     * the reaped ones.
+     */
+    public List<String> getLeakedThreads() {
+        return leakedThreads;
+    }
+
+    /**
+     * Names of the leaked threads that were interrupted and then exited.
+     */
+    public List<String> getReapedThreads() {
+        return reapedThreads;
+    }
+
+    public long getLeakedFileDescriptors() {
+        return leakedFileDescriptors;
+    }
+
+    public long getLeakedDirectMemoryBytes() {
+        return leakedDirectMemoryBytes;
+    }
+
+    public boolean hasLeaks() {
+        return !leakedThreads.isEmpty() || leakedFileDescriptors > 0 || leakedDirectMemoryBytes > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceLeakReport{component=" + component + ", leakedThreads=" + leakedThreads +
+                ", reapedThreads=" + reapedThreads + ", leakedFileDescriptors=" + leakedFileDescriptors +
+                ", leakedDirectMemoryBytes=" + leakedDirectMemoryBytes + "}";
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.io.File;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Live threads, open file descriptors and direct memory of the JVM at one point in time.
+ */
+public class ResourceSnapshot {
+
+    private final List<Thread> threads;
+    private final long openFileDescriptors;
+    private final long directMemoryBytes;
+
+    ResourceSnapshot(List<Thread> threads, long openFileDescriptors, long directMemoryBytes) {
+        this.threads = Collections.unmodifiableList(threads);
+        this.openFileDescriptors = openFileDescriptors;
+        this.directMemoryBytes = directMemoryBytes;
+    }
+
+    public static ResourceSnapshot take() {
+        return new ResourceSnapshot(liveThreads(), countOpenFileDescriptors(), directMemoryUsed());
+    }
+
+    public List<Thread> getThreads() {
+        return threads;
+    }
+
+    /**
+     * Open file descriptors of the process, -1 if the platform does not tell.
+     */
+    public long getOpenFileDescriptors() {
+        return openFileDescriptors;
+    }
+
+    /**
+     * Bytes held by direct ByteBuffers, -1 if the platform does not tell.
+     */
+    public long getDirectMemoryBytes() {
+        return directMemoryBytes;
+    }
+
+    static List<Thread> liveThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] threads = new Thread[root.activeCount() + 16];
+        int count;
+        while ((count = root.enumerate(threads, true)) == threads.length) {
+            threads = new Thread[threads.length * 2];
+        }
+        List<Thread> alive = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive()) {
+                alive.add(threads[i]);
+            }
+        }
+        return alive;
+    }
+
+    private static long countOpenFileDescriptors() {
+        String[] fds = new File("/proc/self/fd").list();
+        if (fds != null) {
+            return fds.length;
+        }
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+            return ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+        }
+        return -1L;
+    }
+
+    private static long directMemoryUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return -1L;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceSnapshot{threads=" + threads.size() + ", openFileDescriptors=" + openFileDescriptors +
+                ", directMemoryBytes=" + directMemoryBytes + "}";
+    }
+}
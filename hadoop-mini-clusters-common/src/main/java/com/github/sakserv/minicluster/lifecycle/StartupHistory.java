@@ -0,0 +1,267 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Appends the duration of every mini cluster start() to a JSON lines file when
+ * -Dminicluster.startup.history.file is set, and compares each start against a rolling baseline
+ * of the previous starts of the same component.
+ *
+ * A start regresses when it is more than minicluster.startup.history.threshold.percent (50) and
+ * minicluster.startup.history.min.regression.ms (500) slower than the median of the last
+ * minicluster.startup.history.baseline.size (10) starts. Regressions are only logged, a start()
+ * that already brought its cluster up does not fail. Run main() on a history file to check the
+ * latest start of every component and fail the build, e.g. from CI.
+ */
+public final class StartupHistory {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(StartupHistory.class);
+
+    public static final String HISTORY_FILE_PROPERTY = "minicluster.startup.history.file";
+    public static final String BASELINE_SIZE_PROPERTY = "minicluster.startup.history.baseline.size";
+    public static final String THRESHOLD_PERCENT_PROPERTY = "minicluster.startup.history.threshold.percent";
+    public static final String MIN_REGRESSION_MS_PROPERTY = "minicluster.startup.history.min.regression.ms";
+    public static final String COMPONENT_VERSION_PROPERTY = "hdp.release.version";
+
+    public static final int DEFAULT_BASELINE_SIZE = 10;
+    public static final int DEFAULT_THRESHOLD_PERCENT = 50;
+    public static final long DEFAULT_MIN_REGRESSION_MS = 500L;
+
+    // Bytes read from the end of the history file at first, doubled until the baseline is found
+    private static final int TAIL_BYTES = 64 * 1024;
+
+    private static final String RUN_ID = ManagementFactory.getRuntimeMXBean().getName() + "-" +
+            ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private StartupHistory() {
+    }
+
+    public static File getHistoryFile() {
+        String historyFile = System.getProperty(HISTORY_FILE_PROPERTY);
+        if (historyFile == null || historyFile.trim().isEmpty()) {
+            return null;
+        }
+        return new File(historyFile.trim());
+    }
+
+    /**
+     * Called by the tracer for every completed start span. A no-op unless the history file is set.
+     */
+    static void record(LifecycleEvent event) {
+        File historyFile = getHistoryFile();
+        if (historyFile == null) {
+            return;
+        }
+        StartupRecord record = new StartupRecord(System.currentTimeMillis(), RUN_ID, event.getComponent(),
+                event.getDurationMillis(), System.getProperty("java.version"),
+                System.getProperty(COMPONENT_VERSION_PROPERTY, "unknown"));
+
+        List<StartupRecord> history;
+        try {
+            history = append(historyFile, record, getBaselineSize());
+        } catch (IOException e) {
+            LOG.warn("STARTUPHISTORY: Unable to append to {}", historyFile, e);
+            return;
+        }
+
+        String regression = checkLatest(history, record.getComponent(), getBaselineSize(),
+                getThresholdPercent(), getMinRegressionMillis());
+        if (regression != null) {
+            LOG.warn("STARTUPHISTORY: {}", regression);
+        }
+    }
+
+    /**
+     * Appends the record under a file lock, parallel forks may share the history file. Returns
+     * up to baselineSize earlier starts of the same component followed by the new record, read
+     * from the end of the file.
+     */
+    static List<StartupRecord> append(File historyFile, StartupRecord record, int baselineSize)
+            throws IOException {
+        File parent = historyFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        try (FileChannel channel = FileChannel.open(historyFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+             FileLock lock = channel.lock()) {
+            List<StartupRecord> history = readTail(channel, record.getComponent(), baselineSize);
+            ByteBuffer buffer = ByteBuffer.wrap((record.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+            long position = channel.size();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            history.add(record);
+            return history;
+        }
+    }
+
+    /**
+     * The last count records of the component, oldest first. Reads a growing window from the end
+     * of the file, the whole file only when the component started fewer than count times.
+     */
+    static List<StartupRecord> readTail(FileChannel channel, String component, int count) throws IOException {
+        long size = channel.size();
+        long window = Math.min(TAIL_BYTES, size);
+        while (true) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) window);
+            long position = size - window;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            String[] lines = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).split("\n");
+            List<StartupRecord> records = new ArrayList<>();
+            // The first line of a window that does not start the file may be cut off
+            for (int i = position == 0 ? 0 : 1; i < lines.length; i++) {
+                StartupRecord record = StartupRecord.parse(lines[i]);
+                if (record != null && record.getComponent().equals(component)) {
+                    records.add(record);
+                }
+            }
+            if (records.size() >= count || window == size) {
+                return new ArrayList<>(records.subList(Math.max(0, records.size() - count), records.size()));
+            }
+            window = Math.min(window * 2, size);
+        }
+    }
+
+    /**
+     * All parseable records of the history file, oldest first.
+     */
+    public static List<StartupRecord> read(File historyFile) throws IOException {
+        List<StartupRecord> history = new ArrayList<>();
+        if (!historyFile.exists()) {
+            return history;
+        }
+        for (String line : Files.readAllLines(historyFile.toPath(), StandardCharsets.UTF_8)) {
+            StartupRecord record = StartupRecord.parse(line);
+            if (record != null) {
+                history.add(record);
+            }
+        }
+        return history;
+    }
+
+    /**
+     * Checks the latest start of every component in the history, returns one message per regression.
+     */
+    public static List<String> findRegressions(List<StartupRecord> history, int baselineSize,
+                                               int thresholdPercent, long minRegressionMillis) {
+        Map<String, Boolean> components = new LinkedHashMap<>();
+        for (StartupRecord record : history) {
+            components.put(record.getComponent(), Boolean.TRUE);
+        }
+        List<String> regressions = new ArrayList<>();
+        for (String component : components.keySet()) {
+            String regression = checkLatest(history, component, baselineSize, thresholdPercent,
+                    minRegressionMillis);
+            if (regression != null) {
+                regressions.add(regression);
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Compares the latest start of the component against the median of up to baselineSize starts
+     * before it. Returns null when there is no baseline yet or the start is within the threshold.
+     */
+    static String checkLatest(List<StartupRecord> history, String component, int baselineSize,
+                              int thresholdPercent, long minRegressionMillis) {
+        List<StartupRecord> records = new ArrayList<>();
+        for (StartupRecord record : history) {
+            if (record.getComponent().equals(component)) {
+                records.add(record);
+            }
+        }
+        if (records.size() < 2) {
+            return null;
+        }
+        StartupRecord latest = records.get(records.size() - 1);
+        List<Long> baseline = new ArrayList<>();
+        for (StartupRecord record : records.subList(Math.max(0, records.size() - 1 - baselineSize),
+                records.size() - 1)) {
+            baseline.add(record.getDurationMillis());
+        }
+        long median = median(baseline);
+        long slowdown = latest.getDurationMillis() - median;
+        if (slowdown < minRegressionMillis || slowdown * 100 <= median * thresholdPercent) {
+            return null;
+        }
+        return component + " started in " + latest.getDurationMillis() + " ms, the median of the last " +
+                baseline.size() + " starts is " + median + " ms (" + latest.getComponentVersion() + ", java " +
+                latest.getJavaVersion() + ")";
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int middle = sorted.size() / 2;
+        if (sorted.size() % 2 == 1) {
+            return sorted.get(middle);
+        }
+        return (sorted.get(middle - 1) + sorted.get(middle)) / 2;
+    }
+
+    private static int getBaselineSize() {
+        return Integer.getInteger(BASELINE_SIZE_PROPERTY, DEFAULT_BASELINE_SIZE);
+    }
+
+    private static int getThresholdPercent() {
+        return Integer.getInteger(THRESHOLD_PERCENT_PROPERTY, DEFAULT_THRESHOLD_PERCENT);
+    }
+
+    private static long getMinRegressionMillis() {
+        return Long.getLong(MIN_REGRESSION_MS_PROPERTY, DEFAULT_MIN_REGRESSION_MS);
+    }
+
+    /**
+     * Checks the latest start of every component in the given history file, exits with 1 on a
+     * regression.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: StartupHistory <history file>");
+            System.exit(2);
+        }
+        List<String> regressions = findRegressions(read(new File(args[0])), getBaselineSize(),
+                getThresholdPercent(), getMinRegressionMillis());
+        for (String regression : regressions) {
+            System.err.println("REGRESSION: " + regression);
+        }
+        System.exit(regressions.isEmpty() ? 0 : 1);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.github.sakserv.minicluster.lifecycle;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.github.sakserv.minicluster.util.JsonUtils;
+
+/**
+ * One line of the startup history: how long a start() of a mini cluster took, in which JVM
+ * and against which component version.
+ */
+public class StartupRecord {
+
+    private static final Pattern FIELD = Pattern.compile("\"(\\w+)\":(\"((?:[^\"\\\\]|\\\\.)*)\"|-?\\d+)");
+
+    private final long timestamp;
+    private final String runId;
+    private final String component;
+    private final long durationMillis;
+    private final String javaVersion;
+    private final String componentVersion;
+
+    public StartupRecord(long timestamp, String runId, String component, long durationMillis,
+                         String javaVersion, String componentVersion) {
+        this.timestamp = timestamp;
+        this.runId = runId;
+        this.component = component;
+        this.durationMillis = durationMillis;
+        this.javaVersion = javaVersion;
+        this.componentVersion = componentVersion;
+    }
+
+    /**
+     * Epoch millis at which the start() completed.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Identifies the JVM that recorded the start, records of one test run share it.
+     */
+    public String getRunId() {
+        return runId;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public String getJavaVersion() {
+        return javaVersion;
+    }
+
+    /**
+     * The hdp.release.version the mini clusters were built against, "unknown" outside of maven.
+     */
+    public String getComponentVersion() {
+        return componentVersion;
+    }
+
+    public String toJson() {
+        return "{\"timestamp\":" + timestamp +
+                ",\"runId\":" + JsonUtils.quote(runId) +
+                ",\"component\":" + JsonUtils.quote(component) +
+                ",\"durationMillis\":" + durationMillis +
+                ",\"javaVersion\":" + JsonUtils.quote(javaVersion) +
+                ",\"componentVersion\":" + JsonUtils.quote(componentVersion) + "}";
+    }
+
+    /**
+     * Parses a line written by toJson(), returns null for anything else.
+     */
+    public static StartupRecord parse(String line) {
+        Matcher matcher = FIELD.matcher(line);
+        Long timestamp = null;
+        Long durationMillis = null;
+        String runId = null;
+        String component = null;
+        String javaVersion = null;
+        String componentVersion = null;
+        while (matcher.find()) {
+            String value = matcher.group(3) != null ? unquote(matcher.group(3)) : matcher.group(2);
+            switch (matcher.group(1)) {
+                case "timestamp":
+                    timestamp = Long.parseLong(value);
+                    break;
+                case "runId":
+                    runId = value;
+                    break;
+                case "component":
+                    component = value;
+                    break;
+                case "durationMillis":
+                    durationMillis = Long.parseLong(value);
+                    break;
+                case "javaVersion":
+                    javaVersion = value;
+                    break;
+                case "componentVersion":
+                    componentVersion = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (timestamp == null || durationMillis == null || component == null) {
+            return null;
+        }
+        return new StartupRecord(timestamp, runId, component, durationMillis, javaVersion, componentVersion);
+    }
+
+    private static String unquote(String value) {
+        StringBuilder unquoted = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 'n':
+                        unquoted.append('\n');
+                        break;
+                    case 'r':
+                        unquoted.append('\r');
+                        break;
+                    case 't':
+                        unquoted.append('\t');
+                        break;
+                    case 'u':
+                        unquoted.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    default:
+                        unquoted.append(next);
+                }
+            } else {
+                unquoted.append(c);
+            }
+        }
+        return unquoted.toString();
+    }
+
+    @Override
+    public String toString() {
+        return component + " " + durationMillis + " ms (" + componentVersion + ", java " + javaVersion + ")";
+    }
+}
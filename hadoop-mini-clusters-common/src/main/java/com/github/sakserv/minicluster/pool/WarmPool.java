@@ -0,0 +1,290 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.pool;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.util.ShutdownUtils;
+
+/**
+ * Keeps started instances of a mini cluster ready and leases them out.
+ *
+ * The pool owns at most size instances, whether starting, ready, leased or being reset. A returned
+ * instance is reset() in the background and goes back to the pool, so a lease only waits for a
+ * start when an instance failed to start, failed to reset, or does not support reset(). Those are
+ * stopped and replaced in the background. The factory has to return a new, unstarted mini cluster
+ * with its own ports and dirs on every call.
+ */
+public class WarmPool<T extends MiniCluster> implements AutoCloseable {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(WarmPool.class);
+
+    public static final String SIZE_PROPERTY = "minicluster.warmpool.size";
+    public static final int DEFAULT_SIZE = 2;
+    public static final Duration DEFAULT_READY_TIMEOUT = Duration.ofMinutes(2);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "minicluster-warmpool-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final Callable<T> factory;
+    private final Integer size;
+    private final Duration readyTimeout;
+
+    private final LinkedBlockingDeque<T> ready = new LinkedBlockingDeque<>();
+    private final Set<T> leased = ConcurrentHashMap.newKeySet();
+    // Instances owned by the pool: starting, ready, leased and resetting
+    private final AtomicInteger owned = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile Exception lastFailure;
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getSize() {
+        return size;
+    }
+
+    public Duration getReadyTimeout() {
+        return readyTimeout;
+    }
+
+    public int getReadyCount() {
+        return ready.size();
+    }
+
+    public int getLeasedCount() {
+        return leased.size();
+    }
+
+    private WarmPool(Builder<T> builder) {
+        this.name = builder.name;
+        this.factory = builder.factory;
+        this.size = builder.size;
+        this.readyTimeout = builder.readyTimeout;
+    }
+
+    public static class Builder<T extends MiniCluster> {
+        private String name;
+        private Callable<T> factory;
+        private Integer size = Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE);
+        private Duration readyTimeout = DEFAULT_READY_TIMEOUT;
+
+        public Builder<T> setName(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder<T> setFactory(Callable<T> factory) {
+            this.factory = factory;
+            return this;
+        }
+
+        /**
+         * Instances owned by the pool, ready or leased, 2 unless -Dminicluster.warmpool.size is set.
+         */
+        public Builder<T> setSize(Integer size) {
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * How long a start and a lease wait for an instance to become ready.
+         */
+        public Builder<T> setReadyTimeout(Duration readyTimeout) {
+            this.readyTimeout = readyTimeout;
+            return this;
+        }
+
+        public WarmPool<T> build() {
+            WarmPool<T> warmPool = new WarmPool<>(this);
+            validateObject(warmPool);
+            return warmPool;
+        }
+
+        public void validateObject(WarmPool<T> warmPool) {
+            if (warmPool.name == null) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Warm Pool Name");
+            }
+            if (warmPool.factory == null) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Warm Pool Factory");
+            }
+            if (warmPool.size == null || warmPool.size < 1) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Warm Pool Size");
+            }
+        }
+    }
+
+    /**
+     * Starts filling the pool in the background.
+     */
+    public void start() {
+        refill();
+    }
+
+    /**
+     * Takes a ready instance, waiting up to the ready timeout when none is. While every instance
+     * is leased, this waits for one to be returned and reset.
+     */
+    public Lease<T> lease() throws Exception {
+        if (closed) {
+            throw new IllegalStateException("ERROR: Warm pool " + name + " is closed");
+        }
+        // Replaces instances whose start failed earlier
+        refill();
+        T miniCluster = ready.pollFirst(readyTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (miniCluster == null) {
+            TimeoutException e = new TimeoutException("ERROR: No " + name + " ready within " +
+                    readyTimeout.toMillis() + " ms");
+            if (lastFailure != null) {
+                e.addSuppressed(lastFailure);
+            }
+            throw e;
+        }
+        leased.add(miniCluster);
+        return new Lease<>(this, miniCluster);
+    }
+
+    /**
+     * Stops the ready instances, leased ones are stopped when they are returned.
+     */
+    @Override
+    public void close() throws Exception {
+        closed = true;
+        List<T> stopping = new ArrayList<>();
+        ready.drainTo(stopping);
+        owned.addAndGet(-stopping.size());
+        LOG.info("WARMPOOL: Stopping {} ready {}", stopping.size(), name);
+        ShutdownUtils.stopAll(readyTimeout, stopping);
+    }
+
+    private synchronized void refill() {
+        while (!closed && owned.get() < size) {
+            owned.incrementAndGet();
+            EXECUTOR.execute(this::startOne);
+        }
+    }
+
+    private void startOne() {
+        T miniCluster = null;
+        try {
+            long startNanos = System.nanoTime();
+            miniCluster = factory.call();
+            miniCluster.start();
+            miniCluster.awaitReady(readyTimeout);
+            LOG.info("WARMPOOL: Started a {} in {} ms", name,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            offer(miniCluster);
+        } catch (Exception e) {
+            LOG.warn("WARMPOOL: Unable to start a {}", name, e);
+            lastFailure = e;
+            if (miniCluster != null) {
+                stopQuietly(miniCluster);
+            }
+            owned.decrementAndGet();
+        }
+    }
+
+    private void release(T miniCluster) {
+        leased.remove(miniCluster);
+        if (closed) {
+            drop(miniCluster);
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            try {
+                long startNanos = System.nanoTime();
+                miniCluster.reset();
+                LOG.info("WARMPOOL: Reset a {} in {} ms", name,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            } catch (Exception e) {
+                LOG.warn("WARMPOOL: Unable to reset a {}, replacing it", name, e);
+                drop(miniCluster);
+                refill();
+                return;
+            }
+            offer(miniCluster);
+        });
+    }
+
+    private void offer(T miniCluster) {
+        ready.addLast(miniCluster);
+        // close() may have drained the pool in the meantime
+        if (closed && ready.remove(miniCluster)) {
+            drop(miniCluster);
+        }
+    }
+
+    private void drop(T miniCluster) {
+        stopQuietly(miniCluster);
+        owned.decrementAndGet();
+    }
+
+    private void stopQuietly(T miniCluster) {
+        try {
+            ShutdownUtils.stop(miniCluster, true, readyTimeout);
+        } catch (Exception e) {
+            LOG.warn("WARMPOOL: Unable to stop a {}", name, e);
+        }
+    }
+
+    /**
+     * A leased instance, closing the lease returns it to the pool.
+     */
+    public static final class Lease<T extends MiniCluster> implements AutoCloseable {
+
+        private final WarmPool<T> pool;
+        private final T miniCluster;
+        private boolean released;
+
+        private Lease(WarmPool<T> pool, T miniCluster) {
+            this.pool = pool;
+            this.miniCluster = miniCluster;
+        }
+
+        public T get() {
+            return miniCluster;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!released) {
+                released = true;
+                pool.release(miniCluster);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.registry;
+
+import com.github.sakserv.minicluster.MiniCluster;
+
+/**
+ * A lease on a cluster from the {@link SharedMiniClusterRegistry}. Release it (or close it)
+ * instead of stopping the cluster, other test classes may still be using it. Releasing deletes
+ * the data of the tenant.
+ */
+public class SharedMiniCluster<T extends MiniCluster> implements AutoCloseable {
+
+    private final SharedMiniClusterRegistry registry;
+    private final SharedMiniClusterRegistry.Entry entry;
+    private final T cluster;
+    private final Tenant tenant;
+    private boolean released;
+
+    SharedMiniCluster(SharedMiniClusterRegistry registry, SharedMiniClusterRegistry.Entry entry,
+                      T cluster, Tenant tenant) {
+        this.registry = registry;
+        this.entry = entry;
+        this.cluster = cluster;
+        this.tenant = tenant;
+    }
+
+    public T get() {
+        return cluster;
+    }
+
+    /**
+     * Names this lease should use for its data, so tenants of the same cluster never collide.
+     */
+    public Tenant getTenant() {
+        return tenant;
+    }
+
+    public synchronized boolean isReleased() {
+        return released;
+    }
+
+    public void release() {
+        synchronized (this) {
+            if (released) {
+                return;
+            }
+            released = true;
+        }
+        registry.release(entry, tenant);
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+
+    @Override
+    public String toString() {
+        return "SharedMiniCluster{cluster=" + cluster.getClass().getSimpleName() + ", tenant=" + tenant + "}";
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.registry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.config.ConfigFingerprint;
+
+/**
+ * JVM wide registry of running mini clusters, shared between test classes.
+ *
+ * A cluster is keyed by its effective configuration ({@link ConfigFingerprint}). The first
+ * acquire starts it, later acquires with an identical configuration get the running instance,
+ * and the cluster is stopped once the last lease is released and the linger time has passed
+ * without a new acquire. The linger time lets consecutive test classes in the same fork reuse
+ * the cluster, it defaults to 30 seconds and is set with -Dminicluster.registry.linger.ms.
+ * The first acquire starts the cluster outside the registry lock, so acquires of other clusters
+ * do not wait for it, later acquires of the same cluster do. Stops run outside the lock as well,
+ * a new instance of a cluster that is being stopped is started once that stop returned. Every
+ * lease gets a {@link Tenant}, created in the cluster on acquire and deleted on release.
+ * Clusters still running when the JVM exits are stopped by a shutdown hook.
+ */
+public class SharedMiniClusterRegistry {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(SharedMiniClusterRegistry.class);
+
+    public static final String LINGER_MS_PROPERTY = "minicluster.registry.linger.ms";
+    public static final long DEFAULT_LINGER_MS = 30000L;
+
+    private static final SharedMiniClusterRegistry INSTANCE =
+            new SharedMiniClusterRegistry(Long.getLong(LINGER_MS_PROPERTY, DEFAULT_LINGER_MS));
+
+    private final long lingerMillis;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<String, Entry> stopping = new HashMap<>();
+    private final AtomicInteger tenantCounter = new AtomicInteger();
+    private ScheduledExecutorService stopScheduler;
+    private Thread shutdownHook;
+
+    public SharedMiniClusterRegistry(long lingerMillis) {
+        this.lingerMillis = lingerMillis;
+    }
+
+    public static SharedMiniClusterRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public long getLingerMillis() {
+        return lingerMillis;
+    }
+
+    /**
+     * Returns a lease on a running cluster configured like the given one. If no such cluster
+     * is running, the given cluster is started and registered, otherwise it is discarded
+     * without being started and the lease points at the running instance.
+     */
+    public <T extends MiniCluster> SharedMiniCluster<T> acquire(T cluster) throws Exception {
+        return acquire(null, cluster);
+    }
+
+    /**
+     * Same as {@link #acquire(MiniCluster)}, with the tenant names derived from tenantName
+     * (typically the test class) instead of a generated one.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends MiniCluster> SharedMiniCluster<T> acquire(String tenantName, T cluster)
+            throws Exception {
+        String key = ConfigFingerprint.of(cluster);
+        Entry entry;
+        Entry previous = null;
+        boolean starting;
+        synchronized (this) {
+            entry = entries.get(key);
+            starting = entry == null;
+            if (starting) {
+                previous = stopping.get(key);
+                entry = new Entry(key, cluster);
+                entries.put(key, entry);
+                registerShutdownHook();
+            } else {
+                LOG.info("REGISTRY: Reusing shared {} ({} leases)", cluster.getClass().getSimpleName(),
+                        entry.refCount);
+                entry.cancelPendingStop();
+            }
+            entry.refCount++;
+        }
+
+        if (starting) {
+            if (previous != null) {
+                previous.stopped.join();
+            }
+            startEntry(entry);
+        } else {
+            awaitStarted(entry);
+        }
+
+        int tenantNumber = tenantCounter.incrementAndGet();
+        Tenant tenant = new Tenant(tenantName == null ? "tenant" : tenantName, tenantNumber);
+        try {
+            entry.cluster.createTenant(tenant);
+        } catch (Exception e) {
+            release(entry, null);
+            throw e;
+        }
+        return new SharedMiniCluster<>(this, entry, (T) entry.cluster, tenant);
+    }
+
+    /**
+     * Number of unreleased leases on the running cluster configured like the given one.
+     */
+    public synchronized int getReferenceCount(MiniCluster cluster) {
+        Entry entry = entries.get(ConfigFingerprint.of(cluster));
+        return entry == null ? 0 : entry.refCount;
+    }
+
+    public synchronized boolean isRunning(MiniCluster cluster) {
+        return entries.containsKey(ConfigFingerprint.of(cluster));
+    }
+
+    /**
+     * Stops every registered cluster in reverse start order, whether leases are held or not.
+     */
+    public void shutdown() {
+        List<Entry> running;
+        synchronized (this) {
+            running = new ArrayList<>(entries.values());
+            Collections.reverse(running);
+            for (Entry entry : running) {
+                entry.cancelPendingStop();
+                removeEntry(entry);
+            }
+            if (stopScheduler != null) {
+                stopScheduler.shutdownNow();
+                stopScheduler = null;
+            }
+        }
+        for (Entry entry : running) {
+            stopEntry(entry);
+        }
+    }
+
+    /**
+     * Deletes the data of the tenant outside the registry lock, then gives up the lease.
+     */
+    void release(Entry entry, Tenant tenant) {
+        if (tenant != null) {
+            try {
+                entry.cluster.deleteTenant(tenant);
+            } catch (Exception e) {
+                LOG.warn("REGISTRY: Unable to delete the data of {} in shared {}", tenant,
+                        entry.cluster.getClass().getSimpleName(), e);
+            }
+        }
+        releaseLease(entry);
+    }
+
+    private void releaseLease(Entry entry) {
+        synchronized (this) {
+            entry.refCount--;
+            if (entry.refCount > 0 || entries.get(entry.key) != entry) {
+                return;
+            }
+            if (lingerMillis > 0) {
+                LOG.info("REGISTRY: Last lease on {} released, stopping in {} ms unless acquired again",
+                        entry.cluster.getClass().getSimpleName(), lingerMillis);
+                entry.pendingStop = getStopScheduler().schedule(() -> stopIfUnused(entry),
+                        lingerMillis, TimeUnit.MILLISECONDS);
+                return;
+            }
+            removeEntry(entry);
+        }
+        stopEntry(entry);
+    }
+
+    private void stopIfUnused(Entry entry) {
+        synchronized (this) {
+            if (entry.refCount != 0 || entries.get(entry.key) != entry) {
+                return;
+            }
+            removeEntry(entry);
+        }
+        stopEntry(entry);
+    }
+
+    private void startEntry(Entry entry) throws Exception {
+        LOG.info("REGISTRY: Starting shared {}", entry.cluster.getClass().getSimpleName());
+        try {
+            entry.cluster.start();
+            entry.started.complete(null);
+        } catch (Exception e) {
+            synchronized (this) {
+                entries.remove(entry.key, entry);
+            }
+            entry.started.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private void awaitStarted(Entry entry) throws Exception {
+        try {
+            entry.started.get();
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                entry.refCount--;
+            }
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Unregisters the entry, the caller holds the lock and then calls stopEntry() without it.
+     */
+    private void removeEntry(Entry entry) {
+        entries.remove(entry.key);
+        stopping.put(entry.key, entry);
+    }
+
+    private void stopEntry(Entry entry) {
+        LOG.info("REGISTRY: Stopping shared {}", entry.cluster.getClass().getSimpleName());
+        try {
+            entry.cluster.stop(true);
+        } catch (Exception e) {
+            LOG.error("REGISTRY: Failed to stop shared {}", entry.cluster.getClass().getSimpleName(), e);
+        } finally {
+            synchronized (this) {
+                stopping.remove(entry.key, entry);
+            }
+            entry.stopped.complete(null);
+        }
+    }
+
+    private ScheduledExecutorService getStopScheduler() {
+        if (stopScheduler == null) {
+            stopScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "minicluster-registry-stopper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return stopScheduler;
+    }
+
+    private void registerShutdownHook() {
+        if (shutdownHook == null) {
+            shutdownHook = new Thread(this::shutdown, "minicluster-registry-shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    static class Entry {
+        private final String key;
+        private final MiniCluster cluster;
+        private final CompletableFuture<Void> started = new CompletableFuture<>();
+        private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+        private int refCount;
+        private ScheduledFuture<?> pendingStop;
+
+        Entry(String key, MiniCluster cluster) {
+            this.key = key;
+            this.cluster = cluster;
+        }
+
+        void cancelPendingStop() {
+            if (pendingStop != null) {
+                pendingStop.cancel(false);
+                pendingStop = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.registry;
+
+import java.util.Locale;
+
+/**
+ * Per lease names for the data a test writes into a shared cluster. The id only contains
+ * lower case letters, digits and underscores, so it is valid as an HBase namespace and a
+ * Hive database name as is. The mini clusters create and delete what the names point at,
+ * see MiniCluster.createTenant() and MiniCluster.deleteTenant().
+ */
+public class Tenant {
+
+    private final String id;
+
+    public Tenant(String name, int number) {
+        String sanitized = name.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_")
+                .replaceAll("^_+|_+$", "");
+        if (sanitized.isEmpty() || !Character.isLetter(sanitized.charAt(0))) {
+            sanitized = "t_" + sanitized;
+        }
+        this.id = sanitized + "_" + number;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getHdfsBasePath() {
+        return "/tenants/" + id;
+    }
+
+    public String getHdfsPath(String path) {
+        return getHdfsBasePath() + (path.startsWith("/") ? path : "/" + path);
+    }
+
+    public String getZookeeperChroot() {
+        return "/tenants/" + id;
+    }
+
+    public String getZookeeperConnectionString(String connectionString) {
+        return connectionString + getZookeeperChroot();
+    }
+
+    public String getKafkaTopic(String topic) {
+        return id + "-" + topic;
+    }
+
+    public String getHbaseNamespace() {
+        return id;
+    }
+
+    public String getHbaseTableName(String table) {
+        return id + ":" + table;
+    }
+
+    public String getHiveDatabase() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return "Tenant{id=" + id + "}";
+    }
+}
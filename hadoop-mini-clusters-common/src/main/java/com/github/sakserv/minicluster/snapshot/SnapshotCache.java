@@ -0,0 +1,228 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.config.ConfigFingerprint;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.util.FileUtils;
+
+/**
+ * Content addressed cache of freshly initialized mini cluster data directories (a formatted
+ * HDFS, a Derby metastore with its schema, ...). The first run captures the directory after
+ * initialization, later runs with the same key restore it instead of initializing again.
+ *
+ * Snapshots live in ~/.hadoop-mini-clusters/snapshots unless -Dminicluster.snapshot.dir is set,
+ * and are shared by every project and fork on the machine.
+ */
+public class SnapshotCache {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(SnapshotCache.class);
+
+    public static final String ENABLED_PROPERTY = "minicluster.snapshot.enabled";
+    public static final String DIR_PROPERTY = "minicluster.snapshot.dir";
+
+    static final String COMPLETE_MARKER = ".snapshot-complete";
+    static final String DATA_DIR = "data";
+
+    private static final String[] DEFAULT_EXCLUDES = {"in_use.lock", "*.lck"};
+
+    private final File root;
+
+    public SnapshotCache() {
+        this(defaultRoot());
+    }
+
+    public SnapshotCache(File root) {
+        this.root = root;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Snapshots are used when the builder enabled them, or when the builder left the setting
+     * unset and -Dminicluster.snapshot.enabled=true.
+     */
+    public static boolean isEnabled(Boolean builderValue) {
+        return ConfigProfiles.isEnabled(builderValue, ENABLED_PROPERTY);
+    }
+
+    /**
+     * Derives a cache key from everything that shapes the initialized state. The HDP release
+     * version is always part of the key, so a profile switch never restores an old layout.
+     */
+    public static String key(Object... parts) {
+        StringBuilder descriptor = new StringBuilder();
+        descriptor.append("hdp.release.version=").append(System.getProperty("hdp.release.version"));
+        for (Object part : parts) {
+            descriptor.append('\n').append(part);
+        }
+        return ConfigFingerprint.sha256Hex(descriptor.toString());
+    }
+
+    public boolean contains(String key) {
+        return new File(new File(root, key), COMPLETE_MARKER).isFile();
+    }
+
+    /**
+     * Copies the source directory into the cache. Lock files are skipped. The snapshot only
+     * becomes visible once it is complete, so a concurrent fork never restores a partial copy.
+     *
+     * @return true if this call stored the snapshot
+     */
+    public boolean capture(String key, File source, String... excludes) throws IOException {
+        if (contains(key)) {
+            return false;
+        }
+        long startNanos = System.nanoTime();
+        Files.createDirectories(root.toPath());
+        Path staging = root.toPath().resolve(".tmp-" + key + "-" + UUID.randomUUID());
+        try {
+            List<PathMatcher> excludeMatchers = matchers(DEFAULT_EXCLUDES);
+            excludeMatchers.addAll(matchers(excludes));
+            copyTree(source.toPath(), staging.resolve(DATA_DIR), excludeMatchers, new ArrayList<>());
+            Files.write(staging.resolve(COMPLETE_MARKER),
+                    source.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+
+            Path target = root.toPath().resolve(key);
+            try {
+                Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | AtomicMoveNotSupportedException e) {
+                LOG.info("SNAPSHOT: Snapshot {} was stored concurrently, discarding this copy", key);
+                return false;
+            } catch (IOException e) {
+                // A non-empty target directory reports a generic IOException on some platforms
+                if (contains(key)) {
+                    return false;
+                }
+                throw e;
+            }
+            LOG.info("SNAPSHOT: Captured {} as {} in {} ms", source, key,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            return true;
+        } finally {
+            if (Files.exists(staging)) {
+                FileUtils.deleteFolder(staging.toString(), true);
+            }
+        }
+    }
+
+    /**
+     * Replaces the target directory with the snapshot. Files matching one of the link globs
+     * are hardlinked instead of copied, which is only safe for files that are never modified
+     * in place (HDFS fsimage files, for example).
+     *
+     * @return false if the cache holds no snapshot for the key
+     */
+    public boolean restore(String key, File target, String... linkGlobs) throws IOException {
+        if (!contains(key)) {
+            return false;
+        }
+        long startNanos = System.nanoTime();
+        if (target.exists()) {
+            FileUtils.deleteFolder(target.getAbsolutePath(), true);
+        }
+        copyTree(root.toPath().resolve(key).resolve(DATA_DIR), target.toPath(),
+                new ArrayList<>(), matchers(linkGlobs));
+        LOG.info("SNAPSHOT: Restored {} into {} in {} ms", key, target,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return true;
+    }
+
+    private static void copyTree(Path source, Path target, List<PathMatcher> excludes,
+                                 List<PathMatcher> links) throws IOException {
+        boolean[] linksSupported = {!links.isEmpty()};
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (matches(excludes, file)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                Path destination = target.resolve(source.relativize(file).toString());
+                if (linksSupported[0] && matches(links, file)) {
+                    try {
+                        Files.createLink(destination, file);
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        // Different file systems or no hardlink support, copy from now on
+                        linksSupported[0] = false;
+                    }
+                }
+                Files.copy(file, destination, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path file) {
+        Path fileName = file.getFileName();
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PathMatcher> matchers(String... globs) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String glob : globs) {
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob));
+        }
+        return matchers;
+    }
+
+    private static File defaultRoot() {
+        String dir = System.getProperty(DIR_PROPERTY);
+        if (dir != null && !dir.trim().isEmpty()) {
+            return new File(dir.trim());
+        }
+        return new File(System.getProperty("user.home"), ".hadoop-mini-clusters/snapshots");
+    }
+
+    @Override
+    public String toString() {
+        return "SnapshotCache{root=" + root + "}";
+    }
+}
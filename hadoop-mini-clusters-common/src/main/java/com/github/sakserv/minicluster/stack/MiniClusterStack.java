@@ -0,0 +1,631 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.stack;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.lifecycle.FootprintRecorder;
+import com.github.sakserv.minicluster.lifecycle.MiniClusterFootprint;
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.util.ShutdownUtils;
+
+/**
+ * Starts a set of mini clusters according to their declared dependencies.
+ *
+ * Mini clusters that do not depend on each other are started concurrently,
+ * and are stopped in reverse dependency order, again concurrently where possible. Each stop
+ * has a deadline after which the mini cluster is forced down, and data dirs are deleted in
+ * the background instead of holding up the dependencies still to be stopped.
+ * Components that mutate JVM wide state (system properties such as test.build.data)
+ * should declare a dependency on each other so they are not started at the same time.
+ * While footprints are recorded (see {@link FootprintRecorder}) mini clusters are started one at
+ * a time, and the footprints are logged when the stack stops.
+ */
+public class MiniClusterStack implements MiniCluster {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(MiniClusterStack.class);
+
+    public static final Duration DEFAULT_READY_TIMEOUT = Duration.ofMinutes(2);
+    public static final Duration DEFAULT_STOP_TIMEOUT = Duration.ofMinutes(1);
+
+    private final Map<String, Node> nodes;
+    private final List<Node> startOrder;
+    private final Integer numThreads;
+    private final Duration readyTimeout;
+    private final Duration stopTimeout;
+
+    private long startedAtNanos;
+    private long startupMillis;
+
+    private MiniClusterStack(Builder builder) {
+        this.nodes = new LinkedHashMap<>();
+        for (Map.Entry<String, MiniCluster> entry : builder.clusters.entrySet()) {
+            nodes.put(entry.getKey(), new Node(entry.getKey(), entry.getValue()));
+        }
+        for (Map.Entry<String, List<String>> entry : builder.dependencies.entrySet()) {
+            Node node = nodes.get(entry.getKey());
+            for (String dependency : entry.getValue()) {
+                Node dependencyNode = nodes.get(dependency);
+                if (dependencyNode != null) {
+                    node.dependencies.add(dependencyNode);
+                    dependencyNode.dependents.add(node);
+                }
+            }
+        }
+        this.numThreads = builder.numThreads;
+        this.readyTimeout = builder.readyTimeout;
+        this.stopTimeout = builder.stopTimeout;
+        this.startOrder = sortTopologically(nodes.values());
+    }
+
+    public Integer getNumThreads() {
+        return numThreads;
+    }
+
+    public Duration getReadyTimeout() {
+        return readyTimeout;
+    }
+
+    public Duration getStopTimeout() {
+        return stopTimeout;
+    }
+
+    public List<String> getClusterNames() {
+        return Collections.unmodifiableList(new ArrayList<>(nodes.keySet()));
+    }
+
+    public MiniCluster getCluster(String name) {
+        Node node = nodes.get(name);
+        return (node == null) ? null : node.cluster;
+    }
+
+    public List<String> getDependencies(String name) {
+        List<String> dependencies = new ArrayList<>();
+        Node node = nodes.get(name);
+        if (node != null) {
+            for (Node dependency : node.dependencies) {
+                dependencies.add(dependency.name);
+            }
+        }
+        return dependencies;
+    }
+
+    public List<String> getStartOrder() {
+        List<String> order = new ArrayList<>();
+        for (Node node : startOrder) {
+            order.add(node.name);
+        }
+        return order;
+    }
+
+    public static class Builder {
+        private final Map<String, MiniCluster> clusters = new LinkedHashMap<>();
+        private final Map<String, List<String>> dependencies = new LinkedHashMap<>();
+        private Integer numThreads;
+        private Duration readyTimeout = DEFAULT_READY_TIMEOUT;
+        private Duration stopTimeout = DEFAULT_STOP_TIMEOUT;
+
+        public Builder addCluster(String name, MiniCluster miniCluster, String... dependsOn) {
+            if (clusters.containsKey(name)) {
+                throw new IllegalArgumentException("ERROR: Duplicate mini cluster name: " + name);
+            }
+            clusters.put(name, miniCluster);
+            dependencies.put(name, new ArrayList<>(Arrays.asList(dependsOn)));
+            return this;
+        }
+
+        public Builder addDependency(String name, String dependsOn) {
+            if (!dependencies.containsKey(name)) {
+                throw new IllegalArgumentException("ERROR: Unknown mini cluster name: " + name);
+            }
+            dependencies.get(name).add(dependsOn);
+            return this;
+        }
+
+        public Builder setNumThreads(Integer numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * How long a mini cluster may take to become ready after start() returned, before its
+         * dependents are started. Defaults to 2 minutes.
+         */
+        public Builder setReadyTimeout(Duration readyTimeout) {
+            this.readyTimeout = readyTimeout;
+            return this;
+        }
+
+        /**
+         * How long a single mini cluster may take to stop before forceStop() is called.
+         * Defaults to 1 minute.
+         */
+        public Builder setStopTimeout(Duration stopTimeout) {
+            this.stopTimeout = stopTimeout;
+            return this;
+        }
+
+        public MiniClusterStack build() {
+            validateObject();
+            return new MiniClusterStack(this);
+        }
+
+        public void validateObject() {
+            if (clusters.isEmpty()) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Mini Clusters");
+            }
+
+            for (Map.Entry<String, MiniCluster> entry : clusters.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) {
+                    throw new IllegalArgumentException("ERROR: Missing required config: Mini Cluster " +
+                            entry.getKey());
+                }
+            }
+
+            for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+                for (String dependency : entry.getValue()) {
+                    if (!clusters.containsKey(dependency)) {
+                        throw new IllegalArgumentException("ERROR: " + entry.getKey() +
+                                " depends on unknown mini cluster: " + dependency);
+                    }
+                    if (dependency.equals(entry.getKey())) {
+                        throw new IllegalArgumentException("ERROR: " + entry.getKey() + " depends on itself");
+                    }
+                }
+            }
+
+            if (readyTimeout == null) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Ready Timeout");
+            }
+
+            if (stopTimeout == null) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Stop Timeout");
+            }
+
+            if (numThreads != null && numThreads < 1) {
+                throw new IllegalArgumentException("ERROR: Number of threads must be positive: " + numThreads);
+            }
+
+            // Kahn's algorithm, anything left over is part of a cycle
+            Map<String, Integer> inDegree = new HashMap<>();
+            for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+                inDegree.put(entry.getKey(), entry.getValue().size());
+            }
+            List<String> ready = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
+                if (entry.getValue() == 0) {
+                    ready.add(entry.getKey());
+                }
+            }
+            int visited = 0;
+            while (!ready.isEmpty()) {
+                String name = ready.remove(ready.size() - 1);
+                visited++;
+                for (Map.Entry<String, List<String>> entry : dependencies.entrySet()) {
+                    for (String dependency : entry.getValue()) {
+                        if (dependency.equals(name) && inDegree.merge(entry.getKey(), -1, Integer::sum) == 0) {
+                            ready.add(entry.getKey());
+                        }
+                    }
+                }
+            }
+            if (visited != clusters.size()) {
+                throw new IllegalArgumentException("ERROR: Mini cluster dependencies contain a cycle");
+            }
+        }
+    }
+
+    @Override
+    public void start() throws Exception {
+        LOG.info("STACK: Starting {} mini clusters: {}", nodes.size(), getStartOrder());
+        startedAtNanos = System.nanoTime();
+
+        // Overlapping starts would blur the footprint of each mini cluster
+        ExecutorService executor = FootprintRecorder.isEnabled()
+                ? newExecutor("minicluster-stack-start", 1)
+                : newExecutor("minicluster-stack-start");
+        Map<Node, CompletableFuture<Void>> futures = new HashMap<>();
+        try {
+            for (Node node : startOrder) {
+                List<CompletableFuture<Void>> dependencyFutures = new ArrayList<>();
+                for (Node dependency : node.dependencies) {
+                    dependencyFutures.add(futures.get(dependency));
+                }
+                CompletableFuture<Void> future = CompletableFuture
+                        .allOf(dependencyFutures.toArray(new CompletableFuture[0]))
+                        .thenRunAsync(() -> startNode(node), executor);
+                futures.put(node, future);
+            }
+
+            try {
+                CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).get();
+            } catch (ExecutionException e) {
+                Exception failure = unwrap(e);
+                LOG.error("STACK: Failed to start mini clusters, stopping the ones already started", failure);
+                try {
+                    stop(true);
+                } catch (Exception stopFailure) {
+                    failure.addSuppressed(stopFailure);
+                }
+                throw failure;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+        LOG.info("STACK: Started {} mini clusters in {} ms (sum of individual startups {} ms)",
+                nodes.size(), startupMillis, getSumOfStartupMillis());
+        LOG.info("STACK: Critical path ({} ms): {}", getCriticalPathMillis(), describeCriticalPath());
+    }
+
+    @Override
+    public void stop() throws Exception {
+        stop(true);
+    }
+
+    @Override
+    public void stop(boolean cleanUp) throws Exception {
+        Map<String, MiniClusterFootprint> footprints = getFootprints();
+        if (!footprints.isEmpty()) {
+            LOG.info("STACK: {}", FootprintRecorder.formatSummary(footprints));
+        }
+        LOG.info("STACK: Stopping mini clusters");
+        long stopStartNanos = System.nanoTime();
+
+        List<Node> stopOrder = new ArrayList<>(startOrder);
+        Collections.reverse(stopOrder);
+
+        ExecutorService executor = newExecutor("minicluster-stack-stop");
+        Map<Node, CompletableFuture<Void>> futures = new HashMap<>();
+        List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+        try {
+            for (Node node : stopOrder) {
+                List<CompletableFuture<Void>> dependentFutures = new ArrayList<>();
+                for (Node dependent : node.dependents) {
+                    dependentFutures.add(futures.get(dependent));
+                }
+                // A dependent failing to stop must not keep its dependencies running
+                CompletableFuture<Void> future = CompletableFuture
+                        .allOf(dependentFutures.toArray(new CompletableFuture[0]))
+                        .handle((ignored, throwable) -> null)
+                        .thenRunAsync(() -> {
+                            try {
+                                stopNode(node, cleanUp);
+                            } catch (Exception e) {
+                                failures.add(e);
+                            }
+                        }, executor);
+                futures.put(node, future);
+            }
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOG.info("STACK: Stopped mini clusters in {} ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopStartNanos));
+
+        if (!failures.isEmpty()) {
+            Exception failure = failures.get(0);
+            for (int i = 1; i < failures.size(); i++) {
+                failure.addSuppressed(failures.get(i));
+            }
+            throw failure;
+        }
+    }
+
+    /**
+     * True if every mini cluster in the stack is started and ready.
+     */
+    @Override
+    public boolean isReady() throws Exception {
+        for (Node node : startOrder) {
+            if (!node.started || !node.cluster.isReady()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forces down every mini cluster that has not been stopped yet. The first failure is thrown
+     * once all were tried, the rest suppressed.
+     */
+    @Override
+    public void forceStop() throws Exception {
+        Exception failure = null;
+        for (Node node : startOrder) {
+            if (node.started) {
+                node.started = false;
+                try {
+                    node.cluster.forceStop();
+                } catch (Exception e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Creates the tenant in every mini cluster, in start order.
+     */
+    @Override
+    public void createTenant(Tenant tenant) throws Exception {
+        for (Node node : startOrder) {
+            node.cluster.createTenant(tenant);
+        }
+    }
+
+    /**
+     * Deletes the tenant from every mini cluster, in reverse start order. The first failure is
+     * thrown once all were tried, the rest suppressed.
+     */
+    @Override
+    public void deleteTenant(Tenant tenant) throws Exception {
+        Exception failure = null;
+        List<Node> stopOrder = new ArrayList<>(startOrder);
+        Collections.reverse(stopOrder);
+        for (Node node : stopOrder) {
+            try {
+                node.cluster.deleteTenant(tenant);
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void configure() throws Exception {
+        for (Node node : startOrder) {
+            node.cluster.configure();
+        }
+    }
+
+    @Override
+    public void cleanUp() throws Exception {
+        for (Node node : startOrder) {
+            node.cluster.cleanUp();
+        }
+    }
+
+    /**
+     * Wall clock time of the last start(), in milliseconds.
+     */
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    /**
+     * Time spent in start() and awaitReady() of a single mini cluster, in milliseconds.
+     */
+    public long getStartupMillis(String name) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            throw new IllegalArgumentException("ERROR: Unknown mini cluster name: " + name);
+        }
+        return node.getDurationMillis();
+    }
+
+    /**
+     * Footprints recorded by {@link FootprintRecorder} for the last start(), in start order.
+     */
+    public Map<String, MiniClusterFootprint> getFootprints() {
+        Map<String, MiniClusterFootprint> footprints = new LinkedHashMap<>();
+        for (Node node : startOrder) {
+            MiniClusterFootprint footprint = FootprintRecorder.get(node.cluster);
+            if (footprint != null) {
+                footprints.put(node.name, footprint);
+            }
+        }
+        return footprints;
+    }
+
+    public long getSumOfStartupMillis() {
+        long sum = 0;
+        for (Node node : startOrder) {
+            sum += node.getDurationMillis();
+        }
+        return sum;
+    }
+
+    /**
+     * The chain of mini clusters that determined the total startup time of the last start(),
+     * from the first one started to the last one finished.
+     */
+    public List<String> getCriticalPath() {
+        List<String> path = new ArrayList<>();
+        Node current = null;
+        for (Node node : startOrder) {
+            if (node.started && (current == null || node.endNanos > current.endNanos)) {
+                current = node;
+            }
+        }
+        while (current != null) {
+            path.add(0, current.name);
+            Node gate = null;
+            for (Node dependency : current.dependencies) {
+                if (gate == null || dependency.endNanos > gate.endNanos) {
+                    gate = dependency;
+                }
+            }
+            current = gate;
+        }
+        return path;
+    }
+
+    public long getCriticalPathMillis() {
+        long total = 0;
+        for (String name : getCriticalPath()) {
+            total += nodes.get(name).getDurationMillis();
+        }
+        return total;
+    }
+
+    private String describeCriticalPath() {
+        StringBuilder description = new StringBuilder();
+        for (String name : getCriticalPath()) {
+            if (description.length() > 0) {
+                description.append(" -> ");
+            }
+            description.append(name).append(" (").append(nodes.get(name).getDurationMillis()).append(" ms)");
+        }
+        return description.toString();
+    }
+
+    private void startNode(Node node) {
+        LOG.info("STACK: Starting {}", node.name);
+        node.startNanos = System.nanoTime();
+        try {
+            // A previous stop may still be deleting the same data dirs
+            ShutdownUtils.awaitCleanUp(node.cluster, stopTimeout);
+            try {
+                node.cluster.start();
+            } catch (Exception e) {
+                forceStopFailedStart(node, e);
+                throw e;
+            }
+            node.started = true;
+            // Dependents are only started once this mini cluster is usable
+            node.cluster.awaitReady(readyTimeout);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            node.endNanos = System.nanoTime();
+        }
+        LOG.info("STACK: Started {} in {} ms", node.name, node.getDurationMillis());
+    }
+
+    // A failed start() can leave daemons, threads and ports behind that stop() never reaches
+    private void forceStopFailedStart(Node node, Exception failure) {
+        LOG.warn("STACK: {} failed to start, forcing it down", node.name);
+        try {
+            node.cluster.forceStop();
+            node.cluster.cleanUp();
+        } catch (Exception e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void stopNode(Node node, boolean cleanUp) throws Exception {
+        if (!node.started) {
+            return;
+        }
+        LOG.info("STACK: Stopping {}", node.name);
+        node.started = false;
+        ShutdownUtils.stop(node.cluster, cleanUp, stopTimeout);
+    }
+
+    private ExecutorService newExecutor(String threadNamePrefix) {
+        return newExecutor(threadNamePrefix, (numThreads == null) ? nodes.size() : numThreads);
+    }
+
+    private ExecutorService newExecutor(String threadNamePrefix, int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadNamePrefix + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        return e;
+    }
+
+    private static List<Node> sortTopologically(Iterable<Node> nodes) {
+        List<Node> sorted = new ArrayList<>();
+        Map<Node, Boolean> visited = new HashMap<>();
+        for (Node node : nodes) {
+            visit(node, visited, sorted);
+        }
+        return sorted;
+    }
+
+    private static void visit(Node node, Map<Node, Boolean> visited, List<Node> sorted) {
+        if (visited.containsKey(node)) {
+            return;
+        }
+        visited.put(node, Boolean.TRUE);
+        for (Node dependency : node.dependencies) {
+            visit(dependency, visited, sorted);
+        }
+        sorted.add(node);
+    }
+
+    private static class Node {
+        private final String name;
+        private final MiniCluster cluster;
+        private final List<Node> dependencies = new ArrayList<>();
+        private final List<Node> dependents = new ArrayList<>();
+        private volatile boolean started;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        Node(String name, MiniCluster cluster) {
+            this.name = name;
+            this.cluster = cluster;
+        }
+
+        long getDurationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        }
+    }
+}
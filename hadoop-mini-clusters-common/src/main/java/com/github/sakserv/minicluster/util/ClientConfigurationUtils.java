@@ -0,0 +1,101 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.util;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+
+/**
+ * Reads the settings clients need from the getters of a running mini cluster, for handing them to
+ * another JVM.
+ */
+public final class ClientConfigurationUtils {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(ClientConfigurationUtils.class);
+
+    // Keys of scalar getters, getZookeeperPort() becomes minicluster.zookeeperPort
+    public static final String GETTER_PREFIX = "minicluster.";
+
+    // Longer keys and values are dropped, DataOutput.writeUTF() is limited to 64k bytes
+    static final int MAX_LENGTH = 16384;
+
+    private ClientConfigurationUtils() {
+    }
+
+    /**
+     * Collects what clients need from the started mini cluster: the entries of every getter
+     * returning a Configuration, Properties or other map, and the value of every getter returning
+     * a String, number or boolean, keyed by minicluster. and the property name.
+     */
+    public static Map<String, String> getClientConfiguration(MiniCluster miniCluster) {
+        Map<String, String> config = new TreeMap<>();
+        if (miniCluster == null) {
+            return config;
+        }
+        for (Method method : miniCluster.getClass().getMethods()) {
+            if (!method.getName().startsWith("get") || method.getName().length() == 3 ||
+                    method.getParameterCount() != 0 ||
+                    Modifier.isStatic(method.getModifiers()) || method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            Class<?> type = method.getReturnType();
+            if (Map.class.isAssignableFrom(type) || Iterable.class.isAssignableFrom(type)) {
+                Object value = invoke(method, miniCluster);
+                Iterable<?> entries = value instanceof Map ? ((Map<?, ?>) value).entrySet() : (Iterable<?>) value;
+                if (entries == null) {
+                    continue;
+                }
+                for (Object entry : entries) {
+                    if (entry instanceof Map.Entry && ((Map.Entry<?, ?>) entry).getValue() != null) {
+                        put(config, String.valueOf(((Map.Entry<?, ?>) entry).getKey()),
+                                ((Map.Entry<?, ?>) entry).getValue());
+                    }
+                }
+            } else if (type == String.class || type.isPrimitive() || Number.class.isAssignableFrom(type) ||
+                    type == Boolean.class) {
+                Object value = invoke(method, miniCluster);
+                if (value != null) {
+                    String name = method.getName().substring(3);
+                    put(config, GETTER_PREFIX + Character.toLowerCase(name.charAt(0)) + name.substring(1), value);
+                }
+            }
+        }
+        return config;
+    }
+
+    private static Object invoke(Method method, MiniCluster miniCluster) {
+        try {
+            return method.invoke(miniCluster);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.debug("CLIENTCONFIG: Skipping {}()", method.getName(), e);
+            return null;
+        }
+    }
+
+    private static void put(Map<String, String> config, String key, Object value) {
+        String string = String.valueOf(value);
+        if (key.length() <= MAX_LENGTH && string.length() <= MAX_LENGTH) {
+            config.put(key, string);
+        }
+    }
+}
@@ -3,42 +3,68 @@ package com.github.sakserv.minicluster.util;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class FileUtils {
 
     // Logger
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(FileUtils.class);
 
-    public static void deleteFolder(String directory, boolean quietly) {
+    public static final String DELETE_TIMEOUT_MS_PROPERTY = "minicluster.delete.timeout.ms";
+    public static final long DEFAULT_DELETE_TIMEOUT_MS = 60000L;
+
+    // Progress is logged once per this many deleted files instead of once per file
+    static final long PROGRESS_INTERVAL = 10000L;
+
+    private static final ForkJoinPool DELETE_POOL = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(), pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("minicluster-delete-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+
+    private static final Set<CompletableFuture<Void>> PENDING_DELETES = ConcurrentHashMap.newKeySet();
+
+    static {
         try {
-            Path directoryPath = Paths.get(directory).toAbsolutePath();
-            if (!quietly) {
-                LOG.info("FILEUTILS: Deleting contents of directory: {}",
-                        directoryPath.toAbsolutePath().toString());
-            }
-            Files.walkFileTree(directoryPath, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
-                        throws IOException {
-                    Files.delete(file);
-                    if (!quietly) {
-                        LOG.info("Removing file: {}", file.toAbsolutePath().toString());
-                    }
-                    return FileVisitResult.CONTINUE;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    awaitBackgroundDeletes(Duration.ofMillis(
+                            Long.getLong(DELETE_TIMEOUT_MS_PROPERTY, DEFAULT_DELETE_TIMEOUT_MS)));
+                } catch (TimeoutException e) {
+                    LOG.warn("FILEUTILS: Giving up on {} pending deletes", PENDING_DELETES.size());
                 }
+            }, "minicluster-delete-shutdown"));
+        } catch (IllegalStateException e) {
+            // First used by another shutdown hook, nothing can be pending yet
+        }
+    }
 
-                @Override
-                public FileVisitResult postVisitDirectory(Path dir, IOException exc)
-                        throws IOException {
-                    Files.delete(dir);
-                    if (!quietly) {
-                        LOG.info("Removing directory: {}", dir.toAbsolutePath().toString());
-                    }
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+    public static void deleteFolder(String directory, boolean quietly) {
+        Path directoryPath = Paths.get(directory).toAbsolutePath();
+        if (!quietly) {
+            LOG.info("FILEUTILS: Deleting contents of directory: {}", directoryPath.toString());
+        }
+        try {
+            deleteTree(directoryPath, directoryPath, quietly);
         } catch (IOException e) {
             LOG.error("FILEUTILS: Unable to remove {}", directory);
         }
@@ -48,6 +74,123 @@ public final class FileUtils {
         deleteFolder(directory, false);
     }
 
+    /**
+     * Renames the directory to a trash directory next to it and deletes that in the background,
+     * so the original path is free again as soon as this returns. Falls back to deleting in the
+     * foreground if the rename fails. Pending deletes are finished before the JVM exits.
+     */
+    public static CompletableFuture<Void> deleteFolderInBackground(String directory) {
+        Path directoryPath = Paths.get(directory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(directoryPath, LinkOption.NOFOLLOW_LINKS)) {
+            deleteFolder(directory, true);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Path trash = directoryPath.resolveSibling("." + directoryPath.getFileName() + ".trash-" +
+                UUID.randomUUID().toString().substring(0, 8));
+        try {
+            Files.move(directoryPath, trash, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            LOG.debug("FILEUTILS: Unable to move {} to the trash, deleting in the foreground", directoryPath, e);
+            deleteFolder(directory);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        LOG.info("FILEUTILS: Deleting {} in the background", directoryPath);
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            try {
+                deleteTree(trash, directoryPath, false);
+            } catch (IOException e) {
+                LOG.error("FILEUTILS: Unable to remove {}", trash, e);
+            }
+        }, DELETE_POOL);
+        PENDING_DELETES.add(future);
+        future.whenComplete((ignored, throwable) -> PENDING_DELETES.remove(future));
+        return future;
+    }
+
+    /**
+     * Waits for every delete started by deleteFolderInBackground().
+     */
+    public static void awaitBackgroundDeletes(Duration timeout) throws TimeoutException {
+        CompletableFuture<?>[] futures = PENDING_DELETES.toArray(new CompletableFuture[0]);
+        try {
+            CompletableFuture.allOf(futures).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Failures are logged by the delete itself
+        }
+    }
+
+    /**
+     * Deletes the tree with one fork/join task per directory. Progress is reported in batches.
+     */
+    private static void deleteTree(Path root, Path displayName, boolean quietly) throws IOException {
+        long startNanos = System.nanoTime();
+        AtomicLong deleted = new AtomicLong();
+        DeleteTask task = new DeleteTask(root, deleted, displayName, quietly);
+        try {
+            if (ForkJoinTask.inForkJoinPool() && ForkJoinTask.getPool() == DELETE_POOL) {
+                task.invoke();
+            } else {
+                DELETE_POOL.invoke(task);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (!quietly) {
+            LOG.info("FILEUTILS: Removed {} files and directories from {} in {} ms", deleted.get(), displayName,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+    }
+
+    private static class DeleteTask extends RecursiveAction {
+        private final Path path;
+        private final AtomicLong deleted;
+        private final Path displayName;
+        private final boolean quietly;
+
+        DeleteTask(Path path, AtomicLong deleted, Path displayName, boolean quietly) {
+            this.path = path;
+            this.deleted = deleted;
+            this.displayName = displayName;
+            this.quietly = quietly;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                if (attrs.isDirectory()) {
+                    List<DeleteTask> subdirectories = new ArrayList<>();
+                    try (DirectoryStream<Path> children = Files.newDirectoryStream(path)) {
+                        for (Path child : children) {
+                            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                                subdirectories.add(new DeleteTask(child, deleted, displayName, quietly));
+                            } else {
+                                delete(child);
+                            }
+                        }
+                    }
+                    invokeAll(subdirectories);
+                }
+                delete(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void delete(Path file) throws IOException {
+            Files.delete(file);
+            long count = deleted.incrementAndGet();
+            if (!quietly && count % PROGRESS_INTERVAL == 0) {
+                LOG.info("FILEUTILS: Removed {} files and directories from {}", count, displayName);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "FileUtils";
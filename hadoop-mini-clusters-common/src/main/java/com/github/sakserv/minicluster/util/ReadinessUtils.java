@@ -0,0 +1,97 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.util;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+
+/**
+ * Polls {@link MiniCluster#isReady()} with exponential backoff.
+ */
+public final class ReadinessUtils {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(ReadinessUtils.class);
+
+    public static final String AWAIT_READY = "awaitReady";
+
+    static final long INITIAL_BACKOFF_MS = 10L;
+    static final long MAX_BACKOFF_MS = 500L;
+
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+
+    private ReadinessUtils() {
+    }
+
+    /**
+     * Returns as soon as the mini cluster reports ready. A probe that throws counts as not
+     * ready, the last failure is attached to the TimeoutException.
+     */
+    public static void awaitReady(MiniCluster miniCluster, Duration timeout) throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(miniCluster, AWAIT_READY)) {
+            long startNanos = System.nanoTime();
+            long deadlineNanos = startNanos + timeout.toNanos();
+            long backoffMillis = INITIAL_BACKOFF_MS;
+            Exception lastFailure = null;
+            while (true) {
+                try {
+                    if (miniCluster.isReady()) {
+                        LOG.debug("READINESS: {} ready after {} ms", miniCluster.getClass().getSimpleName(),
+                                Duration.ofNanos(System.nanoTime() - startNanos).toMillis());
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    throw e;
+                } catch (Exception e) {
+                    lastFailure = e;
+                }
+
+                long remainingMillis = Duration.ofNanos(deadlineNanos - System.nanoTime()).toMillis();
+                if (remainingMillis <= 0) {
+                    TimeoutException timeoutException = new TimeoutException("ERROR: " +
+                            miniCluster.getClass().getSimpleName() + " not ready after " + timeout.toMillis() + " ms");
+                    if (lastFailure != null) {
+                        timeoutException.initCause(lastFailure);
+                    }
+                    throw timeoutException;
+                }
+                Thread.sleep(Math.min(backoffMillis, remainingMillis));
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MS);
+            }
+        }
+    }
+
+    /**
+     * True if something accepts TCP connections on the port.
+     */
+    public static boolean isPortOpen(String host, int port) {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
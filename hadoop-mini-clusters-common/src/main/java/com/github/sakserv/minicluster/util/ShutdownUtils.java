@@ -0,0 +1,244 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.MiniCluster;
+
+/**
+ * Stops mini clusters on background threads, with a deadline per mini cluster.
+ *
+ * stopDiscardingData() runs first, cleanUp() afterwards on a separate pool so deleting data dirs
+ * does not delay the caller. Clean ups still pending when the JVM exits are waited for, up to
+ * -Dminicluster.cleanup.timeout.ms (60 seconds by default).
+ */
+public final class ShutdownUtils {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(ShutdownUtils.class);
+
+    public static final String CLEAN_UP_TIMEOUT_MS_PROPERTY = "minicluster.cleanup.timeout.ms";
+    public static final long DEFAULT_CLEAN_UP_TIMEOUT_MS = 60000L;
+
+    private static final ExecutorService STOP_EXECUTOR = newExecutor("minicluster-stop");
+    private static final ExecutorService CLEAN_UP_EXECUTOR = newExecutor("minicluster-cleanup");
+
+    private static final Map<MiniCluster, CompletableFuture<Void>> PENDING_CLEAN_UPS = new IdentityHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                awaitCleanUps(Duration.ofMillis(
+                        Long.getLong(CLEAN_UP_TIMEOUT_MS_PROPERTY, DEFAULT_CLEAN_UP_TIMEOUT_MS)));
+            } catch (TimeoutException e) {
+                LOG.warn("SHUTDOWN: Giving up on pending clean ups", e);
+            }
+        }, "minicluster-cleanup-shutdown"));
+    }
+
+    private ShutdownUtils() {
+    }
+
+    /**
+     * Runs stopDiscardingData() on a background thread. The future completes once the mini cluster
+     * is stopped, its cleanUp() is then started in the background, see {@link #awaitCleanUp}.
+     */
+    public static CompletableFuture<Void> stopAsync(MiniCluster miniCluster) {
+        return stopAsync(miniCluster, true, new AtomicReference<>());
+    }
+
+    /**
+     * Stops the mini cluster, waiting at most timeout. If stop() does not return in time the
+     * stopping thread is interrupted, forceStop() is called and a TimeoutException is thrown,
+     * with the failure of forceStop() suppressed if it could not force the mini cluster down.
+     * With cleanUp, cleanUp() runs in the background once the mini cluster is stopped.
+     */
+    public static void stop(MiniCluster miniCluster, boolean cleanUp, Duration timeout) throws Exception {
+        AtomicReference<Thread> stopper = new AtomicReference<>();
+        CompletableFuture<Void> future = stopAsync(miniCluster, cleanUp, stopper);
+        try {
+            future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw (cause instanceof Exception) ? (Exception) cause : e;
+        } catch (TimeoutException e) {
+            String name = miniCluster.getClass().getSimpleName();
+            LOG.warn("SHUTDOWN: {} did not stop within {} ms, forcing it", name, timeout.toMillis());
+            synchronized (stopper) {
+                Thread thread = stopper.get();
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            }
+            TimeoutException timeoutException = new TimeoutException("ERROR: " + name + " not stopped after " +
+                    timeout.toMillis() + " ms");
+            try {
+                miniCluster.forceStop();
+            } catch (Exception forceStopFailure) {
+                LOG.error("SHUTDOWN: {} could not be forced down, its threads and ports stay in use", name,
+                        forceStopFailure);
+                timeoutException.addSuppressed(forceStopFailure);
+            }
+            throw timeoutException;
+        }
+    }
+
+    /**
+     * Stops independent mini clusters concurrently, each with its own deadline. Every mini
+     * cluster is stopped even if others fail, the first failure is thrown with the rest suppressed.
+     */
+    public static void stopAll(Duration timeout, MiniCluster... miniClusters) throws Exception {
+        stopAll(timeout, Arrays.asList(miniClusters));
+    }
+
+    public static void stopAll(Duration timeout, Collection<? extends MiniCluster> miniClusters)
+            throws Exception {
+        List<CompletableFuture<Exception>> futures = new ArrayList<>();
+        for (MiniCluster miniCluster : miniClusters) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    stop(miniCluster, true, timeout);
+                    return null;
+                } catch (Exception e) {
+                    return e;
+                }
+            }, STOP_EXECUTOR));
+        }
+
+        Exception failure = null;
+        for (CompletableFuture<Exception> future : futures) {
+            Exception e = future.get();
+            if (e == null) {
+                continue;
+            }
+            if (failure == null) {
+                failure = e;
+            } else {
+                failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs cleanUp() on the clean up pool. Failures are logged, not rethrown.
+     */
+    public static CompletableFuture<Void> cleanUpAsync(MiniCluster miniCluster) {
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            try {
+                miniCluster.cleanUp();
+            } catch (Exception e) {
+                LOG.warn("SHUTDOWN: Clean up of {} failed", miniCluster.getClass().getSimpleName(), e);
+            }
+        }, CLEAN_UP_EXECUTOR);
+        synchronized (PENDING_CLEAN_UPS) {
+            PENDING_CLEAN_UPS.put(miniCluster, future);
+        }
+        future.whenComplete((ignored, throwable) -> {
+            synchronized (PENDING_CLEAN_UPS) {
+                PENDING_CLEAN_UPS.remove(miniCluster, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Waits for a background cleanUp() of the mini cluster, if one is pending. Call this before
+     * starting a mini cluster again with the same fixed data dirs.
+     */
+    public static void awaitCleanUp(MiniCluster miniCluster, Duration timeout) throws Exception {
+        CompletableFuture<Void> future;
+        synchronized (PENDING_CLEAN_UPS) {
+            future = PENDING_CLEAN_UPS.get(miniCluster);
+        }
+        if (future != null) {
+            future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Waits for every pending background cleanUp().
+     */
+    public static void awaitCleanUps(Duration timeout) throws TimeoutException {
+        CompletableFuture<?>[] futures;
+        synchronized (PENDING_CLEAN_UPS) {
+            futures = PENDING_CLEAN_UPS.values().toArray(new CompletableFuture[0]);
+        }
+        try {
+            CompletableFuture.allOf(futures).get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Clean up failures are already logged
+        }
+    }
+
+    private static CompletableFuture<Void> stopAsync(MiniCluster miniCluster, boolean cleanUp,
+                                                     AtomicReference<Thread> stopper) {
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            stopper.set(Thread.currentThread());
+            try {
+                if (cleanUp) {
+                    miniCluster.stopDiscardingData();
+                } else {
+                    miniCluster.stop(false);
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                synchronized (stopper) {
+                    stopper.set(null);
+                    // Do not leak the interrupt of a forced stop into the next task
+                    Thread.interrupted();
+                }
+            }
+        }, STOP_EXECUTOR);
+        if (!cleanUp) {
+            return future;
+        }
+        // Complete only once the clean up is registered, so awaitCleanUp() cannot miss it
+        return future.thenRun(() -> cleanUpAsync(miniCluster));
+    }
+
+    private static ExecutorService newExecutor(String threadNamePrefix) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, threadNamePrefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.workspace;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands out free ports for mini clusters configured with port 0 (or "auto").
+ *
+ * The operating system picks the port. A lock file in java.io.tmpdir then reserves it for the
+ * lifetime of the JVM, so parallel surefire forks never get the same port between the time it
+ * is picked and the time the mini cluster binds it. The lock is released when the JVM exits.
+ */
+public final class PortAllocator {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(PortAllocator.class);
+
+    public static final String AUTO = "auto";
+    public static final String LOCK_DIR_PROPERTY = "minicluster.ports.lock.dir";
+
+    private static final int MAX_ATTEMPTS = 100;
+    private static final Set<Integer> RESERVED = ConcurrentHashMap.newKeySet();
+    // Held until the JVM exits
+    private static final List<FileLock> LOCKS = new CopyOnWriteArrayList<>();
+
+    private PortAllocator() {
+    }
+
+    public static boolean isAuto(Integer port) {
+        return port != null && port == 0;
+    }
+
+    public static boolean isAuto(String port) {
+        return port != null && (AUTO.equalsIgnoreCase(port.trim()) || "0".equals(port.trim()));
+    }
+
+    /**
+     * Parses a port from a property file, "auto" is returned as 0.
+     */
+    public static int parse(String port) {
+        return AUTO.equalsIgnoreCase(port.trim()) ? 0 : Integer.parseInt(port.trim());
+    }
+
+    /**
+     * Returns a free port for 0, any other port unchanged.
+     */
+    public static Integer resolve(Integer port) {
+        return isAuto(port) ? allocate() : port;
+    }
+
+    public static String resolve(String port) {
+        return isAuto(port) ? String.valueOf(allocate()) : port;
+    }
+
+    public static boolean isAutoAddress(String address) {
+        return address != null && address.lastIndexOf(':') >= 0
+                && isAuto(address.substring(address.lastIndexOf(':') + 1));
+    }
+
+    /**
+     * Resolves the port of a host:port address, localhost:0 becomes localhost:&lt;free port&gt;.
+     */
+    public static String resolveAddress(String address) {
+        return isAutoAddress(address) ? resolveAddress(address, allocate()) : address;
+    }
+
+    /**
+     * Fills in a port resolved elsewhere, localhost:auto becomes localhost:&lt;port&gt;.
+     */
+    public static String resolveAddress(String address, int port) {
+        if (!isAutoAddress(address)) {
+            return address;
+        }
+        return address.substring(0, address.lastIndexOf(':') + 1) + port;
+    }
+
+    public static int allocate() {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                socket.setReuseAddress(true);
+                port = socket.getLocalPort();
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to find a free port", e);
+            }
+            if (reserve(port)) {
+                LOG.debug("PORTS: Allocated port {}", port);
+                return port;
+            }
+        }
+        throw new IllegalStateException("Unable to reserve a free port after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    private static boolean reserve(int port) {
+        if (!RESERVED.add(port)) {
+            return false;
+        }
+        try {
+            File lockDir = getLockDir();
+            Files.createDirectories(lockDir.toPath());
+            FileChannel channel = FileChannel.open(new File(lockDir, port + ".lock").toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                // Reserved by another fork
+                channel.close();
+                return false;
+            }
+            LOCKS.add(lock);
+            return true;
+        } catch (IOException e) {
+            // No shared lock directory, fall back to the operating system's choice
+            LOG.warn("PORTS: Unable to reserve port {} across forks: {}", port, e.getMessage());
+            return true;
+        }
+    }
+
+    private static File getLockDir() {
+        String dir = System.getProperty(LOCK_DIR_PROPERTY);
+        if (dir != null && !dir.trim().isEmpty()) {
+            return new File(dir.trim());
+        }
+        return new File(System.getProperty("java.io.tmpdir"), "hadoop-mini-clusters-ports");
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.workspace;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.util.FileUtils;
+
+/**
+ * Places mini cluster data dirs on a tmpfs, /dev/shm unless -Dminicluster.storage.ram.dir is set,
+ * so fsync heavy components do not wait on a slow disk.
+ *
+ * Every placement reserves the expected size of the data dir against a budget, half of the tmpfs
+ * unless -Dminicluster.storage.ram.limit.mb is set. A data dir that would not fit, or a missing
+ * tmpfs, falls back to the configured dir on disk. The budget is per JVM, the free space check
+ * covers other forks sharing the tmpfs.
+ */
+public final class RamStorage {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(RamStorage.class);
+
+    public static final String ENABLED_PROPERTY = "minicluster.storage.ram.enabled";
+    public static final String DIR_PROPERTY = "minicluster.storage.ram.dir";
+    public static final String LIMIT_MB_PROPERTY = "minicluster.storage.ram.limit.mb";
+    public static final String DEFAULT_DIR = "/dev/shm";
+
+    // Expected size of each mini cluster's data dir, reserved against the budget until it is deleted
+    public static final long ZOOKEEPER_MB = 64L;
+    public static final long HDFS_MB = 512L;
+    public static final long HBASE_MB = 512L;
+    public static final long KAFKA_MB = 256L;
+    public static final long HIVE_MB = 128L;
+    public static final long ACTIVEMQ_MB = 128L;
+
+    private static final long MB = 1024L * 1024L;
+
+    private static final Map<String, Long> RESERVATIONS = new ConcurrentHashMap<>();
+    private static long reservedBytes;
+    private static File forkRoot;
+    private static File forkDir;
+
+    private RamStorage() {
+    }
+
+    /**
+     * RAM storage is used when the builder enabled it, or when the builder left the setting
+     * unset and -Dminicluster.storage.ram.enabled=true.
+     */
+    public static boolean isEnabled(Boolean builderValue) {
+        return ConfigProfiles.isEnabled(builderValue, ENABLED_PROPERTY);
+    }
+
+    /**
+     * Returns a new dir on the tmpfs when RAM storage is enabled and expectedMb still fits,
+     * otherwise the dir as resolved by {@link Workspace#resolve}. Resolving a dir that is
+     * already on the tmpfs returns it unchanged.
+     *
+     * @param expectedMb size the data dir is expected to grow to, used for the accounting
+     */
+    public static String resolve(String dir, String name, long expectedMb, Boolean builderValue) {
+        if (!isEnabled(builderValue)) {
+            return Workspace.resolve(dir, name);
+        }
+        if (isRamDir(dir)) {
+            return dir;
+        }
+
+        File root = getRoot();
+        if (!root.isDirectory()) {
+            LOG.warn("RAMSTORAGE: {} does not exist, keeping {} on disk", root, name);
+            return Workspace.resolve(dir, name);
+        }
+
+        long expectedBytes = expectedMb * MB;
+        synchronized (RamStorage.class) {
+            long limitBytes = getLimitBytes();
+            long usableBytes = getUsableBytes(root);
+            if (reservedBytes + expectedBytes > limitBytes || expectedBytes > usableBytes) {
+                LOG.warn("RAMSTORAGE: {} MB for {} would overflow {} ({} MB reserved, {} MB limit, {} MB free), " +
+                        "keeping it on disk", expectedMb, name, root, reservedBytes / MB, limitBytes / MB,
+                        usableBytes / MB);
+                return Workspace.resolve(dir, name);
+            }
+            reservedBytes += expectedBytes;
+            String resolved = Workspace.newDir(getForkDir(root), name).getAbsolutePath();
+            RESERVATIONS.put(resolved, expectedBytes);
+            LOG.info("RAMSTORAGE: Using {} ({} MB reserved of {} MB)", resolved, reservedBytes / MB,
+                    limitBytes / MB);
+            return resolved;
+        }
+    }
+
+    /**
+     * Deletes the dir in the background and returns its reservation once the delete is done. The
+     * trash dir of the delete stays on the tmpfs until then.
+     */
+    public static CompletableFuture<Void> deleteInBackground(String dir) {
+        return FileUtils.deleteFolderInBackground(dir).whenComplete((ignored, throwable) -> release(dir));
+    }
+
+    /**
+     * Returns the reservation of a dir handed out by resolve(), call it once the dir is deleted.
+     */
+    public static void release(String dir) {
+        if (dir == null) {
+            return;
+        }
+        Long bytes = RESERVATIONS.remove(dir);
+        if (bytes != null) {
+            synchronized (RamStorage.class) {
+                reservedBytes -= bytes;
+            }
+        }
+    }
+
+    public static boolean isRamDir(String dir) {
+        return dir != null && RESERVATIONS.containsKey(dir);
+    }
+
+    public static synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    public static long getLimitBytes() {
+        Long limitMb = Long.getLong(LIMIT_MB_PROPERTY);
+        if (limitMb != null) {
+            return limitMb * MB;
+        }
+        try {
+            return Files.getFileStore(getRoot().toPath()).getTotalSpace() / 2;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    public static File getRoot() {
+        return new File(System.getProperty(DIR_PROPERTY, DEFAULT_DIR));
+    }
+
+    private static long getUsableBytes(File root) {
+        try {
+            FileStore store = Files.getFileStore(root.toPath());
+            return store.getUsableSpace();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private static File getForkDir(File root) {
+        if (forkDir == null || !root.equals(forkRoot)) {
+            forkRoot = root;
+            forkDir = Workspace.createForkDir(new File(root, "hadoop-mini-clusters"));
+        }
+        return forkDir;
+    }
+}
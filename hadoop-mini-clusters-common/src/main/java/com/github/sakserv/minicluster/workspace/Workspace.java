@@ -0,0 +1,108 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.workspace;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.util.FileUtils;
+
+/**
+ * Per JVM directory for mini clusters configured with the temp dir "auto". Every auto temp dir
+ * gets its own sub directory, so parallel forks, and several instances in the same fork, never
+ * share data. The fork directory lives under java.io.tmpdir/hadoop-mini-clusters unless
+ * -Dminicluster.workspace.dir is set, and is deleted when the JVM exits.
+ */
+public final class Workspace {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(Workspace.class);
+
+    public static final String AUTO = "auto";
+    public static final String DIR_PROPERTY = "minicluster.workspace.dir";
+
+    private static final Map<String, AtomicInteger> COUNTERS = new ConcurrentHashMap<>();
+    private static volatile File forkDir;
+
+    private Workspace() {
+    }
+
+    public static boolean isAuto(String dir) {
+        return dir != null && AUTO.equalsIgnoreCase(dir.trim());
+    }
+
+    /**
+     * Returns a new directory below the fork directory for "auto", any other dir unchanged.
+     *
+     * @param name prefix of the generated directory, usually the configured default (embedded_hdfs)
+     */
+    public static String resolve(String dir, String name) {
+        if (!isAuto(dir)) {
+            return dir;
+        }
+        File resolved = newDir(getForkDir(), name);
+        LOG.info("WORKSPACE: Using {}", resolved);
+        return resolved.getAbsolutePath();
+    }
+
+    static File newDir(File parent, String name) {
+        int number = COUNTERS.computeIfAbsent(name, key -> new AtomicInteger()).incrementAndGet();
+        return new File(parent, name + "-" + number);
+    }
+
+    public static File getForkDir() {
+        if (forkDir == null) {
+            synchronized (Workspace.class) {
+                if (forkDir == null) {
+                    forkDir = createForkDir(getRoot());
+                }
+            }
+        }
+        return forkDir;
+    }
+
+    static File createForkDir(File root) {
+        String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+        File dir = new File(root, "fork-" + pid + "-" + UUID.randomUUID().toString().substring(0, 8));
+        try {
+            Files.createDirectories(dir.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create the workspace " + dir, e);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (dir.exists()) {
+                FileUtils.deleteFolder(dir.getAbsolutePath(), true);
+            }
+        }, "minicluster-workspace-cleanup"));
+        return dir;
+    }
+
+    private static File getRoot() {
+        String root = System.getProperty(DIR_PROPERTY);
+        if (root != null && !root.trim().isEmpty()) {
+            return new File(root.trim());
+        }
+        return new File(System.getProperty("java.io.tmpdir"), "hadoop-mini-clusters");
+    }
+}
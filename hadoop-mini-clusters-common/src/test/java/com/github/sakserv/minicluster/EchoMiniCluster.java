@@ -0,0 +1,43 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+/**
+ * A {@link FakeMiniCluster} with client configuration getters, for the tests that read it back
+ * from a forked JVM or the stack daemon.
+ */
+public class EchoMiniCluster extends FakeMiniCluster {
+
+    public EchoMiniCluster() {
+        super("echo");
+    }
+
+    public String getEchoHostname() {
+        return "localhost";
+    }
+
+    public String getPid() {
+        return ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    }
+
+    public Properties getEchoProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("echo.key", "value");
+        return properties;
+    }
+}
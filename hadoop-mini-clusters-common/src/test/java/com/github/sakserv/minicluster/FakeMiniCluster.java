@@ -0,0 +1,224 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.registry.Tenant;
+
+/**
+ * The mini cluster the common tests run against. It starts and stops at once unless told
+ * otherwise, calls configure() inside its start span and records every lifecycle call as
+ * "start:name", "stop:name" and so on. The recorded state is read through methods without a get
+ * prefix, which keeps it out of the ConfigFingerprint and the client configuration. Only getName()
+ * ends up in both.
+ */
+public class FakeMiniCluster implements MiniCluster {
+
+    private final String name;
+    private final List<String> events;
+    private final Set<String> tenants = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger starts = new AtomicInteger();
+    private final AtomicInteger stops = new AtomicInteger();
+    private final AtomicInteger cleanUps = new AtomicInteger();
+    private final AtomicInteger resets = new AtomicInteger();
+    private volatile long startMillis;
+    private volatile long stopMillis;
+    private volatile long readyDelayMillis;
+    private volatile String startFailure;
+    private volatile boolean resetSupported = true;
+    private volatile MiniCluster requires;
+    private volatile boolean started;
+    private volatile long startedAtNanos;
+    private volatile boolean forced;
+    private volatile boolean discarded;
+
+    public FakeMiniCluster(String name) {
+        this(name, Collections.synchronizedList(new ArrayList<>()));
+    }
+
+    /**
+     * @param events shared with other fakes to check the order of their calls
+     */
+    public FakeMiniCluster(String name, List<String> events) {
+        this.name = name;
+        this.events = events;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public FakeMiniCluster setStartMillis(long startMillis) {
+        this.startMillis = startMillis;
+        return this;
+    }
+
+    public FakeMiniCluster setStopMillis(long stopMillis) {
+        this.stopMillis = stopMillis;
+        return this;
+    }
+
+    /**
+     * isReady() turns true this long after start() returned.
+     */
+    public FakeMiniCluster setReadyDelayMillis(long readyDelayMillis) {
+        this.readyDelayMillis = readyDelayMillis;
+        return this;
+    }
+
+    /**
+     * start() throws an IllegalStateException with this message.
+     */
+    public FakeMiniCluster setStartFailure(String startFailure) {
+        this.startFailure = startFailure;
+        return this;
+    }
+
+    public FakeMiniCluster setResetSupported(boolean resetSupported) {
+        this.resetSupported = resetSupported;
+        return this;
+    }
+
+    /**
+     * start() fails unless the given mini cluster is ready.
+     */
+    public FakeMiniCluster setRequires(MiniCluster requires) {
+        this.requires = requires;
+        return this;
+    }
+
+    public List<String> events() {
+        return events;
+    }
+
+    public Set<String> tenants() {
+        return tenants;
+    }
+
+    public int starts() {
+        return starts.get();
+    }
+
+    public int stops() {
+        return stops.get();
+    }
+
+    public int cleanUps() {
+        return cleanUps.get();
+    }
+
+    public int resets() {
+        return resets.get();
+    }
+
+    public boolean forced() {
+        return forced;
+    }
+
+    public boolean discarded() {
+        return discarded;
+    }
+
+    @Override
+    public void start() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            configure();
+            Thread.sleep(startMillis);
+            if (startFailure != null) {
+                throw new IllegalStateException(startFailure);
+            }
+            if (requires != null && !requires.isReady()) {
+                throw new IllegalStateException(name + " started before what it requires was ready");
+            }
+            startedAtNanos = System.nanoTime();
+            started = true;
+            starts.incrementAndGet();
+            events.add("start:" + name);
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return started && System.nanoTime() - startedAtNanos >= TimeUnit.MILLISECONDS.toNanos(readyDelayMillis);
+    }
+
+    @Override
+    public void stop() throws Exception {
+        stop(true);
+    }
+
+    @Override
+    public void stop(boolean cleanUp) throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            started = false;
+            Thread.sleep(stopMillis);
+            stops.incrementAndGet();
+            events.add("stop:" + name);
+        }
+        if (cleanUp) {
+            cleanUp();
+        }
+    }
+
+    @Override
+    public void stopDiscardingData() throws Exception {
+        discarded = true;
+        stop(false);
+    }
+
+    @Override
+    public void forceStop() {
+        forced = true;
+        events.add("forceStop:" + name);
+    }
+
+    @Override
+    public void configure() throws Exception {
+    }
+
+    @Override
+    public void cleanUp() throws Exception {
+        cleanUps.incrementAndGet();
+        events.add("cleanUp:" + name);
+    }
+
+    @Override
+    public void reset() throws Exception {
+        if (!resetSupported) {
+            MiniCluster.super.reset();
+        }
+        resets.incrementAndGet();
+    }
+
+    @Override
+    public void createTenant(Tenant tenant) throws Exception {
+        tenants.add(tenant.getId());
+    }
+
+    @Override
+    public void deleteTenant(Tenant tenant) throws Exception {
+        tenants.remove(tenant.getId());
+    }
+}
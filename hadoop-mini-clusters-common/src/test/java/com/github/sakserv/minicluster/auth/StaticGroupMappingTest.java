@@ -0,0 +1,37 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.auth;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class StaticGroupMappingTest {
+
+    @Test
+    public void testGroupsOfAddedAndUnknownUsers() throws Exception {
+        StaticGroupMapping groupMapping = new StaticGroupMapping();
+        StaticGroupMapping.addUser("oozie", "oozie", "hadoop");
+        try {
+            assertEquals(Arrays.asList("oozie", "hadoop"), groupMapping.getGroups("oozie"));
+            assertEquals(Collections.singletonList("guest"), groupMapping.getGroups("guest"));
+        } finally {
+            StaticGroupMapping.removeUser("oozie");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ClientPoolTest {
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ClientPool.BORROW_TIMEOUT_MS_PROPERTY);
+    }
+
+    @Test
+    public void testGetSharesClientsRoundRobin() throws Exception {
+        ClientPool<TestClient> pool = new ClientPool<>("test", 2, TestClient::new);
+        TestClient first = pool.get();
+        TestClient second = pool.get();
+        assertNotSame(first, second);
+        assertEquals(2, pool.getSize());
+        assertSame(first, pool.get());
+        assertSame(second, pool.get());
+    }
+
+    @Test
+    public void testBorrowReusesReturnedClients() throws Exception {
+        ClientPool<TestClient> pool = new ClientPool<>("test", 2, TestClient::new);
+        TestClient client;
+        try (ClientPool.Lease<TestClient> lease = pool.borrow()) {
+            client = lease.get();
+        }
+        try (ClientPool.Lease<TestClient> lease = pool.borrow()) {
+            assertSame(client, lease.get());
+        }
+        assertEquals(1, pool.getSize());
+    }
+
+    @Test
+    public void testBorrowWaitsForAReturnedClient() throws Exception {
+        ClientPool<TestClient> pool = new ClientPool<>("test", 1, TestClient::new);
+        ClientPool.Lease<TestClient> lease = pool.borrow();
+        CompletableFuture<TestClient> waiting = CompletableFuture.supplyAsync(() -> {
+            try (ClientPool.Lease<TestClient> next = pool.borrow()) {
+                return next.get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertTrue(!waiting.isDone());
+        lease.close();
+        assertSame(lease.get(), waiting.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBorrowTimesOut() throws Exception {
+        System.setProperty(ClientPool.BORROW_TIMEOUT_MS_PROPERTY, "100");
+        ClientPool<TestClient> pool = new ClientPool<>("test", 1, TestClient::new);
+        pool.borrow();
+        try {
+            pool.borrow();
+            fail("Expected a TimeoutException");
+        } catch (TimeoutException e) {
+            assertTrue(e.getMessage().startsWith("ERROR: "));
+        }
+    }
+
+    @Test
+    public void testCloseClosesEveryClient() throws Exception {
+        ClientPool<TestClient> pool = new ClientPool<>("test", 2, TestClient::new);
+        TestClient shared = pool.get();
+        ClientPool.Lease<TestClient> lease = pool.borrow();
+        assertNotSame(shared, lease.get());
+        assertEquals(2, pool.getSize());
+        pool.close();
+        assertEquals(1, shared.closed.get());
+        assertEquals(1, lease.get().closed.get());
+        assertEquals(0, pool.getSize());
+
+        // Returning a client of the closed pool does not hand it out again
+        lease.close();
+        try (ClientPool.Lease<TestClient> next = pool.borrow()) {
+            assertNotSame(lease.get(), next.get());
+        }
+    }
+
+    @Test
+    public void testSharedClientsAreNeverLent() throws Exception {
+        ClientPool<TestClient> pool = new ClientPool<>("test", 1, TestClient::new);
+        TestClient shared = pool.get();
+        try (ClientPool.Lease<TestClient> lease = pool.borrow()) {
+            assertNotSame(shared, lease.get());
+        }
+        assertSame(shared, pool.get());
+    }
+
+    @Test
+    public void testSlowCreateDoesNotBlockExistingClients() throws Exception {
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger created = new AtomicInteger();
+        ClientPool<TestClient> pool = new ClientPool<>("test", 2, () -> {
+            if (created.incrementAndGet() == 2) {
+                creating.countDown();
+                release.await();
+            }
+            return new TestClient();
+        });
+        TestClient first = pool.get();
+        CompletableFuture<TestClient> slow = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(creating.await(10, TimeUnit.SECONDS));
+        // The second client is still connecting, the first one is handed out meanwhile
+        assertSame(first, CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }).get(10, TimeUnit.SECONDS));
+        release.countDown();
+        assertNotSame(first, slow.get(10, TimeUnit.SECONDS));
+    }
+
+    private static class TestClient implements AutoCloseable {
+        private final AtomicInteger closed = new AtomicInteger();
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ConfigFingerprintTest {
+
+    @Test
+    public void testEqualConfigurationsMatch() {
+        assertEquals(ConfigFingerprint.of(new Settings(1, "a", "b")), ConfigFingerprint.of(new Settings(1, "b", "a")));
+        assertEquals(64, ConfigFingerprint.of(new Settings(1, "a", "b")).length());
+    }
+
+    @Test
+    public void testDifferentConfigurationsDiffer() {
+        assertNotEquals(ConfigFingerprint.of(new Settings(1, "a", "b")), ConfigFingerprint.of(new Settings(2, "a", "b")));
+        assertNotEquals(ConfigFingerprint.of(new Settings(1, "a", "b")), ConfigFingerprint.of(new Settings(1, "a", "c")));
+    }
+
+    @Test
+    public void testFailingAndHandleGettersAreSkipped() {
+        String description = ConfigFingerprint.describe(new Settings(1, "a", "b"));
+        assertFalse(description.contains("getHandle"));
+        assertFalse(description.contains("getFailing"));
+    }
+
+    public static class Settings {
+        private final int port;
+        private final Map<String, String> config = new LinkedHashMap<>();
+
+        Settings(int port, String first, String second) {
+            this.port = port;
+            config.put(first, first.toUpperCase());
+            config.put(second, second.toUpperCase());
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        public Map<String, String> getConfig() {
+            return config;
+        }
+
+        public String getFailing() {
+            throw new IllegalStateException("Not started");
+        }
+
+        public Thread getHandle() {
+            return new Thread();
+        }
+    }
+}
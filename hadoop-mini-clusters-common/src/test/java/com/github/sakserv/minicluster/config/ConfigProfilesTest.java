@@ -0,0 +1,50 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+
+public class ConfigProfilesTest {
+
+    @Test
+    public void testHeadlessKeepsExplicitAddresses() {
+        Configuration configuration = new Configuration();
+        configuration.set("yarn.resourcemanager.webapp.address", "localhost:8088");
+        new ConfigProfiles().set(Profile.HEADLESS, true).apply(configuration, Component.YARN);
+        assertEquals("localhost:8088", configuration.get("yarn.resourcemanager.webapp.address"));
+        assertEquals("127.0.0.1:0", configuration.get("yarn.nodemanager.webapp.address"));
+        assertFalse(configuration.getBoolean("yarn.timeline-service.enabled", true));
+    }
+
+    @Test
+    public void testDisabledProfilesChangeNothing() {
+        Configuration configuration = new Configuration(false);
+        ConfigProfiles profiles = new ConfigProfiles();
+        for (Profile profile : Profile.values()) {
+            profiles.set(profile, false);
+        }
+        profiles.apply(configuration, Component.HBASE);
+        assertNull(configuration.get("hbase.master.info.port"));
+        assertNull(configuration.get("hbase.regionserver.handler.count"));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Test;
+
+public class ConfigTemplatesTest {
+
+    @After
+    public void tearDown() {
+        ConfigTemplates.clear();
+    }
+
+    @Test
+    public void testCopiesHaveTheDefaults() {
+        Configuration configuration = ConfigTemplates.newConfiguration();
+        assertEquals(new Configuration().get("fs.defaultFS"), configuration.get("fs.defaultFS"));
+        assertEquals(new Configuration().size(), configuration.size());
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        Configuration first = ConfigTemplates.newConfiguration();
+        first.set("minicluster.test.key", "first");
+        Configuration second = ConfigTemplates.newConfiguration();
+        assertNotSame(first, second);
+        assertNull(second.get("minicluster.test.key"));
+    }
+
+    @Test
+    public void testTemplateIsCreatedOnce() {
+        AtomicInteger created = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            ConfigTemplates.copy("test", () -> {
+                created.incrementAndGet();
+                return new Configuration(false);
+            }, Configuration::new);
+        }
+        assertEquals(1, created.get());
+    }
+}
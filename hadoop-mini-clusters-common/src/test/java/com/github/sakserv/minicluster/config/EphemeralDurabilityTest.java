@@ -0,0 +1,53 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+
+public class EphemeralDurabilityTest {
+
+    @Test
+    public void testExplicitSettingsAreKept() {
+        Configuration configuration = new Configuration();
+        configuration.setBoolean("hbase.wal.hsync", true);
+        ConfigProfiles.setIfUnset(configuration, EphemeralDurability.HBASE);
+        assertTrue(configuration.getBoolean("hbase.wal.hsync", false));
+        assertEquals("false", configuration.get("dfs.datanode.synconclose"));
+    }
+
+    @Test
+    public void testCustomPropertiesAreMerged() {
+        Map<String, Object> customProperties = new HashMap<>();
+        customProperties.put("maxSessionTimeout", 60000);
+        ConfigProfiles profiles = new ConfigProfiles().set(Profile.EPHEMERAL_DURABILITY, true);
+        Map<String, Object> merged = profiles.merge(customProperties, Component.ZOOKEEPER);
+        assertEquals("no", merged.get("forceSync"));
+        assertEquals(60000, merged.get("maxSessionTimeout"));
+        assertEquals(1, customProperties.size());
+
+        customProperties.put("forceSync", "yes");
+        assertEquals("yes", profiles.merge(customProperties, Component.ZOOKEEPER).get("forceSync"));
+    }
+}
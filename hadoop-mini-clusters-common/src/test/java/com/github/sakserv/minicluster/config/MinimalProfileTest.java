@@ -0,0 +1,56 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+public class MinimalProfileTest {
+
+    @Test
+    public void testDefaultsAreReplaced() {
+        Configuration configuration = new Configuration();
+        ConfigProfiles.setIfUnset(configuration, MinimalProfile.HDFS);
+        assertEquals("2", configuration.get("dfs.namenode.handler.count"));
+        assertEquals("10", configuration.get("hadoop.http.max.threads"));
+    }
+
+    @Test
+    public void testExplicitSettingsAreKept() {
+        Configuration configuration = new Configuration();
+        configuration.setInt("hbase.regionserver.handler.count", 30);
+        ConfigProfiles.setIfUnset(configuration, MinimalProfile.HBASE);
+        assertEquals(30, configuration.getInt("hbase.regionserver.handler.count", 0));
+        assertEquals("1", configuration.get("hbase.hstore.flusher.count"));
+
+        Properties properties = new Properties();
+        properties.setProperty("num.io.threads", "8");
+        ConfigProfiles.setIfUnset(properties, MinimalProfile.KAFKA);
+        assertEquals("8", properties.getProperty("num.io.threads"));
+        assertEquals("1", properties.getProperty("num.network.threads"));
+    }
+
+    @Test
+    public void testMapReduceIncludesYarn() {
+        assertTrue(MinimalProfile.MAPREDUCE.keySet().containsAll(MinimalProfile.YARN.keySet()));
+        assertFalse(MinimalProfile.YARN.containsKey("mapreduce.jobhistory.client.thread-count"));
+    }
+}
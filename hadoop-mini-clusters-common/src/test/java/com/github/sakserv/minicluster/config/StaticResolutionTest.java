@@ -0,0 +1,52 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.net.NetUtils;
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+
+public class StaticResolutionTest {
+
+    @Test
+    public void testLoopbackHostnamesAreApplied() {
+        Configuration configuration = new Configuration();
+        configuration.set("yarn.nodemanager.hostname", "nodemanager");
+        ConfigProfiles profiles = new ConfigProfiles().set(Profile.STATIC_RESOLUTION, true);
+        profiles.apply(configuration, Component.YARN);
+        assertEquals("nodemanager", configuration.get("yarn.nodemanager.hostname"));
+        assertEquals(StaticResolution.LOOPBACK_HOSTNAME, configuration.get("yarn.resourcemanager.hostname"));
+
+        Properties properties = new Properties();
+        profiles.apply(properties, Component.KAFKA);
+        assertEquals(StaticResolution.LOOPBACK_HOSTNAME, properties.getProperty("host.name"));
+    }
+
+    @Test
+    public void testMachineHostNameIsResolvedStatically() {
+        String hostName = StaticResolution.getMachineHostName();
+        assumeTrue(hostName != null && !hostName.equals(StaticResolution.LOOPBACK_HOSTNAME));
+        StaticResolution.install();
+        assertEquals(StaticResolution.LOOPBACK_HOSTNAME, NetUtils.getStaticResolution(hostName));
+    }
+}
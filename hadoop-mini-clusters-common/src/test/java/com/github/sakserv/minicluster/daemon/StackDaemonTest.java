@@ -0,0 +1,181 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.sakserv.minicluster.EchoMiniCluster;
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.stack.MiniClusterStack;
+
+public class StackDaemonTest {
+
+    @Rule
+    public TemporaryFolder daemonDir = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        System.setProperty(StackDaemon.DIR_PROPERTY, daemonDir.getRoot().getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(StackDaemon.DIR_PROPERTY);
+    }
+
+    @Test
+    public void testClientsLeaseDistinctTenants() throws Exception {
+        StackDaemon daemon = new StackDaemon("echo", EchoStackFactory.class.getName(),
+                new EchoStackFactory().call(), 60000L);
+        daemon.start();
+        try (StackDaemonClient first = StackDaemonClient.attach("echo");
+             StackDaemonClient second = StackDaemonClient.attach("echo")) {
+            assertEquals("localhost", first.getEndpoint("echo", "minicluster.echoHostname"));
+            assertEquals(String.valueOf(daemon.getPort()), first.getEndpoints().get(StackDaemon.PORT_KEY));
+
+            Tenant firstTenant = first.lease("orders");
+            Tenant secondTenant = second.lease("orders");
+            assertNotEquals(firstTenant.getId(), secondTenant.getId());
+            first.release(firstTenant);
+            assertEquals(2, daemon.getAttachedClients());
+        } finally {
+            daemon.close();
+        }
+        assertFalse(StackDaemon.getEndpointsFile("echo").exists());
+        try {
+            StackDaemonClient.attach("echo");
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("ERROR: "));
+        }
+    }
+
+    @Test
+    public void testIdleDaemonStops() throws Exception {
+        StackDaemon daemon = new StackDaemon("idle", EchoStackFactory.class.getName(),
+                new EchoStackFactory().call(), 100L);
+        daemon.start();
+        StackDaemonClient.attach("idle").close();
+        assertTrue(daemon.awaitClose(Duration.ofSeconds(10)));
+        assertFalse(StackDaemon.getEndpointsFile("idle").exists());
+    }
+
+    @Test
+    public void testTenantDataIsDeletedOnReleaseAndDetach() throws Exception {
+        StackDaemon daemon = new StackDaemon("tenants", EchoStackFactory.class.getName(),
+                new EchoStackFactory().call(), 60000L);
+        daemon.start();
+        EchoMiniCluster echo = (EchoMiniCluster) daemon.getStack().getCluster("echo");
+        try {
+            Tenant detached;
+            try (StackDaemonClient client = StackDaemonClient.attach("tenants")) {
+                Tenant released = client.lease("orders");
+                detached = client.lease("orders");
+                assertTrue(echo.tenants().contains(released.getId()));
+                assertTrue(echo.tenants().contains(detached.getId()));
+                client.release(released);
+                assertFalse(echo.tenants().contains(released.getId()));
+            }
+            for (int i = 0; i < 100 && echo.tenants().contains(detached.getId()); i++) {
+                Thread.sleep(100);
+            }
+            assertTrue(echo.tenants().isEmpty());
+        } finally {
+            daemon.close();
+        }
+    }
+
+    @Test
+    public void testShutdownNeedsTheToken() throws Exception {
+        StackDaemon daemon = new StackDaemon("token", EchoStackFactory.class.getName(),
+                new EchoStackFactory().call(), 60000L);
+        daemon.start();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(StackDaemon.SHUTDOWN);
+            out.writeUTF("guessed");
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertFalse(in.readBoolean());
+            assertTrue(in.readUTF().startsWith("ERROR: Invalid token"));
+            assertFalse(daemon.awaitClose(Duration.ofMillis(100)));
+
+            StackDaemonClient.attach("token").shutdownDaemon();
+            assertTrue(daemon.awaitClose(Duration.ofSeconds(10)));
+        } finally {
+            daemon.close();
+        }
+    }
+
+    @Test
+    public void testAttachOrStartRestartsAStaleDaemon() throws Exception {
+        StackDaemon stale = new StackDaemon("stale", "com.example.OldStackFactory",
+                new EchoStackFactory().call(), 60000L);
+        stale.start();
+        try (StackDaemonClient client = StackDaemonClient.attachOrStart("stale", EchoStackFactory.class)) {
+            assertTrue(stale.awaitClose(Duration.ofSeconds(10)));
+            assertEquals(EchoStackFactory.class.getName(), client.getEndpoints().get(StackDaemon.FACTORY_KEY));
+            assertEquals(StackDaemon.fingerprint(EchoStackFactory.class.getName()),
+                    client.getEndpoints().get(StackDaemon.FINGERPRINT_KEY));
+            assertFalse(client.getEndpoints().containsKey(StackDaemon.TOKEN_KEY));
+            client.shutdownDaemon();
+        } finally {
+            stale.close();
+        }
+        assertFalse(StackDaemon.getEndpointsFile("stale").exists());
+    }
+
+    @Test
+    public void testAttachOrStartReusesTheDaemon() throws Exception {
+        String port;
+        try (StackDaemonClient client = StackDaemonClient.attachOrStart("background", EchoStackFactory.class)) {
+            port = client.getEndpoints().get(StackDaemon.PORT_KEY);
+        }
+        try (StackDaemonClient client = StackDaemonClient.attachOrStart("background", EchoStackFactory.class)) {
+            assertEquals(port, client.getEndpoints().get(StackDaemon.PORT_KEY));
+            client.shutdownDaemon();
+        }
+        for (int i = 0; i < 100 && StackDaemon.getEndpointsFile("background").exists(); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(StackDaemon.getEndpointsFile("background").exists());
+    }
+
+    public static class EchoStackFactory implements Callable<MiniClusterStack> {
+        @Override
+        public MiniClusterStack call() {
+            return new MiniClusterStack.Builder()
+                    .addCluster("echo", new EchoMiniCluster())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.fork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.EchoMiniCluster;
+import com.github.sakserv.minicluster.MiniCluster;
+
+public class ForkedMiniClusterTest {
+
+    @Test
+    public void testMiniClusterRunsInAChildJvm() throws Exception {
+        ForkedMiniCluster forkedMiniCluster = new ForkedMiniCluster.Builder()
+                .setFactoryClass(EchoFactory.class)
+                .setJvmArgs("-Xmx64m")
+                .build();
+        forkedMiniCluster.start();
+        try {
+            assertTrue(forkedMiniCluster.isReady());
+            Map<String, String> config = forkedMiniCluster.getClientConfiguration();
+            assertEquals("value", config.get("echo.key"));
+            assertEquals("localhost", config.get("minicluster.echoHostname"));
+            assertNotEquals(getPid(), config.get("minicluster.pid"));
+        } finally {
+            forkedMiniCluster.stop();
+        }
+        assertFalse(forkedMiniCluster.isReady());
+        assertTrue(forkedMiniCluster.getClientConfiguration().isEmpty());
+    }
+
+    @Test
+    public void testFailedStartIsReported() throws Exception {
+        ForkedMiniCluster forkedMiniCluster = new ForkedMiniCluster.Builder()
+                .setFactoryClass(FailingFactory.class)
+                .setJvmArgs("-Xmx64m")
+                .build();
+        try {
+            forkedMiniCluster.start();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("Echo refused to start"));
+        }
+        assertFalse(forkedMiniCluster.isReady());
+    }
+
+    @Test
+    public void testChildJvmExitingBeforeConnectingFailsFast() throws Exception {
+        ForkedMiniCluster forkedMiniCluster = new ForkedMiniCluster.Builder()
+                .setFactoryClass(EchoFactory.class)
+                .setJvmArgs("-XX:+NoSuchJvmOption")
+                .setStartTimeoutMs(600000L)
+                .build();
+        long startNanos = System.nanoTime();
+        try {
+            forkedMiniCluster.start();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("before connecting"));
+            assertTrue(e.getMessage().contains(forkedMiniCluster.getLogFile().toString()));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos) < 60);
+        assertFalse(forkedMiniCluster.isReady());
+    }
+
+    @Test
+    public void testParseJvmArgs() {
+        assertEquals(Arrays.asList("-Xmx1g", "-XX:+UseG1GC"), ForkedMiniCluster.parseJvmArgs(" -Xmx1g  -XX:+UseG1GC "));
+        assertEquals(Collections.emptyList(), ForkedMiniCluster.parseJvmArgs(" "));
+    }
+
+    private static String getPid() {
+        return ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+    }
+
+    public static class EchoFactory implements Callable<MiniCluster> {
+        @Override
+        public MiniCluster call() {
+            return new EchoMiniCluster();
+        }
+    }
+
+    public static class FailingFactory implements Callable<MiniCluster> {
+        @Override
+        public MiniCluster call() {
+            return new EchoMiniCluster().setStartFailure("Echo refused to start");
+        }
+    }
+}
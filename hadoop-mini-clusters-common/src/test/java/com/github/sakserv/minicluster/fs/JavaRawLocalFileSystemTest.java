@@ -0,0 +1,64 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.fs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JavaRawLocalFileSystemTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPermissionsAreSetAndRead() throws Exception {
+        JavaRawLocalFileSystem fileSystem = new JavaRawLocalFileSystem();
+        fileSystem.initialize(new File("/").toURI(), new Configuration());
+        File file = temporaryFolder.newFile();
+        Path path = new Path(file.toURI());
+
+        fileSystem.setPermission(path, new FsPermission((short) 0640));
+        assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+
+        FileStatus status = fileSystem.getFileStatus(path);
+        assertEquals(new FsPermission((short) 0640), status.getPermission());
+        assertEquals(Files.getOwner(file.toPath()).getName(), status.getOwner());
+        assertEquals(1, fileSystem.listStatus(new Path(temporaryFolder.getRoot().toURI())).length);
+    }
+
+    @Test
+    public void testPermissionConversionRoundTrips() {
+        for (short mode : new short[] {0, 0755, 0700, 0644, 0777}) {
+            FsPermission permission = new FsPermission(mode);
+            assertEquals(permission, JavaRawLocalFileSystem.toFsPermission(
+                    JavaRawLocalFileSystem.toPosixPermissions(permission)));
+        }
+        // The sticky bit is dropped
+        assertEquals(9, JavaRawLocalFileSystem.toPosixPermissions(new FsPermission((short) 01777)).size());
+        assertTrue(JavaRawLocalFileSystem.toPosixPermissions(new FsPermission((short) 0)).isEmpty());
+    }
+}
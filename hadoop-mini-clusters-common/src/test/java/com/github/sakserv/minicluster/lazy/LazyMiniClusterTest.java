@@ -0,0 +1,114 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lazy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+import com.github.sakserv.minicluster.MiniCluster;
+
+public class LazyMiniClusterTest {
+
+    @Test
+    public void testStartIsDeferredUntilFirstUse() throws Exception {
+        List<String> events = new ArrayList<>();
+        FakeMiniCluster recording = new FakeMiniCluster("hdfs", events);
+        LazyMiniCluster<FakeMiniCluster> hdfs = new LazyMiniCluster<>("lazy-deferred-hdfs", recording);
+
+        hdfs.start();
+        assertTrue(hdfs.isReady());
+        assertTrue(events.isEmpty());
+
+        assertSame(recording, hdfs.get());
+        assertSame(recording, hdfs.get());
+        assertEquals(1, recording.starts());
+        assertTrue(hdfs.isStarted());
+        assertTrue(hdfs.isUsed());
+
+        hdfs.stop();
+        assertEquals(1, recording.stops());
+    }
+
+    @Test
+    public void testDependenciesStartFirst() throws Exception {
+        List<String> events = new ArrayList<>();
+        LazyMiniCluster<FakeMiniCluster> zookeeper = new LazyMiniCluster<>("lazy-deps-zookeeper",
+                new FakeMiniCluster("zookeeper", events));
+        LazyMiniCluster<FakeMiniCluster> hdfs = new LazyMiniCluster<>("lazy-deps-hdfs",
+                new FakeMiniCluster("hdfs", events));
+        LazyMiniCluster<FakeMiniCluster> hbase = new LazyMiniCluster<>("lazy-deps-hbase",
+                new FakeMiniCluster("hbase", events), zookeeper, hdfs);
+
+        hbase.get();
+        assertEquals(3, events.size());
+        assertEquals("start:hbase", events.get(2));
+        assertTrue(zookeeper.isStarted());
+        assertTrue(hdfs.isStarted());
+    }
+
+    @Test
+    public void testNeverReadyMiniClusterIsStillStopped() throws Exception {
+        FakeMiniCluster slow = new FakeMiniCluster("hive").setReadyDelayMillis(60000);
+        LazyMiniCluster<FakeMiniCluster> hive = new LazyMiniCluster<>("lazy-slow-hive", slow)
+                .setReadyTimeout(Duration.ofMillis(50));
+
+        try {
+            hive.get();
+            fail("get() should have timed out");
+        } catch (TimeoutException e) {
+            assertTrue(hive.isStarted());
+        }
+
+        hive.stop();
+        assertEquals(1, slow.stops());
+    }
+
+    @Test
+    public void testUnusedMiniClustersAreReportedAndNotStopped() throws Exception {
+        List<String> events = new ArrayList<>();
+        FakeMiniCluster recording = new FakeMiniCluster("oozie", events);
+        LazyMiniCluster<FakeMiniCluster> oozie = new LazyMiniCluster<>("lazy-unused-oozie", recording);
+        LazyMiniCluster<FakeMiniCluster> kafka = new LazyMiniCluster<>("lazy-unused-kafka",
+                new FakeMiniCluster("kafka", events));
+
+        oozie.start();
+        kafka.start();
+        kafka.get();
+        oozie.stop();
+        kafka.stop();
+
+        assertEquals(0, recording.starts());
+        assertEquals(0, recording.stops());
+        assertSame(recording, oozie.peek());
+        assertTrue(LazyMiniCluster.getUnusedNames().contains("lazy-unused-oozie"));
+        assertFalse(LazyMiniCluster.getUnusedNames().contains("lazy-unused-kafka"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingMiniCluster() {
+        new LazyMiniCluster<MiniCluster>("lazy-missing", null);
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+import com.github.sakserv.minicluster.stack.MiniClusterStack;
+
+public class FootprintRecorderTest {
+
+    @Before
+    public void setUp() {
+        FootprintRecorder.reset();
+        System.setProperty(FootprintRecorder.ENABLED_PROPERTY, "true");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(FootprintRecorder.ENABLED_PROPERTY);
+        System.clearProperty(FootprintRecorder.HEAP_PROPERTY);
+    }
+
+    @Test
+    public void testStartIsAttributedToTheMiniCluster() throws Exception {
+        HungryMiniCluster cluster = new HungryMiniCluster();
+        cluster.start();
+        try {
+            MiniClusterFootprint footprint = FootprintRecorder.get(cluster);
+            assertEquals("HungryMiniCluster", footprint.getComponent());
+            assertEquals(Integer.valueOf(2), footprint.getThreads().get("hungry-worker-N"));
+            assertTrue(footprint.getRetainedHeapBytes() >= 8L * 1024 * 1024);
+            if (new File("/proc/self/fd").isDirectory()) {
+                assertTrue(footprint.getListeningPorts().contains(cluster.serverSocket.getLocalPort()));
+                assertTrue(footprint.getFileDescriptors() >= 1);
+            }
+        } finally {
+            cluster.stop();
+        }
+    }
+
+    @Test
+    public void testHeapMeasurementCanBeSkipped() throws Exception {
+        System.setProperty(FootprintRecorder.HEAP_PROPERTY, "false");
+        HungryMiniCluster cluster = new HungryMiniCluster();
+        cluster.start();
+        cluster.stop();
+
+        assertEquals(-1L, FootprintRecorder.get(cluster).getRetainedHeapBytes());
+        assertTrue(FootprintRecorder.get(cluster).getRetainedHeapByClass().isEmpty());
+    }
+
+    @Test
+    public void testStackReportsFootprintsPerName() throws Exception {
+        System.setProperty(FootprintRecorder.HEAP_PROPERTY, "false");
+        HungryMiniCluster first = new HungryMiniCluster();
+        HungryMiniCluster second = new HungryMiniCluster();
+        MiniClusterStack stack = new MiniClusterStack.Builder()
+                .addCluster("first", first)
+                .addCluster("second", second)
+                .build();
+        stack.start();
+        try {
+            Map<String, MiniClusterFootprint> footprints = stack.getFootprints();
+            assertSame(FootprintRecorder.get(first), footprints.get("first"));
+            assertEquals(2, footprints.get("second").getThreadCount());
+            assertTrue(FootprintRecorder.formatSummary(footprints).contains("total"));
+        } finally {
+            stack.stop();
+        }
+    }
+
+    @Test
+    public void testFailedStartHasNoFootprint() throws Exception {
+        System.setProperty(FootprintRecorder.HEAP_PROPERTY, "false");
+        FakeMiniCluster cluster = new FakeMiniCluster("broken").setStartFailure("port in use");
+        try {
+            cluster.start();
+            fail("start() should have failed");
+        } catch (IllegalStateException e) {
+            assertEquals("port in use", e.getMessage());
+        }
+
+        assertNull(FootprintRecorder.get(cluster));
+    }
+
+    @Test
+    public void testNothingIsRecordedWhenDisabled() throws Exception {
+        System.clearProperty(FootprintRecorder.ENABLED_PROPERTY);
+        HungryMiniCluster cluster = new HungryMiniCluster();
+        cluster.start();
+        cluster.stop();
+
+        assertNull(FootprintRecorder.get(cluster));
+    }
+
+    private static class HungryMiniCluster extends FakeMiniCluster {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private ServerSocket serverSocket;
+        private byte[] cache;
+
+        HungryMiniCluster() {
+            super("hungry");
+        }
+
+        @Override
+        public void configure() throws Exception {
+            cache = new byte[8 * 1024 * 1024];
+            serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+            for (int i = 1; i <= 2; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "hungry-worker-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        @Override
+        public void stop(boolean cleanUp) throws Exception {
+            release.countDown();
+            serverSocket.close();
+            cache = null;
+            super.stop(cleanUp);
+        }
+    }
+}
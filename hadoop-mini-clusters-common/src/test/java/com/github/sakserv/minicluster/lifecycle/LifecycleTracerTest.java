@@ -0,0 +1,146 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+
+public class LifecycleTracerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        LifecycleTracer.reset();
+    }
+
+    @Test
+    public void testPhasesAndSubStepsAreRecorded() throws Exception {
+        TracedMiniCluster cluster = new TracedMiniCluster();
+        cluster.start();
+
+        List<LifecycleEvent> events = LifecycleTracer.getEvents(cluster);
+        assertEquals(4, events.size());
+
+        // Children complete before their parent
+        assertEquals(LifecycleTracer.CONFIGURE, events.get(0).getName());
+        assertEquals(1, events.get(0).getDepth());
+        assertEquals("startMaster", events.get(1).getName());
+        assertEquals(1, events.get(1).getDepth());
+        assertEquals(LifecycleTracer.START, events.get(3).getName());
+        assertEquals(0, events.get(3).getDepth());
+        assertEquals("TracedMiniCluster", events.get(3).getComponent());
+
+        Map<String, Long> timings = LifecycleTracer.getTimings(cluster);
+        assertEquals(Arrays.asList(LifecycleTracer.START, LifecycleTracer.CONFIGURE, "startMaster",
+                "startRegionServer"), Arrays.asList(timings.keySet().toArray()));
+        assertTrue(LifecycleTracer.getDurationMillis(cluster, "startMaster") >= 50);
+        assertTrue(LifecycleTracer.getDurationMillis(cluster, LifecycleTracer.START)
+                >= LifecycleTracer.getDurationMillis(cluster, "startMaster"));
+        assertEquals(-1L, LifecycleTracer.getDurationMillis(cluster, LifecycleTracer.STOP));
+    }
+
+    @Test
+    public void testSpanIsRecordedWhenPhaseFails() throws Exception {
+        TracedMiniCluster cluster = new TracedMiniCluster();
+        try {
+            cluster.stop();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, LifecycleTracer.getEvents(cluster).size());
+
+        // The failed span must not leave the thread nested
+        try (LifecycleSpan span = LifecycleTracer.span(cluster, LifecycleTracer.CLEAN_UP)) {
+            assertEquals(LifecycleTracer.CLEAN_UP, span.getName());
+        }
+        assertEquals(0, LifecycleTracer.getEvents(cluster).get(1).getDepth());
+    }
+
+    @Test
+    public void testInstancesAreTrackedSeparately() throws Exception {
+        TracedMiniCluster first = new TracedMiniCluster();
+        TracedMiniCluster second = new TracedMiniCluster();
+        first.start();
+        second.configure();
+        assertEquals(4, LifecycleTracer.getEvents(first).size());
+        assertEquals(1, LifecycleTracer.getEvents(second).size());
+        assertEquals(5, LifecycleTracer.getEvents().size());
+    }
+
+    @Test
+    public void testWriteChromeTrace() throws Exception {
+        new TracedMiniCluster().start();
+
+        File traceFile = new File(temporaryFolder.getRoot(), "trace/minicluster-trace.json");
+        LifecycleTracer.writeChromeTrace(traceFile);
+
+        String trace = new String(Files.readAllBytes(traceFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(trace.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(trace.contains("\"name\":\"startMaster\",\"cat\":\"TracedMiniCluster\",\"ph\":\"X\""));
+        assertTrue(trace.contains("\"name\":\"thread_name\",\"ph\":\"M\""));
+        assertTrue(trace.trim().endsWith("]}"));
+    }
+
+    private static class TracedMiniCluster extends FakeMiniCluster {
+
+        TracedMiniCluster() {
+            super("traced");
+        }
+
+        @Override
+        public void start() throws Exception {
+            try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+                configure();
+                try (LifecycleSpan step = LifecycleTracer.span(this, "startMaster")) {
+                    Thread.sleep(50);
+                }
+                try (LifecycleSpan step = LifecycleTracer.span(this, "startRegionServer")) {
+                    Thread.sleep(10);
+                }
+                span.succeeded();
+            }
+        }
+
+        @Override
+        public void stop(boolean cleanUp) throws Exception {
+            try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+                throw new IllegalStateException("not started");
+            }
+        }
+
+        @Override
+        public void configure() throws Exception {
+            try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+                Thread.sleep(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+
+public class ResourceAuditorTest {
+
+    @Before
+    public void setUp() {
+        ResourceAuditor.reset();
+        System.setProperty(ResourceAuditor.ENABLED_PROPERTY, "true");
+        System.setProperty(ResourceAuditor.SETTLE_MS_PROPERTY, "500");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ResourceAuditor.ENABLED_PROPERTY);
+        System.clearProperty(ResourceAuditor.SETTLE_MS_PROPERTY);
+        System.clearProperty(ResourceAuditor.REAP_PROPERTY);
+    }
+
+    @Test
+    public void testCleanStopHasNoLeaks() throws Exception {
+        ThreadedMiniCluster cluster = new ThreadedMiniCluster("audit-clean", true);
+        cluster.start();
+        cluster.stop();
+
+        assertEquals(1, ResourceAuditor.getReports().size());
+        assertTrue(ResourceAuditor.getReports().get(0).getLeakedThreads().isEmpty());
+    }
+
+    @Test
+    public void testLeakedThreadIsReported() throws Exception {
+        ThreadedMiniCluster cluster = new ThreadedMiniCluster("audit-leak", false);
+        try {
+            cluster.start();
+            cluster.stop();
+
+            ResourceLeakReport report = ResourceAuditor.getReports().get(0);
+            assertEquals("ThreadedMiniCluster", report.getComponent());
+            assertTrue(report.getLeakedThreads().contains("audit-leak"));
+            assertTrue(report.getReapedThreads().isEmpty());
+            assertTrue(cluster.thread.isAlive());
+        } finally {
+            cluster.release.countDown();
+        }
+    }
+
+    @Test
+    public void testKnownLeakedThreadIsReaped() throws Exception {
+        System.setProperty(ResourceAuditor.REAP_PROPERTY, "true");
+        ThreadedMiniCluster cluster = new ThreadedMiniCluster("kafka-mini-cluster-audit", false);
+        cluster.start();
+        cluster.stop();
+
+        ResourceLeakReport report = ResourceAuditor.getReports().get(0);
+        assertTrue(report.getLeakedThreads().contains("kafka-mini-cluster-audit"));
+        assertTrue(report.getReapedThreads().contains("kafka-mini-cluster-audit"));
+        assertFalse(cluster.thread.isAlive());
+    }
+
+    @Test
+    public void testThreadsOfARunningClusterAreNotReaped() throws Exception {
+        System.setProperty(ResourceAuditor.REAP_PROPERTY, "true");
+        ThreadedMiniCluster first = new ThreadedMiniCluster("audit-first", true);
+        ThreadedMiniCluster second = new ThreadedMiniCluster("kafka-mini-cluster-second", false);
+        first.start();
+        second.start();
+
+        // The window of first overlaps second, whose thread is still in use
+        first.stop();
+        ResourceLeakReport firstReport = ResourceAuditor.getReports().get(0);
+        assertTrue(firstReport.getLeakedThreads().contains("kafka-mini-cluster-second"));
+        assertTrue(firstReport.getReapedThreads().isEmpty());
+        assertTrue(second.thread.isAlive());
+
+        // Once no other window is open the leak is reaped where it belongs
+        second.stop();
+        ResourceLeakReport secondReport = ResourceAuditor.getReports().get(1);
+        assertTrue(secondReport.getReapedThreads().contains("kafka-mini-cluster-second"));
+        assertFalse(second.thread.isAlive());
+    }
+
+    @Test
+    public void testStopWithoutStartIsNotAudited() {
+        assertNull(ResourceAuditor.afterStop(new ThreadedMiniCluster("audit-none", true)));
+    }
+
+    private static class ThreadedMiniCluster extends FakeMiniCluster {
+        private final boolean stopThread;
+        private final CountDownLatch release = new CountDownLatch(1);
+        private Thread thread;
+
+        ThreadedMiniCluster(String threadName, boolean stopThread) {
+            super(threadName);
+            this.stopThread = stopThread;
+        }
+
+        @Override
+        public void configure() throws Exception {
+            thread = new Thread(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Reaped
+                }
+            }, getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void stop(boolean cleanUp) throws Exception {
+            if (stopThread) {
+                release.countDown();
+                thread.join();
+            }
+            super.stop(cleanUp);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.lifecycle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+import com.github.sakserv.minicluster.MiniCluster;
+
+public class StartupHistoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        System.clearProperty(StartupHistory.HISTORY_FILE_PROPERTY);
+    }
+
+    @Test
+    public void testRecordRoundTrip() {
+        StartupRecord record = new StartupRecord(1L, "run\"1", "HbaseLocalCluster", 1234L, "1.8.0_181", "2.6.5.0");
+        StartupRecord parsed = StartupRecord.parse(record.toJson());
+        assertEquals("run\"1", parsed.getRunId());
+        assertEquals("HbaseLocalCluster", parsed.getComponent());
+        assertEquals(1234L, parsed.getDurationMillis());
+        assertEquals("2.6.5.0", parsed.getComponentVersion());
+        assertNull(StartupRecord.parse("not json"));
+    }
+
+    @Test
+    public void testStartsAreAppendedToTheHistoryFile() throws Exception {
+        File historyFile = new File(temporaryFolder.getRoot(), "history/startup.jsonl");
+        System.setProperty(StartupHistory.HISTORY_FILE_PROPERTY, historyFile.getAbsolutePath());
+        MiniCluster cluster = new FakeMiniCluster("started");
+        cluster.start();
+        cluster.start();
+
+        List<StartupRecord> history = StartupHistory.read(historyFile);
+        assertEquals(2, history.size());
+        assertEquals("FakeMiniCluster", history.get(0).getComponent());
+        assertEquals(history.get(0).getRunId(), history.get(1).getRunId());
+    }
+
+    @Test
+    public void testFailedStartsAreNotRecorded() throws Exception {
+        File historyFile = new File(temporaryFolder.getRoot(), "startup.jsonl");
+        System.setProperty(StartupHistory.HISTORY_FILE_PROPERTY, historyFile.getAbsolutePath());
+        MiniCluster cluster = new FakeMiniCluster("broken").setStartFailure("port in use");
+        try {
+            cluster.start();
+            fail("start() should have failed");
+        } catch (IllegalStateException e) {
+            assertEquals("port in use", e.getMessage());
+        }
+
+        assertTrue(StartupHistory.read(historyFile).isEmpty());
+    }
+
+    @Test
+    public void testOnlyTheRecentStartsOfTheComponentAreRead() throws Exception {
+        File historyFile = new File(temporaryFolder.getRoot(), "startup.jsonl");
+        for (int i = 0; i < 1000; i++) {
+            String component = i % 100 == 0 ? "KafkaLocalBroker" : "HdfsLocalCluster";
+            StartupHistory.append(historyFile, new StartupRecord(i, "run", component, i, "1.8", "2.6.5.0"), 10);
+        }
+
+        try (FileChannel channel = FileChannel.open(historyFile.toPath(), StandardOpenOption.READ)) {
+            List<StartupRecord> hdfs = StartupHistory.readTail(channel, "HdfsLocalCluster", 3);
+            assertEquals(3, hdfs.size());
+            assertEquals(997L, hdfs.get(0).getDurationMillis());
+            assertEquals(999L, hdfs.get(2).getDurationMillis());
+
+            List<StartupRecord> kafka = StartupHistory.readTail(channel, "KafkaLocalBroker", 20);
+            assertEquals(10, kafka.size());
+            assertEquals(0L, kafka.get(0).getDurationMillis());
+        }
+        assertEquals(1000, StartupHistory.read(historyFile).size());
+    }
+
+    @Test
+    public void testRegressionAgainstTheMedianBaseline() {
+        List<StartupRecord> history = new ArrayList<>();
+        for (long duration : new long[] {1000L, 1100L, 900L, 5000L, 1000L}) {
+            history.add(new StartupRecord(0L, "run", "OozieLocalServer", duration, "1.8", "2.6.5.0"));
+        }
+        assertTrue(StartupHistory.findRegressions(history, 10, 50, 500L).isEmpty());
+
+        history.add(new StartupRecord(0L, "run", "OozieLocalServer", 1600L, "1.8", "2.6.5.0"));
+        assertEquals(1, StartupHistory.findRegressions(history, 10, 50, 500L).size());
+        // Within the absolute slack
+        assertTrue(StartupHistory.findRegressions(history, 10, 50, 1000L).isEmpty());
+        // Only the most recent starts form the baseline
+        assertTrue(StartupHistory.findRegressions(history, 2, 50, 500L).isEmpty());
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+
+public class WarmPoolTest {
+
+    private final List<FakeMiniCluster> created = new CopyOnWriteArrayList<>();
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingFactory() {
+        new WarmPool.Builder<FakeMiniCluster>().setName("fake").build();
+    }
+
+    @Test
+    public void testLeaseDoesNotStartAReplacement() throws Exception {
+        WarmPool<FakeMiniCluster> pool = newPool(2, 0L, true);
+        pool.start();
+        await(() -> pool.getReadyCount() == 2);
+
+        try (WarmPool.Lease<FakeMiniCluster> lease = pool.lease()) {
+            assertTrue(lease.get().isReady());
+            Thread.sleep(200);
+            assertEquals(1, pool.getReadyCount());
+            assertEquals(2, created.size());
+            assertEquals(1, pool.getLeasedCount());
+        }
+        await(() -> pool.getReadyCount() == 2);
+        assertEquals(2, created.size());
+        pool.close();
+    }
+
+    @Test
+    public void testReturnedInstanceIsResetAndReused() throws Exception {
+        // Replacements start at once, the returned instance must still be the one leased next
+        WarmPool<FakeMiniCluster> pool = newPool(1, 0L, true);
+        pool.start();
+
+        FakeMiniCluster leased;
+        try (WarmPool.Lease<FakeMiniCluster> lease = pool.lease()) {
+            leased = lease.get();
+        }
+        try (WarmPool.Lease<FakeMiniCluster> lease = pool.lease()) {
+            assertSame(leased, lease.get());
+            assertEquals(1, leased.resets());
+        }
+        assertEquals(1, created.size());
+        pool.close();
+    }
+
+    @Test
+    public void testPoolNeverOwnsMoreThanSize() throws Exception {
+        WarmPool<FakeMiniCluster> pool = newPool(2, 0L, true);
+        pool.start();
+        for (int i = 0; i < 5; i++) {
+            try (WarmPool.Lease<FakeMiniCluster> first = pool.lease();
+                 WarmPool.Lease<FakeMiniCluster> second = pool.lease()) {
+                assertTrue(first.get() != second.get());
+            }
+        }
+        await(() -> pool.getReadyCount() == 2);
+        assertEquals(2, created.size());
+        pool.close();
+    }
+
+    @Test
+    public void testInstanceWithoutResetIsReplaced() throws Exception {
+        WarmPool<FakeMiniCluster> pool = newPool(1, 0L, false);
+        pool.start();
+        FakeMiniCluster leased;
+        try (WarmPool.Lease<FakeMiniCluster> lease = pool.lease()) {
+            leased = lease.get();
+        }
+        await(() -> !leased.isReady());
+        await(() -> pool.getReadyCount() == 1);
+        pool.close();
+    }
+
+    @Test
+    public void testCloseStopsReadyAndReturnedInstances() throws Exception {
+        WarmPool<FakeMiniCluster> pool = newPool(2, 0L, true);
+        pool.start();
+        await(() -> pool.getReadyCount() == 2);
+        WarmPool.Lease<FakeMiniCluster> lease = pool.lease();
+        pool.close();
+        lease.close();
+        await(() -> created.stream().noneMatch(miniCluster -> miniCluster.isReady()));
+        try {
+            pool.lease();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().startsWith("ERROR: "));
+        }
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testLeaseTimesOut() throws Exception {
+        WarmPool<FakeMiniCluster> pool = new WarmPool.Builder<FakeMiniCluster>()
+                .setName("fake")
+                .setFactory(() -> new FakeMiniCluster("fake").setStartMillis(60000L))
+                .setSize(1)
+                .setReadyTimeout(Duration.ofMillis(100))
+                .build();
+        pool.lease();
+    }
+
+    /**
+     * @param laterStartMillis start time of every instance but the first, which starts at once
+     */
+    private WarmPool<FakeMiniCluster> newPool(int size, long laterStartMillis, boolean supportsReset) {
+        return new WarmPool.Builder<FakeMiniCluster>()
+                .setName("fake")
+                .setFactory(() -> {
+                    FakeMiniCluster miniCluster = new FakeMiniCluster("fake")
+                            .setStartMillis(created.isEmpty() ? 0L : laterStartMillis)
+                            .setResetSupported(supportsReset);
+                    created.add(miniCluster);
+                    return miniCluster;
+                })
+                .setSize(size)
+                .setReadyTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
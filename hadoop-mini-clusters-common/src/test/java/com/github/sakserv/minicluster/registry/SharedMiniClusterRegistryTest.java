@@ -0,0 +1,214 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+
+public class SharedMiniClusterRegistryTest {
+
+    @Test
+    public void testSameConfigurationIsShared() throws Exception {
+        SharedMiniClusterRegistry registry = new SharedMiniClusterRegistry(0L);
+        SharedMiniCluster<FakeMiniCluster> first = registry.acquire(new FakeMiniCluster("zookeeper-2181"));
+        SharedMiniCluster<FakeMiniCluster> second = registry.acquire(new FakeMiniCluster("zookeeper-2181"));
+
+        assertSame(first.get(), second.get());
+        assertEquals(1, first.get().starts());
+        assertEquals(2, registry.getReferenceCount(new FakeMiniCluster("zookeeper-2181")));
+        assertNotEquals(first.getTenant().getId(), second.getTenant().getId());
+
+        first.release();
+        first.release();
+        assertEquals(0, second.get().stops());
+        second.close();
+        assertEquals(1, second.get().stops());
+        assertFalse(registry.isRunning(new FakeMiniCluster("zookeeper-2181")));
+    }
+
+    @Test
+    public void testDifferentConfigurationIsNotShared() throws Exception {
+        SharedMiniClusterRegistry registry = new SharedMiniClusterRegistry(0L);
+        try (SharedMiniCluster<FakeMiniCluster> first = registry.acquire(new FakeMiniCluster("zookeeper-2181"));
+             SharedMiniCluster<FakeMiniCluster> second = registry.acquire(new FakeMiniCluster("zookeeper-2182"))) {
+            assertNotEquals(first.get(), second.get());
+            assertEquals(1, registry.getReferenceCount(new FakeMiniCluster("zookeeper-2182")));
+        }
+    }
+
+    @Test
+    public void testLingerKeepsClusterForNextAcquire() throws Exception {
+        SharedMiniClusterRegistry registry = new SharedMiniClusterRegistry(60000L);
+        SharedMiniCluster<FakeMiniCluster> first = registry.acquire(new FakeMiniCluster("zookeeper-2181"));
+        first.release();
+        assertTrue(registry.isRunning(new FakeMiniCluster("zookeeper-2181")));
+
+        SharedMiniCluster<FakeMiniCluster> second = registry.acquire(new FakeMiniCluster("zookeeper-2181"));
+        assertSame(first.get(), second.get());
+        assertEquals(1, second.get().starts());
+
+        registry.shutdown();
+        assertEquals(1, second.get().stops());
+        assertFalse(registry.isRunning(new FakeMiniCluster("zookeeper-2181")));
+    }
+
+    @Test
+    public void testFailedStartIsNotRegistered() throws Exception {
+        SharedMiniClusterRegistry registry = new SharedMiniClusterRegistry(0L);
+        FakeMiniCluster failing = new FakeMiniCluster("zookeeper").setStartFailure("Invalid port");
+        try {
+            registry.acquire(failing);
+            fail("Expected the start failure to be rethrown");
+        } catch (IllegalStateException e) {
+            assertFalse(registry.isRunning(failing));
+        }
+    }
+
+    @Test
+    public void testTenantIsCreatedOnAcquireAndDeletedOnRelease() throws Exception {
+        SharedMiniClusterRegistry registry = new SharedMiniClusterRegistry(0L);
+        SharedMiniCluster<FakeMiniCluster> first = registry.acquire("First", new FakeMiniCluster("zookeeper-2181"));
+        SharedMiniCluster<FakeMiniCluster> second = registry.acquire("Second", new FakeMiniCluster("zookeeper-2181"));
+        FakeMiniCluster cluster = first.get();
+        assertTrue(cluster.tenants().contains(first.getTenant().getId()));
+        assertTrue(cluster.tenants().contains(second.getTenant().getId()));
+
+        first.release();
+        assertFalse(cluster.tenants().contains(first.getTenant().getId()));
+        assertTrue(cluster.tenants().contains(second.getTenant().getId()));
+        second.release();
+        assertTrue(cluster.tenants().isEmpty());
+    }
+
+    @Test
+    public void testSlowStartDoesNotBlockOtherClusters() throws Exception {
+        SharedMiniClusterRegistry registry = new SharedMiniClusterRegistry(0L);
+        CountDownLatch startEntered = new CountDownLatch(1);
+        CountDownLatch startReleased = new CountDownLatch(1);
+        FakeMiniCluster slow = new FakeMiniCluster("zookeeper-2181") {
+            @Override
+            public void start() throws Exception {
+                startEntered.countDown();
+                startReleased.await();
+                super.start();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SharedMiniCluster<FakeMiniCluster>> starting = executor.submit(() -> registry.acquire(slow));
+            assertTrue(startEntered.await(10, TimeUnit.SECONDS));
+            Future<SharedMiniCluster<FakeMiniCluster>> waiting = executor.submit(() -> registry.acquire(slow));
+
+            // Another configuration does not wait for the slow start
+            try (SharedMiniCluster<FakeMiniCluster> other = registry.acquire(new FakeMiniCluster("zookeeper-2182"))) {
+                assertEquals(1, other.get().starts());
+            }
+            assertFalse(waiting.isDone());
+
+            startReleased.countDown();
+            assertSame(starting.get(10, TimeUnit.SECONDS).get(), waiting.get(10, TimeUnit.SECONDS).get());
+            assertEquals(1, slow.starts());
+            assertEquals(2, registry.getReferenceCount(slow));
+        } finally {
+            startReleased.countDown();
+            executor.shutdownNow();
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    public void testSlowStopDoesNotBlockOtherClusters() throws Exception {
+        SharedMiniClusterRegistry registry = new SharedMiniClusterRegistry(0L);
+        CountDownLatch stopEntered = new CountDownLatch(1);
+        CountDownLatch stopReleased = new CountDownLatch(1);
+        SlowStopMiniCluster slow = new SlowStopMiniCluster(stopEntered, stopReleased);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            SharedMiniCluster<SlowStopMiniCluster> lease = registry.acquire(slow);
+            Future<?> stopping = executor.submit(() -> {
+                lease.release();
+                return null;
+            });
+            assertTrue(stopEntered.await(10, TimeUnit.SECONDS));
+            assertFalse(registry.isRunning(slow));
+
+            // Another configuration does not wait for the slow stop
+            try (SharedMiniCluster<FakeMiniCluster> other = registry.acquire(new FakeMiniCluster("zookeeper-2182"))) {
+                assertEquals(1, other.get().starts());
+            }
+
+            // The same configuration starts again once the stop returned
+            SlowStopMiniCluster next = new SlowStopMiniCluster(stopEntered, stopReleased);
+            Future<SharedMiniCluster<SlowStopMiniCluster>> restarting = executor.submit(() -> registry.acquire(next));
+            Thread.sleep(100);
+            assertFalse(restarting.isDone());
+            assertEquals(0, next.starts());
+
+            stopReleased.countDown();
+            stopping.get(10, TimeUnit.SECONDS);
+            assertSame(next, restarting.get(10, TimeUnit.SECONDS).get());
+            assertEquals(1, slow.stops());
+            assertEquals(1, next.starts());
+        } finally {
+            stopReleased.countDown();
+            executor.shutdownNow();
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    public void testTenantNames() {
+        Tenant tenant = new Tenant("KafkaLocalBrokerIntegrationTest", 3);
+        assertEquals("kafkalocalbrokerintegrationtest_3", tenant.getId());
+        assertEquals("/tenants/kafkalocalbrokerintegrationtest_3/in", tenant.getHdfsPath("in"));
+        assertEquals("localhost:2181/tenants/kafkalocalbrokerintegrationtest_3",
+                tenant.getZookeeperConnectionString("localhost:2181"));
+        assertEquals("kafkalocalbrokerintegrationtest_3-events", tenant.getKafkaTopic("events"));
+        assertEquals("kafkalocalbrokerintegrationtest_3:users", tenant.getHbaseTableName("users"));
+        assertEquals("t_1_4", new Tenant("1 $", 4).getId());
+    }
+
+    private static class SlowStopMiniCluster extends FakeMiniCluster {
+        private final CountDownLatch stopEntered;
+        private final CountDownLatch stopReleased;
+
+        SlowStopMiniCluster(CountDownLatch stopEntered, CountDownLatch stopReleased) {
+            super("zookeeper-2181");
+            this.stopEntered = stopEntered;
+            this.stopReleased = stopReleased;
+        }
+
+        @Override
+        public void stop(boolean cleanUp) throws Exception {
+            stopEntered.countDown();
+            stopReleased.await();
+            super.stop(cleanUp);
+        }
+    }
+}
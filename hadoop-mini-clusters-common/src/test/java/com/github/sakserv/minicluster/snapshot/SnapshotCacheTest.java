@@ -0,0 +1,110 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SnapshotCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SnapshotCache snapshotCache;
+    private File source;
+
+    @Before
+    public void setUp() throws Exception {
+        snapshotCache = new SnapshotCache(temporaryFolder.newFolder("snapshots"));
+        source = temporaryFolder.newFolder("source");
+        write(new File(source, "dfs/name1/current/VERSION"), "clusterID=CID-1");
+        write(new File(source, "dfs/name1/current/fsimage_0000000000000000000"), "image");
+        write(new File(source, "dfs/name1/in_use.lock"), "lock");
+        write(new File(source, "metastore_db/db.lck"), "lock");
+    }
+
+    @Test
+    public void testKeyIsStable() {
+        assertEquals(SnapshotCache.key("HdfsLocalCluster", 1), SnapshotCache.key("HdfsLocalCluster", 1));
+        assertNotEquals(SnapshotCache.key("HdfsLocalCluster", 1), SnapshotCache.key("HdfsLocalCluster", 2));
+        assertEquals(64, SnapshotCache.key().length());
+    }
+
+    @Test
+    public void testRestoreMissingSnapshot() throws Exception {
+        String key = SnapshotCache.key("missing");
+        assertFalse(snapshotCache.contains(key));
+        assertFalse(snapshotCache.restore(key, temporaryFolder.newFolder("target")));
+    }
+
+    @Test
+    public void testCaptureAndRestore() throws Exception {
+        String key = SnapshotCache.key("HdfsLocalCluster", 1);
+        assertTrue(snapshotCache.capture(key, source));
+        assertTrue(snapshotCache.contains(key));
+        assertFalse(snapshotCache.capture(key, source));
+
+        File target = new File(temporaryFolder.getRoot(), "target");
+        write(new File(target, "stale"), "from a previous run");
+        assertTrue(snapshotCache.restore(key, target, "fsimage_*"));
+
+        assertEquals("clusterID=CID-1", read(new File(target, "dfs/name1/current/VERSION")));
+        assertEquals("image", read(new File(target, "dfs/name1/current/fsimage_0000000000000000000")));
+        assertFalse(new File(target, "dfs/name1/in_use.lock").exists());
+        assertFalse(new File(target, "metastore_db/db.lck").exists());
+        assertFalse(new File(target, "stale").exists());
+
+        // The restored copy must not write through to the snapshot
+        write(new File(target, "dfs/name1/current/VERSION"), "clusterID=CID-2");
+        File restoredAgain = new File(temporaryFolder.getRoot(), "restoredAgain");
+        assertTrue(snapshotCache.restore(key, restoredAgain));
+        assertEquals("clusterID=CID-1", read(new File(restoredAgain, "dfs/name1/current/VERSION")));
+    }
+
+    @Test
+    public void testIsEnabled() {
+        assertTrue(SnapshotCache.isEnabled(true));
+        assertFalse(SnapshotCache.isEnabled(false));
+        System.setProperty(SnapshotCache.ENABLED_PROPERTY, "true");
+        try {
+            assertTrue(SnapshotCache.isEnabled(null));
+        } finally {
+            System.clearProperty(SnapshotCache.ENABLED_PROPERTY);
+        }
+        assertFalse(SnapshotCache.isEnabled(null));
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Path path = file.toPath();
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
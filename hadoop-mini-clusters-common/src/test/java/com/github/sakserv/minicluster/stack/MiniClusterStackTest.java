@@ -0,0 +1,196 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.stack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+import com.github.sakserv.minicluster.util.ShutdownUtils;
+
+public class MiniClusterStackTest {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingClusters() {
+        new MiniClusterStack.Builder().build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateName() {
+        new MiniClusterStack.Builder()
+                .addCluster("zookeeper", sleeping("zookeeper", 0))
+                .addCluster("zookeeper", sleeping("zookeeper", 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownDependency() {
+        new MiniClusterStack.Builder()
+                .addCluster("kafka", sleeping("kafka", 0), "zookeeper")
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCycle() {
+        new MiniClusterStack.Builder()
+                .addCluster("a", sleeping("a", 0), "b")
+                .addCluster("b", sleeping("b", 0), "c")
+                .addCluster("c", sleeping("c", 0), "a")
+                .build();
+    }
+
+    @Test
+    public void testStartOrderRespectsDependencies() throws Exception {
+        MiniClusterStack stack = new MiniClusterStack.Builder()
+                .addCluster("kafka", sleeping("kafka", 10), "zookeeper")
+                .addCluster("hbase", sleeping("hbase", 10), "zookeeper", "hdfs")
+                .addCluster("zookeeper", sleeping("zookeeper", 50))
+                .addCluster("hdfs", sleeping("hdfs", 10))
+                .build();
+        stack.start();
+
+        assertTrue(events.indexOf("start:zookeeper") < events.indexOf("start:kafka"));
+        assertTrue(events.indexOf("start:zookeeper") < events.indexOf("start:hbase"));
+        assertTrue(events.indexOf("start:hdfs") < events.indexOf("start:hbase"));
+
+        events.clear();
+        stack.stop();
+        assertTrue(events.indexOf("stop:kafka") < events.indexOf("stop:zookeeper"));
+        assertTrue(events.indexOf("stop:hbase") < events.indexOf("stop:zookeeper"));
+        assertTrue(events.indexOf("stop:hbase") < events.indexOf("stop:hdfs"));
+        ShutdownUtils.awaitCleanUps(Duration.ofSeconds(10));
+        assertTrue(events.contains("cleanUp:hdfs"));
+    }
+
+    @Test
+    public void testIndependentClustersStartConcurrently() throws Exception {
+        MiniClusterStack stack = new MiniClusterStack.Builder()
+                .addCluster("a", sleeping("a", 300))
+                .addCluster("b", sleeping("b", 300))
+                .addCluster("c", sleeping("c", 300))
+                .build();
+        stack.start();
+        assertTrue("Expected concurrent startup but took " + stack.getStartupMillis() + " ms",
+                stack.getStartupMillis() < 800);
+        stack.stop(false);
+    }
+
+    @Test
+    public void testCriticalPath() throws Exception {
+        MiniClusterStack stack = new MiniClusterStack.Builder()
+                .addCluster("zookeeper", sleeping("zookeeper", 100))
+                .addCluster("hdfs", sleeping("hdfs", 10))
+                .addCluster("hbase", sleeping("hbase", 200), "zookeeper", "hdfs")
+                .addCluster("kafka", sleeping("kafka", 10), "zookeeper")
+                .build();
+        stack.start();
+        assertEquals(Arrays.asList("zookeeper", "hbase"), stack.getCriticalPath());
+        assertTrue(stack.getCriticalPathMillis() >= 300);
+        assertTrue(stack.getStartupMillis("hbase") >= 200);
+        stack.stop(false);
+    }
+
+    @Test
+    public void testFailedStartStopsStartedClusters() throws Exception {
+        FakeMiniCluster zookeeper = sleeping("zookeeper", 10);
+        FakeMiniCluster failing = sleeping("kafka", 10).setStartFailure("kafka failed");
+        MiniClusterStack stack = new MiniClusterStack.Builder()
+                .addCluster("zookeeper", zookeeper)
+                .addCluster("kafka", failing, "zookeeper")
+                .addCluster("storm", sleeping("storm", 10), "kafka")
+                .build();
+        try {
+            stack.start();
+            fail("Expected the stack to fail to start");
+        } catch (IllegalStateException e) {
+            assertEquals("kafka failed", e.getMessage());
+        }
+        assertFalse(events.contains("start:storm"));
+        assertFalse(events.contains("stop:kafka"));
+        assertTrue(events.contains("stop:zookeeper"));
+        // The half started kafka is forced down, the started zookeeper loses its data
+        assertTrue(failing.forced());
+        assertEquals(1, failing.cleanUps());
+        assertTrue(zookeeper.discarded());
+    }
+
+    @Test
+    public void testDependentsWaitForReadiness() throws Exception {
+        FakeMiniCluster zookeeper = sleeping("zookeeper", 10).setReadyDelayMillis(150);
+        FakeMiniCluster kafka = sleeping("kafka", 10).setRequires(zookeeper);
+        MiniClusterStack stack = new MiniClusterStack.Builder()
+                .addCluster("zookeeper", zookeeper)
+                .addCluster("kafka", kafka, "zookeeper")
+                .build();
+        stack.start();
+        assertTrue(stack.isReady());
+        assertTrue(stack.getStartupMillis("zookeeper") >= 150);
+        stack.stop(false);
+        assertFalse(stack.isReady());
+    }
+
+    @Test
+    public void testStuckStopIsForcedAfterTimeout() throws Exception {
+        FakeMiniCluster stuck = sleeping("storm", 0).setStopMillis(60000);
+        MiniClusterStack stack = new MiniClusterStack.Builder()
+                .addCluster("zookeeper", sleeping("zookeeper", 0))
+                .addCluster("storm", stuck, "zookeeper")
+                .setStopTimeout(Duration.ofMillis(200))
+                .build();
+        stack.start();
+        long startNanos = System.nanoTime();
+        try {
+            stack.stop(false);
+            fail("Expected the stop to time out");
+        } catch (TimeoutException e) {
+            assertTrue(events.contains("forceStop:storm"));
+        }
+        assertTrue(events.contains("stop:zookeeper"));
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingStopTimeout() {
+        new MiniClusterStack.Builder()
+                .addCluster("zookeeper", sleeping("zookeeper", 0))
+                .setStopTimeout(null)
+                .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingReadyTimeout() {
+        new MiniClusterStack.Builder()
+                .addCluster("zookeeper", sleeping("zookeeper", 0))
+                .setReadyTimeout(null)
+                .build();
+    }
+
+    private FakeMiniCluster sleeping(String name, long startMillis) {
+        return new FakeMiniCluster(name, events).setStartMillis(startMillis);
+    }
+}
@@ -1,8 +1,17 @@
 package com.github.sakserv.minicluster.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /*
  *  Licensed under the Apache License, Version 2.0 (the "License");
@@ -18,10 +27,44 @@ import org.junit.Test;
  *  limitations under the License.
  */public class FileUtilsTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testToString() throws Exception {
         FileUtils fileUtils = new FileUtils();
         assertEquals("FileUtils", fileUtils.toString());
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDeleteFolder() throws Exception {
+        File dir = createTree(temporaryFolder.newFolder("embedded_hdfs"));
+        FileUtils.deleteFolder(dir.getAbsolutePath());
+        assertFalse(dir.exists());
+    }
+
+    @Test
+    public void testDeleteFolderInBackgroundFreesThePathImmediately() throws Exception {
+        File dir = createTree(temporaryFolder.newFolder("embedded_hdfs"));
+        FileUtils.deleteFolderInBackground(dir.getAbsolutePath());
+        assertFalse(dir.exists());
+        assertTrue(dir.mkdir());
+
+        FileUtils.awaitBackgroundDeletes(Duration.ofSeconds(30));
+        String[] remaining = temporaryFolder.getRoot().list();
+        assertEquals(1, remaining.length);
+        assertEquals("embedded_hdfs", remaining[0]);
+    }
+
+    private static File createTree(File root) throws IOException {
+        for (int i = 0; i < 5; i++) {
+            File dir = new File(root, "dir" + i + "/nested");
+            assertTrue(dir.mkdirs());
+            for (int j = 0; j < 20; j++) {
+                Files.write(new File(dir, "file" + j).toPath(), new byte[] {1});
+            }
+        }
+        return root;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+
+public class ReadinessUtilsTest {
+
+    @Test
+    public void testReturnsOnceReady() throws Exception {
+        ProbedCluster cluster = new ProbedCluster(3);
+        cluster.awaitReady(Duration.ofSeconds(10));
+        assertEquals(3, cluster.probes);
+        assertTrue(LifecycleTracer.getDurationMillis(cluster, ReadinessUtils.AWAIT_READY) >= 0);
+    }
+
+    @Test
+    public void testTimeoutKeepsLastProbeFailure() throws Exception {
+        ProbedCluster cluster = new ProbedCluster(Integer.MAX_VALUE);
+        try {
+            cluster.awaitReady(Duration.ofMillis(100));
+            fail("Expected a TimeoutException");
+        } catch (TimeoutException e) {
+            assertEquals("Connection refused", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testIsPortOpen() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+            assertTrue(ReadinessUtils.isPortOpen("localhost", port));
+        }
+        assertFalse(ReadinessUtils.isPortOpen("localhost", port));
+    }
+
+    private static class ProbedCluster extends FakeMiniCluster {
+        private final int readyAfterProbes;
+        private int probes;
+
+        ProbedCluster(int readyAfterProbes) {
+            super("probed");
+            this.readyAfterProbes = readyAfterProbes;
+        }
+
+        @Override
+        public boolean isReady() {
+            probes++;
+            if (probes == 1) {
+                throw new IllegalStateException("Connection refused");
+            }
+            return probes >= readyAfterProbes;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import com.github.sakserv.minicluster.FakeMiniCluster;
+
+public class ShutdownUtilsTest {
+
+    @Test
+    public void testStopAsyncCleansUpInTheBackground() throws Exception {
+        CountDownLatch cleanUpLatch = new CountDownLatch(1);
+        FakeMiniCluster cluster = new FakeMiniCluster("stoppable") {
+            @Override
+            public void cleanUp() throws Exception {
+                cleanUpLatch.await();
+                super.cleanUp();
+            }
+        };
+        cluster.stopAsync().get(10, TimeUnit.SECONDS);
+        assertEquals(1, cluster.stops());
+        assertEquals(0, cluster.cleanUps());
+
+        cleanUpLatch.countDown();
+        ShutdownUtils.awaitCleanUp(cluster, Duration.ofSeconds(10));
+        assertEquals(1, cluster.cleanUps());
+    }
+
+    @Test
+    public void testStopAllRunsConcurrently() throws Exception {
+        FakeMiniCluster first = stoppable(300);
+        FakeMiniCluster second = stoppable(300);
+        FakeMiniCluster third = stoppable(300);
+        long startNanos = System.nanoTime();
+        ShutdownUtils.stopAll(Duration.ofSeconds(10), first, second, third);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < 800);
+        assertTrue(first.stops() == 1 && second.stops() == 1 && third.stops() == 1);
+    }
+
+    @Test
+    public void testStuckStopIsForced() throws Exception {
+        FakeMiniCluster stuck = stoppable(60000);
+        FakeMiniCluster healthy = stoppable(0);
+        try {
+            ShutdownUtils.stopAll(Duration.ofMillis(200), stuck, healthy);
+            fail("Expected a TimeoutException");
+        } catch (TimeoutException e) {
+            assertTrue(stuck.forced());
+        }
+        assertEquals(1, healthy.stops());
+    }
+
+    @Test
+    public void testStopWithCleanUpDiscardsData() throws Exception {
+        FakeMiniCluster cluster = stoppable(0);
+        ShutdownUtils.stop(cluster, true, Duration.ofSeconds(10));
+        assertTrue(cluster.discarded());
+
+        FakeMiniCluster kept = stoppable(0);
+        ShutdownUtils.stop(kept, false, Duration.ofSeconds(10));
+        assertEquals(1, kept.stops());
+        assertTrue(!kept.discarded());
+    }
+
+    @Test
+    public void testTimeoutReportsMiniClustersThatCannotBeForced() throws Exception {
+        FakeMiniCluster unforceable = new FakeMiniCluster("unforceable") {
+            @Override
+            public void forceStop() {
+                throw new UnsupportedOperationException("ERROR: no forceStop()");
+            }
+        };
+        unforceable.setStopMillis(60000);
+        try {
+            ShutdownUtils.stop(unforceable, false, Duration.ofMillis(200));
+            fail("Expected a TimeoutException");
+        } catch (TimeoutException e) {
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getSuppressed()[0] instanceof UnsupportedOperationException);
+        }
+    }
+
+    private static FakeMiniCluster stoppable(long stopMillis) {
+        return new FakeMiniCluster("stoppable").setStopMillis(stopMillis);
+    }
+}
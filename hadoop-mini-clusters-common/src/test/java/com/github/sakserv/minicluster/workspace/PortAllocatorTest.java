@@ -0,0 +1,65 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PortAllocatorTest {
+
+    @Test
+    public void testFixedPortsAreUnchanged() {
+        assertEquals(Integer.valueOf(20112), PortAllocator.resolve(20112));
+        assertEquals(Integer.valueOf(-1), PortAllocator.resolve(-1));
+        assertEquals("44111", PortAllocator.resolve("44111"));
+        assertEquals("localhost:37001", PortAllocator.resolveAddress("localhost:37001"));
+    }
+
+    @Test
+    public void testAutoPortsAreFreeAndUnique() throws Exception {
+        Set<Integer> ports = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            int port = PortAllocator.resolve(0);
+            assertTrue(ports.add(port));
+            try (ServerSocket socket = new ServerSocket(port)) {
+                assertEquals(port, socket.getLocalPort());
+            }
+        }
+        assertNotEquals("auto", PortAllocator.resolve("auto"));
+    }
+
+    @Test
+    public void testAddresses() {
+        assertTrue(PortAllocator.isAutoAddress("localhost:auto"));
+        assertFalse(PortAllocator.isAutoAddress("localhost"));
+        assertTrue(PortAllocator.resolveAddress("localhost:0").matches("localhost:[1-9][0-9]*"));
+        assertEquals("localhost:2181", PortAllocator.resolveAddress("localhost:auto", 2181));
+        assertEquals("localhost:22010", PortAllocator.resolveAddress("localhost:22010", 2181));
+    }
+
+    @Test
+    public void testParse() {
+        assertEquals(0, PortAllocator.parse("auto"));
+        assertEquals(20112, PortAllocator.parse(" 20112 "));
+    }
+}
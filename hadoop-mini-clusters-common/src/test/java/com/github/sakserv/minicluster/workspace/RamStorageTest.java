@@ -0,0 +1,89 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RamStorageTest {
+
+    @Rule
+    public TemporaryFolder tmpfs = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        System.setProperty(RamStorage.DIR_PROPERTY, tmpfs.getRoot().getAbsolutePath());
+        System.setProperty(RamStorage.LIMIT_MB_PROPERTY, "100");
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(RamStorage.DIR_PROPERTY);
+        System.clearProperty(RamStorage.LIMIT_MB_PROPERTY);
+    }
+
+    @Test
+    public void testDisabledKeepsTheConfiguredDir() {
+        assertEquals("embedded_zk", RamStorage.resolve("embedded_zk", "embedded_zk", 64L, false));
+    }
+
+    @Test
+    public void testDirIsPlacedOnTheTmpfs() {
+        long reserved = RamStorage.getReservedBytes();
+        String dir = RamStorage.resolve("embedded_zk", "embedded_zk", 64L, true);
+        try {
+            assertTrue(dir.startsWith(tmpfs.getRoot().getAbsolutePath()));
+            assertTrue(RamStorage.isRamDir(dir));
+            assertEquals(dir, RamStorage.resolve(dir, "embedded_zk", 64L, true));
+            assertEquals(reserved + 64L * 1024L * 1024L, RamStorage.getReservedBytes());
+        } finally {
+            RamStorage.release(dir);
+        }
+        assertEquals(reserved, RamStorage.getReservedBytes());
+        assertFalse(RamStorage.isRamDir(dir));
+    }
+
+    @Test
+    public void testReservationIsReturnedOnceTheDirIsDeleted() throws Exception {
+        long reserved = RamStorage.getReservedBytes();
+        String dir = RamStorage.resolve("embedded_zk", "embedded_zk", 64L, true);
+        assertTrue(new File(dir, "version-2").mkdirs());
+        RamStorage.deleteInBackground(dir).get();
+        assertFalse(new File(dir).exists());
+        assertEquals(reserved, RamStorage.getReservedBytes());
+        assertFalse(RamStorage.isRamDir(dir));
+    }
+
+    @Test
+    public void testOverflowFallsBackToDisk() {
+        String first = RamStorage.resolve("embedded_zk", "embedded_zk", 64L, true);
+        try {
+            String second = RamStorage.resolve("embedded_kafka", "embedded_kafka", 64L, true);
+            assertEquals("embedded_kafka", second);
+            assertFalse(new File(second).isAbsolute());
+        } finally {
+            RamStorage.release(first);
+        }
+    }
+}
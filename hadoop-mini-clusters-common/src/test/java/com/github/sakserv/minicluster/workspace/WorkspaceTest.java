@@ -0,0 +1,41 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class WorkspaceTest {
+
+    @Test
+    public void testConfiguredDirIsUnchanged() {
+        assertEquals("embedded_hdfs", Workspace.resolve("embedded_hdfs", "embedded_hdfs"));
+    }
+
+    @Test
+    public void testAutoDirsAreUniqueInTheForkDir() {
+        String first = Workspace.resolve("auto", "embedded_hdfs");
+        String second = Workspace.resolve("AUTO", "embedded_hdfs");
+        assertNotEquals(first, second);
+        assertEquals(Workspace.getForkDir(), new File(first).getParentFile());
+        assertTrue(new File(first).isAbsolute());
+        assertTrue(Workspace.getForkDir().isDirectory());
+    }
+}
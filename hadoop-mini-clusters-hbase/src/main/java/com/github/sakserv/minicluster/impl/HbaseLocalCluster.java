@@ -14,11 +14,26 @@
 package com.github.sakserv.minicluster.impl;
 
 import com.github.sakserv.minicluster.MiniCluster;
-import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.client.ClientPool;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.config.ConfigTemplates;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.RamStorage;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.HConstants;
 import org.apache.hadoop.hbase.MiniHBaseCluster;
+import org.apache.hadoop.hbase.NamespaceDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
+import org.apache.hadoop.hbase.client.Connection;
+import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,19 +42,25 @@ public class HbaseLocalCluster implements MiniCluster {
     // Logger
     private static final Logger LOG = LoggerFactory.getLogger(HbaseLocalCluster.class);
 
+    private static final String HBASE_CONFIGURATION_TEMPLATE = "hbase";
+
     MiniHBaseCluster miniHBaseCluster;
 
     private Integer hbaseMasterPort;
     private Integer hbaseMasterInfoPort;
     private Integer numRegionServers;
     private String hbaseRootDir;
+    private Boolean hbaseRamStorageEnabled;
     private Integer zookeeperPort;
     private String zookeeperConnectionString;
     private String zookeeperZnodeParent;
     private Boolean hbaseWalReplicationEnabled;
+    private final ConfigProfiles profiles;
     private Configuration hbaseConfiguration;
     private Boolean restActivated = false;
     private HbaseRestLocalCluster hbaseRestLocalCluster;
+    private final ClientPool<Connection> connectionPool = ClientPool.shared("HBase Connection",
+            () -> ConnectionFactory.createConnection(hbaseConfiguration));
 
     public Integer getHbaseMasterPort() {
         return hbaseMasterPort;
@@ -57,6 +78,10 @@ public class HbaseLocalCluster implements MiniCluster {
         return hbaseRootDir;
     }
 
+    public Boolean getHbaseRamStorageEnabled() {
+        return hbaseRamStorageEnabled;
+    }
+
     public Integer getZookeeperPort() {
         return zookeeperPort;
     }
@@ -73,6 +98,22 @@ public class HbaseLocalCluster implements MiniCluster {
         return hbaseWalReplicationEnabled;
     }
 
+    public Boolean getHbaseHeadless() {
+        return profiles.get(Profile.HEADLESS);
+    }
+
+    public Boolean getHbaseMinimalProfile() {
+        return profiles.get(Profile.MINIMAL);
+    }
+
+    public Boolean getHbaseEphemeralDurability() {
+        return profiles.get(Profile.EPHEMERAL_DURABILITY);
+    }
+
+    public Boolean getHbaseStaticResolution() {
+        return profiles.get(Profile.STATIC_RESOLUTION);
+    }
+
     public Configuration getHbaseConfiguration() {
         return hbaseConfiguration;
     }
@@ -90,25 +131,37 @@ public class HbaseLocalCluster implements MiniCluster {
         this.hbaseMasterInfoPort = builder.hbaseMasterInfoPort;
         this.numRegionServers = builder.numRegionServers;
         this.hbaseRootDir = builder.hbaseRootDir;
+        this.hbaseRamStorageEnabled = builder.hbaseRamStorageEnabled;
         this.zookeeperPort = builder.zookeeperPort;
         this.zookeeperConnectionString = builder.zookeeperConnectionString;
         this.zookeeperZnodeParent = builder.zookeeperZnodeParent;
         this.hbaseWalReplicationEnabled = builder.hbaseWalReplicationEnabled;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.hbaseConfiguration = builder.hbaseConfiguration;
         this.restActivated = builder.restActivated;
         this.hbaseRestLocalCluster = builder.hbaseRestLocalCluster;
 
     }
 
+    /**
+     * Returns a copy of HBaseConfiguration.create() from {@link ConfigTemplates}, skipping the
+     * parsing of the HBase and Hadoop default resources after the first call.
+     */
+    public static Configuration newHbaseConfiguration() {
+        return ConfigTemplates.copy(HBASE_CONFIGURATION_TEMPLATE, HBaseConfiguration::create, Configuration::new);
+    }
+
     public static class Builder {
         private Integer hbaseMasterPort;
         private Integer hbaseMasterInfoPort;
         private Integer numRegionServers;
         private String hbaseRootDir;
+        private Boolean hbaseRamStorageEnabled;
         private Integer zookeeperPort;
         private String zookeeperConnectionString;
         private String zookeeperZnodeParent;
         private Boolean hbaseWalReplicationEnabled;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private Configuration hbaseConfiguration;
         private Boolean restActivated = false;
         private HbaseRestLocalCluster hbaseRestLocalCluster;
@@ -133,6 +186,15 @@ public class HbaseLocalCluster implements MiniCluster {
             return this;
         }
 
+        /**
+         * Place the HBase data dir on a tmpfs (/dev/shm), falling back to disk when it does not
+         * fit. Defaults to -Dminicluster.storage.ram.enabled.
+         */
+        public Builder setHbaseRamStorageEnabled(Boolean hbaseRamStorageEnabled) {
+            this.hbaseRamStorageEnabled = hbaseRamStorageEnabled;
+            return this;
+        }
+
         public Builder setZookeeperPort(Integer zookeeperPort) {
             this.zookeeperPort = zookeeperPort;
             return this;
@@ -153,6 +215,42 @@ public class HbaseLocalCluster implements MiniCluster {
             return this;
         }
 
+        /**
+         * Turn off the web UIs and info servers, see HeadlessMode. Defaults to
+         * -Dminicluster.headless.enabled.
+         */
+        public Builder setHbaseHeadless(Boolean hbaseHeadless) {
+            profiles.set(Profile.HEADLESS, hbaseHeadless);
+            return this;
+        }
+
+        /**
+         * Use test sized thread pools and handler counts, see MinimalProfile. Defaults to
+         * -Dminicluster.profile.minimal.enabled.
+         */
+        public Builder setHbaseMinimalProfile(Boolean hbaseMinimalProfile) {
+            profiles.set(Profile.MINIMAL, hbaseMinimalProfile);
+            return this;
+        }
+
+        /**
+         * Skip fsyncs, see EphemeralDurability. Defaults to
+         * -Dminicluster.durability.ephemeral.enabled.
+         */
+        public Builder setHbaseEphemeralDurability(Boolean hbaseEphemeralDurability) {
+            profiles.set(Profile.EPHEMERAL_DURABILITY, hbaseEphemeralDurability);
+            return this;
+        }
+
+        /**
+         * Pin hostnames to loopback instead of looking them up, see StaticResolution. Defaults to
+         * -Dminicluster.resolution.static.enabled.
+         */
+        public Builder setHbaseStaticResolution(Boolean hbaseStaticResolution) {
+            profiles.set(Profile.STATIC_RESOLUTION, hbaseStaticResolution);
+            return this;
+        }
+
         public Builder setHbaseConfiguration(Configuration hbaseConfiguration) {
             this.hbaseConfiguration = hbaseConfiguration;
             return this;
@@ -162,6 +260,10 @@ public class HbaseLocalCluster implements MiniCluster {
             return hbaseConfiguration;
         }
 
+        Boolean getHbaseHeadless() {
+            return profiles.get(Profile.HEADLESS);
+        }
+
         void setHbaseRestLocalCluster(HbaseRestLocalCluster hbaseRestLocalCluster) {
             this.hbaseRestLocalCluster = hbaseRestLocalCluster;
         }
@@ -210,16 +312,33 @@ public class HbaseLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("HBASE: Starting MiniHBaseCluster");
-        configure();
-        miniHBaseCluster = new MiniHBaseCluster(hbaseConfiguration, numRegionServers);
-        miniHBaseCluster.startMaster();
-        miniHBaseCluster.startRegionServer();
-        if (isRestActivated()) {
-            getHbaseRestLocalCluster().start();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            LOG.info("HBASE: Starting MiniHBaseCluster");
+            configure();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "createMiniHBaseCluster")) {
+                miniHBaseCluster = new MiniHBaseCluster(hbaseConfiguration, numRegionServers);
+            }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startMaster")) {
+                miniHBaseCluster.startMaster();
+            }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startRegionServer")) {
+                miniHBaseCluster.startRegionServer();
+            }
+            if (isRestActivated()) {
+                getHbaseRestLocalCluster().start();
+            }
+            span.succeeded();
         }
     }
 
+    @Override
+    public boolean isReady() throws Exception {
+        // The master is initialized once hbase:meta and the namespace table are online
+        return miniHBaseCluster != null && miniHBaseCluster.getMaster() != null &&
+                miniHBaseCluster.getMaster().isInitialized() &&
+                (!isRestActivated() || getHbaseRestLocalCluster().isReady());
+    }
+
     @Override
     public void stop() throws Exception {
         stop(true);
@@ -227,33 +346,77 @@ public class HbaseLocalCluster implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("HBASE: Stopping MiniHBaseCluster");
+        stop(cleanUp, !cleanUp);
+    }
 
-        if (isRestActivated()) {
-            getHbaseRestLocalCluster().cleanUp();
-            getHbaseRestLocalCluster().stop();
+    /**
+     * Skips the flush, the root dir is deleted by the caller right after.
+     */
+    @Override
+    public void stopDiscardingData() throws Exception {
+        stop(false, false);
+    }
+
+    private void stop(boolean cleanUp, boolean flush) throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("HBASE: Stopping MiniHBaseCluster");
+            connectionPool.close();
+
+            if (isRestActivated()) {
+                getHbaseRestLocalCluster().cleanUp();
+                getHbaseRestLocalCluster().stop();
+            }
+
+            // Flushing is wasted work when the root dir is deleted right after
+            if (flush) {
+                try (LifecycleSpan step = LifecycleTracer.span(this, "flushcache")) {
+                    miniHBaseCluster.flushcache();
+                }
+            }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "shutdown")) {
+                miniHBaseCluster.close();
+                miniHBaseCluster.shutdown();
+                miniHBaseCluster.waitUntilShutDown();
+            }
+            if (cleanUp) {
+                cleanUp();
+            }
         }
+    }
 
-        miniHBaseCluster.flushcache();
-        miniHBaseCluster.close();
-        miniHBaseCluster.shutdown();
-        miniHBaseCluster.waitUntilShutDown();
-        if (cleanUp) {
-            cleanUp();
+    /**
+     * Aborts the master and region servers instead of waiting for an orderly shutdown.
+     */
+    @Override
+    public void forceStop() throws Exception {
+        LOG.info("HBASE: Killing MiniHBaseCluster");
+        if (isRestActivated()) {
+            getHbaseRestLocalCluster().stop(false);
+        }
+        if (miniHBaseCluster != null) {
+            miniHBaseCluster.killAll();
         }
     }
 
     @Override
     public void configure() throws Exception {
-        configure(hbaseConfiguration);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            configure(hbaseConfiguration);
 
-        // Handle Windows
-        WindowsLibsUtils.setHadoopHome();
+            // Handle Windows
+            WindowsLibsUtils.setHadoopHome();
+        }
     }
 
     public void configure(Configuration hbaseConfiguration) throws Exception {
+        hbaseMasterPort = PortAllocator.resolve(hbaseMasterPort);
+        hbaseMasterInfoPort = PortAllocator.resolve(hbaseMasterInfoPort);
+        hbaseRootDir = RamStorage.resolve(hbaseRootDir, "embedded_hbase", RamStorage.HBASE_MB, hbaseRamStorageEnabled);
+
         hbaseConfiguration.set(HConstants.MASTER_PORT, hbaseMasterPort.toString());
-        hbaseConfiguration.set(HConstants.MASTER_INFO_PORT, hbaseMasterInfoPort.toString());
+        if (!profiles.isEnabled(Profile.HEADLESS)) {
+            hbaseConfiguration.set(HConstants.MASTER_INFO_PORT, hbaseMasterInfoPort.toString());
+        }
         hbaseConfiguration.set(HConstants.HBASE_DIR, hbaseRootDir);
         hbaseConfiguration.set(HConstants.ZOOKEEPER_CLIENT_PORT, zookeeperPort.toString());
         hbaseConfiguration.set(HConstants.ZOOKEEPER_QUORUM, zookeeperConnectionString);
@@ -262,10 +425,43 @@ public class HbaseLocalCluster implements MiniCluster {
         hbaseConfiguration.set("hbase.splitlog.manager.unassigned.timeout", "999999999");
         hbaseConfiguration.set("hbase.splitlog.manager.timeoutmonitor.period", "999999999");
         hbaseConfiguration.set("hbase.master.logcleaner.plugins", "org.apache.hadoop.hbase.master.cleaner.TimeToLiveLogCleaner");
+        profiles.apply(hbaseConfiguration, Component.HBASE);
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(hbaseRootDir);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            RamStorage.deleteInBackground(hbaseRootDir);
+        }
+    }
+
+    @Override
+    public void createTenant(Tenant tenant) throws Exception {
+        try (Admin admin = getPooledConnection().getAdmin()) {
+            admin.createNamespace(NamespaceDescriptor.create(tenant.getHbaseNamespace()).build());
+        }
+    }
+
+    /**
+     * Drops the tables of the tenant's namespace, then the namespace.
+     */
+    @Override
+    public void deleteTenant(Tenant tenant) throws Exception {
+        try (Admin admin = getPooledConnection().getAdmin()) {
+            for (TableName table : admin.listTableNamesByNamespace(tenant.getHbaseNamespace())) {
+                if (admin.isTableEnabled(table)) {
+                    admin.disableTable(table);
+                }
+                admin.deleteTable(table);
+            }
+            admin.deleteNamespace(tenant.getHbaseNamespace());
+        }
+    }
+
+    /**
+     * A Connection shared with other callers. Do not close it, stop() does.
+     */
+    public Connection getPooledConnection() throws Exception {
+        return connectionPool.get();
     }
 }
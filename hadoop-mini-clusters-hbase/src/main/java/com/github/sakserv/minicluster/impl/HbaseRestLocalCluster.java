@@ -14,6 +14,10 @@
 package com.github.sakserv.minicluster.impl;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
 import com.sun.jersey.api.json.JSONConfiguration;
 import com.sun.jersey.spi.container.servlet.ServletContainer;
 import org.apache.hadoop.conf.Configuration;
@@ -153,92 +157,109 @@ public class HbaseRestLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        VersionInfo.logVersion();
-        Configuration conf = builder.getHbaseConfiguration();
-
-        conf.set("hbase.rest.port", hbaseRestPort.toString());
-        conf.set("hbase.rest.readonly", (hbaseRestReadOnly == null) ? "true" : hbaseRestReadOnly.toString());
-        conf.set("hbase.rest.info.port", (hbaseRestInfoPort == null) ? "8085" : hbaseRestInfoPort.toString());
-        String hbaseRestHost = (this.hbaseRestHost == null) ? "0.0.0.0" : this.hbaseRestHost;
-
-        Integer hbaseRestThreadMax = (this.hbaseRestThreadMax == null) ? 100 : this.hbaseRestThreadMax;
-        Integer hbaseRestThreadMin = (this.hbaseRestThreadMin == null) ? 2 : this.hbaseRestThreadMin;
-
-        UserProvider userProvider = UserProvider.instantiate(conf);
-        Pair<FilterHolder, Class<? extends ServletContainer>> pair = loginServerPrincipal(userProvider, conf);
-        FilterHolder authFilter = pair.getFirst();
-        Class<? extends ServletContainer> containerClass = pair.getSecond();
-        RESTServlet.getInstance(conf, userProvider);
-
-        // set up the Jersey servlet container for Jetty
-        ServletHolder sh = new ServletHolder(containerClass);
-        sh.setInitParameter("com.sun.jersey.config.property.resourceConfigClass", ResourceConfig.class.getCanonicalName());
-        sh.setInitParameter("com.sun.jersey.config.property.packages", "jetty");
-        ServletHolder shPojoMap = new ServletHolder(containerClass);
-        Map<String, String> shInitMap = sh.getInitParameters();
-        for (Map.Entry<String, String> e : shInitMap.entrySet()) {
-            shPojoMap.setInitParameter(e.getKey(), e.getValue());
-        }
-        shPojoMap.setInitParameter(JSONConfiguration.FEATURE_POJO_MAPPING, "true");
-
-        // set up Jetty and run the embedded server
-
-        server = new Server();
-
-        Connector connector = new SelectChannelConnector();
-        if (conf.getBoolean(RESTServer.REST_SSL_ENABLED, false)) {
-            SslSelectChannelConnector sslConnector = new SslSelectChannelConnector();
-            String keystore = conf.get(RESTServer.REST_SSL_KEYSTORE_STORE);
-            String password = HBaseConfiguration.getPassword(conf, RESTServer.REST_SSL_KEYSTORE_PASSWORD, null);
-            String keyPassword = HBaseConfiguration.getPassword(conf, RESTServer.REST_SSL_KEYSTORE_KEYPASSWORD, password);
-            sslConnector.setKeystore(keystore);
-            sslConnector.setPassword(password);
-            sslConnector.setKeyPassword(keyPassword);
-            connector = sslConnector;
-        }
-        connector.setPort(hbaseRestPort);
-        connector.setHost(hbaseRestHost);
-        connector.setHeaderBufferSize(8192);
-
-
-        server.addConnector(connector);
-
-        QueuedThreadPool threadPool = new QueuedThreadPool(hbaseRestThreadMax);
-        threadPool.setMinThreads(hbaseRestThreadMin);
-        server.setThreadPool(threadPool);
-
-        server.setSendServerVersion(false);
-        server.setSendDateHeader(false);
-        server.setStopAtShutdown(true);
-        // set up context
-        Context context = new Context(server, "/", Context.SESSIONS);
-        context.addServlet(shPojoMap, "/status/cluster");
-        context.addServlet(sh, "/*");
-        if (authFilter != null) {
-            context.addFilter(authFilter, "/*", 1);
-        }
-
-        HttpServerUtil.constrainHttpMethods(context);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            VersionInfo.logVersion();
+            Configuration conf = builder.getHbaseConfiguration();
+
+            hbaseRestPort = PortAllocator.resolve(hbaseRestPort);
+            hbaseRestInfoPort = PortAllocator.resolve(hbaseRestInfoPort);
+
+            conf.set("hbase.rest.port", hbaseRestPort.toString());
+            conf.set("hbase.rest.readonly", (hbaseRestReadOnly == null) ? "true" : hbaseRestReadOnly.toString());
+            conf.set("hbase.rest.info.port", (hbaseRestInfoPort == null) ? "8085" : hbaseRestInfoPort.toString());
+            String hbaseRestHost = (this.hbaseRestHost == null) ? "0.0.0.0" : this.hbaseRestHost;
+
+            Integer hbaseRestThreadMax = (this.hbaseRestThreadMax == null) ? 100 : this.hbaseRestThreadMax;
+            Integer hbaseRestThreadMin = (this.hbaseRestThreadMin == null) ? 2 : this.hbaseRestThreadMin;
+
+            UserProvider userProvider = UserProvider.instantiate(conf);
+            Pair<FilterHolder, Class<? extends ServletContainer>> pair = loginServerPrincipal(userProvider, conf);
+            FilterHolder authFilter = pair.getFirst();
+            Class<? extends ServletContainer> containerClass = pair.getSecond();
+            RESTServlet.getInstance(conf, userProvider);
+
+            // set up the Jersey servlet container for Jetty
+            ServletHolder sh = new ServletHolder(containerClass);
+            sh.setInitParameter("com.sun.jersey.config.property.resourceConfigClass", ResourceConfig.class.getCanonicalName());
+            sh.setInitParameter("com.sun.jersey.config.property.packages", "jetty");
+            ServletHolder shPojoMap = new ServletHolder(containerClass);
+            Map<String, String> shInitMap = sh.getInitParameters();
+            for (Map.Entry<String, String> e : shInitMap.entrySet()) {
+                shPojoMap.setInitParameter(e.getKey(), e.getValue());
+            }
+            shPojoMap.setInitParameter(JSONConfiguration.FEATURE_POJO_MAPPING, "true");
+
+            // set up Jetty and run the embedded server
+
+            server = new Server();
+
+            Connector connector = new SelectChannelConnector();
+            if (conf.getBoolean(RESTServer.REST_SSL_ENABLED, false)) {
+                SslSelectChannelConnector sslConnector = new SslSelectChannelConnector();
+                String keystore = conf.get(RESTServer.REST_SSL_KEYSTORE_STORE);
+                String password = HBaseConfiguration.getPassword(conf, RESTServer.REST_SSL_KEYSTORE_PASSWORD, null);
+                String keyPassword = HBaseConfiguration.getPassword(conf, RESTServer.REST_SSL_KEYSTORE_KEYPASSWORD, password);
+                sslConnector.setKeystore(keystore);
+                sslConnector.setPassword(password);
+                sslConnector.setKeyPassword(keyPassword);
+                connector = sslConnector;
+            }
+            connector.setPort(hbaseRestPort);
+            connector.setHost(hbaseRestHost);
+            connector.setHeaderBufferSize(8192);
+
+
+            server.addConnector(connector);
+
+            QueuedThreadPool threadPool = new QueuedThreadPool(hbaseRestThreadMax);
+            threadPool.setMinThreads(hbaseRestThreadMin);
+            server.setThreadPool(threadPool);
+
+            server.setSendServerVersion(false);
+            server.setSendDateHeader(false);
+            server.setStopAtShutdown(true);
+            // set up context
+            Context context = new Context(server, "/", Context.SESSIONS);
+            context.addServlet(shPojoMap, "/status/cluster");
+            context.addServlet(sh, "/*");
+            if (authFilter != null) {
+                context.addFilter(authFilter, "/*", 1);
+            }
 
-        // Put up info server.
-        int port = (hbaseRestInfoPort == null) ? 8085 : hbaseRestInfoPort;
-        if (port >= 0) {
-            conf.setLong("startcode", System.currentTimeMillis());
-            String a = hbaseRestHost;
-            infoServer = new InfoServer("rest", a, port, false, conf);
-            infoServer.setAttribute("hbase.conf", conf);
-            infoServer.start();
+            HttpServerUtil.constrainHttpMethods(context);
+
+            // Put up info server, unless headless.
+            int port = (hbaseRestInfoPort == null) ? 8085 : hbaseRestInfoPort;
+            if (port >= 0 && !Profile.HEADLESS.isEnabled(builder.getHbaseHeadless())) {
+                conf.setLong("startcode", System.currentTimeMillis());
+                String a = hbaseRestHost;
+                infoServer = new InfoServer("rest", a, port, false, conf);
+                infoServer.setAttribute("hbase.conf", conf);
+                try (LifecycleSpan step = LifecycleTracer.span(this, "startInfoServer")) {
+                    infoServer.start();
+                }
+            }
+            // start server
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startServer")) {
+                server.start();
+            }
+            span.succeeded();
         }
-        // start server
-        server.start();
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        return server != null && server.isStarted();
     }
 
     @Override
     public void stop() throws Exception {
-        if (infoServer != null) {
-            infoServer.stop();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            if (infoServer != null) {
+                infoServer.stop();
+            }
+            server.stop();
         }
-        server.stop();
     }
 
     @Override
@@ -15,6 +15,7 @@
 package com.github.sakserv.minicluster.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
@@ -22,11 +23,14 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.time.Duration;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HColumnDescriptor;
 import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.NamespaceDescriptor;
 import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.Admin;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTable;
@@ -40,6 +44,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.config.ConfigVars;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.propertyparser.PropertyParser;
 
 public class HbaseLocalClusterIntegrationTest {
@@ -69,6 +74,7 @@ public class HbaseLocalClusterIntegrationTest {
             .setZookeeperConnectionString(propertyParser.getProperty(ConfigVars.ZOOKEEPER_CONNECTION_STRING_KEY))
             .build();
         zookeeperLocalCluster.start();
+        zookeeperLocalCluster.awaitReady(Duration.ofMinutes(2));
 
         hbaseLocalCluster = new HbaseLocalCluster.Builder()
                 .setHbaseMasterPort(
@@ -97,6 +103,7 @@ public class HbaseLocalClusterIntegrationTest {
                     .build()
                 .build();
         hbaseLocalCluster.start();
+        hbaseLocalCluster.awaitReady(Duration.ofMinutes(2));
 
     }
 
@@ -108,6 +115,7 @@ public class HbaseLocalClusterIntegrationTest {
 
     @Test
     public void testHbaseLocalCluster() throws Exception {
+        assertTrue(hbaseLocalCluster.isReady());
 
         String tableName = propertyParser.getProperty(ConfigVars.HBASE_TEST_TABLE_NAME_KEY);
         String colFamName = propertyParser.getProperty(ConfigVars.HBASE_TEST_COL_FAMILY_NAME_KEY);
@@ -188,6 +196,31 @@ public class HbaseLocalClusterIntegrationTest {
 
     }
 
+    @Test
+    public void testTenantNamespace() throws Exception {
+        Tenant tenant = new Tenant("HbaseLocalClusterIntegrationTest", 1);
+        String colFamName = propertyParser.getProperty(ConfigVars.HBASE_TEST_COL_FAMILY_NAME_KEY);
+
+        hbaseLocalCluster.createTenant(tenant);
+        createHbaseTable(tenant.getHbaseTableName("users"), colFamName, hbaseLocalCluster.getHbaseConfiguration());
+        try (Admin admin = hbaseLocalCluster.getPooledConnection().getAdmin()) {
+            assertTrue(namespaceExists(admin, tenant.getHbaseNamespace()));
+            assertEquals(1, admin.listTableNamesByNamespace(tenant.getHbaseNamespace()).length);
+
+            hbaseLocalCluster.deleteTenant(tenant);
+            assertFalse(namespaceExists(admin, tenant.getHbaseNamespace()));
+        }
+    }
+
+    private static boolean namespaceExists(Admin admin, String namespace) throws Exception {
+        for (NamespaceDescriptor descriptor : admin.listNamespaceDescriptors()) {
+            if (descriptor.getName().equals(namespace)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static void createHbaseTable(String tableName, String colFamily,
                                          Configuration configuration) throws Exception {
 
@@ -15,14 +15,30 @@
 package com.github.sakserv.minicluster.impl;
 
 import com.github.sakserv.minicluster.MiniCluster;
-import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.client.ClientPool;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.snapshot.SnapshotCache;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
+import com.github.sakserv.minicluster.workspace.RamStorage;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.util.VersionInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+
 
 public class HdfsLocalCluster implements MiniCluster {
 
@@ -34,11 +50,17 @@ public class HdfsLocalCluster implements MiniCluster {
     private Integer hdfsNamenodePort;
     private Integer hdfsNamenodeHttpPort;
     private String hdfsTempDir;
+    private Boolean hdfsRamStorageEnabled;
     private Integer hdfsNumDatanodes;
     private Boolean hdfsEnablePermissions;
     private Boolean hdfsFormat;
     private Boolean hdfsEnableRunningUserAsProxyUser;
     private Configuration hdfsConfig;
+    private Boolean hdfsSnapshotEnabled;
+    private final ConfigProfiles profiles;
+    private SnapshotCache snapshotCache = new SnapshotCache();
+    private final ClientPool<FileSystem> fileSystemPool = ClientPool.shared("HDFS FileSystem",
+            () -> FileSystem.newInstance(miniDFSCluster.getURI(), hdfsConfig));
 
     public Integer getHdfsNamenodePort() {
         return hdfsNamenodePort;
@@ -48,6 +70,10 @@ public class HdfsLocalCluster implements MiniCluster {
         return hdfsTempDir;
     }
 
+    public Boolean getHdfsRamStorageEnabled() {
+        return hdfsRamStorageEnabled;
+    }
+
     public Integer getHdfsNumDatanodes() {
         return hdfsNumDatanodes;
     }
@@ -68,27 +94,56 @@ public class HdfsLocalCluster implements MiniCluster {
         return hdfsConfig;
     }
 
+    public Boolean getHdfsSnapshotEnabled() {
+        return hdfsSnapshotEnabled;
+    }
+
+    public Boolean getHdfsHeadless() {
+        return profiles.get(Profile.HEADLESS);
+    }
+
+    public Boolean getHdfsMinimalProfile() {
+        return profiles.get(Profile.MINIMAL);
+    }
+
+    public Boolean getHdfsEphemeralDurability() {
+        return profiles.get(Profile.EPHEMERAL_DURABILITY);
+    }
+
+    public Boolean getHdfsStaticResolution() {
+        return profiles.get(Profile.STATIC_RESOLUTION);
+    }
+
+    public Boolean getHdfsForkFree() {
+        return profiles.get(Profile.FORK_FREE);
+    }
+
     private HdfsLocalCluster(Builder builder) {
         this.hdfsNamenodePort = builder.hdfsNamenodePort;
         this.hdfsNamenodeHttpPort = builder.hdfsNamenodeHttpPort;
         this.hdfsTempDir = builder.hdfsTempDir;
+        this.hdfsRamStorageEnabled = builder.hdfsRamStorageEnabled;
         this.hdfsNumDatanodes = builder.hdfsNumDatanodes;
         this.hdfsEnablePermissions = builder.hdfsEnablePermissions;
         this.hdfsFormat = builder.hdfsFormat;
         this.hdfsEnableRunningUserAsProxyUser = builder.hdfsEnableRunningUserAsProxyUser;
         this.hdfsConfig = builder.hdfsConfig;
+        this.hdfsSnapshotEnabled = builder.hdfsSnapshotEnabled;
+        this.profiles = new ConfigProfiles(builder.profiles);
     }
 
     public static class Builder {
         private Integer hdfsNamenodePort;
         private Integer hdfsNamenodeHttpPort;
         private String hdfsTempDir;
+        private Boolean hdfsRamStorageEnabled;
         private Integer hdfsNumDatanodes;
         private Boolean hdfsEnablePermissions;
         private Boolean hdfsFormat;
         private Boolean hdfsEnableRunningUserAsProxyUser;
         private Configuration hdfsConfig;
-
+        private Boolean hdfsSnapshotEnabled;
+        private final ConfigProfiles profiles = new ConfigProfiles();
 
         public Builder setHdfsNamenodePort(Integer hdfsNameNodePort) {
             this.hdfsNamenodePort = hdfsNameNodePort;
@@ -105,6 +160,15 @@ public class HdfsLocalCluster implements MiniCluster {
             return this;
         }
 
+        /**
+         * Place the HDFS data dir on a tmpfs (/dev/shm), falling back to disk when it does not
+         * fit. Defaults to -Dminicluster.storage.ram.enabled.
+         */
+        public Builder setHdfsRamStorageEnabled(Boolean hdfsRamStorageEnabled) {
+            this.hdfsRamStorageEnabled = hdfsRamStorageEnabled;
+            return this;
+        }
+
         public Builder setHdfsNumDatanodes(Integer hdfsNumDatanodes) {
             this.hdfsNumDatanodes = hdfsNumDatanodes;
             return this;
@@ -130,6 +194,60 @@ public class HdfsLocalCluster implements MiniCluster {
             return this;
         }
 
+        /**
+         * Restore a freshly formatted HDFS from the snapshot cache instead of formatting, only
+         * applies when HDFS Format is true. Defaults to -Dminicluster.snapshot.enabled.
+         */
+        public Builder setHdfsSnapshotEnabled(Boolean hdfsSnapshotEnabled) {
+            this.hdfsSnapshotEnabled = hdfsSnapshotEnabled;
+            return this;
+        }
+
+        /**
+         * Turn off the web UIs and info servers, see HeadlessMode. Defaults to
+         * -Dminicluster.headless.enabled.
+         */
+        public Builder setHdfsHeadless(Boolean hdfsHeadless) {
+            profiles.set(Profile.HEADLESS, hdfsHeadless);
+            return this;
+        }
+
+        /**
+         * Use test sized thread pools and handler counts, see MinimalProfile. Defaults to
+         * -Dminicluster.profile.minimal.enabled.
+         */
+        public Builder setHdfsMinimalProfile(Boolean hdfsMinimalProfile) {
+            profiles.set(Profile.MINIMAL, hdfsMinimalProfile);
+            return this;
+        }
+
+        /**
+         * Skip fsyncs, see EphemeralDurability. Defaults to
+         * -Dminicluster.durability.ephemeral.enabled.
+         */
+        public Builder setHdfsEphemeralDurability(Boolean hdfsEphemeralDurability) {
+            profiles.set(Profile.EPHEMERAL_DURABILITY, hdfsEphemeralDurability);
+            return this;
+        }
+
+        /**
+         * Pin hostnames to loopback instead of looking them up, see StaticResolution. Defaults to
+         * -Dminicluster.resolution.static.enabled.
+         */
+        public Builder setHdfsStaticResolution(Boolean hdfsStaticResolution) {
+            profiles.set(Profile.STATIC_RESOLUTION, hdfsStaticResolution);
+            return this;
+        }
+
+        /**
+         * Resolve groups in memory and handle local permissions through java.nio instead of forking, see
+         * ForkFreeMode. Defaults to -Dminicluster.forkfree.enabled.
+         */
+        public Builder setHdfsForkFree(Boolean hdfsForkFree) {
+            profiles.set(Profile.FORK_FREE, hdfsForkFree);
+            return this;
+        }
+
         public HdfsLocalCluster build() {
             HdfsLocalCluster hdfsLocalCluster = new HdfsLocalCluster(this);
             validateObject(hdfsLocalCluster);
@@ -166,17 +284,69 @@ public class HdfsLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            LOG.info("HDFS: Starting MiniDfsCluster");
+            configure();
+
+            boolean format = hdfsFormat;
+            String snapshotKey = null;
+            if (hdfsFormat && SnapshotCache.isEnabled(hdfsSnapshotEnabled)) {
+                snapshotKey = getSnapshotKey();
+                try (LifecycleSpan step = LifecycleTracer.span(this, "restoreSnapshot")) {
+                    if (snapshotCache.restore(snapshotKey, new File(hdfsTempDir), "fsimage_*")) {
+                        LOG.info("HDFS: Restored formatted HDFS from snapshot, skipping format");
+                        format = false;
+                    }
+                }
+            }
 
-        LOG.info("HDFS: Starting MiniDfsCluster");
-        configure();
-        miniDFSCluster = new MiniDFSCluster.Builder(hdfsConfig)
-                .nameNodePort(hdfsNamenodePort)
-                .nameNodeHttpPort(hdfsNamenodeHttpPort==null? 0 : hdfsNamenodeHttpPort.intValue() )
-                .numDataNodes(hdfsNumDatanodes)
-                .format(hdfsFormat)
-                .racks(null)
-                .build();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "buildMiniDFSCluster")) {
+                miniDFSCluster = new MiniDFSCluster.Builder(hdfsConfig)
+                        .nameNodePort(hdfsNamenodePort)
+                        .nameNodeHttpPort(hdfsNamenodeHttpPort==null || profiles.isEnabled(Profile.HEADLESS) ?
+                                0 : hdfsNamenodeHttpPort.intValue() )
+                        .numDataNodes(hdfsNumDatanodes)
+                        .format(format)
+                        .racks(null)
+                        .waitSafeMode(false)
+                        .build();
+            }
+            // Publish the ports picked for port 0
+            hdfsNamenodePort = miniDFSCluster.getNameNodePort();
+            hdfsNamenodeHttpPort = miniDFSCluster.getNameNode().getHttpAddress().getPort();
+            if (snapshotKey != null && format) {
+                try (LifecycleSpan step = LifecycleTracer.span(this, "captureSnapshot")) {
+                    captureSnapshot(snapshotKey);
+                }
+            }
+            span.succeeded();
+        }
+    }
 
+    private String getSnapshotKey() {
+        return SnapshotCache.key(HdfsLocalCluster.class.getName(), VersionInfo.getVersion(), hdfsNumDatanodes);
+    }
+
+    private void captureSnapshot(String snapshotKey) {
+        try {
+            // Checkpoint so the snapshot does not depend on replaying the edit log
+            DistributedFileSystem dfs = miniDFSCluster.getFileSystem();
+            dfs.setSafeMode(HdfsConstants.SafeModeAction.SAFEMODE_ENTER);
+            dfs.saveNamespace();
+            dfs.setSafeMode(HdfsConstants.SafeModeAction.SAFEMODE_LEAVE);
+            snapshotCache.capture(snapshotKey, new File(hdfsTempDir));
+        } catch (IOException e) {
+            LOG.warn("HDFS: Unable to capture snapshot, the next run will format again", e);
+        }
+    }
+
+    /**
+     * start() returns before the NameNode leaves safe mode, use awaitReady() before writing.
+     */
+    @Override
+    public boolean isReady() throws Exception {
+        return miniDFSCluster != null && miniDFSCluster.isClusterUp() &&
+                !miniDFSCluster.getNameNode().isInSafeMode() && miniDFSCluster.isDataNodeUp();
     }
 
     @Override
@@ -186,34 +356,86 @@ public class HdfsLocalCluster implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("HDFS: Stopping MiniDfsCluster");
-        miniDFSCluster.shutdown();
-        if(cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("HDFS: Stopping MiniDfsCluster");
+            fileSystemPool.close();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "shutdown")) {
+                miniDFSCluster.shutdown();
+            }
+            if(cleanUp) {
+                cleanUp();
+            }
         }
+    }
 
+    /**
+     * Shuts down the data nodes and name nodes one by one, freeing their ports, instead of
+     * waiting for the orderly shutdown of the cluster.
+     */
+    @Override
+    public void forceStop() throws Exception {
+        LOG.info("HDFS: Killing MiniDfsCluster");
+        if (miniDFSCluster != null) {
+            miniDFSCluster.shutdownDataNodes();
+            miniDFSCluster.shutdownNameNodes();
+        }
     }
 
     @Override
     public void configure() throws Exception {
-        if(null != hdfsEnableRunningUserAsProxyUser && hdfsEnableRunningUserAsProxyUser) {
-            hdfsConfig.set("hadoop.proxyuser." + System.getProperty("user.name") + ".hosts", "*");
-            hdfsConfig.set("hadoop.proxyuser." + System.getProperty("user.name") + ".groups", "*");
-        }
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            if(null != hdfsEnableRunningUserAsProxyUser && hdfsEnableRunningUserAsProxyUser) {
+                hdfsConfig.set("hadoop.proxyuser." + System.getProperty("user.name") + ".hosts", "*");
+                hdfsConfig.set("hadoop.proxyuser." + System.getProperty("user.name") + ".groups", "*");
+            }
 
-        hdfsConfig.setBoolean("dfs.permissions", hdfsEnablePermissions);
-        System.setProperty("test.build.data", hdfsTempDir);
+            hdfsConfig.setBoolean("dfs.permissions", hdfsEnablePermissions);
+            profiles.apply(hdfsConfig, Component.HDFS);
+            hdfsTempDir = RamStorage.resolve(hdfsTempDir, "embedded_hdfs", RamStorage.HDFS_MB, hdfsRamStorageEnabled);
+            System.setProperty("test.build.data", hdfsTempDir);
 
-        // Handle Windows
-        WindowsLibsUtils.setHadoopHome();
+            // Handle Windows
+            WindowsLibsUtils.setHadoopHome();
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(hdfsTempDir);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            RamStorage.deleteInBackground(hdfsTempDir);
+        }
     }
 
     public FileSystem getHdfsFileSystemHandle() throws Exception {
         return miniDFSCluster.getFileSystem();
     }
+
+    /**
+     * Deletes everything below /, bypassing the trash.
+     */
+    @Override
+    public void reset() throws Exception {
+        FileSystem fileSystem = getHdfsFileSystemHandle();
+        for (FileStatus status : fileSystem.listStatus(new Path("/"))) {
+            fileSystem.delete(status.getPath(), true);
+        }
+    }
+
+    @Override
+    public void createTenant(Tenant tenant) throws Exception {
+        getPooledFileSystem().mkdirs(new Path(tenant.getHdfsBasePath()));
+    }
+
+    @Override
+    public void deleteTenant(Tenant tenant) throws Exception {
+        getPooledFileSystem().delete(new Path(tenant.getHdfsBasePath()), true);
+    }
+
+    /**
+     * A FileSystem of its own, not the cached one, shared with other callers. Do not close it,
+     * stop() does.
+     */
+    public FileSystem getPooledFileSystem() throws Exception {
+        return fileSystemPool.get();
+    }
 }
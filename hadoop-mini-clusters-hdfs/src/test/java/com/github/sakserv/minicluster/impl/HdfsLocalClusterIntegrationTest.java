@@ -17,12 +17,15 @@ package com.github.sakserv.minicluster.impl;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.HttpClients;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.time.Duration;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
@@ -36,6 +39,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.config.ConfigVars;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.propertyparser.PropertyParser;
 
 public class HdfsLocalClusterIntegrationTest {
@@ -71,6 +75,7 @@ public class HdfsLocalClusterIntegrationTest {
                 .setHdfsConfig(new Configuration())
                 .build();
         dfsCluster.start();
+        dfsCluster.awaitReady(Duration.ofMinutes(2));
     }
 
     @AfterClass
@@ -106,4 +111,41 @@ public class HdfsLocalClusterIntegrationTest {
         assertEquals( "{\"Path\":\"/user/guest\"}", line );
 
     }
+
+    @Test
+    public void testResetDeletesFiles() throws Exception {
+        FileSystem hdfsFsHandle = dfsCluster.getPooledFileSystem();
+        Path file = new Path("/reset/file");
+        FSDataOutputStream writer = hdfsFsHandle.create(file);
+        writer.writeUTF(propertyParser.getProperty(ConfigVars.HDFS_TEST_STRING_KEY));
+        writer.close();
+        assertTrue(hdfsFsHandle.exists(file));
+
+        dfsCluster.reset();
+        assertFalse(hdfsFsHandle.exists(new Path("/reset")));
+
+        // Still usable after the reset
+        assertTrue(dfsCluster.isReady());
+        writer = hdfsFsHandle.create(file);
+        writer.writeUTF(propertyParser.getProperty(ConfigVars.HDFS_TEST_STRING_KEY));
+        writer.close();
+        FSDataInputStream reader = hdfsFsHandle.open(file);
+        assertEquals(propertyParser.getProperty(ConfigVars.HDFS_TEST_STRING_KEY), reader.readUTF());
+        reader.close();
+    }
+
+    @Test
+    public void testTenantBaseDir() throws Exception {
+        Tenant tenant = new Tenant("HdfsLocalClusterIntegrationTest", 1);
+        FileSystem hdfsFsHandle = dfsCluster.getPooledFileSystem();
+
+        dfsCluster.createTenant(tenant);
+        assertTrue(hdfsFsHandle.isDirectory(new Path(tenant.getHdfsBasePath())));
+        FSDataOutputStream writer = hdfsFsHandle.create(new Path(tenant.getHdfsPath("in/file")));
+        writer.writeUTF(propertyParser.getProperty(ConfigVars.HDFS_TEST_STRING_KEY));
+        writer.close();
+
+        dfsCluster.deleteTenant(tenant);
+        assertFalse(hdfsFsHandle.exists(new Path(tenant.getHdfsBasePath())));
+    }
 }
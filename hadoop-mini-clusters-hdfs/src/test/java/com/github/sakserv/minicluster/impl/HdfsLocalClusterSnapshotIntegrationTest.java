@@ -0,0 +1,111 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.sakserv.minicluster.config.ConfigVars;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.snapshot.SnapshotCache;
+import com.github.sakserv.propertyparser.PropertyParser;
+
+public class HdfsLocalClusterSnapshotIntegrationTest {
+
+    // Logger
+    private static final Logger LOG = LoggerFactory.getLogger(HdfsLocalClusterSnapshotIntegrationTest.class);
+
+    // Setup the property parser
+    private static PropertyParser propertyParser;
+    static {
+        try {
+            propertyParser = new PropertyParser(ConfigVars.DEFAULT_PROPS_FILE);
+            propertyParser.parsePropsFile();
+        } catch(IOException e) {
+            LOG.error("Unable to load property file: {}", propertyParser.getProperty(ConfigVars.DEFAULT_PROPS_FILE));
+        }
+    }
+
+    @Rule
+    public TemporaryFolder snapshotDir = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() {
+        System.setProperty(SnapshotCache.ENABLED_PROPERTY, "true");
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        System.clearProperty(SnapshotCache.ENABLED_PROPERTY);
+        System.clearProperty(SnapshotCache.DIR_PROPERTY);
+    }
+
+    @Test
+    public void testSecondStartIsRestoredFromSnapshot() throws Exception {
+        System.setProperty(SnapshotCache.DIR_PROPERTY, snapshotDir.getRoot().getAbsolutePath());
+
+        HdfsLocalCluster first = buildCluster();
+        first.start();
+        first.awaitReady(Duration.ofMinutes(2));
+        FileSystem hdfsFsHandle = first.getHdfsFileSystemHandle();
+        FSDataOutputStream writer = hdfsFsHandle.create(
+                new Path(propertyParser.getProperty(ConfigVars.HDFS_TEST_FILE_KEY)));
+        writer.writeUTF(propertyParser.getProperty(ConfigVars.HDFS_TEST_STRING_KEY));
+        writer.close();
+        first.stop();
+        assertTrue(LifecycleTracer.getDurationMillis(first, "captureSnapshot") >= 0);
+
+        HdfsLocalCluster second = buildCluster();
+        second.start();
+        second.awaitReady(Duration.ofMinutes(2));
+        assertEquals(-1L, LifecycleTracer.getDurationMillis(second, "captureSnapshot"));
+        assertTrue(LifecycleTracer.getDurationMillis(second, "restoreSnapshot") >= 0);
+
+        // The snapshot is taken before any test data is written
+        assertFalse(second.getHdfsFileSystemHandle().exists(
+                new Path(propertyParser.getProperty(ConfigVars.HDFS_TEST_FILE_KEY))));
+        second.stop();
+    }
+
+    private HdfsLocalCluster buildCluster() {
+        return new HdfsLocalCluster.Builder()
+                .setHdfsNamenodePort(Integer.parseInt(propertyParser.getProperty(ConfigVars.HDFS_NAMENODE_PORT_KEY)))
+                .setHdfsTempDir(propertyParser.getProperty(ConfigVars.HDFS_TEMP_DIR_KEY))
+                .setHdfsNumDatanodes(Integer.parseInt(propertyParser.getProperty(ConfigVars.HDFS_NUM_DATANODES_KEY)))
+                .setHdfsEnablePermissions(
+                        Boolean.parseBoolean(propertyParser.getProperty(ConfigVars.HDFS_ENABLE_PERMISSIONS_KEY)))
+                .setHdfsFormat(true)
+                .setHdfsEnableRunningUserAsProxyUser(Boolean.parseBoolean(
+                        propertyParser.getProperty(ConfigVars.HDFS_ENABLE_RUNNING_USER_AS_PROXY_USER)))
+                .setHdfsConfig(new Configuration())
+                .build();
+    }
+}
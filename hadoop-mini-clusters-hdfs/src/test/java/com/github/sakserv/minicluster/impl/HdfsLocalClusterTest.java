@@ -15,6 +15,7 @@
 package com.github.sakserv.minicluster.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -166,6 +167,26 @@ public class HdfsLocalClusterTest {
                 .build();
     }
 
+    @Test
+    public void testHdfsSnapshotEnabledDefault() {
+        assertNull(hdfsLocalCluster.getHdfsSnapshotEnabled());
+    }
+
+    @Test
+    public void testHdfsSnapshotEnabled() {
+        HdfsLocalCluster hdfsLocalCluster = new HdfsLocalCluster.Builder()
+                .setHdfsNamenodePort(Integer.parseInt(propertyParser.getProperty(ConfigVars.HDFS_NAMENODE_PORT_KEY)))
+                .setHdfsTempDir(propertyParser.getProperty(ConfigVars.HDFS_TEMP_DIR_KEY))
+                .setHdfsNumDatanodes(Integer.parseInt(propertyParser.getProperty(ConfigVars.HDFS_NUM_DATANODES_KEY)))
+                .setHdfsEnablePermissions(
+                        Boolean.parseBoolean(propertyParser.getProperty(ConfigVars.HDFS_ENABLE_PERMISSIONS_KEY)))
+                .setHdfsFormat(Boolean.parseBoolean(propertyParser.getProperty(ConfigVars.HDFS_FORMAT_KEY)))
+                .setHdfsConfig(new Configuration())
+                .setHdfsSnapshotEnabled(true)
+                .build();
+        assertTrue(hdfsLocalCluster.getHdfsSnapshotEnabled());
+    }
+
     @Test
     public void testHdfsConf() {
         assertTrue(hdfsLocalCluster.getHdfsConfig() instanceof org.apache.hadoop.conf.Configuration);
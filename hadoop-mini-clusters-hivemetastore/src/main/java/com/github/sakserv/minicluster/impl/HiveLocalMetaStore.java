@@ -15,29 +15,61 @@
 package com.github.sakserv.minicluster.impl;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.HiveMetaStore;
+import org.apache.hadoop.hive.metastore.HiveMetaStoreClient;
+import org.apache.hadoop.hive.metastore.api.Database;
 import org.apache.hadoop.hive.metastore.txn.TxnDbUtil;
 import org.apache.hadoop.hive.thrift.HadoopThriftAuthBridge;
+import org.apache.hive.common.util.HiveVersionInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.config.ConfigTemplates;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.snapshot.SnapshotCache;
 import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.util.ReadinessUtils;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.RamStorage;
+import com.github.sakserv.minicluster.workspace.Workspace;
 
 public class HiveLocalMetaStore implements MiniCluster {
 
     // Logger
     private static final Logger LOG = LoggerFactory.getLogger(HiveLocalMetaStore.class);
 
+    private static final long SNAPSHOT_SCHEMA_TIMEOUT_MS = 120000L;
+
+    private static final String HIVE_CONF_TEMPLATE = "hive";
+
     private String hiveMetastoreHostname;
     private Integer hiveMetastorePort;
     private String hiveMetastoreDerbyDbDir;
+    private Boolean hiveMetastoreRamStorageEnabled;
+    private final ConfigProfiles profiles;
     private String hiveScratchDir;
     private String hiveWarehouseDir;
     private HiveConf hiveConf;
+    private Boolean hiveMetastoreSnapshotEnabled;
+    private SnapshotCache snapshotCache = new SnapshotCache();
 
     private Thread t;
     
@@ -45,9 +77,20 @@ public class HiveLocalMetaStore implements MiniCluster {
         this.hiveMetastoreHostname = builder.hiveMetastoreHostname;
         this.hiveMetastorePort = builder.hiveMetastorePort;
         this.hiveMetastoreDerbyDbDir = builder.hiveMetastoreDerbyDbDir;
+        this.hiveMetastoreRamStorageEnabled = builder.hiveMetastoreRamStorageEnabled;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.hiveScratchDir = builder.hiveScratchDir;
         this.hiveWarehouseDir = builder.hiveWarehouseDir;
         this.hiveConf = builder.hiveConf;
+        this.hiveMetastoreSnapshotEnabled = builder.hiveMetastoreSnapshotEnabled;
+    }
+
+    /**
+     * Returns a copy of a new HiveConf() from {@link ConfigTemplates}, skipping the parsing of
+     * the Hive and Hadoop default resources after the first call.
+     */
+    public static HiveConf newHiveConf() {
+        return ConfigTemplates.copy(HIVE_CONF_TEMPLATE, HiveConf::new, template -> new HiveConf(template));
     }
 
     public String getHiveMetastoreHostname() {
@@ -62,6 +105,14 @@ public class HiveLocalMetaStore implements MiniCluster {
         return hiveMetastoreDerbyDbDir;
     }
 
+    public Boolean getHiveMetastoreRamStorageEnabled() {
+        return hiveMetastoreRamStorageEnabled;
+    }
+
+    public Boolean getHiveMetastoreMinimalProfile() {
+        return profiles.get(Profile.MINIMAL);
+    }
+
     public String getHiveScratchDir() {
         return hiveScratchDir;
     }
@@ -73,14 +124,21 @@ public class HiveLocalMetaStore implements MiniCluster {
     public String getHiveWarehouseDir() {
         return hiveWarehouseDir;
     }
+
+    public Boolean getHiveMetastoreSnapshotEnabled() {
+        return hiveMetastoreSnapshotEnabled;
+    }
     
     public static class Builder {
         private String hiveMetastoreHostname;
         private Integer hiveMetastorePort;
         private String hiveMetastoreDerbyDbDir;
+        private Boolean hiveMetastoreRamStorageEnabled;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private String hiveScratchDir;
         private String hiveWarehouseDir;
         private HiveConf hiveConf;
+        private Boolean hiveMetastoreSnapshotEnabled;
         
         public Builder setHiveMetastoreHostname(String hiveMetastoreHostname) {
             this.hiveMetastoreHostname = hiveMetastoreHostname;
@@ -97,6 +155,24 @@ public class HiveLocalMetaStore implements MiniCluster {
             this.hiveMetastoreDerbyDbDir = hiveDerbyDbDir;
             return this;
         }
+
+        /**
+         * Place the Derby data dir on a tmpfs (/dev/shm), falling back to disk when it does not
+         * fit. Defaults to -Dminicluster.storage.ram.enabled.
+         */
+        public Builder setHiveMetastoreRamStorageEnabled(Boolean hiveMetastoreRamStorageEnabled) {
+            this.hiveMetastoreRamStorageEnabled = hiveMetastoreRamStorageEnabled;
+            return this;
+        }
+
+        /**
+         * Use test sized thread pools and handler counts, see MinimalProfile. Defaults to
+         * -Dminicluster.profile.minimal.enabled.
+         */
+        public Builder setHiveMetastoreMinimalProfile(Boolean hiveMetastoreMinimalProfile) {
+            profiles.set(Profile.MINIMAL, hiveMetastoreMinimalProfile);
+            return this;
+        }
         
         public Builder setHiveScratchDir(String hiveScratchDir) {
             this.hiveScratchDir = hiveScratchDir;
@@ -113,6 +189,15 @@ public class HiveLocalMetaStore implements MiniCluster {
             return this;
         }
         
+        /**
+         * Restore the Derby metastore, schema included, from the snapshot cache instead of
+         * creating it. Defaults to -Dminicluster.snapshot.enabled.
+         */
+        public Builder setHiveMetastoreSnapshotEnabled(Boolean hiveMetastoreSnapshotEnabled) {
+            this.hiveMetastoreSnapshotEnabled = hiveMetastoreSnapshotEnabled;
+            return this;
+        }
+
         public HiveLocalMetaStore build() {
             HiveLocalMetaStore hiveLocalMetaStore = new HiveLocalMetaStore(this);
             validateObject(hiveLocalMetaStore);
@@ -176,14 +261,106 @@ public class HiveLocalMetaStore implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("HIVEMETASTORE: Starting Hive Metastore on port: {}", hiveMetastorePort);
-        configure();
-        StartHiveLocalMetaStore startHiveLocalMetaStore = new StartHiveLocalMetaStore();
-        startHiveLocalMetaStore.setHiveMetastorePort(hiveMetastorePort);
-        startHiveLocalMetaStore.setHiveConf(hiveConf);
-        t = new Thread(startHiveLocalMetaStore);
-        t.setDaemon(true);
-        t.start();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            configure();
+            LOG.info("HIVEMETASTORE: Starting Hive Metastore on port: {}", hiveMetastorePort);
+
+            String snapshotKey = null;
+            boolean restored = false;
+            if (SnapshotCache.isEnabled(hiveMetastoreSnapshotEnabled)) {
+                snapshotKey = getSnapshotKey();
+                try (LifecycleSpan step = LifecycleTracer.span(this, "restoreSnapshot")) {
+                    restored = snapshotCache.restore(snapshotKey, new File(hiveMetastoreDerbyDbDir));
+                    if (restored) {
+                        relocateDefaultDatabase();
+                    }
+                }
+            }
+
+            StartHiveLocalMetaStore startHiveLocalMetaStore = new StartHiveLocalMetaStore();
+            startHiveLocalMetaStore.setHiveMetastorePort(hiveMetastorePort);
+            startHiveLocalMetaStore.setHiveConf(hiveConf);
+            t = new Thread(startHiveLocalMetaStore, "hive-metastore");
+            t.setDaemon(true);
+            t.start();
+
+            if (snapshotKey != null && !restored) {
+                try (LifecycleSpan step = LifecycleTracer.span(this, "captureSnapshot")) {
+                    captureSnapshot(snapshotKey);
+                } catch (Exception e) {
+                    LOG.warn("HIVEMETASTORE: Unable to capture snapshot, the next run will create the schema again", e);
+                }
+            }
+            span.succeeded();
+        }
+    }
+
+    private String getSnapshotKey() {
+        return SnapshotCache.key(HiveLocalMetaStore.class.getName(), HiveVersionInfo.getVersion());
+    }
+
+    // The schema stores the warehouse dir of the run that created it as location of the default database
+    private void relocateDefaultDatabase() throws SQLException {
+        String location = "file:" + new File(hiveWarehouseDir).getAbsolutePath();
+        try (Connection connection = DriverManager.getConnection("jdbc:derby:" + hiveMetastoreDerbyDbDir);
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE APP.DBS SET DB_LOCATION_URI = ? WHERE NAME = 'default'")) {
+            update.setString(1, location);
+            update.executeUpdate();
+        }
+        LOG.info("HIVEMETASTORE: Relocated the default database of the snapshot to {}", location);
+    }
+
+    // The metastore creates its schema asynchronously. Capturing before start() returns keeps the
+    // tables of the test out of the snapshot and the Derby dir in place while it is copied.
+    private void captureSnapshot(String snapshotKey) throws Exception {
+        String derbyUrl = "jdbc:derby:" + hiveMetastoreDerbyDbDir;
+        long deadline = System.currentTimeMillis() + SNAPSHOT_SCHEMA_TIMEOUT_MS;
+        while (!hasDefaultDatabase(derbyUrl)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Timed out waiting for the metastore schema");
+            }
+            Thread.sleep(500);
+        }
+
+        // Online backup gives a consistent copy while the metastore keeps running
+        File backupDir = Files.createTempDirectory("hive-metastore-snapshot").toFile();
+        try {
+            try (Connection connection = DriverManager.getConnection(derbyUrl);
+                 CallableStatement backup = connection.prepareCall("CALL SYSCS_UTIL.SYSCS_BACKUP_DATABASE(?)")) {
+                backup.setString(1, backupDir.getAbsolutePath());
+                backup.execute();
+            }
+            snapshotCache.capture(snapshotKey, new File(backupDir, new File(hiveMetastoreDerbyDbDir).getName()));
+        } finally {
+            FileUtils.deleteFolder(backupDir.getAbsolutePath(), true);
+        }
+    }
+
+    private static boolean hasDefaultDatabase(String derbyUrl) {
+        try (Connection connection = DriverManager.getConnection(derbyUrl);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM APP.DBS WHERE NAME = 'default'")) {
+            return resultSet.next() && resultSet.getInt(1) > 0;
+        } catch (SQLException e) {
+            // Database or table not created yet
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        // The metastore thread binds its port before the schema is usable, so also make a real call
+        if (t == null || !ReadinessUtils.isPortOpen(hiveMetastoreHostname, hiveMetastorePort)) {
+            return false;
+        }
+        HiveMetaStoreClient client = new HiveMetaStoreClient(hiveConf);
+        try {
+            client.getAllDatabases();
+            return true;
+        } finally {
+            client.close();
+        }
     }
 
     @Override
@@ -193,34 +370,71 @@ public class HiveLocalMetaStore implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("HIVEMETASTORE: Stopping Hive Metastore on port: {}", hiveMetastorePort);
-        t.interrupt();
-        if (cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("HIVEMETASTORE: Stopping Hive Metastore on port: {}", hiveMetastorePort);
+            t.interrupt();
+            if (cleanUp) {
+                cleanUp();
+            }
         }
-
     }
 
     @Override
     public void configure() throws Exception {
-        hiveConf.setVar(HiveConf.ConfVars.METASTOREURIS,
-                "thrift://" + hiveMetastoreHostname + ":" + hiveMetastorePort);
-        hiveConf.setVar(HiveConf.ConfVars.SCRATCHDIR, hiveScratchDir);
-        hiveConf.setVar(HiveConf.ConfVars.METASTORECONNECTURLKEY,
-                "jdbc:derby:;databaseName=" + hiveMetastoreDerbyDbDir + ";create=true");
-        hiveConf.setVar(HiveConf.ConfVars.METASTOREWAREHOUSE, new File(hiveWarehouseDir).getAbsolutePath());
-        hiveConf.setBoolVar(HiveConf.ConfVars.HIVE_IN_TEST, true);
-        hiveConf.set("datanucleus.schema.autoCreateTables", "true");
-        hiveConf.set("hive.metastore.schema.verification", "false");
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            hiveMetastorePort = PortAllocator.resolve(hiveMetastorePort);
+            hiveMetastoreDerbyDbDir = RamStorage.resolve(hiveMetastoreDerbyDbDir, "metastore_db", RamStorage.HIVE_MB, hiveMetastoreRamStorageEnabled);
+            hiveScratchDir = Workspace.resolve(hiveScratchDir, "hive_scratch_dir");
+            hiveWarehouseDir = Workspace.resolve(hiveWarehouseDir, "warehouse_dir");
+
+            hiveConf.setVar(HiveConf.ConfVars.METASTOREURIS,
+                    "thrift://" + hiveMetastoreHostname + ":" + hiveMetastorePort);
+            hiveConf.setVar(HiveConf.ConfVars.SCRATCHDIR, hiveScratchDir);
+            hiveConf.setVar(HiveConf.ConfVars.METASTORECONNECTURLKEY,
+                    "jdbc:derby:;databaseName=" + hiveMetastoreDerbyDbDir + ";create=true");
+            hiveConf.setVar(HiveConf.ConfVars.METASTOREWAREHOUSE, new File(hiveWarehouseDir).getAbsolutePath());
+            hiveConf.setBoolVar(HiveConf.ConfVars.HIVE_IN_TEST, true);
+            hiveConf.set("datanucleus.schema.autoCreateTables", "true");
+            hiveConf.set("hive.metastore.schema.verification", "false");
+            profiles.apply(hiveConf, Component.HIVE_METASTORE);
+
+            // Handle Windows
+            WindowsLibsUtils.setHadoopHome();
+        }
+    }
 
-        // Handle Windows
-        WindowsLibsUtils.setHadoopHome();
+    /**
+     * Creates the tenant's database, in the warehouse dir.
+     */
+    @Override
+    public void createTenant(Tenant tenant) throws Exception {
+        HiveMetaStoreClient client = new HiveMetaStoreClient(hiveConf);
+        try {
+            client.createDatabase(new Database(tenant.getHiveDatabase(), "Tenant " + tenant.getId(), null, null));
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Drops the tenant's database with its tables and their data.
+     */
+    @Override
+    public void deleteTenant(Tenant tenant) throws Exception {
+        HiveMetaStoreClient client = new HiveMetaStoreClient(hiveConf);
+        try {
+            client.dropDatabase(tenant.getHiveDatabase(), true, true, true);
+        } finally {
+            client.close();
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(hiveMetastoreDerbyDbDir);
-        FileUtils.deleteFolder(hiveWarehouseDir);
-        FileUtils.deleteFolder(new File("derby.log").getAbsolutePath());
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            RamStorage.deleteInBackground(hiveMetastoreDerbyDbDir);
+            FileUtils.deleteFolderInBackground(hiveWarehouseDir);
+            FileUtils.deleteFolder(new File("derby.log").getAbsolutePath());
+        }
     }
 }
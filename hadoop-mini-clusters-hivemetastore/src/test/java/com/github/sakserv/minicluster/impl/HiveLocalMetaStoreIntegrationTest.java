@@ -15,10 +15,13 @@
 package com.github.sakserv.minicluster.impl;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -43,6 +46,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.config.ConfigVars;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.minicluster.util.FileUtils;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
 import com.github.sakserv.propertyparser.PropertyParser;
@@ -78,6 +82,7 @@ public class HiveLocalMetaStoreIntegrationTest {
                 .build();
         
         hiveLocalMetaStore.start();
+        hiveLocalMetaStore.awaitReady(Duration.ofMinutes(2));
     }
 
     @AfterClass
@@ -177,4 +182,19 @@ public class HiveLocalMetaStoreIntegrationTest {
 
     }
 
+    @Test
+    public void testTenantDatabase() throws Exception {
+        Tenant tenant = new Tenant("HiveLocalMetaStoreIntegrationTest", 1);
+        HiveMetaStoreClient hiveClient = new HiveMetaStoreClient(hiveLocalMetaStore.getHiveConf());
+        try {
+            hiveLocalMetaStore.createTenant(tenant);
+            assertTrue(hiveClient.getAllDatabases().contains(tenant.getHiveDatabase()));
+
+            hiveLocalMetaStore.deleteTenant(tenant);
+            assertFalse(hiveClient.getAllDatabases().contains(tenant.getHiveDatabase()));
+        } finally {
+            hiveClient.close();
+        }
+    }
+
 }
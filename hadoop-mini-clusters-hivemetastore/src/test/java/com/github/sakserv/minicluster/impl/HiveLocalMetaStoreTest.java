@@ -176,6 +176,20 @@ public class HiveLocalMetaStoreTest {
 
     }
 
+    @Test
+    public void testHiveMetastoreSnapshotEnabled() {
+        HiveLocalMetaStore hiveLocalMetaStore = new HiveLocalMetaStore.Builder()
+                .setHiveMetastoreHostname(propertyParser.getProperty(ConfigVars.HIVE_METASTORE_HOSTNAME_KEY))
+                .setHiveMetastorePort(Integer.parseInt(propertyParser.getProperty(ConfigVars.HIVE_METASTORE_PORT_KEY)))
+                .setHiveMetastoreDerbyDbDir(propertyParser.getProperty(ConfigVars.HIVE_METASTORE_DERBY_DB_DIR_KEY))
+                .setHiveScratchDir(propertyParser.getProperty(ConfigVars.HIVE_SCRATCH_DIR_KEY))
+                .setHiveWarehouseDir(propertyParser.getProperty(ConfigVars.HIVE_WAREHOUSE_DIR_KEY))
+                .setHiveConf(buildHiveConf())
+                .setHiveMetastoreSnapshotEnabled(true)
+                .build();
+        assertTrue(hiveLocalMetaStore.getHiveMetastoreSnapshotEnabled());
+    }
+
     @Test
     public void testMissingHiveConf() {
         exception.expect(IllegalArgumentException.class);
@@ -15,6 +15,9 @@
 package com.github.sakserv.minicluster.impl;
 
 import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
 
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hive.service.server.HiveServer2;
@@ -22,8 +25,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.client.ClientPool;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.util.ReadinessUtils;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.RamStorage;
+import com.github.sakserv.minicluster.workspace.Workspace;
 
 public class HiveLocalServer2 implements MiniCluster {
 
@@ -31,12 +45,16 @@ public class HiveLocalServer2 implements MiniCluster {
     private static final Logger LOG = LoggerFactory.getLogger(HiveLocalServer2.class);
     
     private HiveServer2 hiveServer2;
+    private final ClientPool<Connection> jdbcPool = ClientPool.exclusive("HiveServer2 JDBC",
+            this::newJdbcConnection);
     
     private String hiveServer2Hostname;
     private Integer hiveServer2Port;
     private String hiveMetastoreHostname;
     private Integer hiveMetastorePort;
     private String hiveMetastoreDerbyDbDir;
+    private Boolean hiveMetastoreRamStorageEnabled;
+    private final ConfigProfiles profiles;
     private String hiveScratchDir;
     private String hiveWarehouseDir;
     private HiveConf hiveConf;
@@ -62,6 +80,14 @@ public class HiveLocalServer2 implements MiniCluster {
         return hiveMetastoreDerbyDbDir;
     }
 
+    public Boolean getHiveMetastoreRamStorageEnabled() {
+        return hiveMetastoreRamStorageEnabled;
+    }
+
+    public Boolean getHiveServer2MinimalProfile() {
+        return profiles.get(Profile.MINIMAL);
+    }
+
     public String getHiveScratchDir() {
         return hiveScratchDir;
     }
@@ -84,6 +110,8 @@ public class HiveLocalServer2 implements MiniCluster {
         this.hiveMetastoreHostname = builder.hiveMetastoreHostname;
         this.hiveMetastorePort = builder.hiveMetastorePort;
         this.hiveMetastoreDerbyDbDir = builder.hiveMetastoreDerbyDbDir;
+        this.hiveMetastoreRamStorageEnabled = builder.hiveMetastoreRamStorageEnabled;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.hiveScratchDir = builder.hiveScratchDir;
         this.hiveWarehouseDir = builder.hiveWarehouseDir;
         this.hiveConf = builder.hiveConf;
@@ -97,6 +125,8 @@ public class HiveLocalServer2 implements MiniCluster {
         private String hiveMetastoreHostname;
         private Integer hiveMetastorePort;
         private String hiveMetastoreDerbyDbDir;
+        private Boolean hiveMetastoreRamStorageEnabled;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private String hiveScratchDir;
         private String hiveWarehouseDir;
         private HiveConf hiveConf;
@@ -127,6 +157,24 @@ public class HiveLocalServer2 implements MiniCluster {
             return this;
         }
 
+        /**
+         * Place the Derby data dir on a tmpfs (/dev/shm), falling back to disk when it does not
+         * fit. Defaults to -Dminicluster.storage.ram.enabled.
+         */
+        public Builder setHiveMetastoreRamStorageEnabled(Boolean hiveMetastoreRamStorageEnabled) {
+            this.hiveMetastoreRamStorageEnabled = hiveMetastoreRamStorageEnabled;
+            return this;
+        }
+
+        /**
+         * Use test sized thread pools and handler counts, see MinimalProfile. Defaults to
+         * -Dminicluster.profile.minimal.enabled.
+         */
+        public Builder setHiveServer2MinimalProfile(Boolean hiveServer2MinimalProfile) {
+            profiles.set(Profile.MINIMAL, hiveServer2MinimalProfile);
+            return this;
+        }
+
         public Builder setHiveScratchDir(String hiveScratchDir) {
             this.hiveScratchDir = hiveScratchDir;
             return this;
@@ -196,11 +244,24 @@ public class HiveLocalServer2 implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        hiveServer2 = new HiveServer2();
-        LOG.info("HIVESERVER2: Starting HiveServer2 on port: {}", hiveServer2Port);
-        configure();
-        hiveServer2.init(hiveConf);
-        hiveServer2.start();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            hiveServer2 = new HiveServer2();
+            configure();
+            LOG.info("HIVESERVER2: Starting HiveServer2 on port: {}", hiveServer2Port);
+            try (LifecycleSpan step = LifecycleTracer.span(this, "init")) {
+                hiveServer2.init(hiveConf);
+            }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startHiveServer2")) {
+                hiveServer2.start();
+            }
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        // The thrift service binds its port on a background thread
+        return hiveServer2 != null && ReadinessUtils.isPortOpen(hiveServer2Hostname, hiveServer2Port);
     }
 
     @Override
@@ -210,37 +271,88 @@ public class HiveLocalServer2 implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("HIVESERVER2: Stopping HiveServer2 on port: {}", hiveServer2Port);
-        hiveServer2.stop();
-        if (cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("HIVESERVER2: Stopping HiveServer2 on port: {}", hiveServer2Port);
+            jdbcPool.close();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "stopHiveServer2")) {
+                hiveServer2.stop();
+            }
+            if (cleanUp) {
+                cleanUp();
+            }
         }
     }
 
     @Override
     public void configure() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            // Handle Windows
+            WindowsLibsUtils.setHadoopHome();
+
+            hiveServer2Port = PortAllocator.resolve(hiveServer2Port);
+            hiveMetastoreDerbyDbDir = RamStorage.resolve(hiveMetastoreDerbyDbDir, "metastore_db", RamStorage.HIVE_MB, hiveMetastoreRamStorageEnabled);
+            hiveScratchDir = Workspace.resolve(hiveScratchDir, "hive_scratch_dir");
+            hiveWarehouseDir = Workspace.resolve(hiveWarehouseDir, "warehouse_dir");
+
+            hiveConf.setVar(HiveConf.ConfVars.METASTOREURIS,
+                    "thrift://" + hiveMetastoreHostname + ":" + hiveMetastorePort);
+            hiveConf.setVar(HiveConf.ConfVars.SCRATCHDIR, hiveScratchDir);
+            hiveConf.setVar(HiveConf.ConfVars.METASTORECONNECTURLKEY,
+                    "jdbc:derby:;databaseName=" + hiveMetastoreDerbyDbDir + ";create=true");
+            hiveConf.setVar(HiveConf.ConfVars.METASTOREWAREHOUSE, new File(hiveWarehouseDir).getAbsolutePath());
+            hiveConf.setBoolVar(HiveConf.ConfVars.HIVE_IN_TEST, true);
+            hiveConf.setVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_BIND_HOST, String.valueOf(hiveServer2Hostname));
+            hiveConf.setIntVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_PORT, hiveServer2Port);
+            hiveConf.setVar(HiveConf.ConfVars.HIVE_ZOOKEEPER_QUORUM, zookeeperConnectionString);
+            hiveConf.setBoolVar(HiveConf.ConfVars.HIVE_SUPPORT_CONCURRENCY, Boolean.TRUE);
+            profiles.apply(hiveConf, Component.HIVE_SERVER2);
+        }
+    }
 
-        // Handle Windows
-        WindowsLibsUtils.setHadoopHome();
+    @Override
+    public void cleanUp() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            RamStorage.deleteInBackground(hiveMetastoreDerbyDbDir);
+            FileUtils.deleteFolderInBackground(hiveScratchDir);
+            FileUtils.deleteFolder(new File("derby.log").getAbsolutePath());
+        }
+    }
 
-        hiveConf.setVar(HiveConf.ConfVars.METASTOREURIS,
-                "thrift://" + hiveMetastoreHostname + ":" + hiveMetastorePort);
-        hiveConf.setVar(HiveConf.ConfVars.SCRATCHDIR, hiveScratchDir);
-        hiveConf.setVar(HiveConf.ConfVars.METASTORECONNECTURLKEY,
-                "jdbc:derby:;databaseName=" + hiveMetastoreDerbyDbDir + ";create=true");
-        hiveConf.setVar(HiveConf.ConfVars.METASTOREWAREHOUSE, new File(hiveWarehouseDir).getAbsolutePath());
-        hiveConf.setBoolVar(HiveConf.ConfVars.HIVE_IN_TEST, true);
-        hiveConf.setVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_BIND_HOST, String.valueOf(hiveServer2Hostname));
-        hiveConf.setIntVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_PORT, hiveServer2Port);
-        hiveConf.setVar(HiveConf.ConfVars.HIVE_ZOOKEEPER_QUORUM, zookeeperConnectionString);
-        hiveConf.setBoolVar(HiveConf.ConfVars.HIVE_SUPPORT_CONCURRENCY, Boolean.TRUE);
+    /**
+     * Creates the tenant's database over JDBC, needs hive-jdbc on the classpath.
+     */
+    @Override
+    public void createTenant(Tenant tenant) throws Exception {
+        execute("CREATE DATABASE IF NOT EXISTS " + tenant.getHiveDatabase());
     }
 
+    /**
+     * Drops the tenant's database with its tables and their data.
+     */
     @Override
-    public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(hiveMetastoreDerbyDbDir);
-        FileUtils.deleteFolder(hiveScratchDir);
-        FileUtils.deleteFolder(new File("derby.log").getAbsolutePath());
+    public void deleteTenant(Tenant tenant) throws Exception {
+        execute("DROP DATABASE IF EXISTS " + tenant.getHiveDatabase() + " CASCADE");
+    }
+
+    private void execute(String sql) throws Exception {
+        try (ClientPool.Lease<Connection> lease = borrowJdbcConnection();
+             Statement statement = lease.get().createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    /**
+     * A JDBC connection to the default database, held exclusively until the lease is closed.
+     * Needs hive-jdbc on the classpath.
+     */
+    public ClientPool.Lease<Connection> borrowJdbcConnection() throws Exception {
+        return jdbcPool.borrow();
+    }
+
+    private Connection newJdbcConnection() throws Exception {
+        Class.forName("org.apache.hive.jdbc.HiveDriver");
+        return DriverManager.getConnection("jdbc:hive2://" + hiveServer2Hostname + ":" + hiveServer2Port +
+                "/default", System.getProperty("user.name"), "");
     }
 
 }
@@ -15,6 +15,8 @@
 package com.github.sakserv.minicluster.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.sql.Connection;
@@ -23,6 +25,7 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 
 import org.apache.hadoop.hive.conf.HiveConf;
 import org.junit.AfterClass;
@@ -31,7 +34,9 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.sakserv.minicluster.client.ClientPool;
 import com.github.sakserv.minicluster.config.ConfigVars;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
 import com.github.sakserv.propertyparser.PropertyParser;
 
@@ -74,6 +79,7 @@ public class HiveLocalServer2IntegrationTest {
                 .setHiveConf(buildHiveConf())
                 .build();
         hiveLocalMetaStore.start();
+        hiveLocalMetaStore.awaitReady(Duration.ofMinutes(2));
 
         
         hiveLocalServer2 = new HiveLocalServer2.Builder()
@@ -88,6 +94,7 @@ public class HiveLocalServer2IntegrationTest {
                 .setZookeeperConnectionString(propertyParser.getProperty(ConfigVars.ZOOKEEPER_CONNECTION_STRING_KEY))
                 .build();
         hiveLocalServer2.start();
+        hiveLocalServer2.awaitReady(Duration.ofMinutes(2));
     }
 
     @AfterClass
@@ -185,4 +192,28 @@ public class HiveLocalServer2IntegrationTest {
         stmt.execute(dropDdl);
     }
 
+    @Test
+    public void testTenantDatabase() throws Exception {
+        Tenant tenant = new Tenant("HiveLocalServer2IntegrationTest", 1);
+
+        hiveLocalServer2.createTenant(tenant);
+        assertTrue(databaseExists(tenant.getHiveDatabase()));
+
+        hiveLocalServer2.deleteTenant(tenant);
+        assertFalse(databaseExists(tenant.getHiveDatabase()));
+    }
+
+    private static boolean databaseExists(String database) throws Exception {
+        try (ClientPool.Lease<Connection> lease = hiveLocalServer2.borrowJdbcConnection();
+             Statement stmt = lease.get().createStatement();
+             ResultSet resultSet = stmt.executeQuery("SHOW DATABASES")) {
+            while (resultSet.next()) {
+                if (database.equals(resultSet.getString(1))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
 }
@@ -14,14 +14,22 @@
 package com.github.sakserv.minicluster.impl;
 
 import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
 
 import org.hsqldb.persist.HsqlProperties;
 import org.hsqldb.server.Server;
+import org.hsqldb.server.ServerConstants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.client.ClientPool;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
 import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.Workspace;
 
 public class HsqldbLocalServer implements MiniCluster {
 
@@ -30,6 +38,8 @@ public class HsqldbLocalServer implements MiniCluster {
     
     private HsqlProperties hsqlProperties = new HsqlProperties();
     private Server server;
+    private final ClientPool<Connection> jdbcPool = ClientPool.exclusive("HSQLDB JDBC",
+            this::newJdbcConnection);
     
     private String hsqldbHostName;
     private String hsqldbPort;
@@ -156,11 +166,19 @@ public class HsqldbLocalServer implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("HSQLDB: Starting HSQLDB");
-        configure();
-        server = new Server();
-        server.setProperties(hsqlProperties);
-        server.start();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            LOG.info("HSQLDB: Starting HSQLDB");
+            configure();
+            server = new Server();
+            server.setProperties(hsqlProperties);
+            server.start();
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        return server != null && server.getState() == ServerConstants.SERVER_STATE_ONLINE;
     }
 
     @Override
@@ -170,31 +188,40 @@ public class HsqldbLocalServer implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("HSQLDB: Stopping HSQLDB");
-        server.stop();
-        if (cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("HSQLDB: Stopping HSQLDB");
+            jdbcPool.close();
+            server.stop();
+            if (cleanUp) {
+                cleanUp();
+            }
         }
     }
 
     @Override
     public void configure() throws Exception {
-        hsqlProperties.setProperty("server.address", getHsqldbHostName());
-        hsqlProperties.setProperty("server.port", getHsqldbPort());
-        hsqlProperties.setProperty("server.database.0", "file:" + new File(getHsqldbTempDir()).getAbsolutePath());
-        hsqlProperties.setProperty("server.dbname.0", getHsqldbDatabaseName());
-        hsqlProperties.setProperty("server.remote_open", "true");
-        hsqlProperties.setProperty("server.max_allowed_packet", "32M");
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            hsqldbPort = PortAllocator.resolve(hsqldbPort);
+            hsqldbTempDir = Workspace.resolve(hsqldbTempDir, "embedded_hsqldb");
+
+            hsqlProperties.setProperty("server.address", getHsqldbHostName());
+            hsqlProperties.setProperty("server.port", getHsqldbPort());
+            hsqlProperties.setProperty("server.database.0", "file:" + new File(getHsqldbTempDir()).getAbsolutePath());
+            hsqlProperties.setProperty("server.dbname.0", getHsqldbDatabaseName());
+            hsqlProperties.setProperty("server.remote_open", "true");
+            hsqlProperties.setProperty("server.max_allowed_packet", "32M");
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        
-        FileUtils.deleteFolder(getHsqldbTempDir() + ".tmp");
-        FileUtils.deleteFolder(getHsqldbTempDir() + ".log");
-        FileUtils.deleteFolder(getHsqldbTempDir() + ".properties");
-        FileUtils.deleteFolder(getHsqldbTempDir() + ".script");
-        FileUtils.deleteFolder(getHsqldbTempDir() + ".lck");
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            FileUtils.deleteFolder(getHsqldbTempDir() + ".tmp");
+            FileUtils.deleteFolder(getHsqldbTempDir() + ".log");
+            FileUtils.deleteFolder(getHsqldbTempDir() + ".properties");
+            FileUtils.deleteFolder(getHsqldbTempDir() + ".script");
+            FileUtils.deleteFolder(getHsqldbTempDir() + ".lck");
+        }
     }
 
     public String getHsqldbCompatibilityModeStatement() {
@@ -215,5 +242,18 @@ public class HsqldbLocalServer implements MiniCluster {
         return "SET DATABASE SQL SYNTAX " + dbTypeString + " TRUE";
 
     }
+
+    /**
+     * A JDBC connection as SA, held exclusively until the lease is closed.
+     */
+    public ClientPool.Lease<Connection> borrowJdbcConnection() throws Exception {
+        return jdbcPool.borrow();
+    }
+
+    private Connection newJdbcConnection() throws Exception {
+        Class.forName(getHsqldbJdbcDriver());
+        return DriverManager.getConnection(getHsqldbJdbcConnectionStringPrefix() + getHsqldbHostName() + ":" +
+                getHsqldbPort() + "/" + getHsqldbDatabaseName(), "SA", "");
+    }
     
 }
@@ -15,17 +15,33 @@
 package com.github.sakserv.minicluster.impl;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import kafka.metrics.KafkaMetricsReporter;
 import kafka.metrics.KafkaMetricsReporter$;
 import kafka.utils.VerifiableProperties;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.client.ClientPool;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.minicluster.systemtime.LocalSystemTime;
-import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.util.ReadinessUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.RamStorage;
 
 import kafka.server.KafkaConfig;
 import kafka.server.KafkaServer;
@@ -40,6 +56,8 @@ public class KafkaLocalBroker implements MiniCluster {
 
     // Logger
     private static final Logger LOG = LoggerFactory.getLogger(KafkaLocalBroker.class);
+
+    private static final long RESET_TIMEOUT_MS = 60000L;
     
     private KafkaServer kafkaServer;
     private KafkaConfig kafkaConfig;
@@ -49,8 +67,13 @@ public class KafkaLocalBroker implements MiniCluster {
     private Integer kafkaBrokerId;
     private Properties kafkaProperties;
     private String kafkaTempDir;
+    private Boolean kafkaRamStorageEnabled;
+    private final ConfigProfiles profiles;
     private String zookeeperConnectionString;
 
+    private final ClientPool<Producer<byte[], byte[]>> producerPool = ClientPool.shared("Kafka Producer",
+            this::newProducer);
+
     public String getKafkaHostname() {
         return kafkaHostname;
     }
@@ -71,6 +94,22 @@ public class KafkaLocalBroker implements MiniCluster {
         return kafkaTempDir;
     }
 
+    public Boolean getKafkaRamStorageEnabled() {
+        return kafkaRamStorageEnabled;
+    }
+
+    public Boolean getKafkaMinimalProfile() {
+        return profiles.get(Profile.MINIMAL);
+    }
+
+    public Boolean getKafkaEphemeralDurability() {
+        return profiles.get(Profile.EPHEMERAL_DURABILITY);
+    }
+
+    public Boolean getKafkaStaticResolution() {
+        return profiles.get(Profile.STATIC_RESOLUTION);
+    }
+
     public String getZookeeperConnectionString() {
         return zookeeperConnectionString;
     }
@@ -81,6 +120,8 @@ public class KafkaLocalBroker implements MiniCluster {
         this.kafkaBrokerId = builder.kafkaBrokerId;
         this.kafkaProperties = builder.kafkaProperties;
         this.kafkaTempDir = builder.kafkaTempDir;
+        this.kafkaRamStorageEnabled = builder.kafkaRamStorageEnabled;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.zookeeperConnectionString = builder.zookeeperConnectionString;
         
     }
@@ -92,6 +133,8 @@ public class KafkaLocalBroker implements MiniCluster {
         private Integer kafkaBrokerId;
         private Properties kafkaProperties;
         private String kafkaTempDir;
+        private Boolean kafkaRamStorageEnabled;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private String zookeeperConnectionString;
         
         public Builder setKafkaHostname(String kafkaHostname) {
@@ -118,6 +161,42 @@ public class KafkaLocalBroker implements MiniCluster {
             this.kafkaTempDir = kafkaTempDir;
             return this;
         }
+
+        /**
+         * Place the Kafka data dir on a tmpfs (/dev/shm), falling back to disk when it does not
+         * fit. Defaults to -Dminicluster.storage.ram.enabled.
+         */
+        public Builder setKafkaRamStorageEnabled(Boolean kafkaRamStorageEnabled) {
+            this.kafkaRamStorageEnabled = kafkaRamStorageEnabled;
+            return this;
+        }
+
+        /**
+         * Use test sized thread pools and handler counts, see MinimalProfile. Defaults to
+         * -Dminicluster.profile.minimal.enabled.
+         */
+        public Builder setKafkaMinimalProfile(Boolean kafkaMinimalProfile) {
+            profiles.set(Profile.MINIMAL, kafkaMinimalProfile);
+            return this;
+        }
+
+        /**
+         * Skip fsyncs, see EphemeralDurability. Defaults to
+         * -Dminicluster.durability.ephemeral.enabled.
+         */
+        public Builder setKafkaEphemeralDurability(Boolean kafkaEphemeralDurability) {
+            profiles.set(Profile.EPHEMERAL_DURABILITY, kafkaEphemeralDurability);
+            return this;
+        }
+
+        /**
+         * Pin hostnames to loopback instead of looking them up, see StaticResolution. Defaults to
+         * -Dminicluster.resolution.static.enabled.
+         */
+        public Builder setKafkaStaticResolution(Boolean kafkaStaticResolution) {
+            profiles.set(Profile.STATIC_RESOLUTION, kafkaStaticResolution);
+            return this;
+        }
         
         public Builder setZookeeperConnectionString(String zookeeperConnectionString) {
             this.zookeeperConnectionString = zookeeperConnectionString;
@@ -159,42 +238,63 @@ public class KafkaLocalBroker implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("KAFKA: Starting Kafka on port: {}", kafkaPort);
-        configure();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            configure();
+            LOG.info("KAFKA: Starting Kafka on port: {}", kafkaPort);
+
+            // The Kafka API for KafkaServer has changed multiple times.
+            // Using reflection to call the version specific constructor
+            // with the correct number of arguments.
+
+            // We only expect a single constructor, throw an Exception if there is not exactly 1
+            Class<KafkaServer> kafkaServerClazz = KafkaServer.class;
+            Constructor[] kafkaServerConstructors =  kafkaServerClazz.getConstructors();
+            if(kafkaServerConstructors.length != 1) {
+                throw new Exception("kafka.server.KafkaServer has more than one constructor, expected only 1");
+            }
 
-        // The Kafka API for KafkaServer has changed multiple times.
-        // Using reflection to call the version specific constructor
-        // with the correct number of arguments.
+            // We only expect 2, 3 and 4 argument constructors, throw an Exception if not
+            Constructor kafkaServerConstructor = kafkaServerConstructors[0];
+
+            // Kafka 2.9.2 0.8.2 (HDP 2.3.0 and HDP 2.3.2)
+            if (kafkaServerConstructor.getParameterTypes().length == 2) {
+                kafkaServer = (KafkaServer) kafkaServerConstructor.newInstance(kafkaConfig, new LocalSystemTime());
+
+            // Kafka 2.10 0.9.0 (HDP 2.3.4), pass in the threadPrefixName
+            } else if (kafkaServerConstructor.getParameterTypes().length == 3) {
+                Option<String> threadPrefixName = Option.apply("kafka-mini-cluster");
+                kafkaServer = (KafkaServer) kafkaServerConstructor.newInstance(kafkaConfig, new LocalSystemTime(), threadPrefixName);
+
+            // Kafka 2.10.1
+            } else if (kafkaServerConstructor.getParameterTypes().length == 4) {
+                //val config: KafkaConfig, time: Time = Time.SYSTEM, threadNamePrefix: Option[String] = None, kafkaMetricsReporters: Seq[KafkaMetricsReporter] = List()
+                Option<String> threadPrefixName = Option.apply("kafka-mini-cluster");
+                //scala.collection.immutable.List<Object> kafkaMetricsReporters = scala.collection.immutable.List.empty();
+                Seq<KafkaMetricsReporter> reporters = KafkaMetricsReporter$.MODULE$.startReporters(new VerifiableProperties(new Properties()));
+                kafkaServer = (KafkaServer) kafkaServerConstructor.newInstance(kafkaConfig, new LocalSystemTime(), threadPrefixName, reporters);
+            }
 
-        // We only expect a single constructor, throw an Exception if there is not exactly 1
-        Class<KafkaServer> kafkaServerClazz = KafkaServer.class;
-        Constructor[] kafkaServerConstructors =  kafkaServerClazz.getConstructors();
-        if(kafkaServerConstructors.length != 1) {
-            throw new Exception("kafka.server.KafkaServer has more than one constructor, expected only 1");
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startup")) {
+                kafkaServer.startup();
+            }
+            span.succeeded();
         }
+    }
 
-        // We only expect 2, 3 and 4 argument constructors, throw an Exception if not
-        Constructor kafkaServerConstructor = kafkaServerConstructors[0];
-
-        // Kafka 2.9.2 0.8.2 (HDP 2.3.0 and HDP 2.3.2)
-        if (kafkaServerConstructor.getParameterTypes().length == 2) {
-            kafkaServer = (KafkaServer) kafkaServerConstructor.newInstance(kafkaConfig, new LocalSystemTime());
-
-        // Kafka 2.10 0.9.0 (HDP 2.3.4), pass in the threadPrefixName
-        } else if (kafkaServerConstructor.getParameterTypes().length == 3) {
-            Option<String> threadPrefixName = Option.apply("kafka-mini-cluster");
-            kafkaServer = (KafkaServer) kafkaServerConstructor.newInstance(kafkaConfig, new LocalSystemTime(), threadPrefixName);
-
-        // Kafka 2.10.1
-        } else if (kafkaServerConstructor.getParameterTypes().length == 4) {
-            //val config: KafkaConfig, time: Time = Time.SYSTEM, threadNamePrefix: Option[String] = None, kafkaMetricsReporters: Seq[KafkaMetricsReporter] = List()
-            Option<String> threadPrefixName = Option.apply("kafka-mini-cluster");
-            //scala.collection.immutable.List<Object> kafkaMetricsReporters = scala.collection.immutable.List.empty();
-            Seq<KafkaMetricsReporter> reporters = KafkaMetricsReporter$.MODULE$.startReporters(new VerifiableProperties(new Properties()));
-            kafkaServer = (KafkaServer) kafkaServerConstructor.newInstance(kafkaConfig, new LocalSystemTime(), threadPrefixName, reporters);
+    /**
+     * True once the broker lists itself as alive in its metadata cache. Metadata requests are
+     * answered from that cache, which the controller fills some time after the broker is running,
+     * so until then clients see no broker to produce to. Brokers that do not expose the cache are
+     * ready once running with their port open.
+     */
+    @Override
+    public boolean isReady() throws Exception {
+        if (kafkaServer == null || !KafkaServerUtils.isRunningAsBroker(kafkaServer) ||
+                !ReadinessUtils.isPortOpen(kafkaHostname, kafkaPort)) {
+            return false;
         }
-
-        kafkaServer.startup();
+        List<Integer> aliveBrokerIds = KafkaServerUtils.getAliveBrokerIds(kafkaServer);
+        return aliveBrokerIds == null || aliveBrokerIds.contains(kafkaBrokerId);
     }
 
     @Override
@@ -204,28 +304,106 @@ public class KafkaLocalBroker implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("KAFKA: Stopping Kafka on port: {}", kafkaPort);
-        kafkaServer.shutdown();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("KAFKA: Stopping Kafka on port: {}", kafkaPort);
+            producerPool.close();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "shutdown")) {
+                kafkaServer.shutdown();
+            }
+
+            if (cleanUp) {
+                cleanUp();
+            }
+        }
+    }
 
-        if (cleanUp) {
-            cleanUp();
+    /**
+     * Closes the listening sockets and the ZooKeeper session, leaving the log manager to the
+     * interrupted shutdown.
+     */
+    @Override
+    public void forceStop() throws Exception {
+        LOG.info("KAFKA: Killing Kafka on port: {}", kafkaPort);
+        if (kafkaServer != null) {
+            kafkaServer.socketServer().shutdown();
+            KafkaServerUtils.closeZookeeper(kafkaServer);
         }
     }
 
     @Override
     public void configure() throws Exception {
-        kafkaProperties.put("advertised.host.name", kafkaHostname);
-        kafkaProperties.put("port", kafkaPort+"");
-        kafkaProperties.put("broker.id", kafkaBrokerId+"");
-        kafkaProperties.put("log.dir", kafkaTempDir);
-        kafkaProperties.put("enable.zookeeper", "true");
-        kafkaProperties.put("zookeeper.connect", zookeeperConnectionString);
-        kafkaConfig = KafkaConfig.fromProps(kafkaProperties);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            kafkaPort = PortAllocator.resolve(kafkaPort);
+            kafkaTempDir = RamStorage.resolve(kafkaTempDir, "embedded_kafka", RamStorage.KAFKA_MB, kafkaRamStorageEnabled);
+
+            kafkaProperties.put("advertised.host.name", kafkaHostname);
+            kafkaProperties.put("port", kafkaPort+"");
+            kafkaProperties.put("broker.id", kafkaBrokerId+"");
+            kafkaProperties.put("log.dir", kafkaTempDir);
+            kafkaProperties.put("enable.zookeeper", "true");
+            kafkaProperties.put("zookeeper.connect", zookeeperConnectionString);
+            // reset() deletes topics
+            kafkaProperties.putIfAbsent("delete.topic.enable", "true");
+            profiles.apply(kafkaProperties, Component.KAFKA);
+            kafkaConfig = KafkaConfig.fromProps(kafkaProperties);
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(kafkaTempDir);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            RamStorage.deleteInBackground(kafkaTempDir);
+        }
+    }
+
+    /**
+     * Deletes every topic except the internal ones and waits until they are gone. Needs
+     * delete.topic.enable, which is on unless kafkaProperties turn it off.
+     */
+    @Override
+    public void reset() throws Exception {
+        deleteTopics("");
+        LOG.info("KAFKA: Reset Kafka on port: {}", kafkaPort);
+    }
+
+    /**
+     * Topics are created on first use, deleting the tenant deletes the topics named by it.
+     */
+    @Override
+    public void deleteTenant(Tenant tenant) throws Exception {
+        deleteTopics(tenant.getKafkaTopic(""));
+    }
+
+    private void deleteTopics(String prefix) throws Exception {
+        List<String> topics = new ArrayList<>();
+        for (String topic : KafkaServerUtils.getAllTopics(kafkaServer)) {
+            if (topic.startsWith(prefix) && !topic.startsWith("__")) {
+                topics.add(topic);
+                KafkaServerUtils.deleteTopic(kafkaServer, topic);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESET_TIMEOUT_MS);
+        topics.retainAll(KafkaServerUtils.getAllTopics(kafkaServer));
+        while (!topics.isEmpty()) {
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("ERROR: Topics not deleted after " + RESET_TIMEOUT_MS + " ms: " + topics);
+            }
+            Thread.sleep(100L);
+            topics.retainAll(KafkaServerUtils.getAllTopics(kafkaServer));
+        }
+    }
+
+    /**
+     * A byte[] producer shared with other callers. Do not close it, stop() does.
+     */
+    public Producer<byte[], byte[]> getPooledProducer() throws Exception {
+        return producerPool.get();
+    }
+
+    private Producer<byte[], byte[]> newProducer() {
+        Properties properties = new Properties();
+        properties.put("bootstrap.servers", kafkaHostname + ":" + kafkaPort);
+        return new KafkaProducer<>(properties, new ByteArraySerializer(), new ByteArraySerializer());
     }
 
 }
\ No newline at end of file
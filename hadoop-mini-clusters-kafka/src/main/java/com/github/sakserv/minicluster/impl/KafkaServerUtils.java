@@ -0,0 +1,150 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package com.github.sakserv.minicluster.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import kafka.server.KafkaServer;
+import scala.collection.JavaConversions;
+import scala.collection.Seq;
+
+/**
+ * Broker internals whose API changed between the Kafka versions of the profiles, called through
+ * reflection like the KafkaServer constructor. The 0.8.2 brokers (HDP 2.3.0 and HDP 2.3.2) talk
+ * to ZooKeeper through a ZkClient and the static ZkUtils functions, later ones through a ZkUtils
+ * instance.
+ */
+final class KafkaServerUtils {
+
+    private static final String ZK_UTILS_CLASS = "kafka.utils.ZkUtils";
+    private static final String ADMIN_UTILS_CLASS = "kafka.admin.AdminUtils";
+    private static final String RUNNING_AS_BROKER_CLASS = "kafka.server.RunningAsBroker";
+
+    private KafkaServerUtils() {
+    }
+
+    /**
+     * The ZkUtils of 0.9 and later brokers, the ZkClient of 0.8.2 brokers.
+     */
+    static Object getZookeeper(KafkaServer kafkaServer) throws Exception {
+        Method zkUtils = findMethod(KafkaServer.class, "zkUtils");
+        return zkUtils != null ? invoke(zkUtils, kafkaServer) : invoke(KafkaServer.class, kafkaServer, "zkClient");
+    }
+
+    /**
+     * True once the broker state is RunningAsBroker, also true for brokers that do not expose
+     * their state.
+     */
+    static boolean isRunningAsBroker(KafkaServer kafkaServer) throws Exception {
+        Method brokerState = findMethod(KafkaServer.class, "brokerState");
+        if (brokerState == null) {
+            return true;
+        }
+        Object state = invoke(brokerState, kafkaServer);
+        Object currentState = invoke(state.getClass(), state, "currentState");
+        return currentState.equals(invoke(Class.forName(RUNNING_AS_BROKER_CLASS), null, "state"));
+    }
+
+    /**
+     * The ids of the brokers alive in the metadata cache of this broker, null for brokers that do
+     * not expose their metadata cache.
+     */
+    @SuppressWarnings("unchecked")
+    static List<Integer> getAliveBrokerIds(KafkaServer kafkaServer) throws Exception {
+        Method metadataCache = findMethod(KafkaServer.class, "metadataCache");
+        if (metadataCache == null) {
+            return null;
+        }
+        List<Integer> ids = new ArrayList<>();
+        Object cache = invoke(metadataCache, kafkaServer);
+        if (cache == null) {
+            return ids;
+        }
+        Seq<Object> brokers = (Seq<Object>) invoke(cache.getClass(), cache, "getAliveBrokers");
+        for (Object broker : JavaConversions.seqAsJavaList(brokers)) {
+            ids.add((Integer) invoke(broker.getClass(), broker, "id"));
+        }
+        return ids;
+    }
+
+    static void closeZookeeper(KafkaServer kafkaServer) throws Exception {
+        Object zookeeper = getZookeeper(kafkaServer);
+        if (zookeeper != null) {
+            invoke(zookeeper.getClass(), zookeeper, "close");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<String> getAllTopics(KafkaServer kafkaServer) throws Exception {
+        Object zookeeper = getZookeeper(kafkaServer);
+        Seq<String> topics = isZkUtils(zookeeper)
+                ? (Seq<String>) invoke(zookeeper.getClass(), zookeeper, "getAllTopics")
+                : (Seq<String>) invoke(Class.forName(ZK_UTILS_CLASS), null, "getAllTopics", zookeeper);
+        return new ArrayList<>(JavaConversions.seqAsJavaList(topics));
+    }
+
+    /**
+     * Marks the topic for deletion, the controller deletes it later.
+     */
+    static void deleteTopic(KafkaServer kafkaServer, String topic) throws Exception {
+        invoke(Class.forName(ADMIN_UTILS_CLASS), null, "deleteTopic", getZookeeper(kafkaServer), topic);
+    }
+
+    private static boolean isZkUtils(Object zookeeper) {
+        return zookeeper.getClass().getName().equals(ZK_UTILS_CLASS);
+    }
+
+    private static Object invoke(Class<?> clazz, Object target, String name, Object... args) throws Exception {
+        Method method = findMethod(clazz, name, args);
+        if (method == null) {
+            throw new UnsupportedOperationException("ERROR: " + clazz.getName() + "." + name
+                    + " not found in this Kafka version");
+        }
+        return invoke(method, target, args);
+    }
+
+    private static Object invoke(Method method, Object target, Object... args) throws Exception {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Object... args) {
+        for (Method method : clazz.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == args.length
+                    && accepts(method.getParameterTypes(), args)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static boolean accepts(Class<?>[] parameterTypes, Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != null && !parameterTypes[i].isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
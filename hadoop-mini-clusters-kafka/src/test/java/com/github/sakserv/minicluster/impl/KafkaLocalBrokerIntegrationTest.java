@@ -15,10 +15,12 @@
 package com.github.sakserv.minicluster.impl;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
+import org.apache.curator.framework.CuratorFramework;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -29,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import com.github.sakserv.minicluster.config.ConfigVars;
 import com.github.sakserv.minicluster.kafka.consumer.KafkaTestConsumer;
 import com.github.sakserv.minicluster.kafka.producer.KafkaSimpleTestProducer;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.propertyparser.PropertyParser;
 
 public class KafkaLocalBrokerIntegrationTest {
@@ -58,6 +61,7 @@ public class KafkaLocalBrokerIntegrationTest {
                 .setZookeeperConnectionString(propertyParser.getProperty(ConfigVars.ZOOKEEPER_CONNECTION_STRING_KEY))
                 .build();
         zookeeperLocalCluster.start();
+        zookeeperLocalCluster.awaitReady(Duration.ofMinutes(2));
 
         kafkaLocalBroker = new KafkaLocalBroker.Builder()
                 .setKafkaHostname(propertyParser.getProperty(ConfigVars.KAFKA_HOSTNAME_KEY))
@@ -68,6 +72,7 @@ public class KafkaLocalBrokerIntegrationTest {
                 .setZookeeperConnectionString(propertyParser.getProperty(ConfigVars.ZOOKEEPER_CONNECTION_STRING_KEY))
                 .build();
         kafkaLocalBroker.start();
+        kafkaLocalBroker.awaitReady(Duration.ofMinutes(2));
 
     }
 
@@ -80,6 +85,7 @@ public class KafkaLocalBrokerIntegrationTest {
 
     @Test
     public void testKafkaLocalBroker() throws Exception {
+        Assert.assertTrue(kafkaLocalBroker.isReady());
 
         // Producer 
         KafkaSimpleTestProducer kafkaTestProducer = new KafkaSimpleTestProducer.Builder()
@@ -109,4 +115,52 @@ public class KafkaLocalBrokerIntegrationTest {
 
     }
 
+    @Test
+    public void testResetDeletesTopics() throws Exception {
+        String topic = "reset_topic";
+        String topicZnode = "/brokers/topics/" + topic;
+        int messageCount = Integer.parseInt(propertyParser.getProperty(ConfigVars.KAFKA_TEST_MESSAGE_COUNT_KEY));
+        produceMessages(topic, messageCount);
+        CuratorFramework client = zookeeperLocalCluster.getPooledCuratorClient();
+        Assert.assertNotNull(client.checkExists().forPath(topicZnode));
+
+        kafkaLocalBroker.reset();
+        Assert.assertNull(client.checkExists().forPath(topicZnode));
+
+        // Still usable after the reset, the topic is created again
+        Assert.assertTrue(kafkaLocalBroker.isReady());
+        produceMessages(topic, messageCount);
+        List<String> seeds = new ArrayList<String>();
+        seeds.add(kafkaLocalBroker.getKafkaHostname());
+        KafkaTestConsumer kafkaTestConsumer = new KafkaTestConsumer();
+        kafkaTestConsumer.consumeMessages(messageCount, topic, 0, seeds, kafkaLocalBroker.getKafkaPort());
+        Assert.assertEquals(messageCount, kafkaTestConsumer.getNumRead());
+    }
+
+    @Test
+    public void testTenantTopicsAreDeleted() throws Exception {
+        Tenant tenant = new Tenant("KafkaLocalBrokerIntegrationTest", 1);
+        String tenantTopic = tenant.getKafkaTopic("events");
+        String otherTopic = "other_events";
+        kafkaLocalBroker.createTenant(tenant);
+        produceMessages(tenantTopic, 1);
+        produceMessages(otherTopic, 1);
+        CuratorFramework client = zookeeperLocalCluster.getPooledCuratorClient();
+        Assert.assertNotNull(client.checkExists().forPath("/brokers/topics/" + tenantTopic));
+
+        kafkaLocalBroker.deleteTenant(tenant);
+        Assert.assertNull(client.checkExists().forPath("/brokers/topics/" + tenantTopic));
+        Assert.assertNotNull(client.checkExists().forPath("/brokers/topics/" + otherTopic));
+    }
+
+    private static void produceMessages(String topic, int messageCount) {
+        KafkaSimpleTestProducer kafkaTestProducer = new KafkaSimpleTestProducer.Builder()
+                .setKafkaHostname(propertyParser.getProperty(ConfigVars.KAFKA_HOSTNAME_KEY))
+                .setKafkaPort(Integer.parseInt(propertyParser.getProperty(ConfigVars.KAFKA_PORT_KEY)))
+                .setTopic(topic)
+                .setMessageCount(messageCount)
+                .build();
+        kafkaTestProducer.produceMessages();
+    }
+
 }
@@ -16,8 +16,13 @@ package com.github.sakserv.minicluster.impl;
 
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
 import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.util.ReadinessUtils;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.Workspace;
 import com.google.common.base.Throwables;
 import com.google.common.io.Files;
 import org.apache.commons.collections.CollectionUtils;
@@ -65,9 +70,9 @@ public class KdcLocalCluster implements MiniCluster {
 
     private final String orgName;
     private final String orgDomain;
-    private final Integer port;
+    private Integer port;
     private final String host;
-    private final String baseDir;
+    private String baseDir;
     private final String krbInstance;
     private List<String> principals;
     private final String instance;
@@ -295,31 +300,39 @@ public class KdcLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            LOG.info("KDC: Starting MiniKdc");
+            configure();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startMiniKdc")) {
+                miniKdc = new MiniKdc(conf, new File(baseDir));
+                miniKdc.start();
+            }
 
-        LOG.info("KDC: Starting MiniKdc");
-        configure();
-        miniKdc = new MiniKdc(conf, new File(baseDir));
-        miniKdc.start();
-
-        UserGroupInformation ugi = UserGroupInformation.createRemoteUser("guest");
-        UserGroupInformation.setLoginUser(ugi);
-        String username = UserGroupInformation.getLoginUser().getShortUserName();
-
-        List<String> temp = new ArrayList<>(principals);
-        temp.add(username);
-        this.principals = Collections.unmodifiableList(temp);
-
-        principals.forEach(p -> {
-            try {
-                File keytab = new File(baseDir, p + ".keytab");
-                LOG.info("KDC: Creating keytab for {} in {}", p, keytab);
-                miniKdc.createPrincipal(keytab, p, getKrbPrincipal(p), getKrbPrincipalWithRealm(p));
-            } catch (Exception e) {
-                throw Throwables.propagate(e);
+            UserGroupInformation ugi = UserGroupInformation.createRemoteUser("guest");
+            UserGroupInformation.setLoginUser(ugi);
+            String username = UserGroupInformation.getLoginUser().getShortUserName();
+
+            List<String> temp = new ArrayList<>(principals);
+            temp.add(username);
+            this.principals = Collections.unmodifiableList(temp);
+
+            try (LifecycleSpan step = LifecycleTracer.span(this, "createPrincipals")) {
+                principals.forEach(p -> {
+                    try {
+                        File keytab = new File(baseDir, p + ".keytab");
+                        LOG.info("KDC: Creating keytab for {} in {}", p, keytab);
+                        miniKdc.createPrincipal(keytab, p, getKrbPrincipal(p), getKrbPrincipalWithRealm(p));
+                    } catch (Exception e) {
+                        throw Throwables.propagate(e);
+                    }
+                });
+            }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "prepareSecureConfiguration")) {
+                refreshDefaultRealm();
+                prepareSecureConfiguration(username);
             }
-        });
-        refreshDefaultRealm();
-        prepareSecureConfiguration(username);
+            span.succeeded();
+        }
     }
 
     protected void refreshDefaultRealm() throws Exception {
@@ -449,6 +462,14 @@ public class KdcLocalCluster implements MiniCluster {
         baseConf.set("mapreduce.jobhistory.principal", mrv2Principal);
     }
 
+    @Override
+    public boolean isReady() throws Exception {
+        if (miniKdc == null) {
+            return false;
+        }
+        return !"TCP".equalsIgnoreCase(transport) || ReadinessUtils.isPortOpen(host, miniKdc.getPort());
+    }
+
     @Override
     public void stop() throws Exception {
         stop(true);
@@ -456,33 +477,44 @@ public class KdcLocalCluster implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("KDC: Stopping MiniKdc");
-        miniKdc.stop();
-        if (cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("KDC: Stopping MiniKdc");
+            try (LifecycleSpan step = LifecycleTracer.span(this, "stopMiniKdc")) {
+                miniKdc.stop();
+            }
+            if (cleanUp) {
+                cleanUp();
+            }
         }
     }
 
     @Override
     public void configure() throws Exception {
-        conf = new Properties();
-        conf.setProperty("kdc.port", Integer.toString(getPort()));
-        conf.setProperty("kdc.bind.address", getHost());
-        conf.setProperty("org.name", getOrgName());
-        conf.setProperty("org.domain", getOrgDomain());
-        conf.setProperty("instance", getInstance());
-        conf.setProperty("transport", getTransport());
-        conf.setProperty("max.ticket.lifetime", Integer.toString(getMaxTicketLifetime()));
-        conf.setProperty("max.renewable.lifetime", Integer.toString(getMaxRenewableLifetime()));
-        conf.setProperty("debug", Boolean.toString(getDebug()));
-
-        // Handle Windows
-        WindowsLibsUtils.setHadoopHome();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            port = PortAllocator.resolve(port);
+            baseDir = Workspace.resolve(baseDir, "embedded_kdc");
+
+            conf = new Properties();
+            conf.setProperty("kdc.port", Integer.toString(getPort()));
+            conf.setProperty("kdc.bind.address", getHost());
+            conf.setProperty("org.name", getOrgName());
+            conf.setProperty("org.domain", getOrgDomain());
+            conf.setProperty("instance", getInstance());
+            conf.setProperty("transport", getTransport());
+            conf.setProperty("max.ticket.lifetime", Integer.toString(getMaxTicketLifetime()));
+            conf.setProperty("max.renewable.lifetime", Integer.toString(getMaxRenewableLifetime()));
+            conf.setProperty("debug", Boolean.toString(getDebug()));
+
+            // Handle Windows
+            WindowsLibsUtils.setHadoopHome();
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(baseDir, true);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            FileUtils.deleteFolderInBackground(baseDir);
+        }
     }
 
     public MiniKdc getMiniKdc() throws Exception {
@@ -31,6 +31,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.Duration;
 
 import static org.junit.Assert.*;
 
@@ -94,6 +95,7 @@ public class KdcLocalClusterHdfsIntegrationTest {
                 .setHdfsConfig(hdfsConfig)
                 .build();
         hdfsLocalCluster.start();
+        hdfsLocalCluster.awaitReady(Duration.ofMinutes(2));
     }
 
     @AfterClass
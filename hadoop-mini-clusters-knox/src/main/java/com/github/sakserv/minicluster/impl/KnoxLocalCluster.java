@@ -15,7 +15,12 @@
 package com.github.sakserv.minicluster.impl;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
 import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.util.ReadinessUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.Workspace;
 import com.google.common.base.Throwables;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.gateway.GatewayServer;
@@ -158,83 +163,96 @@ public class KnoxLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            LOG.info("KNOX: Starting GatewayServer");
+            configure();
+
+            gatewayDir = new File(homeDir, "gateway-home-" + UUID.randomUUID());
+            gatewayDir.mkdirs();
+
+            LocalGatewayConfig config = new LocalGatewayConfig();
+            config.set("GATEWAY_HOME", gatewayDir.getAbsolutePath());
+            config.set(LocalGatewayConfig.HTTP_HOST, host);
+            config.setInt(LocalGatewayConfig.HTTP_PORT, port);
+            config.set(LocalGatewayConfig.HTTP_PATH, path);
+            config.set("default.app.topology.name", cluster);
+            config.set("ssl.exclude.protocols", "none");
+
+            // {GATEWAY_HOME}/data
+            File dataDir = new File(config.getGatewayDataDir());
+            dataDir.mkdirs();
+
+            // {GATEWAY_HOME}/data/deployments
+            File deploymentDir = new File(config.getGatewayDeploymentDir());
+            deploymentDir.mkdirs();
+
+            // {GATEWAY_HOME}/data/security
+            File securityDir = new File(config.getGatewaySecurityDir());
+            securityDir.mkdirs();
+
+            // {GATEWAY_HOME}/data/services
+            File stacksDir = new File(config.getGatewayServicesDir());
+            stacksDir.mkdirs();
+
+            // {GATEWAY_HOME}/conf
+            //config.set(LocalGatewayConfig.HADOOP_CONF_DIR, new File(gatewayDir, "conf").getAbsolutePath());
+            File confDir = new File(config.getGatewayConfDir());
+            confDir.mkdirs();
+
+            // {GATEWAY_HOME}/conf/topologies
+            File topologiesDirectory = new File(config.getGatewayTopologyDir());
+            topologiesDirectory.mkdirs();
+
+            LOG.info("Using topology: {}", topology);
+            File descriptor = new File(topologiesDirectory, cluster + ".xml");
+            try (FileOutputStream stream = new FileOutputStream(descriptor)) {
+                stream.write(topology.getBytes());
+            }
 
-        LOG.info("KNOX: Starting GatewayServer");
-        configure();
-
-        gatewayDir = new File(homeDir, "gateway-home-" + UUID.randomUUID());
-        gatewayDir.mkdirs();
-
-        LocalGatewayConfig config = new LocalGatewayConfig();
-        config.set("GATEWAY_HOME", gatewayDir.getAbsolutePath());
-        config.set(LocalGatewayConfig.HTTP_HOST, host);
-        config.setInt(LocalGatewayConfig.HTTP_PORT, port);
-        config.set(LocalGatewayConfig.HTTP_PATH, path);
-        config.set("default.app.topology.name", cluster);
-        config.set("ssl.exclude.protocols", "none");
-
-        // {GATEWAY_HOME}/data
-        File dataDir = new File(config.getGatewayDataDir());
-        dataDir.mkdirs();
-
-        // {GATEWAY_HOME}/data/deployments
-        File deploymentDir = new File(config.getGatewayDeploymentDir());
-        deploymentDir.mkdirs();
-
-        // {GATEWAY_HOME}/data/security
-        File securityDir = new File(config.getGatewaySecurityDir());
-        securityDir.mkdirs();
-
-        // {GATEWAY_HOME}/data/services
-        File stacksDir = new File(config.getGatewayServicesDir());
-        stacksDir.mkdirs();
-
-        // {GATEWAY_HOME}/conf
-        //config.set(LocalGatewayConfig.HADOOP_CONF_DIR, new File(gatewayDir, "conf").getAbsolutePath());
-        File confDir = new File(config.getGatewayConfDir());
-        confDir.mkdirs();
-
-        // {GATEWAY_HOME}/conf/topologies
-        File topologiesDirectory = new File(config.getGatewayTopologyDir());
-        topologiesDirectory.mkdirs();
-
-        LOG.info("Using topology: {}", topology);
-        File descriptor = new File(topologiesDirectory, cluster + ".xml");
-        try (FileOutputStream stream = new FileOutputStream(descriptor)) {
-            stream.write(topology.getBytes());
-        }
-
-        DefaultGatewayServices services = new DefaultGatewayServices();
+            DefaultGatewayServices services = new DefaultGatewayServices();
 
-        Map<String, String> options = new HashMap<>();
-        options.put("persist-master", "false");
-        options.put("master", "password");
+            Map<String, String> options = new HashMap<>();
+            options.put("persist-master", "false");
+            options.put("master", "password");
 
-        try {
-            services.init(config, options);
-        } catch (ServiceLifecycleException e) {
-            LOG.error("Unable to init the services", e);
-            throw Throwables.propagate(e);
-        }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "initServices")) {
+                try {
+                    services.init(config, options);
+                } catch (ServiceLifecycleException e) {
+                    LOG.error("Unable to init the services", e);
+                    throw Throwables.propagate(e);
+                }
+            }
 
-        URL resource = getClass().getClassLoader().getResource("services");
-        // Copy the services definitions from the JAR
-        copyResourcesRecursively(resource, stacksDir);
+            URL resource = getClass().getClassLoader().getResource("services");
+            // Copy the services definitions from the JAR
+            try (LifecycleSpan step = LifecycleTracer.span(this, "copyServiceDefinitions")) {
+                copyResourcesRecursively(resource, stacksDir);
+            }
 
-        StringWriter writer = new StringWriter();
-        config.writeXml(writer);
-        LOG.info("Using gateway-site.xml:{}", writer.toString());
+            StringWriter writer = new StringWriter();
+            config.writeXml(writer);
+            LOG.info("Using gateway-site.xml:{}", writer.toString());
 
-        gatewayServer = GatewayServer.startGateway(config, services);
-        LOG.info("Gateway address = " + gatewayServer.getURI());
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startGateway")) {
+                gatewayServer = GatewayServer.startGateway(config, services);
+            }
+            LOG.info("Gateway address = " + gatewayServer.getURI());
 
-        DefaultTopologyService topologyService = services.getService(DefaultGatewayServices.TOPOLOGY_SERVICE);
-        Topology topology = topologyService.getTopologies().iterator().next();
-        for (Service service : topology.getServices()) {
-            LOG.info("Deployed: {} -> {}", service.getRole(), StringUtils.join(service.getUrls(), ","));
+            DefaultTopologyService topologyService = services.getService(DefaultGatewayServices.TOPOLOGY_SERVICE);
+            Topology topology = topologyService.getTopologies().iterator().next();
+            for (Service service : topology.getServices()) {
+                LOG.info("Deployed: {} -> {}", service.getRole(), StringUtils.join(service.getUrls(), ","));
+            }
+            span.succeeded();
         }
     }
 
+    @Override
+    public boolean isReady() throws Exception {
+        return gatewayServer != null && ReadinessUtils.isPortOpen(host, port);
+    }
+
     @Override
     public void stop() throws Exception {
         stop(true);
@@ -242,21 +260,31 @@ public class KnoxLocalCluster implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("KNOX: Stopping GatewayServer");
-        gatewayServer.stop();
-        if (cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("KNOX: Stopping GatewayServer");
+            try (LifecycleSpan step = LifecycleTracer.span(this, "stopGateway")) {
+                gatewayServer.stop();
+            }
+            if (cleanUp) {
+                cleanUp();
+            }
         }
     }
 
     @Override
     public void configure() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            port = PortAllocator.resolve(port);
+            homeDir = Workspace.resolve(homeDir, "embedded_knox");
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(gatewayDir.getAbsolutePath());
-        FileUtils.deleteFolder(new File(homeDir).getAbsolutePath());
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            FileUtils.deleteFolderInBackground(gatewayDir.getAbsolutePath());
+            FileUtils.deleteFolderInBackground(new File(homeDir).getAbsolutePath());
+        }
     }
 
 
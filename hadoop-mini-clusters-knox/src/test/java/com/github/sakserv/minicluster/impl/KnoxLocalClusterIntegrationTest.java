@@ -45,6 +45,7 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -126,6 +127,7 @@ public class KnoxLocalClusterIntegrationTest {
                 .setHdfsConfig(new Configuration())
                 .build();
         dfsCluster.start();
+        dfsCluster.awaitReady(Duration.ofMinutes(2));
 
         knoxCluster = new KnoxLocalCluster.Builder()
                 .setPort(Integer.parseInt(propertyParser.getProperty(ConfigVars.KNOX_PORT_KEY)))
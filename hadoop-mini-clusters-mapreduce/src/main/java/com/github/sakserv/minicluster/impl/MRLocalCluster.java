@@ -18,13 +18,21 @@ import java.io.File;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.v2.MiniMRYarnCluster;
 import org.apache.hadoop.mapreduce.v2.jobhistory.JHAdminConfig;
+import org.apache.hadoop.service.Service;
 import org.apache.hadoop.yarn.conf.YarnConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
 import com.github.sakserv.minicluster.util.FileUtils;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.Workspace;
 
 public class MRLocalCluster implements MiniCluster {
 
@@ -41,6 +49,7 @@ public class MRLocalCluster implements MiniCluster {
     private String resourceManagerResourceTrackerAddress;
     private String resourceManagerWebappAddress;
     private Boolean useInJvmContainerExecutor;
+    private final ConfigProfiles profiles;
     private String hdfsDefaultFs;
     private Configuration configuration;
     
@@ -82,6 +91,22 @@ public class MRLocalCluster implements MiniCluster {
         return useInJvmContainerExecutor;
     }
 
+    public Boolean getHeadless() {
+        return profiles.get(Profile.HEADLESS);
+    }
+
+    public Boolean getMinimalProfile() {
+        return profiles.get(Profile.MINIMAL);
+    }
+
+    public Boolean getStaticResolution() {
+        return profiles.get(Profile.STATIC_RESOLUTION);
+    }
+
+    public Boolean getForkFree() {
+        return profiles.get(Profile.FORK_FREE);
+    }
+
     public String getHdfsDefaultFs() {
         return hdfsDefaultFs;
     }
@@ -99,6 +124,7 @@ public class MRLocalCluster implements MiniCluster {
         this.resourceManagerResourceTrackerAddress = builder.resourceManagerResourceTrackerAddress;
         this.resourceManagerWebappAddress = builder.resourceManagerWebappAddress;
         this.useInJvmContainerExecutor = builder.useInJvmContainerExecutor;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.hdfsDefaultFs = builder.hdfsDefaultFs;
         this.configuration = builder.configuration;
     }
@@ -112,6 +138,7 @@ public class MRLocalCluster implements MiniCluster {
         private String resourceManagerResourceTrackerAddress;
         private String resourceManagerWebappAddress;
         private Boolean useInJvmContainerExecutor;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private String hdfsDefaultFs;
         private Configuration configuration;
         
@@ -155,6 +182,42 @@ public class MRLocalCluster implements MiniCluster {
             return this;
         }
 
+        /**
+         * Turn off the web UIs and info servers, see HeadlessMode. Defaults to
+         * -Dminicluster.headless.enabled.
+         */
+        public Builder setHeadless(Boolean headless) {
+            profiles.set(Profile.HEADLESS, headless);
+            return this;
+        }
+
+        /**
+         * Use test sized thread pools and handler counts, see MinimalProfile. Defaults to
+         * -Dminicluster.profile.minimal.enabled.
+         */
+        public Builder setMinimalProfile(Boolean minimalProfile) {
+            profiles.set(Profile.MINIMAL, minimalProfile);
+            return this;
+        }
+
+        /**
+         * Pin hostnames to loopback instead of looking them up, see StaticResolution. Defaults to
+         * -Dminicluster.resolution.static.enabled.
+         */
+        public Builder setStaticResolution(Boolean staticResolution) {
+            profiles.set(Profile.STATIC_RESOLUTION, staticResolution);
+            return this;
+        }
+
+        /**
+         * Resolve groups in memory and handle local permissions through java.nio instead of forking, see
+         * ForkFreeMode. Defaults to -Dminicluster.forkfree.enabled.
+         */
+        public Builder setForkFree(Boolean forkFree) {
+            profiles.set(Profile.FORK_FREE, forkFree);
+            return this;
+        }
+
         public Builder setHdfsDefaultFs(String hdfsDefaultFs) {
             this.hdfsDefaultFs = hdfsDefaultFs;
             return this;
@@ -217,12 +280,28 @@ public class MRLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("MR: Starting MiniMRYarnCluster");
-        configure();
-        miniMRYarnCluster = new MiniMRYarnCluster(testName, numNodeManagers);
-        miniMRYarnCluster.serviceInit(configuration);
-        miniMRYarnCluster.init(configuration);
-        miniMRYarnCluster.start();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            LOG.info("MR: Starting MiniMRYarnCluster");
+            configure();
+            miniMRYarnCluster = new MiniMRYarnCluster(testName, numNodeManagers);
+            try (LifecycleSpan step = LifecycleTracer.span(this, "init")) {
+                miniMRYarnCluster.serviceInit(configuration);
+                miniMRYarnCluster.init(configuration);
+            }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startMiniMRYarnCluster")) {
+                miniMRYarnCluster.start();
+            }
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        // Every NodeManager has registered and the JobHistoryServer is up
+        return miniMRYarnCluster != null && miniMRYarnCluster.getResourceManager() != null &&
+                miniMRYarnCluster.getResourceManager().getResourceScheduler().getNumClusterNodes() >= numNodeManagers &&
+                miniMRYarnCluster.getHistoryServer() != null &&
+                miniMRYarnCluster.getHistoryServer().getServiceState() == Service.STATE.STARTED;
     }
 
     @Override
@@ -230,55 +309,74 @@ public class MRLocalCluster implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("MR: Stopping MiniMRYarnCluster");
+            try (LifecycleSpan step = LifecycleTracer.span(this, "stopMiniMRYarnCluster")) {
+                miniMRYarnCluster.stop();
+            }
 
-        LOG.info("MR: Stopping MiniMRYarnCluster");
-        miniMRYarnCluster.stop();
-
-        if(cleanUp) {
-            cleanUp();
+            if(cleanUp) {
+                cleanUp();
+            }
         }
-
     }
 
     @Override
     public void configure() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            // Handle Windows
+            WindowsLibsUtils.setHadoopHome();
 
-        // Handle Windows
-        WindowsLibsUtils.setHadoopHome();
-
-        configuration.set(YarnConfiguration.RM_ADDRESS, resourceManagerAddress);
-        configuration.set(YarnConfiguration.RM_HOSTNAME, resourceManagerHostname);
-        configuration.set(YarnConfiguration.RM_SCHEDULER_ADDRESS, resourceManagerSchedulerAddress);
-        configuration.set(YarnConfiguration.RM_RESOURCE_TRACKER_ADDRESS, resourceManagerResourceTrackerAddress);
-        configuration.set(YarnConfiguration.RM_WEBAPP_ADDRESS, resourceManagerWebappAddress);
-        configuration.set(JHAdminConfig.MR_HISTORY_ADDRESS, jobHistoryAddress);
-        configuration.set(YarnConfiguration.YARN_MINICLUSTER_FIXED_PORTS, "true");
-        configuration.set(JHAdminConfig.MR_HISTORY_MINICLUSTER_FIXED_PORTS, "true");
-        if (getUseInJvmContainerExecutor()) {
-            configuration.set(YarnConfiguration.NM_CONTAINER_EXECUTOR, inJvmContainerExecutorClass);
-            configuration.set("fs.hdfs.impl", org.apache.hadoop.hdfs.DistributedFileSystem.class.getName());
-            configuration.set("fs.file.impl", org.apache.hadoop.fs.LocalFileSystem.class.getName());
-        }
+            if (PortAllocator.isAutoAddress(resourceManagerAddress)) {
+                // The mini cluster works in ./target/<testName>, keep parallel forks apart
+                testName = getClass().getName() + "-" + Workspace.getForkDir().getName();
+            }
+            resourceManagerAddress = PortAllocator.resolveAddress(resourceManagerAddress);
+            resourceManagerSchedulerAddress = PortAllocator.resolveAddress(resourceManagerSchedulerAddress);
+            resourceManagerResourceTrackerAddress = PortAllocator.resolveAddress(resourceManagerResourceTrackerAddress);
+            resourceManagerWebappAddress = PortAllocator.resolveAddress(resourceManagerWebappAddress);
+            jobHistoryAddress = PortAllocator.resolveAddress(jobHistoryAddress);
+
+            configuration.set(YarnConfiguration.RM_ADDRESS, resourceManagerAddress);
+            configuration.set(YarnConfiguration.RM_HOSTNAME, resourceManagerHostname);
+            configuration.set(YarnConfiguration.RM_SCHEDULER_ADDRESS, resourceManagerSchedulerAddress);
+            configuration.set(YarnConfiguration.RM_RESOURCE_TRACKER_ADDRESS, resourceManagerResourceTrackerAddress);
+            if (!profiles.isEnabled(Profile.HEADLESS)) {
+                configuration.set(YarnConfiguration.RM_WEBAPP_ADDRESS, resourceManagerWebappAddress);
+            }
+            configuration.set(JHAdminConfig.MR_HISTORY_ADDRESS, jobHistoryAddress);
+            configuration.set(YarnConfiguration.YARN_MINICLUSTER_FIXED_PORTS, "true");
+            configuration.set(JHAdminConfig.MR_HISTORY_MINICLUSTER_FIXED_PORTS, "true");
+            if (getUseInJvmContainerExecutor()) {
+                configuration.set(YarnConfiguration.NM_CONTAINER_EXECUTOR, inJvmContainerExecutorClass);
+                configuration.set("fs.hdfs.impl", org.apache.hadoop.hdfs.DistributedFileSystem.class.getName());
+                configuration.set("fs.file.impl", org.apache.hadoop.fs.LocalFileSystem.class.getName());
+            }
+            // After the executor settings, fork free mode swaps in a LocalFileSystem subclass
+            profiles.apply(configuration, Component.MAPREDUCE);
 
-        if (null != hdfsDefaultFs) {
-            configuration.set("fs.defaultFS", hdfsDefaultFs);
-            configuration.set("dfs.replication", "1");
+            if (null != hdfsDefaultFs) {
+                configuration.set("fs.defaultFS", hdfsDefaultFs);
+                configuration.set("dfs.replication", "1");
+            }
         }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        // Depending on if we are running in the module or the parent
-        // project, the target folder will be in a different location.
-        // We don't want to nuke the entire target directory, unless only
-        // the mini cluster is using it.
-        // A reasonable check to keep things clean is to check for the existence
-        // of ./target/classes and only delete the mini cluster temporary dir if true.
-        // Delete the entire ./target if false
-        if (new File("./target/classes").exists()) {
-            FileUtils.deleteFolder("./target/" + testName);
-        } else {
-            FileUtils.deleteFolder("./target");
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            // Depending on if we are running in the module or the parent
+            // project, the target folder will be in a different location.
+            // We don't want to nuke the entire target directory, unless only
+            // the mini cluster is using it.
+            // A reasonable check to keep things clean is to check for the existence
+            // of ./target/classes and only delete the mini cluster temporary dir if true.
+            // Delete the entire ./target if false
+            if (new File("./target/classes").exists()) {
+                FileUtils.deleteFolderInBackground("./target/" + testName);
+            } else {
+                FileUtils.deleteFolder("./target");
+            }
         }
     }
 }
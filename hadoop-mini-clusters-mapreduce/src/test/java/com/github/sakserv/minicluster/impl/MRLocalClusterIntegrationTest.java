@@ -14,9 +14,11 @@
 package com.github.sakserv.minicluster.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.Scanner;
 
 import org.apache.hadoop.conf.Configuration;
@@ -71,6 +73,7 @@ public class MRLocalClusterIntegrationTest {
                 .setHdfsConfig(new Configuration())
                 .build();
         dfsCluster.start();
+        dfsCluster.awaitReady(Duration.ofMinutes(2));
 
         mrLocalCluster = new MRLocalCluster.Builder()
                 .setNumNodeManagers(Integer.parseInt(propertyParser.getProperty(ConfigVars.YARN_NUM_NODE_MANAGERS_KEY)))
@@ -90,6 +93,7 @@ public class MRLocalClusterIntegrationTest {
                 .build();
 
         mrLocalCluster.start();
+        mrLocalCluster.awaitReady(Duration.ofMinutes(2));
     }
 
     @AfterClass
@@ -100,6 +104,8 @@ public class MRLocalClusterIntegrationTest {
 
     @Test
     public void testMRLocalCluster() throws Exception {
+        assertTrue(dfsCluster.isReady());
+        assertTrue(mrLocalCluster.isReady());
 
         String inputFileContents = resourceFileToString(testFile);
         writeFileToHdfs(testDataHdfsInputDir + "/" + testFile, inputFileContents);
@@ -18,6 +18,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.util.ReadinessUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
 
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodProcess;
@@ -87,11 +91,23 @@ public class MongodbLocalServer implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("MONGODB: Starting MongoDB on {}:{}", ip, port);
-        starter = MongodStarter.getDefaultInstance();
-        configure();
-        mongodExe = starter.prepare(conf);
-        mongod = mongodExe.start();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            starter = MongodStarter.getDefaultInstance();
+            configure();
+            LOG.info("MONGODB: Starting MongoDB on {}:{}", ip, port);
+            try (LifecycleSpan step = LifecycleTracer.span(this, "prepare")) {
+                mongodExe = starter.prepare(conf);
+            }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startMongod")) {
+                mongod = mongodExe.start();
+            }
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        return mongod != null && ReadinessUtils.isPortOpen(ip, port);
     }
 
     @Override
@@ -101,20 +117,25 @@ public class MongodbLocalServer implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("MONGODB: Stopping MongoDB on {}:{}", ip, port);
-        mongod.stop();
-        mongodExe.stop();
-        if(cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("MONGODB: Stopping MongoDB on {}:{}", ip, port);
+            mongod.stop();
+            mongodExe.stop();
+            if(cleanUp) {
+                cleanUp();
+            }
         }
     }
 
     @Override
     public void configure() throws Exception {
-        conf = new MongodConfigBuilder()
-                .version(Version.Main.PRODUCTION)
-                .net(new Net(ip, port, false))
-                .build();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            port = PortAllocator.resolve(port);
+            conf = new MongodConfigBuilder()
+                    .version(Version.Main.PRODUCTION)
+                    .net(new Net(ip, port, false))
+                    .build();
+        }
     }
 
     @Override
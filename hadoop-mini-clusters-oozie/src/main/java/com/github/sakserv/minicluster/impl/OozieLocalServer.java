@@ -1,10 +1,17 @@
 package com.github.sakserv.minicluster.impl;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.auth.StaticGroupMapping;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
 import com.github.sakserv.minicluster.oozie.util.OozieConfigUtil;
 import com.github.sakserv.minicluster.oozie.sharelib.Framework;
 import com.github.sakserv.minicluster.util.FileUtils;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
+import com.github.sakserv.minicluster.workspace.Workspace;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.oozie.client.OozieClient;
@@ -45,6 +52,7 @@ public class OozieLocalServer implements MiniCluster {
     private String oozieYarnResourceManagerAddress;
     private String oozieHdfsDefaultFs;
     private Configuration oozieConf;
+    private final ConfigProfiles profiles;
     private String oozieHdfsShareLibDir;
     private Boolean oozieShareLibCreate;
     private String oozieLocalShareLibCacheDir;
@@ -62,6 +70,7 @@ public class OozieLocalServer implements MiniCluster {
         this.oozieYarnResourceManagerAddress = builder.oozieYarnResourceManagerAddress;
         this.oozieHdfsDefaultFs = builder.oozieHdfsDefaultFs;
         this.oozieConf = builder.oozieConf;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.oozieHdfsShareLibDir = builder.oozieHdfsShareLibDir;
         this.oozieShareLibCreate = builder.oozieShareLibCreate;
         this.oozieLocalShareLibCacheDir = builder.oozieLocalShareLibCacheDir;
@@ -97,6 +106,14 @@ public class OozieLocalServer implements MiniCluster {
         return oozieConf;
     }
 
+    public Boolean getOozieMinimalProfile() {
+        return profiles.get(Profile.MINIMAL);
+    }
+
+    public Boolean getOozieForkFree() {
+        return profiles.get(Profile.FORK_FREE);
+    }
+
     public String getOozieHdfsShareLibDir() {
         return oozieHdfsShareLibDir;
     }
@@ -125,6 +142,7 @@ public class OozieLocalServer implements MiniCluster {
         private String oozieYarnResourceManagerAddress;
         private String oozieHdfsDefaultFs;
         private Configuration oozieConf;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private String oozieHdfsShareLibDir;
         private Boolean oozieShareLibCreate;
         private String oozieLocalShareLibCacheDir;
@@ -166,6 +184,24 @@ public class OozieLocalServer implements MiniCluster {
             return this;
         }
 
+        /**
+         * Use test sized thread pools and handler counts, see MinimalProfile. Defaults to
+         * -Dminicluster.profile.minimal.enabled.
+         */
+        public Builder setOozieMinimalProfile(Boolean oozieMinimalProfile) {
+            profiles.set(Profile.MINIMAL, oozieMinimalProfile);
+            return this;
+        }
+
+        /**
+         * Resolve groups in memory and handle local permissions through java.nio instead of forking, see
+         * ForkFreeMode. Defaults to -Dminicluster.forkfree.enabled.
+         */
+        public Builder setOozieForkFree(Boolean oozieForkFree) {
+            profiles.set(Profile.FORK_FREE, oozieForkFree);
+            return this;
+        }
+
         public Builder setOozieHdfsShareLibDir(String oozieHdfsShareLibDir) {
             this.oozieHdfsShareLibDir = oozieHdfsShareLibDir;
             return this;
@@ -247,27 +283,39 @@ public class OozieLocalServer implements MiniCluster {
 
     @Override
     public void start() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            configure();
 
-        configure();
+            // Create the directories
+            new File(fullOozieHomeDir).mkdirs();
+            new File(fullOozieHadoopConfDir).mkdirs();
+            new File(fullOozieActionDir).mkdirs();
 
-        // Create the directories
-        new File(fullOozieHomeDir).mkdirs();
-        new File(fullOozieHadoopConfDir).mkdirs();
-        new File(fullOozieActionDir).mkdirs();
+            // Create the configs
+            OozieConfigUtil oozieConfigUtil = new OozieConfigUtil();
+            oozieConfigUtil.writeXml(getOozieConf(), fullOozieConfDir + "/oozie-site.xml");
 
-        // Create the configs
-        OozieConfigUtil oozieConfigUtil = new OozieConfigUtil();
-        oozieConfigUtil.writeXml(getOozieConf(), fullOozieConfDir + "/oozie-site.xml");
+            // Note: Oozie requires the Hadoop config be stored in a directory "hadoop-conf", handle that here.
+            oozieConfigUtil.writeXml(getOozieConf(), fullOozieHadoopConfDir + "/core-site.xml");
 
-        // Note: Oozie requires the Hadoop config be stored in a directory "hadoop-conf", handle that here.
-        oozieConfigUtil.writeXml(getOozieConf(), fullOozieHadoopConfDir + "/core-site.xml");
+            //setup users
+            if (profiles.isEnabled(Profile.FORK_FREE)) {
+                StaticGroupMapping.addUser(oozieUsername, oozieGroupname);
+            }
+            UserGroupInformation.createUserForTesting(oozieUsername, new String[]{oozieGroupname});
 
-        //setup users
-        UserGroupInformation.createUserForTesting(oozieUsername, new String[]{oozieGroupname});
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startLocalOozie")) {
+                LocalOozie.start();
+            }
+            oozieClient = LocalOozie.getClient();
+            oozieCoordClient = LocalOozie.getCoordClient();
+            span.succeeded();
+        }
+    }
 
-        LocalOozie.start();
-        oozieClient = LocalOozie.getClient();
-        oozieCoordClient = LocalOozie.getCoordClient();
+    @Override
+    public boolean isReady() throws Exception {
+        return oozieClient != null && oozieClient.getSystemMode() == OozieClient.SYSTEM_MODE.NORMAL;
     }
 
     @Override
@@ -278,52 +326,63 @@ public class OozieLocalServer implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("OOZIE: Stopping local server");
-        LocalOozie.stop();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("OOZIE: Stopping local server");
+            try (LifecycleSpan step = LifecycleTracer.span(this, "stopLocalOozie")) {
+                LocalOozie.stop();
+            }
 
-        if (cleanUp) {
-            cleanUp();
+            if (cleanUp) {
+                cleanUp();
+            }
         }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(oozieTestDir);
-        FileUtils.deleteFolder(oozieHdfsShareLibDir);
-        FileUtils.deleteFolder(new File("derby.log").getAbsolutePath());
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            FileUtils.deleteFolderInBackground(oozieTestDir);
+            FileUtils.deleteFolderInBackground(oozieHdfsShareLibDir);
+            FileUtils.deleteFolder(new File("derby.log").getAbsolutePath());
+        }
     }
 
     @Override
     public void configure() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            // Handle Windows
+            WindowsLibsUtils.setHadoopHome();
+
+            oozieTestDir = Workspace.resolve(oozieTestDir, "embedded_oozie");
+            oozieLocalShareLibCacheDir = Workspace.resolve(oozieLocalShareLibCacheDir, "share_lib_cache");
+
+            // Oozie has very particular naming conventions for these directories, don't change
+            fullOozieHomeDir = oozieTestDir + "/" + oozieHomeDir;
+            fullOozieConfDir = fullOozieHomeDir + "/conf";
+            fullOozieHadoopConfDir = fullOozieConfDir + "/hadoop-conf";
+            fullOozieActionDir = fullOozieConfDir + "/action-conf";
+
+            //set system properties
+            System.setProperty(Services.OOZIE_HOME_DIR, new File(fullOozieHomeDir).getAbsolutePath());
+            System.setProperty(ConfigurationService.OOZIE_CONFIG_DIR, fullOozieConfDir);
+            System.setProperty("oozielocal.log", fullOozieHomeDir + "/oozielocal.log");
+            System.setProperty(XTestCase.OOZIE_TEST_JOB_TRACKER, oozieYarnResourceManagerAddress);
+            System.setProperty(XTestCase.OOZIE_TEST_NAME_NODE, oozieHdfsDefaultFs);
+            System.setProperty("oozie.test.db.host", "localhost");
+            System.setProperty(ConfigurationService.OOZIE_DATA_DIR, fullOozieHomeDir);
+            System.setProperty(HadoopAccessorService.SUPPORTED_FILESYSTEMS, "*");
+
+            if (oozieShareLibCreate) {
+                oozieConf.set("oozie.service.WorkflowAppService.system.libpath",
+                        oozieHdfsDefaultFs + oozieHdfsShareLibDir);
+                oozieConf.set("use.system.libpath.for.mapreduce.and.pig.jobs", "true");
+            }
 
-        // Handle Windows
-        WindowsLibsUtils.setHadoopHome();
-
-        // Oozie has very particular naming conventions for these directories, don't change
-        fullOozieHomeDir = oozieTestDir + "/" + oozieHomeDir;
-        fullOozieConfDir = fullOozieHomeDir + "/conf";
-        fullOozieHadoopConfDir = fullOozieConfDir + "/hadoop-conf";
-        fullOozieActionDir = fullOozieConfDir + "/action-conf";
-
-        //set system properties
-        System.setProperty(Services.OOZIE_HOME_DIR, new File(fullOozieHomeDir).getAbsolutePath());
-        System.setProperty(ConfigurationService.OOZIE_CONFIG_DIR, fullOozieConfDir);
-        System.setProperty("oozielocal.log", fullOozieHomeDir + "/oozielocal.log");
-        System.setProperty(XTestCase.OOZIE_TEST_JOB_TRACKER, oozieYarnResourceManagerAddress);
-        System.setProperty(XTestCase.OOZIE_TEST_NAME_NODE, oozieHdfsDefaultFs);
-        System.setProperty("oozie.test.db.host", "localhost");
-        System.setProperty(ConfigurationService.OOZIE_DATA_DIR, fullOozieHomeDir);
-        System.setProperty(HadoopAccessorService.SUPPORTED_FILESYSTEMS, "*");
-
-        if (oozieShareLibCreate) {
-            oozieConf.set("oozie.service.WorkflowAppService.system.libpath",
-                    oozieHdfsDefaultFs + oozieHdfsShareLibDir);
-            oozieConf.set("use.system.libpath.for.mapreduce.and.pig.jobs", "true");
+            oozieConf.set("oozie.service.JPAService.jdbc.driver", "org.hsqldb.jdbcDriver");
+            oozieConf.set("oozie.service.JPAService.jdbc.url", "jdbc:hsqldb:mem:oozie-db;create=true");
+            oozieConf.set(JPAService.CONF_CREATE_DB_SCHEMA, "true");
+            profiles.apply(oozieConf, Component.OOZIE);
         }
-
-        oozieConf.set("oozie.service.JPAService.jdbc.driver", "org.hsqldb.jdbcDriver");
-        oozieConf.set("oozie.service.JPAService.jdbc.url", "jdbc:hsqldb:mem:oozie-db;create=true");
-        oozieConf.set(JPAService.CONF_CREATE_DB_SCHEMA, "true");
     }
 
     public OozieClient getOozieClient() {
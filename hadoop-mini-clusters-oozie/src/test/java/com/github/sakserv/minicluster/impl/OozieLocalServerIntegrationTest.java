@@ -6,6 +6,7 @@ import static org.junit.Assert.assertNotNull;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.time.Duration;
 import java.util.Properties;
 
 import com.github.sakserv.minicluster.oozie.sharelib.Framework;
@@ -72,6 +73,7 @@ public class OozieLocalServerIntegrationTest {
                 .setHdfsConfig(new Configuration())
                 .build();
         hdfsLocalCluster.start();
+        hdfsLocalCluster.awaitReady(Duration.ofMinutes(2));
 
         mrLocalCluster = new MRLocalCluster.Builder()
                 .setNumNodeManagers(Integer.parseInt(propertyParser.getProperty(ConfigVars.YARN_NUM_NODE_MANAGERS_KEY)))
@@ -91,6 +93,7 @@ public class OozieLocalServerIntegrationTest {
                 .build();
 
         mrLocalCluster.start();
+        mrLocalCluster.awaitReady(Duration.ofMinutes(2));
 
         oozieLocalServer = new OozieLocalServer.Builder()
                 .setOozieTestDir(propertyParser.getProperty(ConfigVars.OOZIE_TEST_DIR_KEY))
@@ -117,6 +120,7 @@ public class OozieLocalServerIntegrationTest {
                 oozieLocalServer.getOozieShareLibFrameworks());
         oozieShareLibUtil.createShareLib();
         oozieLocalServer.start();
+        oozieLocalServer.awaitReady(Duration.ofMinutes(2));
     }
 
     @AfterClass
@@ -22,6 +22,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
 
 import org.apache.storm.Config;
 import org.apache.storm.LocalCluster;
@@ -35,11 +38,14 @@ public class StormLocalCluster implements MiniCluster {
 
     // Logger
     private static final Logger LOG = LoggerFactory.getLogger(StormLocalCluster.class);
+
+    public static final Integer DEFAULT_NIMBUS_THRIFT_PORT = 6627;
     
     private String zookeeperHost;
     private Long zookeeperPort;
     private Boolean enableDebug;
     private Integer numWorkers;
+    private Integer nimbusThriftPort;
     private Config stormConf;
     private ILocalCluster localCluster;
     
@@ -48,6 +54,7 @@ public class StormLocalCluster implements MiniCluster {
         this.zookeeperPort = builder.zookeeperPort;
         this.enableDebug = builder.enableDebug;
         this.numWorkers = builder.numWorkers;
+        this.nimbusThriftPort = builder.nimbusThriftPort;
         this.stormConf = builder.stormConf;
     }
     
@@ -64,6 +71,8 @@ public class StormLocalCluster implements MiniCluster {
     }
     
     public Integer getNumWorkers() { return numWorkers;  }
+
+    public Integer getNimbusThriftPort() { return nimbusThriftPort; }
     
     public Config getStormConf() { return stormConf; }
     
@@ -72,6 +81,7 @@ public class StormLocalCluster implements MiniCluster {
         private Long zookeeperPort;
         private Boolean enableDebug;
         private Integer numWorkers;
+        private Integer nimbusThriftPort = DEFAULT_NIMBUS_THRIFT_PORT;
         private Config stormConf;
         
         public Builder setZookeeperHost(String zookeeperHost) {
@@ -94,6 +104,14 @@ public class StormLocalCluster implements MiniCluster {
             return this;
         }
 
+        /**
+         * Optional, defaults to 6627. Use 0 to pick a free port.
+         */
+        public Builder setNimbusThriftPort(Integer nimbusThriftPort) {
+            this.nimbusThriftPort = nimbusThriftPort;
+            return this;
+        }
+
         public Builder setStormConfig(Config stormConf) {
             this.stormConf = stormConf;
             return this;
@@ -122,6 +140,10 @@ public class StormLocalCluster implements MiniCluster {
                 throw new IllegalArgumentException("ERROR: Missing required config: Num Workers");
             }
 
+            if (stormLocalCluster.getNimbusThriftPort() == null) {
+                throw new IllegalArgumentException("ERROR: Missing required config: Nimbus Thrift Port");
+            }
+
             if (stormLocalCluster.getStormConf() == null) {
                 throw new IllegalArgumentException("ERROR: Missing required config: Storm Config");
             }
@@ -130,9 +152,20 @@ public class StormLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("STORM: Starting StormLocalCluster");
-        configure();
-        localCluster = Testing.getLocalCluster(stormConf);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            LOG.info("STORM: Starting StormLocalCluster");
+            configure();
+            try (LifecycleSpan step = LifecycleTracer.span(this, "getLocalCluster")) {
+                localCluster = Testing.getLocalCluster(stormConf);
+            }
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        // Topologies cannot be scheduled until a supervisor has registered with nimbus
+        return localCluster != null && localCluster.getClusterInfo().get_supervisors_size() > 0;
     }
 
     @Override
@@ -142,34 +175,44 @@ public class StormLocalCluster implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("STORM: Stopping StormLocalCluster");
-        localCluster.shutdown();
-        if(cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("STORM: Stopping StormLocalCluster");
+            try (LifecycleSpan step = LifecycleTracer.span(this, "shutdown")) {
+                localCluster.shutdown();
+            }
+            if(cleanUp) {
+                cleanUp();
+            }
         }
     }
 
     @Override
     public void configure() throws Exception {
-        stormConf.setDebug(enableDebug);
-        stormConf.setNumWorkers(numWorkers);
-        stormConf.put("nimbus-daemon", true);
-        List<String> stormNimbusSeeds = new ArrayList<>();
-        stormNimbusSeeds.add("localhost");
-        stormConf.put(Config.NIMBUS_SEEDS, stormNimbusSeeds);
-        stormConf.put(Config.NIMBUS_THRIFT_PORT, 6627);
-        stormConf.put(Config.STORM_THRIFT_TRANSPORT_PLUGIN, "org.apache.storm.security.auth.SimpleTransportPlugin");
-        stormConf.put(Config.STORM_NIMBUS_RETRY_INTERVAL_CEILING, 60000);
-        stormConf.put(Config.STORM_NIMBUS_RETRY_TIMES, 5);
-        stormConf.put(Config.STORM_NIMBUS_RETRY_INTERVAL, 2000);
-        stormConf.put(Config.NIMBUS_THRIFT_MAX_BUFFER_SIZE, 1048576);
-        stormConf.put(Config.STORM_ZOOKEEPER_SERVERS, Arrays.asList(getZookeeperHost()));
-        stormConf.put(Config.STORM_ZOOKEEPER_PORT, getZookeeperPort());
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            nimbusThriftPort = PortAllocator.resolve(nimbusThriftPort);
+
+            stormConf.setDebug(enableDebug);
+            stormConf.setNumWorkers(numWorkers);
+            stormConf.put("nimbus-daemon", true);
+            List<String> stormNimbusSeeds = new ArrayList<>();
+            stormNimbusSeeds.add("localhost");
+            stormConf.put(Config.NIMBUS_SEEDS, stormNimbusSeeds);
+            stormConf.put(Config.NIMBUS_THRIFT_PORT, nimbusThriftPort);
+            stormConf.put(Config.STORM_THRIFT_TRANSPORT_PLUGIN, "org.apache.storm.security.auth.SimpleTransportPlugin");
+            stormConf.put(Config.STORM_NIMBUS_RETRY_INTERVAL_CEILING, 60000);
+            stormConf.put(Config.STORM_NIMBUS_RETRY_TIMES, 5);
+            stormConf.put(Config.STORM_NIMBUS_RETRY_INTERVAL, 2000);
+            stormConf.put(Config.NIMBUS_THRIFT_MAX_BUFFER_SIZE, 1048576);
+            stormConf.put(Config.STORM_ZOOKEEPER_SERVERS, Arrays.asList(getZookeeperHost()));
+            stormConf.put(Config.STORM_ZOOKEEPER_PORT, getZookeeperPort());
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-      FileUtils.deleteFolder("logs");
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            FileUtils.deleteFolderInBackground("logs");
+        }
     }
 
     public void submitTopology(String topologyName, Config conf, StormTopology topology)
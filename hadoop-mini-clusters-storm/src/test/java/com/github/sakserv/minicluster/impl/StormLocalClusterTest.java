@@ -131,6 +131,24 @@ public class StormLocalClusterTest {
                 .build();
     }
     
+    @Test
+    public void testNimbusThriftPortDefault() {
+        assertEquals(StormLocalCluster.DEFAULT_NIMBUS_THRIFT_PORT, stormLocalCluster.getNimbusThriftPort());
+    }
+
+    @Test
+    public void testMissingNimbusThriftPort() {
+        exception.expect(IllegalArgumentException.class);
+        stormLocalCluster = new StormLocalCluster.Builder()
+                .setZookeeperHost(propertyParser.getProperty(ConfigVars.ZOOKEEPER_HOST_KEY))
+                .setZookeeperPort(Long.parseLong(propertyParser.getProperty(ConfigVars.ZOOKEEPER_PORT_KEY)))
+                .setEnableDebug(Boolean.parseBoolean(propertyParser.getProperty(ConfigVars.STORM_ENABLE_DEBUG_KEY)))
+                .setNumWorkers(Integer.parseInt(propertyParser.getProperty(ConfigVars.STORM_NUM_WORKERS_KEY)))
+                .setNimbusThriftPort(null)
+                .setStormConfig(new Config())
+                .build();
+    }
+
     @Test
     public void testStormConf() {
         assertTrue(stormLocalCluster.getStormConf() instanceof org.apache.storm.Config);
@@ -22,8 +22,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sakserv.minicluster.MiniCluster;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
 import com.github.sakserv.minicluster.util.FileUtils;
 import com.github.sakserv.minicluster.util.WindowsLibsUtils;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.Workspace;
 
 public class YarnLocalCluster implements MiniCluster {
 
@@ -43,6 +50,7 @@ public class YarnLocalCluster implements MiniCluster {
     private String resourceManagerResourceTrackerAddress;
     private String resourceManagerWebappAddress;
     private Boolean useInJvmContainerExecutor;
+    private final ConfigProfiles profiles;
     private Configuration configuration;
     
     private MiniYARNCluster miniYARNCluster;
@@ -88,6 +96,22 @@ public class YarnLocalCluster implements MiniCluster {
         return useInJvmContainerExecutor;
     }
 
+    public Boolean getHeadless() {
+        return profiles.get(Profile.HEADLESS);
+    }
+
+    public Boolean getMinimalProfile() {
+        return profiles.get(Profile.MINIMAL);
+    }
+
+    public Boolean getStaticResolution() {
+        return profiles.get(Profile.STATIC_RESOLUTION);
+    }
+
+    public Boolean getForkFree() {
+        return profiles.get(Profile.FORK_FREE);
+    }
+
     public Configuration getConfig() {
         return configuration;
     }
@@ -102,6 +126,7 @@ public class YarnLocalCluster implements MiniCluster {
         this.resourceManagerResourceTrackerAddress = builder.resourceManagerResourceTrackerAddress;
         this.resourceManagerWebappAddress = builder.resourceManagerWebappAddress;
         this.useInJvmContainerExecutor = builder.useInJvmContainerExecutor;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.configuration = builder.configuration;
     }
     
@@ -115,6 +140,7 @@ public class YarnLocalCluster implements MiniCluster {
         private String resourceManagerResourceTrackerAddress;
         private String resourceManagerWebappAddress;
         private Boolean useInJvmContainerExecutor;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private Configuration configuration;
         
         public Builder setNumNodeManagers(Integer numNodeManagers) {
@@ -161,6 +187,42 @@ public class YarnLocalCluster implements MiniCluster {
             this.useInJvmContainerExecutor = useInJvmContainerExecutor;
             return this;
         }
+
+        /**
+         * Turn off the web UIs and info servers, see HeadlessMode. Defaults to
+         * -Dminicluster.headless.enabled.
+         */
+        public Builder setHeadless(Boolean headless) {
+            profiles.set(Profile.HEADLESS, headless);
+            return this;
+        }
+
+        /**
+         * Use test sized thread pools and handler counts, see MinimalProfile. Defaults to
+         * -Dminicluster.profile.minimal.enabled.
+         */
+        public Builder setMinimalProfile(Boolean minimalProfile) {
+            profiles.set(Profile.MINIMAL, minimalProfile);
+            return this;
+        }
+
+        /**
+         * Pin hostnames to loopback instead of looking them up, see StaticResolution. Defaults to
+         * -Dminicluster.resolution.static.enabled.
+         */
+        public Builder setStaticResolution(Boolean staticResolution) {
+            profiles.set(Profile.STATIC_RESOLUTION, staticResolution);
+            return this;
+        }
+
+        /**
+         * Resolve groups in memory and handle local permissions through java.nio instead of forking, see
+         * ForkFreeMode. Defaults to -Dminicluster.forkfree.enabled.
+         */
+        public Builder setForkFree(Boolean forkFree) {
+            profiles.set(Profile.FORK_FREE, forkFree);
+            return this;
+        }
         
         public Builder setConfig(Configuration configuration) {
             this.configuration = configuration;
@@ -223,14 +285,28 @@ public class YarnLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("YARN: Starting MiniYarnCluster");
-        configure();
-        miniYARNCluster = new MiniYARNCluster(testName, numResourceManagers, numNodeManagers,
-                numLocalDirs, numLogDirs, enableHa);
-
-        miniYARNCluster.serviceInit(configuration);
-        miniYARNCluster.init(configuration);
-        miniYARNCluster.start();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            LOG.info("YARN: Starting MiniYarnCluster");
+            configure();
+            miniYARNCluster = new MiniYARNCluster(testName, numResourceManagers, numNodeManagers,
+                    numLocalDirs, numLogDirs, enableHa);
+
+            try (LifecycleSpan step = LifecycleTracer.span(this, "init")) {
+                miniYARNCluster.serviceInit(configuration);
+                miniYARNCluster.init(configuration);
+            }
+            try (LifecycleSpan step = LifecycleTracer.span(this, "startMiniYARNCluster")) {
+                miniYARNCluster.start();
+            }
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        // Every NodeManager has registered with the ResourceManager
+        return miniYARNCluster != null && miniYARNCluster.getResourceManager() != null &&
+                miniYARNCluster.getResourceManager().getResourceScheduler().getNumClusterNodes() >= numNodeManagers;
     }
 
     @Override
@@ -240,45 +316,82 @@ public class YarnLocalCluster implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("YARN: Stopping MiniYarnCluster");
-        miniYARNCluster.stop();
-        if(cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("YARN: Stopping MiniYarnCluster");
+            try (LifecycleSpan step = LifecycleTracer.span(this, "stopMiniYARNCluster")) {
+                miniYARNCluster.stop();
+            }
+            if(cleanUp) {
+                cleanUp();
+            }
         }
+    }
 
+    /**
+     * Stops the node managers and resource managers one by one, freeing their ports, instead of
+     * waiting for the orderly stop of the composite service.
+     */
+    @Override
+    public void forceStop() throws Exception {
+        LOG.info("YARN: Killing MiniYarnCluster");
+        if (miniYARNCluster != null) {
+            for (int i = 0; i < numNodeManagers; i++) {
+                miniYARNCluster.getNodeManager(i).stop();
+            }
+            for (int i = 0; i < numResourceManagers; i++) {
+                miniYARNCluster.getResourceManager(i).stop();
+            }
+        }
     }
 
     @Override
     public void configure() throws Exception {
-        // Handle Windows
-        WindowsLibsUtils.setHadoopHome();
-
-        configuration.set(YarnConfiguration.RM_ADDRESS, resourceManagerAddress);
-        configuration.set(YarnConfiguration.RM_HOSTNAME, resourceManagerHostname);
-        configuration.set(YarnConfiguration.RM_SCHEDULER_ADDRESS, resourceManagerSchedulerAddress);
-        configuration.set(YarnConfiguration.RM_RESOURCE_TRACKER_ADDRESS, resourceManagerResourceTrackerAddress);
-        configuration.set(YarnConfiguration.RM_WEBAPP_ADDRESS, resourceManagerWebappAddress);
-        configuration.set(YarnConfiguration.YARN_MINICLUSTER_FIXED_PORTS, "true");
-        if (getUseInJvmContainerExecutor()) {
-            configuration.set(YarnConfiguration.NM_CONTAINER_EXECUTOR, inJvmContainerExecutorClass);
-            configuration.set("fs.hdfs.impl", org.apache.hadoop.hdfs.DistributedFileSystem.class.getName());
-            configuration.set("fs.file.impl", org.apache.hadoop.fs.LocalFileSystem.class.getName());
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            // Handle Windows
+            WindowsLibsUtils.setHadoopHome();
+
+            if (PortAllocator.isAutoAddress(resourceManagerAddress)) {
+                // The mini cluster works in ./target/<testName>, keep parallel forks apart
+                testName = getClass().getName() + "-" + Workspace.getForkDir().getName();
+            }
+            resourceManagerAddress = PortAllocator.resolveAddress(resourceManagerAddress);
+            resourceManagerSchedulerAddress = PortAllocator.resolveAddress(resourceManagerSchedulerAddress);
+            resourceManagerResourceTrackerAddress = PortAllocator.resolveAddress(resourceManagerResourceTrackerAddress);
+            resourceManagerWebappAddress = PortAllocator.resolveAddress(resourceManagerWebappAddress);
+
+            configuration.set(YarnConfiguration.RM_ADDRESS, resourceManagerAddress);
+            configuration.set(YarnConfiguration.RM_HOSTNAME, resourceManagerHostname);
+            configuration.set(YarnConfiguration.RM_SCHEDULER_ADDRESS, resourceManagerSchedulerAddress);
+            configuration.set(YarnConfiguration.RM_RESOURCE_TRACKER_ADDRESS, resourceManagerResourceTrackerAddress);
+            if (!profiles.isEnabled(Profile.HEADLESS)) {
+                configuration.set(YarnConfiguration.RM_WEBAPP_ADDRESS, resourceManagerWebappAddress);
+            }
+            configuration.set(YarnConfiguration.YARN_MINICLUSTER_FIXED_PORTS, "true");
+            if (getUseInJvmContainerExecutor()) {
+                configuration.set(YarnConfiguration.NM_CONTAINER_EXECUTOR, inJvmContainerExecutorClass);
+                configuration.set("fs.hdfs.impl", org.apache.hadoop.hdfs.DistributedFileSystem.class.getName());
+                configuration.set("fs.file.impl", org.apache.hadoop.fs.LocalFileSystem.class.getName());
+            }
+            // After the executor settings, fork free mode swaps in a LocalFileSystem subclass
+            profiles.apply(configuration, Component.YARN);
         }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        // Depending on if we are running in the module or the parent
-        // project, the target folder will be in a different location.
-        // We don't want to nuke the entire target directory, unless only
-        // the mini cluster is using it.
-        // A reasonable check to keep things clean is to check for the existence
-        // of ./target/classes and only delete the mini cluster temporary dir if true.
-        // Delete the entire ./target if false
-        if (new File("./target/classes").exists()) {
-            FileUtils.deleteFolder("./target/" + testName);
-        } else {
-            FileUtils.deleteFolder("./target");
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            // Depending on if we are running in the module or the parent
+            // project, the target folder will be in a different location.
+            // We don't want to nuke the entire target directory, unless only
+            // the mini cluster is using it.
+            // A reasonable check to keep things clean is to check for the existence
+            // of ./target/classes and only delete the mini cluster temporary dir if true.
+            // Delete the entire ./target if false
+            if (new File("./target/classes").exists()) {
+                FileUtils.deleteFolderInBackground("./target/" + testName);
+            } else {
+                FileUtils.deleteFolder("./target");
+            }
         }
     }
 }
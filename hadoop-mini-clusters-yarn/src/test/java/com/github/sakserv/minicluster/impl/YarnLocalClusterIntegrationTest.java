@@ -14,12 +14,14 @@
 package com.github.sakserv.minicluster.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 
 import org.apache.hadoop.conf.Configuration;
 import org.junit.AfterClass;
@@ -70,6 +72,7 @@ public class YarnLocalClusterIntegrationTest {
                 .build();
 
         yarnLocalCluster.start();
+        yarnLocalCluster.awaitReady(Duration.ofMinutes(2));
     }
 
     @AfterClass
@@ -78,8 +81,9 @@ public class YarnLocalClusterIntegrationTest {
     }
 
     @Test
-    public void testYarnLocalClusterIntegrationTest() {
-        
+    public void testYarnLocalClusterIntegrationTest() throws Exception {
+        assertTrue(yarnLocalCluster.isReady());
+
         String[] args = new String[7];
         args[0] = "whoami";
         args[1] = "1";
@@ -15,9 +15,21 @@
 package com.github.sakserv.minicluster.impl;
 
 import com.github.sakserv.minicluster.MiniCluster;
-import com.github.sakserv.minicluster.util.FileUtils;
+import com.github.sakserv.minicluster.client.ClientPool;
+import com.github.sakserv.minicluster.config.ConfigProfiles;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Component;
+import com.github.sakserv.minicluster.config.ConfigProfiles.Profile;
+import com.github.sakserv.minicluster.lifecycle.LifecycleSpan;
+import com.github.sakserv.minicluster.lifecycle.LifecycleTracer;
+import com.github.sakserv.minicluster.registry.Tenant;
+import com.github.sakserv.minicluster.workspace.PortAllocator;
+import com.github.sakserv.minicluster.workspace.RamStorage;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.curator.test.InstanceSpec;
 import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.client.FourLetterWordMain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,22 +45,27 @@ public class ZookeeperLocalCluster implements MiniCluster {
     // Logger
     private static final Logger LOG = LoggerFactory.getLogger(ZookeeperLocalCluster.class);
 
-    private final Integer port;
-    private final String tempDir;
-    private final String zookeeperConnectionString;
+    private Integer port;
+    private String tempDir;
+    private Boolean ramStorageEnabled;
+    private final ConfigProfiles profiles;
+    private String zookeeperConnectionString;
     private final int electionPort;
     private final int quorumPort;
     private final boolean deleteDataDirectoryOnClose;
     private final int serverId;
     private final int tickTime;
     private final int maxClientCnxns;
-    private final Map<String, Object> customProperties;
+    private Map<String, Object> customProperties;
 
     private TestingServer testingServer;
+    private final ClientPool<CuratorFramework> curatorPool = ClientPool.shared("Curator", this::newCuratorClient);
 
     private ZookeeperLocalCluster(Builder builder) {
         this.port = builder.port;
         this.tempDir = builder.tempDir;
+        this.ramStorageEnabled = builder.ramStorageEnabled;
+        this.profiles = new ConfigProfiles(builder.profiles);
         this.zookeeperConnectionString = builder.zookeeperConnectionString;
         this.electionPort = builder.electionPort;
         this.quorumPort = builder.quorumPort;
@@ -67,6 +84,14 @@ public class ZookeeperLocalCluster implements MiniCluster {
         return tempDir;
     }
 
+    public Boolean getRamStorageEnabled() {
+        return ramStorageEnabled;
+    }
+
+    public Boolean getEphemeralDurability() {
+        return profiles.get(Profile.EPHEMERAL_DURABILITY);
+    }
+
     public String getZookeeperConnectionString() {
         return zookeeperConnectionString;
     }
@@ -98,6 +123,8 @@ public class ZookeeperLocalCluster implements MiniCluster {
     public static class Builder {
         private Integer port;
         private String tempDir;
+        private Boolean ramStorageEnabled;
+        private final ConfigProfiles profiles = new ConfigProfiles();
         private String zookeeperConnectionString;
         private int electionPort = -1;
         private int quorumPort = -1;
@@ -117,6 +144,24 @@ public class ZookeeperLocalCluster implements MiniCluster {
             return this;
         }
 
+        /**
+         * Place the ZooKeeper data dir on a tmpfs (/dev/shm), falling back to disk when it does not
+         * fit. Defaults to -Dminicluster.storage.ram.enabled.
+         */
+        public Builder setRamStorageEnabled(Boolean ramStorageEnabled) {
+            this.ramStorageEnabled = ramStorageEnabled;
+            return this;
+        }
+
+        /**
+         * Skip fsyncs, see EphemeralDurability. Defaults to
+         * -Dminicluster.durability.ephemeral.enabled.
+         */
+        public Builder setEphemeralDurability(Boolean ephemeralDurability) {
+            profiles.set(Profile.EPHEMERAL_DURABILITY, ephemeralDurability);
+            return this;
+        }
+
         public Builder setZookeeperConnectionString(String zookeeperConnectionString) {
             this.zookeeperConnectionString = zookeeperConnectionString;
             return this;
@@ -182,10 +227,20 @@ public class ZookeeperLocalCluster implements MiniCluster {
 
     @Override
     public void start() throws Exception {
-        LOG.info("ZOOKEEPER: Starting Zookeeper on port: {}", port);
-        InstanceSpec spec = new InstanceSpec(new File(tempDir), port, electionPort,
-                quorumPort, deleteDataDirectoryOnClose, serverId, tickTime, maxClientCnxns, customProperties);
-        testingServer = new TestingServer(spec, true);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.START)) {
+            configure();
+            LOG.info("ZOOKEEPER: Starting Zookeeper on port: {}", port);
+            InstanceSpec spec = new InstanceSpec(new File(tempDir), port, electionPort,
+                    quorumPort, deleteDataDirectoryOnClose, serverId, tickTime, maxClientCnxns, customProperties);
+            testingServer = new TestingServer(spec, true);
+            span.succeeded();
+        }
+    }
+
+    @Override
+    public boolean isReady() throws Exception {
+        return testingServer != null &&
+                "imok".equals(FourLetterWordMain.send4LetterWord("localhost", port, "ruok").trim());
     }
 
     @Override
@@ -195,21 +250,74 @@ public class ZookeeperLocalCluster implements MiniCluster {
 
     @Override
     public void stop(boolean cleanUp) throws Exception {
-        LOG.info("ZOOKEEPER: Stopping Zookeeper on port: {}", port);
-        testingServer.stop();
-        if (cleanUp) {
-            cleanUp();
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.STOP)) {
+            LOG.info("ZOOKEEPER: Stopping Zookeeper on port: {}", port);
+            curatorPool.close();
+            testingServer.stop();
+            if (cleanUp) {
+                cleanUp();
+            }
         }
-
     }
 
-    // Curator does not leverage a configuration object
+    // Curator does not leverage a configuration object, only port 0 and "auto" dirs are resolved
     @Override
     public void configure() throws Exception {
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CONFIGURE)) {
+            port = PortAllocator.resolve(port);
+            zookeeperConnectionString = PortAllocator.resolveAddress(zookeeperConnectionString, port);
+            tempDir = RamStorage.resolve(tempDir, "embedded_zk", RamStorage.ZOOKEEPER_MB, ramStorageEnabled);
+            customProperties = profiles.merge(customProperties, Component.ZOOKEEPER);
+        }
     }
 
     @Override
     public void cleanUp() throws Exception {
-        FileUtils.deleteFolder(tempDir);
+        try (LifecycleSpan span = LifecycleTracer.span(this, LifecycleTracer.CLEAN_UP)) {
+            RamStorage.deleteInBackground(tempDir);
+        }
+    }
+
+    /**
+     * Deletes every znode except /zookeeper.
+     */
+    @Override
+    public void reset() throws Exception {
+        CuratorFramework client = getPooledCuratorClient();
+        for (String child : client.getChildren().forPath("/")) {
+            if (!"zookeeper".equals(child)) {
+                client.delete().deletingChildrenIfNeeded().forPath("/" + child);
+            }
+        }
+    }
+
+    @Override
+    public void createTenant(Tenant tenant) throws Exception {
+        CuratorFramework client = getPooledCuratorClient();
+        if (client.checkExists().forPath(tenant.getZookeeperChroot()) == null) {
+            client.create().creatingParentsIfNeeded().forPath(tenant.getZookeeperChroot());
+        }
+    }
+
+    @Override
+    public void deleteTenant(Tenant tenant) throws Exception {
+        CuratorFramework client = getPooledCuratorClient();
+        if (client.checkExists().forPath(tenant.getZookeeperChroot()) != null) {
+            client.delete().deletingChildrenIfNeeded().forPath(tenant.getZookeeperChroot());
+        }
+    }
+
+    /**
+     * A started Curator client shared with other callers. Do not close it, stop() does.
+     */
+    public CuratorFramework getPooledCuratorClient() throws Exception {
+        return curatorPool.get();
+    }
+
+    private CuratorFramework newCuratorClient() {
+        CuratorFramework client = CuratorFrameworkFactory.newClient(getZookeeperConnectionString(),
+                new ExponentialBackoffRetry(100, 3));
+        client.start();
+        return client;
     }
 }
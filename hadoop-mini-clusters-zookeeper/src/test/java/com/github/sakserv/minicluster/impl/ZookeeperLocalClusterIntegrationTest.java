@@ -15,6 +15,7 @@
 package com.github.sakserv.minicluster.impl;
 
 import com.github.sakserv.minicluster.config.ConfigVars;
+import com.github.sakserv.minicluster.registry.Tenant;
 import com.github.sakserv.propertyparser.PropertyParser;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
@@ -29,10 +30,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class ZookeeperLocalClusterIntegrationTest {
@@ -68,6 +72,7 @@ public class ZookeeperLocalClusterIntegrationTest {
                 .setTickTime(Integer.parseInt(propertyParser.getProperty(ConfigVars.ZOOKEEPER_TICKTIME_KEY)))
                 .build();
         zookeeperLocalCluster.start();
+        zookeeperLocalCluster.awaitReady(Duration.ofMinutes(2));
     }
 
     @AfterClass
@@ -77,6 +82,7 @@ public class ZookeeperLocalClusterIntegrationTest {
 
     @Test
     public void testZookeeperCluster() throws Exception {
+        assertTrue(zookeeperLocalCluster.isReady());
         assertEquals(propertyParser.getProperty(ConfigVars.ZOOKEEPER_CONNECTION_STRING_KEY),
                 zookeeperLocalCluster.getZookeeperConnectionString());
 
@@ -99,4 +105,32 @@ public class ZookeeperLocalClusterIntegrationTest {
             assertTrue(children.contains(child2));
         }
     }
+
+    @Test
+    public void testResetDeletesZnodes() throws Exception {
+        CuratorFramework client = zookeeperLocalCluster.getPooledCuratorClient();
+        client.create().creatingParentsIfNeeded().forPath("/reset/child");
+
+        zookeeperLocalCluster.reset();
+        assertNull(client.checkExists().forPath("/reset"));
+        assertNotNull(client.checkExists().forPath("/zookeeper"));
+
+        // Still usable after the reset
+        assertTrue(zookeeperLocalCluster.isReady());
+        client.create().forPath("/reset");
+        assertNotNull(client.checkExists().forPath("/reset"));
+    }
+
+    @Test
+    public void testTenantChroot() throws Exception {
+        Tenant tenant = new Tenant("ZookeeperLocalClusterIntegrationTest", 1);
+        CuratorFramework client = zookeeperLocalCluster.getPooledCuratorClient();
+
+        zookeeperLocalCluster.createTenant(tenant);
+        assertNotNull(client.checkExists().forPath(tenant.getZookeeperChroot()));
+        client.create().forPath(tenant.getZookeeperChroot() + "/child");
+
+        zookeeperLocalCluster.deleteTenant(tenant);
+        assertNull(client.checkExists().forPath(tenant.getZookeeperChroot()));
+    }
 }